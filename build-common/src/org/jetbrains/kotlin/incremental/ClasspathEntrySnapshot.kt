@@ -0,0 +1,445 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.io.IOUtil
+import org.jetbrains.kotlin.incremental.ChangeInfo.MembersChanged
+import org.jetbrains.kotlin.incremental.ChangeInfo.Removed
+import org.jetbrains.kotlin.incremental.storage.ConstantsMapExternalizer
+import org.jetbrains.kotlin.incremental.storage.ProtoMapValue
+import org.jetbrains.kotlin.incremental.storage.ProtoMapValueExternalizer
+import org.jetbrains.kotlin.incremental.storage.StringToLongMapExternalizer
+import org.jetbrains.kotlin.incremental.storage.StringToStringMapExternalizer
+import org.jetbrains.kotlin.inline.inlineFunctionsKotlinNames
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.resolve.jvm.JvmClassName
+import org.jetbrains.kotlin.serialization.jvm.BitEncoding
+import org.jetbrains.org.objectweb.asm.*
+import java.io.*
+import java.util.*
+import java.util.zip.ZipFile
+
+/**
+ * ABI of a single class from the classpath, as far as Kotlin sources that depend on it can see it.
+ */
+sealed class ClassAbiSnapshot {
+    /**
+     * [proto] is null for multifile class facades, their declarations are stored in the parts.
+     * [inlineFunctions] are keyed by JVM signatures, [inlineFunctionNames] maps them to the names of the Kotlin declarations.
+     */
+    class Kotlin(
+            val isPackage: Boolean,
+            val proto: ProtoMapValue?,
+            val constants: Map<String, Any>,
+            val inlineFunctions: Map<String, Long>,
+            val inlineFunctionNames: Map<String, String>
+    ) : ClassAbiSnapshot()
+
+    /**
+     * Classes without Kotlin metadata are compared by hashes of the class signature and of the non-private members grouped by name.
+     */
+    class Java(val classHash: Long, val membersHashes: Map<String, Long>) : ClassAbiSnapshot()
+}
+
+/**
+ * ABI snapshot of a classpath entry (a jar or a class directory), keyed by internal names of classes.
+ */
+class ClasspathEntrySnapshot(val entry: File, val classes: Map<String, ClassAbiSnapshot>) {
+    companion object {
+        private val VERSION = 4
+        private val KOTLIN_CLASS = 0
+        private val JAVA_CLASS = 1
+
+        fun create(entry: File): ClasspathEntrySnapshot {
+            val classes = HashMap<String, ClassAbiSnapshot>()
+
+            fun processClass(location: File, bytes: ByteArray) {
+                val snapshot = createClassSnapshot(location, bytes) ?: return
+                classes[snapshot.first] = snapshot.second
+            }
+
+            when {
+                entry.isDirectory -> {
+                    entry.walk().filter { it.isFile && it.hasClassFileExtension() }.forEach { processClass(it, it.readBytes()) }
+                }
+                entry.isFile -> {
+                    ZipFile(entry).use { zip ->
+                        for (zipEntry in zip.entries()) {
+                            if (zipEntry.isDirectory || !zipEntry.name.endsWith(".class", ignoreCase = true)) continue
+
+                            val bytes = zip.getInputStream(zipEntry).use { it.readBytes() }
+                            processClass(File(entry, zipEntry.name), bytes)
+                        }
+                    }
+                }
+            }
+
+            return ClasspathEntrySnapshot(entry, classes)
+        }
+
+        /**
+         * Returns null when the snapshot is missing or can't be read, so that the entry is treated as having no snapshot.
+         */
+        fun read(file: File): ClasspathEntrySnapshot? {
+            if (!file.exists()) return null
+
+            try {
+                return doRead(file)
+            }
+            catch (e: IOException) {
+                return null
+            }
+            catch (e: RuntimeException) {
+                // corrupted contents, e.g. a truncated proto or an unexpected null
+                return null
+            }
+        }
+
+        private fun doRead(file: File): ClasspathEntrySnapshot? {
+            DataInputStream(BufferedInputStream(file.inputStream())).use { input ->
+                if (input.readInt() != VERSION) return null
+
+                val entry = File(input.readUTF())
+                val size = input.readInt()
+                val classes = HashMap<String, ClassAbiSnapshot>(size)
+
+                repeat(size) {
+                    val internalName = IOUtil.readString(input)!!
+                    classes[internalName] = when (input.readByte().toInt()) {
+                        KOTLIN_CLASS -> {
+                            val isPackage = input.readBoolean()
+                            val proto = if (input.readBoolean()) ProtoMapValueExternalizer.read(input) else null
+                            val constants = ConstantsMapExternalizer.read(input)!!
+                            val inlineFunctions = StringToLongMapExternalizer.read(input)!!
+                            val inlineFunctionNames = StringToStringMapExternalizer.read(input)!!
+                            ClassAbiSnapshot.Kotlin(isPackage, proto, constants, inlineFunctions, inlineFunctionNames)
+                        }
+                        JAVA_CLASS -> {
+                            val classHash = input.readLong()
+                            val membersHashes = StringToLongMapExternalizer.read(input)!!
+                            ClassAbiSnapshot.Java(classHash, membersHashes)
+                        }
+                        else -> return null
+                    }
+                }
+
+                return ClasspathEntrySnapshot(entry, classes)
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and moves it to [file], so that an interrupted build never leaves
+     * a partially written snapshot behind.
+     */
+    fun write(file: File) {
+        file.parentFile.mkdirs()
+        val tempFile = File(file.parentFile, file.name + ".tmp")
+
+        DataOutputStream(BufferedOutputStream(tempFile.outputStream())).use { output ->
+            output.writeInt(VERSION)
+            output.writeUTF(entry.canonicalPath)
+            output.writeInt(classes.size)
+
+            for ((internalName, snapshot) in classes) {
+                IOUtil.writeString(internalName, output)
+
+                when (snapshot) {
+                    is ClassAbiSnapshot.Kotlin -> {
+                        output.writeByte(KOTLIN_CLASS)
+                        output.writeBoolean(snapshot.isPackage)
+                        output.writeBoolean(snapshot.proto != null)
+                        snapshot.proto?.let { ProtoMapValueExternalizer.save(output, it) }
+                        ConstantsMapExternalizer.save(output, snapshot.constants)
+                        StringToLongMapExternalizer.save(output, snapshot.inlineFunctions)
+                        StringToStringMapExternalizer.save(output, snapshot.inlineFunctionNames)
+                    }
+                    is ClassAbiSnapshot.Java -> {
+                        output.writeByte(JAVA_CLASS)
+                        output.writeLong(snapshot.classHash)
+                        StringToLongMapExternalizer.save(output, snapshot.membersHashes)
+                    }
+                }
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            // renameTo doesn't replace an existing file on some platforms
+            file.delete()
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete()
+                throw IOException("Could not move $tempFile to $file")
+            }
+        }
+    }
+}
+
+/**
+ * Stores one snapshot file per classpath entry in [storageDir].
+ */
+class ClasspathSnapshotStorage(private val storageDir: File) {
+    operator fun get(entry: File): ClasspathEntrySnapshot? =
+            ClasspathEntrySnapshot.read(entry.snapshotFile)?.let { if (FileUtil.filesEqual(it.entry, entry.canonicalFile)) it else null }
+
+    fun save(snapshot: ClasspathEntrySnapshot) {
+        snapshot.write(snapshot.entry.snapshotFile)
+    }
+
+    fun remove(entry: File) {
+        entry.snapshotFile.delete()
+    }
+
+    /**
+     * Returns the snapshots of the entries which are not in [classpath] any more,
+     * or null if one of them can't be read, so that the removed entry is unknown.
+     */
+    fun snapshotsOfRemovedEntries(classpath: Collection<File>): List<ClasspathEntrySnapshot>? {
+        val currentSnapshotFiles = classpath.mapTo(HashSet<String>()) { it.snapshotFile.name }
+        val files = storageDir.listFiles() ?: return emptyList()
+
+        return files.filter { it.name !in currentSnapshotFiles && !it.name.endsWith(".tmp") }
+                .map { ClasspathEntrySnapshot.read(it) ?: return null }
+    }
+
+    fun clean() {
+        storageDir.deleteRecursively()
+    }
+
+    private val File.snapshotFile: File
+        get() = File(storageDir, name + "-" + java.lang.Long.toHexString(canonicalPath.toByteArray().md5()))
+}
+
+/**
+ * Computes changes of the classpath entry ABI in the form used by the incremental caches,
+ * so that they could be mapped to dirty lookup symbols by [getDirtyData].
+ */
+fun computeClasspathEntryChanges(old: ClasspathEntrySnapshot, new: ClasspathEntrySnapshot): CompilationResult {
+    val changes = arrayListOf<ChangeInfo>()
+
+    for (internalName in old.classes.keys + new.classes.keys) {
+        changes.addAll(classChanges(JvmClassName.byInternalName(internalName), old.classes[internalName], new.classes[internalName]))
+    }
+
+    return CompilationResult(protoChanged = changes.isNotEmpty(), changes = changes.asSequence())
+}
+
+private fun classChanges(className: JvmClassName, old: ClassAbiSnapshot?, new: ClassAbiSnapshot?): List<ChangeInfo> =
+        when {
+            old is ClassAbiSnapshot.Kotlin && new is ClassAbiSnapshot.Kotlin -> kotlinClassChanges(className, old, new)
+            old is ClassAbiSnapshot.Java && new is ClassAbiSnapshot.Java -> javaClassChanges(className, old, new)
+            else -> old.allChanges(className, ::Removed) + new.allChanges(className, ::MembersChanged)
+        }
+
+private fun ClassAbiSnapshot?.allChanges(className: JvmClassName, createChangeInfo: (FqName, Collection<String>) -> ChangeInfo): List<ChangeInfo> =
+        when (this) {
+            is ClassAbiSnapshot.Kotlin -> proto?.let { computeProtoChanges(className, it, createChangeInfo) }.orEmpty()
+            is ClassAbiSnapshot.Java -> {
+                val fqName = className.fqNameForClassNameWithoutDollars
+                listOf(ChangeInfo.SignatureChanged(fqName, areSubclassesAffected = true), createChangeInfo(fqName, membersHashes.keys))
+            }
+            else -> emptyList()
+        }
+
+private fun kotlinClassChanges(className: JvmClassName, old: ClassAbiSnapshot.Kotlin, new: ClassAbiSnapshot.Kotlin): List<ChangeInfo> {
+    val changes = arrayListOf<ChangeInfo>()
+    val fqName = if (new.isPackage) className.packageFqName else className.fqNameForClassNameWithoutDollars
+    val oldProto = old.proto
+    val newProto = new.proto
+
+    when {
+        oldProto == null -> changes.addAll(new.allChanges(className, ::MembersChanged))
+        newProto == null -> changes.addAll(old.allChanges(className, ::Removed))
+        oldProto.isPackageFacade == newProto.isPackageFacade &&
+        Arrays.equals(oldProto.bytes, newProto.bytes) &&
+        Arrays.equals(oldProto.strings, newProto.strings) -> {}
+        else -> {
+            val difference = difference(oldProto, newProto)
+
+            if (difference.isClassAffected) {
+                changes.add(ChangeInfo.SignatureChanged(fqName, difference.areSubclassesAffected))
+            }
+
+            if (difference.changedMembersNames.isNotEmpty()) {
+                changes.add(MembersChanged(fqName, difference.changedMembersNames))
+            }
+        }
+    }
+
+    // added and removed constants and inline functions are covered by proto difference
+    val changedConstants = old.constants.filter { new.constants.containsKey(it.key) && new.constants[it.key] != it.value }.keys
+    if (changedConstants.isNotEmpty()) {
+        changes.add(MembersChanged(fqName, changedConstants))
+    }
+
+    val changedInlineFunctions = new.inlineFunctions.filter { old.inlineFunctions[it.key] != it.value }.keys
+    if (changedInlineFunctions.isNotEmpty()) {
+        changes.add(MembersChanged(fqName, changedInlineFunctions.mapNotNull { new.inlineFunctionNames[it] }.distinct()))
+    }
+
+    return changes
+}
+
+private fun javaClassChanges(className: JvmClassName, old: ClassAbiSnapshot.Java, new: ClassAbiSnapshot.Java): List<ChangeInfo> {
+    val changes = arrayListOf<ChangeInfo>()
+    val fqName = className.fqNameForClassNameWithoutDollars
+
+    if (old.classHash != new.classHash) {
+        changes.add(ChangeInfo.SignatureChanged(fqName, areSubclassesAffected = true))
+    }
+
+    val changedMembers = (old.membersHashes.keys + new.membersHashes.keys).filter { old.membersHashes[it] != new.membersHashes[it] }
+    if (changedMembers.isNotEmpty()) {
+        changes.add(MembersChanged(fqName, changedMembers))
+    }
+
+    return changes
+}
+
+private fun createClassSnapshot(location: File, bytes: ByteArray): Pair<String, ClassAbiSnapshot>? {
+    val kotlinClass = LocalFileKotlinClass.create(location, bytes) ?: return createJavaClassSnapshot(bytes)
+    if (kotlinClass.classId.isLocal) return null
+
+    val header = kotlinClass.classHeader
+    val isPackage = when (header.kind) {
+        KotlinClassHeader.Kind.CLASS -> false
+        KotlinClassHeader.Kind.FILE_FACADE,
+        KotlinClassHeader.Kind.MULTIFILE_CLASS,
+        KotlinClassHeader.Kind.MULTIFILE_CLASS_PART -> true
+        else -> return null
+    }
+
+    val proto =
+            if (header.kind == KotlinClassHeader.Kind.MULTIFILE_CLASS) null
+            else ProtoMapValue(isPackage, BitEncoding.decodeBytes(header.data!!), header.strings!!)
+
+    val snapshot = ClassAbiSnapshot.Kotlin(
+            isPackage,
+            proto,
+            getConstantsMap(bytes).orEmpty(),
+            getInlineFunctionsMap(header, bytes),
+            inlineFunctionsKotlinNames(header))
+
+    return Pair(kotlinClass.className.internalName, snapshot)
+}
+
+private fun createJavaClassSnapshot(bytes: ByteArray): Pair<String, ClassAbiSnapshot>? {
+    var internalName: String? = null
+    var classHeader = ""
+    // annotations of the class and flags of inner classes, nullability annotations affect the Kotlin code using the class
+    val classEntries = arrayListOf<String>()
+    val members = HashMap<String, MutableList<String>>()
+
+    fun isVisible(access: Int) = access and (Opcodes.ACC_PRIVATE or Opcodes.ACC_SYNTHETIC) == 0
+
+    ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
+        override fun visit(version: Int, access: Int, name: String, signature: String?, superName: String?, interfaces: Array<out String>?) {
+            internalName = name
+            classHeader = "$access $signature $superName ${interfaces.orEmpty().sorted()}"
+        }
+
+        override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+                AnnotationRecorder(classEntries, "@$desc")
+
+        override fun visitTypeAnnotation(typeRef: Int, typePath: TypePath?, desc: String, visible: Boolean): AnnotationVisitor =
+                AnnotationRecorder(classEntries, "@$typeRef $typePath $desc")
+
+        override fun visitInnerClass(name: String, outerName: String?, innerName: String?, access: Int) {
+            classEntries.add("inner $name $outerName $innerName $access")
+        }
+
+        override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
+            if (!isVisible(access)) return null
+
+            val annotations = arrayListOf<String>()
+            return object : FieldVisitor(Opcodes.ASM5) {
+                override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+                        AnnotationRecorder(annotations, "@$desc")
+
+                override fun visitTypeAnnotation(typeRef: Int, typePath: TypePath?, desc: String, visible: Boolean): AnnotationVisitor =
+                        AnnotationRecorder(annotations, "@$typeRef $typePath $desc")
+
+                override fun visitEnd() {
+                    members.getOrPut(name) { arrayListOf() }.add("$access $desc $signature $value ${annotations.sorted()}")
+                }
+            }
+        }
+
+        override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?): MethodVisitor? {
+            if (!isVisible(access) || access and Opcodes.ACC_BRIDGE != 0 || name == "<clinit>") return null
+
+            val annotations = arrayListOf<String>()
+            return object : MethodVisitor(Opcodes.ASM5) {
+                override fun visitAnnotation(desc: String, visible: Boolean): AnnotationVisitor =
+                        AnnotationRecorder(annotations, "@$desc")
+
+                override fun visitParameterAnnotation(parameter: Int, desc: String, visible: Boolean): AnnotationVisitor =
+                        AnnotationRecorder(annotations, "@$parameter $desc")
+
+                override fun visitTypeAnnotation(typeRef: Int, typePath: TypePath?, desc: String, visible: Boolean): AnnotationVisitor =
+                        AnnotationRecorder(annotations, "@$typeRef $typePath $desc")
+
+                override fun visitAnnotationDefault(): AnnotationVisitor =
+                        AnnotationRecorder(annotations, "default")
+
+                override fun visitEnd() {
+                    members.getOrPut(name) { arrayListOf() }
+                            .add("$access $desc $signature ${exceptions.orEmpty().sorted()} ${annotations.sorted()}")
+                }
+            }
+        }
+    }, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
+
+    val name = internalName ?: return null
+    val classSignature = "$classHeader ${classEntries.sorted()}"
+    val membersHashes = members.mapValues { it.value.sorted().joinToString("\n").toByteArray().md5() }
+    return Pair(name, ClassAbiSnapshot.Java(classSignature.toByteArray().md5(), membersHashes))
+}
+
+// Writes every value of an annotation as a separate entry prefixed with its path, elements of arrays are numbered
+private class AnnotationRecorder(private val entries: MutableList<String>, private val prefix: String) : AnnotationVisitor(Opcodes.ASM5) {
+    private var index = 0
+
+    private fun path(name: String?) = "$prefix ${name ?: (index++).toString()}"
+
+    override fun visit(name: String?, value: Any) {
+        val text = if (value.javaClass.isArray) {
+            (0..java.lang.reflect.Array.getLength(value) - 1).map { java.lang.reflect.Array.get(value, it) }.toString()
+        }
+        else value.toString()
+        entries.add("${path(name)}=$text")
+    }
+
+    override fun visitEnum(name: String?, desc: String, value: String) {
+        entries.add("${path(name)}=$desc.$value")
+    }
+
+    override fun visitAnnotation(name: String?, desc: String): AnnotationVisitor =
+            AnnotationRecorder(entries, "${path(name)}=@$desc")
+
+    override fun visitArray(name: String?): AnnotationVisitor =
+            AnnotationRecorder(entries, "${path(name)}[]")
+
+    override fun visitEnd() {
+        // an annotation without arguments still has to be recorded
+        entries.add(prefix)
+    }
+}
+
+private fun File.hasClassFileExtension(): Boolean =
+        extension.equals("class", ignoreCase = true)
@@ -105,6 +105,14 @@ open class IncrementalCacheImpl<Target>(
     override fun registerInline(fromPath: String, jvmSignature: String, toPath: String) {
     }
 
+    /**
+     * Whether call sites of inline functions are recorded by [registerInline] and marked dirty by the build.
+     * Then a changed body of an inline function is reported as [ChangeInfo.InlineBodiesChanged]
+     * instead of a change of members, which would make dirty all files looking up the function name.
+     */
+    protected open val tracksInlineCallSites: Boolean
+        get() = false
+
     protected open fun debugLog(message: String) {}
 
     fun addDependentCache(cache: IncrementalCacheImpl<Target>) {
@@ -217,51 +225,10 @@ open class IncrementalCacheImpl<Target>(
     }
 
     private fun computeChanges(className: JvmClassName, createChangeInfo: (FqName, Collection<String>) -> ChangeInfo): List<ChangeInfo> {
-        fun <T> T.getNonPrivateNames(nameResolver: NameResolver, vararg members: T.() -> List<MessageLite>): Set<String> =
-                members.flatMap { this.it().filterNot { it.isPrivate }.names(nameResolver) }.toSet()
-
         if (className.internalName == MODULE_MAPPING_FILE_NAME) return emptyList()
 
         val mapValue = protoMap[className] ?: return emptyList()
-
-        return when {
-            mapValue.isPackageFacade -> {
-                val packageData = JvmProtoBufUtil.readPackageDataFrom(mapValue.bytes, mapValue.strings)
-
-                val memberNames =
-                        packageData.packageProto.getNonPrivateNames(
-                                packageData.nameResolver,
-                                ProtoBuf.Package::getFunctionList,
-                                ProtoBuf.Package::getPropertyList
-                        )
-
-                listOf(createChangeInfo(className.packageFqName, memberNames))
-            }
-            else -> {
-                val classData = JvmProtoBufUtil.readClassDataFrom(mapValue.bytes, mapValue.strings)
-
-                val classFqName = className.fqNameForClassNameWithoutDollars
-                val kind = Flags.CLASS_KIND.get(classData.classProto.flags)
-
-                if (kind == ProtoBuf.Class.Kind.COMPANION_OBJECT) {
-                    val memberNames =
-                            classData.classProto.getNonPrivateNames(
-                                    classData.nameResolver,
-                                    ProtoBuf.Class::getConstructorList,
-                                    ProtoBuf.Class::getFunctionList,
-                                    ProtoBuf.Class::getPropertyList
-                            ) + classData.classProto.enumEntryList.map { classData.nameResolver.getString(it.name) }
-
-                    val companionObjectChanged = createChangeInfo(classFqName.parent(), classFqName.shortName().asString().singletonOrEmptyList())
-                    val companionObjectMembersChanged = createChangeInfo(classFqName, memberNames)
-
-                    listOf(companionObjectMembersChanged, companionObjectChanged)
-                }
-                else {
-                    listOf(ChangeInfo.SignatureChanged(classFqName, areSubclassesAffected = true))
-                }
-            }
-        }
+        return computeProtoChanges(className, mapValue, createChangeInfo)
     }
 
     fun clearCacheForRemovedClasses(): CompilationResult {
@@ -382,17 +349,23 @@ open class IncrementalCacheImpl<Target>(
         ): CompilationResult {
             val key = className.internalName
             val oldData = storage[key]
-            val data = ProtoMapValue(isPackage, bytes, strings)
-
-            if (oldData == null ||
-                !Arrays.equals(bytes, oldData.bytes) ||
-                !Arrays.equals(strings, oldData.strings) ||
-                isPackage != oldData.isPackageFacade
-            ) {
-                storage[key] = data
+            val isDataChanged = oldData == null ||
+                                !Arrays.equals(bytes, oldData.bytes) ||
+                                !Arrays.equals(strings, oldData.strings) ||
+                                isPackage != oldData.isPackageFacade
+
+            if (!checkChangesIsOpenPart) {
+                if (isDataChanged) {
+                    storage[key] = ProtoMapValue(isPackage, bytes, strings)
+                }
+                return CompilationResult(protoChanged = true)
             }
 
-            if (!checkChangesIsOpenPart) return CompilationResult(protoChanged = true)
+            if (!isDataChanged && oldData!!.abiHashes != null) return CompilationResult.NO_CHANGES
+
+            // the hashes of the previous version are stored with it, so only the new proto is read here
+            val data = ProtoMapValue(isPackage, bytes, strings).withAbiHashes()
+            storage[key] = data
 
             if (oldData == null) {
                 val changes =
@@ -435,22 +408,6 @@ open class IncrementalCacheImpl<Target>(
     }
 
     private inner class ConstantsMap(storageFile: File) : BasicStringMap<Map<String, Any>>(storageFile, ConstantsMapExternalizer) {
-        private fun getConstantsMap(bytes: ByteArray): Map<String, Any>? {
-            val result = HashMap<String, Any>()
-
-            ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
-                override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
-                    val staticFinal = Opcodes.ACC_STATIC or Opcodes.ACC_FINAL or Opcodes.ACC_PRIVATE
-                    if (value != null && access and staticFinal == Opcodes.ACC_STATIC or Opcodes.ACC_FINAL) {
-                        result[name] = value
-                    }
-                    return null
-                }
-            }, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
-
-            return if (result.isEmpty()) null else result
-        }
-
         operator fun contains(className: JvmClassName): Boolean =
                 className.internalName in storage
 
@@ -646,33 +603,6 @@ open class IncrementalCacheImpl<Target>(
     }
 
     private inner class InlineFunctionsMap(storageFile: File) : BasicStringMap<Map<String, Long>>(storageFile, StringToLongMapExternalizer) {
-        private fun getInlineFunctionsMap(header: KotlinClassHeader, bytes: ByteArray): Map<String, Long> {
-            val inlineFunctions = inlineFunctionsJvmNames(header)
-            if (inlineFunctions.isEmpty()) return emptyMap()
-
-            val result = HashMap<String, Long>()
-
-            ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
-                override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?): MethodVisitor? {
-                    val dummyClassWriter = ClassWriter(Opcodes.ASM5)
-
-                    return object : MethodVisitor(Opcodes.ASM5, dummyClassWriter.visitMethod(0, name, desc, null, exceptions)) {
-                        override fun visitEnd() {
-                            val jvmName = name + desc
-                            if (jvmName !in inlineFunctions) return
-
-                            val dummyBytes = dummyClassWriter.toByteArray()!!
-                            val hash = dummyBytes.md5()
-                            result[jvmName] = hash
-                        }
-                    }
-                }
-
-            }, 0)
-
-            return result
-        }
-
         fun process(kotlinClass: LocalFileKotlinClass, isPackage: Boolean): CompilationResult {
             return put(kotlinClass.className, getInlineFunctionsMap(kotlinClass.classHeader, kotlinClass.fileContents), isPackage)
         }
@@ -704,7 +634,19 @@ open class IncrementalCacheImpl<Target>(
                     if (IncrementalCompilation.isExperimental()) {
                         val fqName = if (isPackage) className.packageFqName else className.fqNameForClassNameWithoutDollars
                         // TODO get name in better way instead of using substringBefore
-                        (added.asSequence() + changed.asSequence()).map { ChangeInfo.MembersChanged(fqName, listOf(it.substringBefore("("))) }
+                        fun String.functionName() = substringBefore("(")
+
+                        if (tracksInlineCallSites) {
+                            val changeList = arrayListOf<ChangeInfo>()
+                            added.mapTo(changeList) { ChangeInfo.MembersChanged(fqName, listOf(it.functionName())) }
+                            if (changed.isNotEmpty()) {
+                                changeList.add(ChangeInfo.InlineBodiesChanged(fqName, changed.map { it.functionName() }.distinct()))
+                            }
+                            changeList.asSequence()
+                        }
+                        else {
+                            (added.asSequence() + changed.asSequence()).map { ChangeInfo.MembersChanged(fqName, listOf(it.functionName())) }
+                        }
                     }
                     else {
                         emptySequence<ChangeInfo>()
@@ -740,6 +682,14 @@ sealed class ChangeInfo(val fqName: FqName) {
 
     class SignatureChanged(fqName: FqName, val areSubclassesAffected: Boolean) : ChangeInfo(fqName)
 
+    /**
+     * Bodies of inline functions with these names changed, but not their signatures.
+     * Only the files these functions were inlined to need to be recompiled.
+     */
+    class InlineBodiesChanged(fqName: FqName, val names: Collection<String>) : ChangeInfo(fqName) {
+        override fun toStringProperties(): String = super.toStringProperties() + ", names = $names"
+    }
+
 
     protected open fun toStringProperties(): String = "fqName = $fqName"
 
@@ -767,6 +717,97 @@ data class CompilationResult(
                               changes + other.changes)
 }
 
+internal fun computeProtoChanges(
+        className: JvmClassName,
+        mapValue: ProtoMapValue,
+        createChangeInfo: (FqName, Collection<String>) -> ChangeInfo
+): List<ChangeInfo> {
+    fun <T> T.getNonPrivateNames(nameResolver: NameResolver, vararg members: T.() -> List<MessageLite>): Set<String> =
+            members.flatMap { this.it().filterNot { it.isPrivate }.names(nameResolver) }.toSet()
+
+    return when {
+        mapValue.isPackageFacade -> {
+            val packageData = JvmProtoBufUtil.readPackageDataFrom(mapValue.bytes, mapValue.strings)
+
+            val memberNames =
+                    packageData.packageProto.getNonPrivateNames(
+                            packageData.nameResolver,
+                            ProtoBuf.Package::getFunctionList,
+                            ProtoBuf.Package::getPropertyList
+                    )
+
+            listOf(createChangeInfo(className.packageFqName, memberNames))
+        }
+        else -> {
+            val classData = JvmProtoBufUtil.readClassDataFrom(mapValue.bytes, mapValue.strings)
+
+            val classFqName = className.fqNameForClassNameWithoutDollars
+            val kind = Flags.CLASS_KIND.get(classData.classProto.flags)
+
+            if (kind == ProtoBuf.Class.Kind.COMPANION_OBJECT) {
+                val memberNames =
+                        classData.classProto.getNonPrivateNames(
+                                classData.nameResolver,
+                                ProtoBuf.Class::getConstructorList,
+                                ProtoBuf.Class::getFunctionList,
+                                ProtoBuf.Class::getPropertyList
+                        ) + classData.classProto.enumEntryList.map { classData.nameResolver.getString(it.name) }
+
+                val companionObjectChanged = createChangeInfo(classFqName.parent(), classFqName.shortName().asString().singletonOrEmptyList())
+                val companionObjectMembersChanged = createChangeInfo(classFqName, memberNames)
+
+                listOf(companionObjectMembersChanged, companionObjectChanged)
+            }
+            else {
+                listOf(ChangeInfo.SignatureChanged(classFqName, areSubclassesAffected = true))
+            }
+        }
+    }
+}
+
+internal fun getConstantsMap(bytes: ByteArray): Map<String, Any>? {
+    val result = HashMap<String, Any>()
+
+    ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
+        override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
+            val staticFinal = Opcodes.ACC_STATIC or Opcodes.ACC_FINAL or Opcodes.ACC_PRIVATE
+            if (value != null && access and staticFinal == Opcodes.ACC_STATIC or Opcodes.ACC_FINAL) {
+                result[name] = value
+            }
+            return null
+        }
+    }, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
+
+    return if (result.isEmpty()) null else result
+}
+
+internal fun getInlineFunctionsMap(header: KotlinClassHeader, bytes: ByteArray): Map<String, Long> {
+    val inlineFunctions = inlineFunctionsJvmNames(header)
+    if (inlineFunctions.isEmpty()) return emptyMap()
+
+    val result = HashMap<String, Long>()
+
+    ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
+        override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?): MethodVisitor? {
+            val dummyClassWriter = ClassWriter(Opcodes.ASM5)
+
+            return object : MethodVisitor(Opcodes.ASM5, dummyClassWriter.visitMethod(0, name, desc, null, exceptions)) {
+                override fun visitEnd() {
+                    val jvmName = name + desc
+                    if (jvmName !in inlineFunctions) return
+
+                    val dummyBytes = dummyClassWriter.toByteArray()!!
+                    val hash = dummyBytes.md5()
+                    result[jvmName] = hash
+                }
+            }
+        }
+
+    }, 0)
+
+    return result
+}
+
 fun ByteArray.md5(): Long {
     val d = MessageDigest.getInstance("MD5").digest(this)!!
     return ((d[0].toLong() and 0xFFL)
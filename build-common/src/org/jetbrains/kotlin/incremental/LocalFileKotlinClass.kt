@@ -32,8 +32,10 @@ class LocalFileKotlinClass private constructor(
 ) : FileBasedKotlinClass(className, classVersion, classHeader, innerClasses) {
 
     companion object {
-        fun create(file: File): LocalFileKotlinClass? {
-            val fileContents = file.readBytes()
+        fun create(file: File): LocalFileKotlinClass? =
+                create(file, file.readBytes())
+
+        fun create(file: File, fileContents: ByteArray): LocalFileKotlinClass? {
             return FileBasedKotlinClass.create(fileContents) {
                 className, classVersion, classHeader, innerClasses ->
                 LocalFileKotlinClass(file, fileContents, className, classVersion, classHeader, innerClasses)
@@ -68,6 +68,26 @@ open class LookupStorage(private val targetDataDir: File) : BasicMapsOwner() {
         }
     }
 
+    /**
+     * Returns the paths of files using each of [lookupSymbols].
+     * All lookups are read first and each file id is resolved only once, since many symbols are used by the same files.
+     */
+    @Synchronized
+    fun getAll(lookupSymbols: Iterable<LookupSymbol>): Map<LookupSymbol, Collection<String>> {
+        val fileIdsBySymbol = LinkedHashMap<LookupSymbol, Collection<Int>>()
+        for (lookupSymbol in lookupSymbols) {
+            fileIdsBySymbol[lookupSymbol] = lookupMap[LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)] ?: emptySet()
+        }
+
+        val idToPath = HashMap<Int, String?>()
+        return fileIdsBySymbol.mapValues { entry ->
+            entry.value.mapNotNull { id ->
+                // null means it's outdated
+                idToPath.getOrPut(id) { idToFile[id]?.path }
+            }
+        }
+    }
+
     @Synchronized
     fun addAll(lookups: Set<Map.Entry<LookupSymbol, Collection<String>>>, allPaths: Set<String>) {
         val pathToId = allPaths.keysToMap { addFileIfNeeded(File(it)) }
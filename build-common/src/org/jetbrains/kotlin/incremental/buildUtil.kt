@@ -39,6 +39,9 @@ import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import org.jetbrains.kotlin.utils.keysToMap
 import java.io.File
 import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 
 fun Iterable<File>.javaSourceRoots(roots: Iterable<File>): Iterable<File> =
@@ -179,18 +182,29 @@ data class DirtyData(
         val dirtyClassesFqNames: Iterable<FqName>
 )
 
+/**
+ * Computes the lookup symbols and classes made dirty by [changes][CompilationResult.changes].
+ *
+ * Subtypes of all changed classes are collected level by level: each cache is asked about the whole level at once,
+ * and when [threads] is greater than one, different caches are queried in parallel.
+ */
 fun <Target> CompilationResult.getDirtyData(
         caches: Iterable<IncrementalCacheImpl<Target>>,
-        log: (String)->Unit
+        log: (String)->Unit,
+        threads: Int = 1
 ): DirtyData {
     val dirtyLookupSymbols = HashSet<LookupSymbol>()
     val dirtyClassesFqNames = HashSet<FqName>()
 
+    val changes = changes.toList()
+    val typesWithAffectedSubtypes = changes.filter { it is ChangeInfo.MembersChanged || it is ChangeInfo.SignatureChanged && it.areSubclassesAffected }
+    val subtypes = withSubtypes(typesWithAffectedSubtypes.mapTo(HashSet<FqName>()) { it.fqName }, caches.toList(), threads)
+
     for (change in changes) {
         log("Process $change")
 
         if (change is ChangeInfo.SignatureChanged) {
-            val fqNames = if (!change.areSubclassesAffected) listOf(change.fqName) else withSubtypes(change.fqName, caches)
+            val fqNames = if (!change.areSubclassesAffected) setOf(change.fqName) else subtypes[change.fqName]!!
 
             for (classFqName in fqNames) {
                 assert(!classFqName.isRoot) { "$classFqName is root when processing $change" }
@@ -201,7 +215,7 @@ fun <Target> CompilationResult.getDirtyData(
             }
         }
         else if (change is ChangeInfo.MembersChanged) {
-            val fqNames = withSubtypes(change.fqName, caches)
+            val fqNames = subtypes[change.fqName]!!
             // need to recompile subtypes because changed member might break override
             dirtyClassesFqNames.addAll(fqNames)
 
@@ -225,8 +239,8 @@ fun mapLookupSymbolsToFiles(
 ): Set<File> {
     val dirtyFiles = HashSet<File>()
 
-    for (lookup in lookupSymbols) {
-        val affectedFiles = lookupStorage.get(lookup).map(::File).filter { it !in excludes }
+    for ((lookup, paths) in lookupStorage.getAll(lookupSymbols)) {
+        val affectedFiles = paths.map(::File).filter { it !in excludes }
         log("${lookup.scope}#${lookup.name} caused recompilation of: ${affectedFiles.map(getLogFilePath)}")
         dirtyFiles.addAll(affectedFiles)
     }
@@ -239,14 +253,18 @@ fun <Target> mapClassesFqNamesToFiles(
         classesFqNames: Iterable<FqName>,
         log: (String)->Unit,
         getLogFilePath: (File)->String = { it.canonicalPath },
-        excludes: Set<File> = emptySet()
+        excludes: Set<File> = emptySet(),
+        threads: Int = 1
 ): Set<File> {
     val dirtyFiles = HashSet<File>()
+    val fqNames = classesFqNames.toList()
+    val sourceFilesInCaches = caches.toList().mapInParallel(threads) { cache ->
+        fqNames.mapNotNull { fqName -> cache.getSourceFileIfClass(fqName)?.let { Pair(fqName, it) } }
+    }
 
-    for (cache in caches) {
-        for (dirtyClassFqName in classesFqNames) {
-            val srcFile = cache.getSourceFileIfClass(dirtyClassFqName)
-            if (srcFile == null || srcFile in excludes) continue
+    for (sourceFiles in sourceFilesInCaches) {
+        for ((dirtyClassFqName, srcFile) in sourceFiles) {
+            if (srcFile in excludes) continue
 
             log("Class $dirtyClassFqName caused recompilation of: ${getLogFilePath(srcFile)}")
             dirtyFiles.add(srcFile)
@@ -262,23 +280,57 @@ private fun findSrcDirRoot(file: File, roots: Iterable<File>): File? =
         roots.firstOrNull { FileUtil.isAncestor(it, file, false) }
 
 private fun <Target> withSubtypes(
-        typeFqName: FqName,
-        caches: Iterable<IncrementalCacheImpl<Target>>
-): Set<FqName> {
-    val types = LinkedList(listOf(typeFqName))
-    val subtypes = hashSetOf<FqName>()
+        typeFqNames: Set<FqName>,
+        caches: List<IncrementalCacheImpl<Target>>,
+        threads: Int
+): Map<FqName, Set<FqName>> {
+    val directSubtypes = HashMap<FqName, Set<FqName>>()
+    var types = typeFqNames
 
     while (types.isNotEmpty()) {
-        val unprocessedType = types.pollFirst()
+        val unprocessedTypes = types
+        val subtypesInCaches = caches.mapInParallel(threads) { cache ->
+            unprocessedTypes.keysToMap { cache.getSubtypesOf(it).toList() }
+        }
 
-        caches.asSequence()
-              .flatMap { it.getSubtypesOf(unprocessedType) }
-              .filter { it !in subtypes }
-              .forEach { types.addLast(it) }
+        for (type in unprocessedTypes) {
+            directSubtypes[type] = subtypesInCaches.flatMapTo(HashSet<FqName>()) { it[type]!! }
+        }
 
-        subtypes.add(unprocessedType)
+        types = unprocessedTypes.flatMap { directSubtypes[it]!! }.filterTo(HashSet<FqName>()) { it !in directSubtypes }
     }
 
-    return subtypes
+    return typeFqNames.keysToMap { typeFqName ->
+        val queue = LinkedList(listOf(typeFqName))
+        val subtypes = hashSetOf<FqName>()
+
+        while (queue.isNotEmpty()) {
+            val unprocessedType = queue.pollFirst()
+            if (subtypes.add(unprocessedType)) {
+                queue.addAll(directSubtypes[unprocessedType]!!)
+            }
+        }
+
+        subtypes
+    }
 }
 
+private fun <T, R> List<T>.mapInParallel(threads: Int, transform: (T) -> R): List<R> {
+    if (size < 2 || threads < 2) return map(transform)
+
+    val executor = Executors.newFixedThreadPool(minOf(threads, size))
+    try {
+        val futures = map { item -> executor.submit(Callable { transform(item) }) }
+        return futures.map { future ->
+            try {
+                future.get()
+            }
+            catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+    finally {
+        executor.shutdownNow()
+    }
+}
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.incremental
 import org.jetbrains.kotlin.descriptors.Visibilities
 import org.jetbrains.kotlin.incremental.ProtoCompareGenerated.ProtoBufClassKind
 import org.jetbrains.kotlin.incremental.ProtoCompareGenerated.ProtoBufPackageKind
+import org.jetbrains.kotlin.incremental.storage.ProtoAbiHashes
 import org.jetbrains.kotlin.incremental.storage.ProtoMapValue
 import org.jetbrains.kotlin.protobuf.MessageLite
 import org.jetbrains.kotlin.serialization.Flags
@@ -27,6 +28,8 @@ import org.jetbrains.kotlin.serialization.deserialization.Deserialization
 import org.jetbrains.kotlin.serialization.deserialization.NameResolver
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
 import org.jetbrains.kotlin.utils.HashSetUtil
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
 import java.util.*
 
 data class Difference(
@@ -40,6 +43,17 @@ fun difference(oldData: ProtoMapValue, newData: ProtoMapValue): Difference {
 
     if (oldData.isPackageFacade && !newData.isPackageFacade) return Difference(isClassAffected = true)
 
+    val oldHashes = oldData.abiHashes
+    val newHashes = newData.abiHashes
+    val changedMembers =
+            if (oldHashes != null && newHashes != null && oldHashes.declarationHash == newHashes.declarationHash)
+                (oldHashes.membersHashes.keys + newHashes.membersHashes.keys).filterTo(hashSetOf()) {
+                    oldHashes.membersHashes[it] != newHashes.membersHashes[it]
+                }
+            else null
+
+    if (changedMembers != null && changedMembers.isEmpty()) return Difference()
+
     val differenceObject =
             if (oldData.isPackageFacade) {
                 DifferenceCalculatorForPackageFacade(oldData, newData)
@@ -48,7 +62,62 @@ fun difference(oldData: ProtoMapValue, newData: ProtoMapValue): Difference {
                 DifferenceCalculatorForClass(oldData, newData)
             }
 
-    return differenceObject.difference()
+    return if (changedMembers != null) differenceObject.membersDifference(changedMembers) else differenceObject.difference()
+}
+
+/**
+ * Returns the value with [ProtoMapValue.abiHashes], which let [difference] compare only the members with different hashes
+ * and skip reading the protos when the hashes are equal.
+ *
+ * A hash covers the serialized message and the strings and class ids it refers to, so equal hashes mean equal messages.
+ * When the string table of a class is renumbered, the hashes of its members change and the members are compared as before.
+ */
+fun ProtoMapValue.withAbiHashes(): ProtoMapValue {
+    val abiHashes =
+            if (isPackageFacade) {
+                val packageData = JvmProtoBufUtil.readPackageDataFrom(bytes, strings)
+                val proto = packageData.packageProto
+                val nameResolver = packageData.nameResolver
+                ProtoAbiHashes(
+                        proto.toBuilder().clearFunction().clearProperty().build().abiHash(nameResolver),
+                        membersHashes(proto.functionList + proto.propertyList, nameResolver))
+            }
+            else {
+                val classData = JvmProtoBufUtil.readClassDataFrom(bytes, strings)
+                val proto = classData.classProto
+                val nameResolver = classData.nameResolver
+                ProtoAbiHashes(
+                        proto.toBuilder().clearConstructor().clearFunction().clearProperty().build().abiHash(nameResolver),
+                        membersHashes(proto.constructorList + proto.functionList + proto.propertyList, nameResolver))
+            }
+
+    return copy(abiHashes = abiHashes)
+}
+
+private fun membersHashes(members: List<MessageLite>, nameResolver: NameResolver): Map<String, Long> =
+        members.filterNot { it.isPrivate }
+                .groupBy { it.name(nameResolver) }
+                .mapValues { it.value.map { member -> member.abiHash(nameResolver) }.sorted().joinToString("\n").toByteArray().md5() }
+
+private fun MessageLite.abiHash(nameResolver: NameResolver): Long {
+    val bytes = ByteArrayOutputStream()
+    val output = DataOutputStream(bytes)
+    writeTo(output)
+
+    // the generated hash functions visit all strings and class ids of the message
+    val strings = { index: Int -> output.writeUTF(nameResolver.getString(index)); 0 }
+    val classIds = { index: Int -> output.writeUTF(nameResolver.getClassId(index).asString()); 0 }
+    when (this) {
+        is ProtoBuf.Class -> hashCode(strings, classIds)
+        is ProtoBuf.Package -> hashCode(strings, classIds)
+        is ProtoBuf.Constructor -> hashCode(strings, classIds)
+        is ProtoBuf.Function -> hashCode(strings, classIds)
+        is ProtoBuf.Property -> hashCode(strings, classIds)
+        else -> error("Unknown message: $this")
+    }
+
+    output.flush()
+    return bytes.toByteArray().md5()
 }
 
 internal val MessageLite.isPrivate: Boolean
@@ -79,6 +148,11 @@ private abstract class DifferenceCalculator() {
 
     abstract fun difference(): Difference
 
+    /**
+     * Difference of the non-private members with the given names, when the rest of the protos is known to be equal.
+     */
+    abstract fun membersDifference(names: Set<String>): Difference
+
     protected fun calcDifferenceForMembers(oldList: List<MessageLite>, newList: List<MessageLite>): Collection<String> {
         val result = hashSetOf<String>()
 
@@ -165,7 +239,22 @@ private class DifferenceCalculatorForClass(oldData: ProtoMapValue, newData: Prot
     override val oldNameResolver = oldClassData.nameResolver
     override val newNameResolver = newClassData.nameResolver
 
-    val diff = compareObject.difference(oldProto, newProto)
+    private fun calcDifferenceForNonPrivateMembers(
+            members: (ProtoBuf.Class) -> List<MessageLite>,
+            names: Set<String>? = null
+    ): Collection<String> {
+        val oldMembers = members(oldProto).filter { !it.isPrivate && (names == null || it.name(oldNameResolver) in names) }
+        val newMembers = members(newProto).filter { !it.isPrivate && (names == null || it.name(newNameResolver) in names) }
+        return calcDifferenceForMembers(oldMembers, newMembers)
+    }
+
+    override fun membersDifference(names: Set<String>): Difference {
+        val isClassAffected = calcDifferenceForNonPrivateMembers(ProtoBuf.Class::getConstructorList, names).isNotEmpty()
+        val changedNames = hashSetOf<String>()
+        changedNames.addAll(calcDifferenceForNonPrivateMembers(ProtoBuf.Class::getFunctionList, names))
+        changedNames.addAll(calcDifferenceForNonPrivateMembers(ProtoBuf.Class::getPropertyList, names))
+        return Difference(isClassAffected = isClassAffected, changedMembersNames = changedNames)
+    }
 
     override fun difference(): Difference {
         var isClassAffected = false
@@ -176,13 +265,7 @@ private class DifferenceCalculatorForClass(oldData: ProtoMapValue, newData: Prot
         fun Int.oldToNames() = names.add(oldNameResolver.getString(this))
         fun Int.newToNames() = names.add(newNameResolver.getString(this))
 
-        fun calcDifferenceForNonPrivateMembers(members: (ProtoBuf.Class) -> List<MessageLite>): Collection<String> {
-            val oldMembers = members(oldProto).filterNot { it.isPrivate }
-            val newMembers = members(newProto).filterNot { it.isPrivate }
-            return calcDifferenceForMembers(oldMembers, newMembers)
-        }
-
-        for (kind in diff) {
+        for (kind in compareObject.difference(oldProto, newProto)) {
             when (kind!!) {
                 ProtoBufClassKind.COMPANION_OBJECT_NAME -> {
                     if (oldProto.hasCompanionObjectName()) oldProto.companionObjectName.oldToNames()
@@ -244,18 +327,26 @@ private class DifferenceCalculatorForPackageFacade(oldData: ProtoMapValue, newDa
     override val oldNameResolver = oldPackageData.nameResolver
     override val newNameResolver = newPackageData.nameResolver
 
-    val diff = compareObject.difference(oldProto, newProto)
+    private fun calcDifferenceForNonPrivateMembers(
+            members: (ProtoBuf.Package) -> List<MessageLite>,
+            names: Set<String>? = null
+    ): Collection<String> {
+        val oldMembers = members(oldProto).filter { !it.isPrivate && (names == null || it.name(oldNameResolver) in names) }
+        val newMembers = members(newProto).filter { !it.isPrivate && (names == null || it.name(newNameResolver) in names) }
+        return calcDifferenceForMembers(oldMembers, newMembers)
+    }
+
+    override fun membersDifference(names: Set<String>): Difference {
+        val changedNames = hashSetOf<String>()
+        changedNames.addAll(calcDifferenceForNonPrivateMembers(ProtoBuf.Package::getFunctionList, names))
+        changedNames.addAll(calcDifferenceForNonPrivateMembers(ProtoBuf.Package::getPropertyList, names))
+        return Difference(changedMembersNames = changedNames)
+    }
 
     override fun difference(): Difference {
         val names = hashSetOf<String>()
 
-        fun calcDifferenceForNonPrivateMembers(members: (ProtoBuf.Package) -> List<MessageLite>): Collection<String> {
-            val oldMembers = members(oldProto).filterNot { it.isPrivate }
-            val newMembers = members(newProto).filterNot { it.isPrivate }
-            return calcDifferenceForMembers(oldMembers, newMembers)
-        }
-
-        for (kind in diff) {
+        for (kind in compareObject.difference(oldProto, newProto)) {
             when (kind!!) {
                 ProtoBufPackageKind.FUNCTION_LIST ->
                     names.addAll(calcDifferenceForNonPrivateMembers(ProtoBuf.Package::getFunctionList))
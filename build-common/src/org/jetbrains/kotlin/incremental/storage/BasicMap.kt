@@ -26,9 +26,10 @@ import java.io.File
 abstract class BasicMap<K : Comparable<K>, V>(
         storageFile: File,
         keyDescriptor: KeyDescriptor<K>,
-        valueExternalizer: DataExternalizer<V>
+        valueExternalizer: DataExternalizer<V>,
+        storageKind: CacheStorageKind = CacheStorageKind.forStorageFile(storageFile)
 ) {
-    protected val storage = LazyStorage(storageFile, keyDescriptor, valueExternalizer)
+    protected val storage = createCacheStorage(storageKind, storageFile, keyDescriptor, valueExternalizer)
 
     fun clean() {
         storage.clean()
@@ -70,12 +71,14 @@ abstract class BasicMap<K : Comparable<K>, V>(
 abstract class BasicStringMap<V>(
         storageFile: File,
         keyDescriptor: KeyDescriptor<String>,
-        valueExternalizer: DataExternalizer<V>
-) : BasicMap<String, V>(storageFile, keyDescriptor, valueExternalizer) {
+        valueExternalizer: DataExternalizer<V>,
+        storageKind: CacheStorageKind = CacheStorageKind.forStorageFile(storageFile)
+) : BasicMap<String, V>(storageFile, keyDescriptor, valueExternalizer, storageKind) {
     constructor(
             storageFile: File,
-            valueExternalizer: DataExternalizer<V>
-    ) : this(storageFile, EnumeratorStringDescriptor.INSTANCE, valueExternalizer)
+            valueExternalizer: DataExternalizer<V>,
+            storageKind: CacheStorageKind = CacheStorageKind.forStorageFile(storageFile)
+    ) : this(storageFile, EnumeratorStringDescriptor.INSTANCE, valueExternalizer, storageKind)
 
     override fun dumpKey(key: String): String = key
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.KeyDescriptor
+import java.io.File
+
+interface CacheStorage<K, V> {
+    val keys: Collection<K>
+
+    operator fun contains(key: K): Boolean
+
+    operator fun get(key: K): V?
+
+    operator fun set(key: K, value: V)
+
+    fun remove(key: K)
+
+    fun append(key: K, value: String)
+
+    fun append(key: K, value: Int)
+
+    fun clean()
+
+    fun flush(memoryCachesOnly: Boolean)
+
+    fun close()
+}
+
+enum class CacheStorageKind {
+    PERSISTENT_HASH_MAP,
+    MAPPED_SEGMENTS;
+
+    companion object {
+        /**
+         * Comma separated names of the caches (e.g. `proto,lookups`) which should be stored in memory-mapped segments,
+         * or `*` for all caches
+         */
+        val MAPPED_CACHES_PROPERTY = "kotlin.incremental.mapped.caches"
+
+        fun forStorageFile(storageFile: File): CacheStorageKind {
+            val mappedCaches = System.getProperty(MAPPED_CACHES_PROPERTY)?.split(',')?.map { it.trim() } ?: return PERSISTENT_HASH_MAP
+            val name = storageFile.nameWithoutExtension
+
+            return if ("*" in mappedCaches || name in mappedCaches) MAPPED_SEGMENTS else PERSISTENT_HASH_MAP
+        }
+    }
+}
+
+fun <K, V> createCacheStorage(
+        kind: CacheStorageKind,
+        storageFile: File,
+        keyDescriptor: KeyDescriptor<K>,
+        valueExternalizer: DataExternalizer<V>
+): CacheStorage<K, V> =
+        when (kind) {
+            CacheStorageKind.PERSISTENT_HASH_MAP -> LazyStorage(storageFile, keyDescriptor, valueExternalizer)
+            CacheStorageKind.MAPPED_SEGMENTS -> MappedSegmentsStorage(storageFile, keyDescriptor, valueExternalizer)
+        }
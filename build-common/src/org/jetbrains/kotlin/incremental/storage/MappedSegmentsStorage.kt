@@ -0,0 +1,534 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.IOUtil
+import com.intellij.util.io.KeyDescriptor
+import com.intellij.util.io.PersistentHashMap
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Keeps the records of a cache in append-only memory-mapped segment files. The index from keys to records lives
+ * in off-heap memory and is rebuilt by scanning the segments when the storage is opened.
+ *
+ * Every write adds a record to the end of the last segment, existing records are never changed. A value built with [append]
+ * is a chain of records, each of them pointing to the previous one. When most of the records are outdated,
+ * [flush] copies the live values to the segments of the next generation and deletes the old ones.
+ *
+ * Like [LazyStorage], it creates files only on write. When the generation file can not be read, the storage files are
+ * deleted and an [IOException] is thrown, so that the build falls back to a rebuild as for a corrupted [PersistentHashMap].
+ */
+class MappedSegmentsStorage<K, V>(
+        private val storageFile: File,
+        private val keyDescriptor: KeyDescriptor<K>,
+        private val valueExternalizer: DataExternalizer<V>
+) : CacheStorage<K, V> {
+    companion object {
+        private val SEGMENT_SIZE = 1 shl 20
+        private val MINIMUM_COMPACTED_SIZE = 1L shl 20
+        private val GARBAGE_TO_SIZE_THRESHOLD = 0.5
+
+        private val END: Byte = 0
+        private val PUT: Byte = 1
+        private val APPEND: Byte = 2
+        private val REMOVE: Byte = 3
+
+        // kind, address of the previous record of the value, key size, value size
+        private val HEADER_SIZE = 1 + 8 + 4 + 4
+        private val NO_RECORD = -1L
+
+        private fun address(segment: Int, offset: Int): Long = (segment.toLong() shl 32) or offset.toLong()
+    }
+
+    private val generationFile = File(storageFile.parentFile, storageFile.name + ".generation")
+
+    private var generation = 0
+    private var segments: MutableList<Segment>? = null
+    private var index: OffHeapIndex? = null
+
+    // sizes of all records and of the outdated ones
+    private var size = 0L
+    private var garbageSize = 0L
+
+    override val keys: Collection<K>
+        @Synchronized get() {
+            if (getSegmentsIfExist() == null) return listOf()
+            return index!!.addresses().map { readKey(it) }
+        }
+
+    @Synchronized
+    override operator fun contains(key: K): Boolean {
+        if (getSegmentsIfExist() == null) return false
+        return index!!.get(key) != NO_RECORD
+    }
+
+    @Synchronized
+    override operator fun get(key: K): V? {
+        if (getSegmentsIfExist() == null) return null
+
+        val address = index!!.get(key)
+        if (address == NO_RECORD) return null
+
+        return valueExternalizer.read(DataInputStream(ByteArrayInputStream(readValue(address))))
+    }
+
+    @Synchronized
+    override operator fun set(key: K, value: V) {
+        val address = write(PUT, NO_RECORD, serialize { keyDescriptor.save(it, key) }, serialize { valueExternalizer.save(it, value) })
+        val previous = index!!.put(key, address)
+
+        if (previous != NO_RECORD) {
+            garbageSize += chainSize(previous)
+        }
+    }
+
+    @Synchronized
+    override fun remove(key: K) {
+        if (getSegmentsIfExist() == null) return
+
+        val previous = index!!.remove(key)
+        if (previous == NO_RECORD) return
+
+        val address = write(REMOVE, NO_RECORD, serialize { keyDescriptor.save(it, key) }, ByteArray(0))
+        garbageSize += chainSize(previous) + recordSize(address)
+    }
+
+    override fun append(key: K, value: String) {
+        append(key, serialize { IOUtil.writeUTF(it, value) })
+    }
+
+    override fun append(key: K, value: Int) {
+        append(key, serialize { it.writeInt(value) })
+    }
+
+    @Synchronized
+    override fun clean() {
+        close()
+        PersistentHashMap.deleteFilesStartingWith(storageFile)
+
+        // the files of the cleaned generation are never reused, even if some of them could not be deleted
+        generation++
+    }
+
+    @Synchronized
+    override fun flush(memoryCachesOnly: Boolean) {
+        // the index is the only thing kept in memory, and it is needed until the storage is closed
+        if (memoryCachesOnly) return
+
+        val existingSegments = segments ?: return
+
+        if (size > MINIMUM_COMPACTED_SIZE && garbageSize.toDouble() / size > GARBAGE_TO_SIZE_THRESHOLD) {
+            compact()
+        }
+        else {
+            existingSegments.forEach { it.buffer.force() }
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        segments?.forEach {
+            it.buffer.force()
+            // the files of a generation are deleted later, and they may not be deleted while they are mapped on some platforms
+            it.unmap()
+        }
+        segments = null
+        index = null
+    }
+
+    @Synchronized
+    private fun append(key: K, valueBytes: ByteArray) {
+        getSegmentsOrCreateNew()
+
+        val previous = index!!.get(key)
+        val address = write(APPEND, previous, serialize { keyDescriptor.save(it, key) }, valueBytes)
+        index!!.put(key, address)
+    }
+
+    private fun getSegmentsIfExist(): MutableList<Segment>? {
+        if (segments == null && generationFile.exists()) {
+            open()
+        }
+
+        return segments
+    }
+
+    private fun getSegmentsOrCreateNew(): MutableList<Segment> {
+        if (getSegmentsIfExist() == null) {
+            storageFile.parentFile.mkdirs()
+            // segments which could not be deleted are never reused, a new segment is always created in a new file
+            generation = Math.max(generation, maxSegmentFilesGeneration() + 1)
+            writeGeneration()
+            reset()
+        }
+
+        return segments!!
+    }
+
+    private fun reset() {
+        segments = arrayListOf()
+        index = OffHeapIndex()
+        size = 0
+        garbageSize = 0
+    }
+
+    private fun open() {
+        val storedGeneration = readGeneration()
+        if (storedGeneration == null) {
+            deleteSegmentFiles { true }
+            generationFile.delete()
+            throw IOException("Could not read the generation of $storageFile")
+        }
+
+        generation = storedGeneration
+        deleteSegmentFiles { it != generation }
+        reset()
+
+        val openedSegments = segments!!
+        while (true) {
+            val file = segmentFile(generation, openedSegments.size)
+            if (!file.exists()) break
+
+            val segment = Segment(file, minCapacity = 0, create = false)
+            openedSegments.add(segment)
+
+            while (segment.size + HEADER_SIZE <= segment.capacity && segment.buffer.get(segment.size) != END) {
+                val address = address(openedSegments.size - 1, segment.size)
+                segment.size += recordSize(address)
+                size += recordSize(address)
+                replay(address)
+            }
+        }
+    }
+
+    private fun replay(address: Long) {
+        val key = readKey(address)
+
+        if (kind(address) == REMOVE) {
+            val previous = index!!.remove(key)
+            garbageSize += recordSize(address) + if (previous != NO_RECORD) chainSize(previous) else 0
+        }
+        else {
+            val previous = index!!.put(key, address)
+            if (kind(address) == PUT && previous != NO_RECORD) {
+                garbageSize += chainSize(previous)
+            }
+        }
+    }
+
+    private fun compact() {
+        val liveRecords = index!!.addresses().map { Pair(readKeyBytes(it), readValue(it)) }
+
+        close()
+        generation = Math.max(generation, maxSegmentFilesGeneration()) + 1
+        reset()
+
+        for ((keyBytes, valueBytes) in liveRecords) {
+            val address = write(PUT, NO_RECORD, keyBytes, valueBytes)
+            index!!.put(readKey(address), address)
+        }
+
+        segments!!.forEach { it.buffer.force() }
+        // the new generation is used only when all its segments are written
+        writeGeneration()
+        deleteSegmentFiles { it != generation }
+    }
+
+    private fun readGeneration(): Int? {
+        try {
+            val text = generationFile.readText().trim()
+            if (text.isEmpty() || !text.all { it.isDigit() }) return null
+            return text.toInt()
+        }
+        catch (e: IOException) {
+            return null
+        }
+        catch (e: NumberFormatException) {
+            return null
+        }
+    }
+
+    private fun writeGeneration() {
+        val tmpFile = File(generationFile.parentFile, generationFile.name + ".tmp")
+        tmpFile.writeText(generation.toString())
+
+        if (!tmpFile.renameTo(generationFile)) {
+            // renameTo does not replace an existing file on some platforms
+            generationFile.delete()
+            if (!tmpFile.renameTo(generationFile)) {
+                throw IOException("Could not write $generationFile")
+            }
+        }
+    }
+
+    private fun write(kind: Byte, previous: Long, keyBytes: ByteArray, valueBytes: ByteArray): Long {
+        val segments = getSegmentsOrCreateNew()
+        val recordSize = HEADER_SIZE + keyBytes.size + valueBytes.size
+
+        var segment = segments.lastOrNull()
+        if (segment == null || segment.size + recordSize > segment.capacity) {
+            segment = Segment(segmentFile(generation, segments.size), minCapacity = Math.max(SEGMENT_SIZE, recordSize), create = true)
+            segments.add(segment)
+        }
+
+        val offset = segment.size
+        val buffer = segment.buffer.duplicate()
+        buffer.position(offset + 1)
+        buffer.putLong(previous).putInt(keyBytes.size).putInt(valueBytes.size).put(keyBytes).put(valueBytes)
+        // the kind is written last, so a record which is not written completely looks like the end of the segment
+        segment.buffer.put(offset, kind)
+
+        segment.size += recordSize
+        size += recordSize
+        return address(segments.size - 1, offset)
+    }
+
+    private fun buffer(address: Long): MappedByteBuffer = segments!![(address ushr 32).toInt()].buffer
+
+    private fun offset(address: Long): Int = address.toInt()
+
+    private fun kind(address: Long): Byte = buffer(address).get(offset(address))
+
+    private fun previous(address: Long): Long = buffer(address).getLong(offset(address) + 1)
+
+    private fun keySize(address: Long): Int = buffer(address).getInt(offset(address) + 9)
+
+    private fun valueSize(address: Long): Int = buffer(address).getInt(offset(address) + 13)
+
+    private fun recordSize(address: Long): Int = HEADER_SIZE + keySize(address) + valueSize(address)
+
+    private fun chainSize(address: Long): Long {
+        var result = 0L
+        var current = address
+        while (current != NO_RECORD) {
+            result += recordSize(current)
+            current = previous(current)
+        }
+        return result
+    }
+
+    private fun readBytes(address: Long, start: Int, length: Int): ByteArray {
+        val bytes = ByteArray(length)
+        val view = buffer(address).duplicate()
+        view.position(offset(address) + start)
+        view.get(bytes)
+        return bytes
+    }
+
+    private fun readKeyBytes(address: Long): ByteArray = readBytes(address, HEADER_SIZE, keySize(address))
+
+    private fun readKey(address: Long): K = keyDescriptor.read(DataInputStream(ByteArrayInputStream(readKeyBytes(address))))
+
+    private fun readValue(address: Long): ByteArray {
+        val chain = arrayListOf<Long>()
+        var current = address
+        while (current != NO_RECORD) {
+            chain.add(current)
+            current = previous(current)
+        }
+
+        val output = ByteArrayOutputStream()
+        for (record in chain.reversed()) {
+            output.write(readBytes(record, HEADER_SIZE + keySize(record), valueSize(record)))
+        }
+        return output.toByteArray()
+    }
+
+    private inline fun serialize(save: (DataOutput) -> Unit): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        save(DataOutputStream(bytes))
+        return bytes.toByteArray()
+    }
+
+    private fun segmentFile(generation: Int, segment: Int): File =
+            File(storageFile.parentFile, "${storageFile.name}.g$generation.$segment")
+
+    private fun deleteSegmentFiles(predicate: (generation: Int) -> Boolean) {
+        for ((file, fileGeneration) in segmentFiles()) {
+            if (predicate(fileGeneration)) {
+                file.delete()
+            }
+        }
+    }
+
+    private fun maxSegmentFilesGeneration(): Int = segmentFiles().map { it.second }.max() ?: -1
+
+    private fun segmentFiles(): List<Pair<File, Int>> {
+        val prefix = storageFile.name + ".g"
+        val files = storageFile.parentFile.listFiles() ?: return listOf()
+
+        val result = arrayListOf<Pair<File, Int>>()
+        for (file in files) {
+            if (!file.name.startsWith(prefix)) continue
+
+            val fileGeneration = file.name.substring(prefix.length).substringBefore('.')
+            if (fileGeneration.isEmpty() || !fileGeneration.all { it.isDigit() }) continue
+
+            result.add(Pair(file, fileGeneration.toInt()))
+        }
+        return result
+    }
+
+    private class Segment(file: File, minCapacity: Int, create: Boolean) {
+        val buffer: MappedByteBuffer
+
+        init {
+            // truncating a file which is still mapped fails or breaks the existing mapping, so a segment is never created over a file
+            if (create && file.exists() && !file.delete()) {
+                throw IOException("Could not delete stale segment $file")
+            }
+
+            buffer = RandomAccessFile(file, "rw").use { randomAccessFile ->
+                // The mapping stays valid after the file is closed
+                randomAccessFile.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(minCapacity.toLong(), randomAccessFile.length()))
+            }
+        }
+
+        // Releases the mapping without waiting for the buffer to be collected, the buffer must not be used afterwards
+        fun unmap() {
+            try {
+                val cleanerMethod = buffer.javaClass.getMethod("cleaner")
+                cleanerMethod.isAccessible = true
+                val cleaner = cleanerMethod.invoke(buffer) ?: return
+                val cleanMethod = cleaner.javaClass.getMethod("clean")
+                cleanMethod.isAccessible = true
+                cleanMethod.invoke(cleaner)
+            }
+            catch (e: Throwable) {
+                // not supported by this JVM, the mapping is released when the buffer is collected
+            }
+        }
+
+        val capacity: Int
+            get() = buffer.capacity()
+
+        // end of the written records
+        var size = 0
+    }
+
+    /**
+     * Open addressing hash table in a direct buffer. A slot holds the hash of a key and the address of the last record
+     * of its value plus one, so that zero marks an empty slot and a negative value marks a removed one.
+     */
+    private inner class OffHeapIndex {
+        private val SLOT_SIZE = 4 + 8
+        private val REMOVED = -1L
+
+        private var capacity = 1024
+        private var slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE)
+        private var count = 0
+        private var used = 0
+
+        fun get(key: K): Long {
+            val slot = findSlot(key, keyDescriptor.getHashCode(key))
+            return if (slot >= 0) storedAddress(slot) - 1 else NO_RECORD
+        }
+
+        fun put(key: K, address: Long): Long {
+            val hash = keyDescriptor.getHashCode(key)
+            val slot = findSlot(key, hash)
+            if (slot >= 0) {
+                val previous = storedAddress(slot) - 1
+                slots.putLong(slot * SLOT_SIZE + 4, address + 1)
+                return previous
+            }
+
+            if ((used + 1) * 2 > capacity) {
+                rehash()
+            }
+            insert(hash, address)
+            return NO_RECORD
+        }
+
+        fun remove(key: K): Long {
+            val slot = findSlot(key, keyDescriptor.getHashCode(key))
+            if (slot < 0) return NO_RECORD
+
+            val previous = storedAddress(slot) - 1
+            slots.putLong(slot * SLOT_SIZE + 4, REMOVED)
+            count--
+            return previous
+        }
+
+        fun addresses(): List<Long> {
+            val result = arrayListOf<Long>()
+            for (slot in 0..capacity - 1) {
+                val stored = storedAddress(slot)
+                if (stored > 0) {
+                    result.add(stored - 1)
+                }
+            }
+            return result
+        }
+
+        private fun storedAddress(slot: Int): Long = slots.getLong(slot * SLOT_SIZE + 4)
+
+        private fun firstSlot(hash: Int): Int = (hash and Int.MAX_VALUE) % capacity
+
+        private fun findSlot(key: K, hash: Int): Int {
+            var slot = firstSlot(hash)
+            while (true) {
+                val stored = storedAddress(slot)
+                if (stored == 0L) return -1
+
+                if (stored > 0 && slots.getInt(slot * SLOT_SIZE) == hash && keyDescriptor.isEqual(readKey(stored - 1), key)) {
+                    return slot
+                }
+
+                slot = (slot + 1) % capacity
+            }
+        }
+
+        private fun insert(hash: Int, address: Long) {
+            var slot = firstSlot(hash)
+            while (storedAddress(slot) > 0) {
+                slot = (slot + 1) % capacity
+            }
+
+            if (storedAddress(slot) == 0L) {
+                used++
+            }
+            slots.putInt(slot * SLOT_SIZE, hash)
+            slots.putLong(slot * SLOT_SIZE + 4, address + 1)
+            count++
+        }
+
+        // drops removed slots and grows the table to keep it at most a quarter full
+        private fun rehash() {
+            val oldSlots = slots
+            val oldCapacity = capacity
+
+            while ((count + 1) * 4 > capacity) {
+                capacity *= 2
+            }
+            slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE)
+            count = 0
+            used = 0
+
+            for (slot in 0..oldCapacity - 1) {
+                val stored = oldSlots.getLong(slot * SLOT_SIZE + 4)
+                if (stored > 0) {
+                    insert(oldSlots.getInt(slot * SLOT_SIZE), stored - 1)
+                }
+            }
+        }
+    }
+}
@@ -55,6 +55,13 @@ object ProtoMapValueExternalizer : DataExternalizer<ProtoMapValue> {
         for (string in value.strings) {
             output.writeUTF(string)
         }
+
+        val abiHashes = value.abiHashes
+        output.writeBoolean(abiHashes != null)
+        if (abiHashes != null) {
+            output.writeLong(abiHashes.declarationHash)
+            StringToLongMapExternalizer.save(output, abiHashes.membersHashes)
+        }
     }
 
     override fun read(input: DataInput): ProtoMapValue {
@@ -64,7 +71,8 @@ object ProtoMapValueExternalizer : DataExternalizer<ProtoMapValue> {
         input.readFully(bytes, 0, bytesLength)
         val stringsLength = input.readInt()
         val strings = Array<String>(stringsLength) { input.readUTF() }
-        return ProtoMapValue(isPackageFacade, bytes, strings)
+        val abiHashes = if (input.readBoolean()) ProtoAbiHashes(input.readLong(), StringToLongMapExternalizer.read(input)!!) else null
+        return ProtoMapValue(isPackageFacade, bytes, strings, abiHashes)
     }
 }
 
@@ -104,6 +112,14 @@ object StringToLongMapExternalizer : StringMapExternalizer<Long>() {
     }
 }
 
+object StringToStringMapExternalizer : StringMapExternalizer<String>() {
+    override fun readValue(input: DataInput): String = IOUtil.readString(input)!!
+
+    override fun writeValue(output: DataOutput, value: String) {
+        IOUtil.writeString(value, output)
+    }
+}
+
 object ConstantsMapExternalizer : DataExternalizer<Map<String, Any>> {
     override fun save(output: DataOutput, map: Map<String, Any>?) {
         output.writeInt(map!!.size)
@@ -28,4 +28,18 @@ data class LookupSymbolKey(val nameHash: Int, val scopeHash: Int) : Comparable<L
     }
 }
 
-data class ProtoMapValue(val isPackageFacade: Boolean, val bytes: ByteArray, val strings: Array<String>)
+/**
+ * [abiHashes] are stored for values which are compared with the next version of the class, see [org.jetbrains.kotlin.incremental.withAbiHashes].
+ */
+data class ProtoMapValue(
+        val isPackageFacade: Boolean,
+        val bytes: ByteArray,
+        val strings: Array<String>,
+        val abiHashes: ProtoAbiHashes? = null
+)
+
+/**
+ * Hashes of the class or package proto without its constructors, functions and properties,
+ * and of its non-private constructors (named `<init>`), functions and properties grouped by name.
+ */
+data class ProtoAbiHashes(val declarationHash: Long, val membersHashes: Map<String, Long>)
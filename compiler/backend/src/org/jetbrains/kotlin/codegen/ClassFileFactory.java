@@ -55,6 +55,9 @@ public class ClassFileFactory implements OutputFileCollection {
 
     private boolean isDone = false;
 
+    private final Set<String> releasedOutputs = new HashSet<String>();
+    private ReleasedOutputLoader releasedOutputLoader = null;
+
     private final Set<File> packagePartSourceFiles = new HashSet<File>();
     private final Map<String, PackageParts> partsGroupedByPackage = new LinkedHashMap<String, PackageParts>();
 
@@ -93,9 +96,26 @@ public class ClassFileFactory implements OutputFileCollection {
     }
 
     public void releaseGeneratedOutput() {
+        if (releasedOutputLoader != null) {
+            releasedOutputs.addAll(generators.keySet());
+        }
         generators.clear();
     }
 
+    public void setReleasedOutputLoader(@Nullable ReleasedOutputLoader loader) {
+        releasedOutputLoader = loader;
+    }
+
+    /**
+     * Returns the contents of an output which has already been written out and released,
+     * e.g. an anonymous object of an inline function which is needed again to inline a call from another file.
+     */
+    @Nullable
+    public byte[] getReleasedOutputBytes(@NotNull String relativePath) {
+        if (releasedOutputLoader == null || !releasedOutputs.contains(relativePath)) return null;
+        return releasedOutputLoader.load(relativePath);
+    }
+
     private void writeModuleMappings() {
         final JvmPackageTable.PackageTable.Builder builder = JvmPackageTable.PackageTable.newBuilder();
         String outputFilePath = getMappingFileName(state.getModuleName());
@@ -321,6 +341,11 @@ public class ClassFileFactory implements OutputFileCollection {
         public abstract String asText(ClassBuilderFactory factory);
     }
 
+    public interface ReleasedOutputLoader {
+        @Nullable
+        byte[] load(@NotNull String relativePath);
+    }
+
     public void removeClasses(Set<String> classNamesToRemove) {
         for (String classInternalName : classNamesToRemove) {
             generators.remove(classInternalName + ".class");
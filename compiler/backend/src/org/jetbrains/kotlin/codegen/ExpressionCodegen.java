@@ -2953,10 +2953,7 @@ public class ExpressionCodegen extends KtVisitor<StackValue, StackValue> impleme
                     //TODO lazy
                     return result;
                 }
-                Type currentScriptType = typeMapper.mapType(scriptContext.getScriptDescriptor());
-                Type classType = typeMapper.mapType(receiver);
-                String fieldName = scriptContext.getScriptFieldName(receiver);
-                return StackValue.field(classType, currentScriptType, fieldName, false, result, receiver);
+                return StackValue.field(scriptContext.getScriptInstanceFieldInfo(receiver), StackValue.none());
             }
 
             result = cur.getOuterExpression(result, false);
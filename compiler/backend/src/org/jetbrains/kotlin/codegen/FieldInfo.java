@@ -61,6 +61,11 @@ public class FieldInfo {
         return new FieldInfo(owner, fieldType, fieldName, false);
     }
 
+    @NotNull
+    public static FieldInfo createForHiddenStaticField(@NotNull Type owner, @NotNull Type fieldType, @NotNull String fieldName) {
+        return new FieldInfo(owner, fieldType, fieldName, true);
+    }
+
     private final Type fieldType;
     private final Type ownerType;
     private final String fieldName;
@@ -36,7 +36,6 @@ import org.jetbrains.org.objectweb.asm.MethodVisitor;
 import org.jetbrains.org.objectweb.asm.Type;
 import org.jetbrains.org.objectweb.asm.commons.InstructionAdapter;
 
-import java.util.Collections;
 import java.util.List;
 
 import static org.jetbrains.kotlin.resolve.jvm.AsmTypes.OBJECT_TYPE;
@@ -58,13 +57,7 @@ public class ScriptCodegen extends MemberCodegen<KtScript> {
 
         ClassBuilder builder = state.getFactory().newVisitor(JvmDeclarationOriginKt.OtherOrigin(declaration, scriptDescriptor),
                                                              classType, declaration.getContainingFile());
-        List<ScriptDescriptor> earlierScripts = state.getReplSpecific().getEarlierScriptsForReplInterpreter();
-        ScriptContext scriptContext = parentContext.intoScript(
-                scriptDescriptor,
-                earlierScripts == null ? Collections.<ScriptDescriptor>emptyList() : earlierScripts,
-                scriptDescriptor,
-                state.getTypeMapper()
-        );
+        ScriptContext scriptContext = parentContext.intoScript(scriptDescriptor, scriptDescriptor, state.getTypeMapper());
         return new ScriptCodegen(declaration, state, scriptContext, builder);
     }
 
@@ -120,7 +113,7 @@ public class ScriptCodegen extends MemberCodegen<KtScript> {
             @NotNull ClassBuilder classBuilder,
             @NotNull MethodContext methodContext
     ) {
-        JvmMethodSignature jvmSignature = typeMapper.mapScriptSignature(scriptDescriptor, context.getEarlierScripts());
+        JvmMethodSignature jvmSignature = typeMapper.mapScriptSignature(scriptDescriptor);
 
         if (state.getReplSpecific().getShouldGenerateScriptResultValue()) {
             FieldInfo resultFieldInfo = context.getResultFieldInfo();
@@ -182,31 +175,25 @@ public class ScriptCodegen extends MemberCodegen<KtScript> {
             }
             iv.load(0, classType);
 
+            if (context.shouldGenerateScriptInstanceField()) {
+                FieldInfo instanceFieldInfo = context.getScriptInstanceFieldInfo(scriptDescriptor);
+                iv.load(0, classType);
+                iv.putstatic(instanceFieldInfo.getOwnerInternalName(), instanceFieldInfo.getFieldName(),
+                             instanceFieldInfo.getFieldType().getDescriptor());
+            }
+
             FrameMap frameMap = new FrameMap();
             frameMap.enterTemp(OBJECT_TYPE);
 
-            for (ScriptDescriptor importedScript : context.getEarlierScripts()) {
-                frameMap.enter(importedScript, OBJECT_TYPE);
-            }
-
             Type[] argTypes = jvmSignature.getAsmMethod().getArgumentTypes();
-            int add = 0;
 
             for (int i = 0; i < valueParameters.size(); i++) {
                 ValueParameterDescriptor parameter = valueParameters.get(i);
-                frameMap.enter(parameter, argTypes[i + add]);
+                frameMap.enter(parameter, argTypes[i]);
             }
 
             int offset = 1;
 
-            for (ScriptDescriptor earlierScript : context.getEarlierScripts()) {
-                Type earlierClassType = typeMapper.mapClass(earlierScript);
-                iv.load(0, classType);
-                iv.load(offset, earlierClassType);
-                offset += earlierClassType.getSize();
-                iv.putfield(classType.getInternalName(), context.getScriptFieldName(earlierScript), earlierClassType.getDescriptor());
-            }
-
             for (ValueParameterDescriptor parameter : valueParameters) {
                 Type parameterType = typeMapper.mapType(parameter.getType());
                 iv.load(0, classType);
@@ -232,10 +219,10 @@ public class ScriptCodegen extends MemberCodegen<KtScript> {
     }
 
     private void genFieldsForParameters(@NotNull ScriptDescriptor script, @NotNull ClassBuilder classBuilder) {
-        for (ScriptDescriptor earlierScript : context.getEarlierScripts()) {
-            Type earlierClassName = typeMapper.mapType(earlierScript);
-            int access = ACC_PUBLIC | ACC_FINAL;
-            classBuilder.newField(NO_ORIGIN, access, context.getScriptFieldName(earlierScript), earlierClassName.getDescriptor(), null, null);
+        if (context.shouldGenerateScriptInstanceField()) {
+            FieldInfo instanceFieldInfo = context.getScriptInstanceFieldInfo(script);
+            classBuilder.newField(NO_ORIGIN, ACC_PUBLIC | ACC_STATIC, instanceFieldInfo.getFieldName(),
+                                  instanceFieldInfo.getFieldType().getDescriptor(), null, null);
         }
 
         for (ValueParameterDescriptor parameter : script.getUnsubstitutedPrimaryConstructor().getValueParameters()) {
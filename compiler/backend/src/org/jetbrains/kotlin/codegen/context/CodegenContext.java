@@ -317,11 +317,10 @@ public abstract class CodegenContext<T extends DeclarationDescriptor> {
     @NotNull
     public ScriptContext intoScript(
             @NotNull ScriptDescriptor script,
-            @NotNull List<ScriptDescriptor> earlierScripts,
             @NotNull ClassDescriptor classDescriptor,
             @NotNull KotlinTypeMapper typeMapper
     ) {
-        return new ScriptContext(typeMapper, script, earlierScripts, classDescriptor, this);
+        return new ScriptContext(typeMapper, script, classDescriptor, this);
     }
 
     @NotNull
@@ -31,24 +31,20 @@ import org.jetbrains.kotlin.psi.KtExpression;
 import org.jetbrains.kotlin.psi.KtScript;
 import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils;
 import org.jetbrains.kotlin.resolve.jvm.AsmTypes;
-
-import java.util.List;
+import org.jetbrains.org.objectweb.asm.Type;
 
 public class ScriptContext extends ClassContext {
     private final ScriptDescriptor scriptDescriptor;
-    private final List<ScriptDescriptor> earlierScripts;
     private final KtExpression lastStatement;
 
     public ScriptContext(
             @NotNull KotlinTypeMapper typeMapper,
             @NotNull ScriptDescriptor scriptDescriptor,
-            @NotNull List<ScriptDescriptor> earlierScripts,
             @NotNull ClassDescriptor contextDescriptor,
             @Nullable CodegenContext parentContext
     ) {
         super(typeMapper, contextDescriptor, OwnerKind.IMPLEMENTATION, parentContext, null);
         this.scriptDescriptor = scriptDescriptor;
-        this.earlierScripts = earlierScripts;
         KtScript script = (KtScript) DescriptorToSourceUtils.getSourceFromDescriptor(scriptDescriptor);
         assert script != null : "Declaration should be present for script: " + scriptDescriptor;
         KtDeclaration lastDeclaration = CollectionsKt.lastOrNull(script.getDeclarations());
@@ -74,18 +70,21 @@ public class ScriptContext extends ClassContext {
         return FieldInfo.createForHiddenField(state.getTypeMapper().mapClass(scriptDescriptor), AsmTypes.OBJECT_TYPE, scriptResultFieldName);
     }
 
-    @NotNull
-    public List<ScriptDescriptor> getEarlierScripts() {
-        return earlierScripts;
+    public boolean shouldGenerateScriptInstanceField() {
+        return getState().getReplSpecific().getScriptInstanceFieldName() != null;
     }
 
+    /**
+     * @return the static field where the instance of the given (this or an earlier REPL line's) script is stored
+     */
     @NotNull
-    public String getScriptFieldName(@NotNull ScriptDescriptor scriptDescriptor) {
-        int index = earlierScripts.indexOf(scriptDescriptor);
-        if (index < 0) {
-            throw new IllegalStateException("Unregistered script: " + scriptDescriptor);
+    public FieldInfo getScriptInstanceFieldInfo(@NotNull ScriptDescriptor script) {
+        String scriptInstanceFieldName = getState().getReplSpecific().getScriptInstanceFieldName();
+        if (scriptInstanceFieldName == null) {
+            throw new IllegalStateException("Unregistered script: " + script);
         }
-        return "script$" + (index + 1);
+        Type scriptType = getState().getTypeMapper().mapClass(script);
+        return FieldInfo.createForHiddenStaticField(scriptType, scriptType, scriptInstanceFieldName);
     }
 
     @Nullable
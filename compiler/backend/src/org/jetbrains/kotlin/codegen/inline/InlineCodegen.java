@@ -810,10 +810,8 @@ public class InlineCodegen extends CallGenerator {
         CodegenContext parent = getContext(container, state, sourceFile);
 
         if (descriptor instanceof ScriptDescriptor) {
-            List<ScriptDescriptor> earlierScripts = state.getReplSpecific().getEarlierScriptsForReplInterpreter();
             return parent.intoScript(
                     (ScriptDescriptor) descriptor,
-                    earlierScripts == null ? Collections.emptyList() : earlierScripts,
                     (ClassDescriptor) descriptor, state.getTypeMapper()
             );
         }
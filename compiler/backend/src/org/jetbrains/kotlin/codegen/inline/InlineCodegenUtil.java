@@ -392,6 +392,10 @@ public class InlineCodegenUtil {
             if (outputFile != null) {
                 return new ClassReader(outputFile.asByteArray());
             }
+            byte[] releasedOutput = state.getFactory().getReleasedOutputBytes(internalName + ".class");
+            if (releasedOutput != null) {
+                return new ClassReader(releasedOutput);
+            }
             VirtualFile file = findVirtualFileImprecise(state, internalName);
             if (file != null) {
                 return new ClassReader(file.contentsToByteArray());
@@ -61,6 +61,16 @@ public class K2JSCompilerArguments extends CommonCompilerArguments {
     @ValueDescription("<path>")
     public String outputPostfix;
 
+    @Argument(value = "Xdce", description = "Remove top-level declarations unreachable from main, tests and -Xdce-keep (the module can't be used as a library)")
+    public boolean deadCodeElimination;
+
+    @Argument(value = "Xdce-keep", description = "Fully qualified names of declarations or packages kept by -Xdce, separated by commas")
+    @ValueDescription("<fq-name[,]>")
+    public String[] deadCodeEliminationKeep;
+
+    @Argument(value = "Xparallel-translation", description = "Translate files of different packages on all available processors")
+    public boolean parallelTranslation;
+
     @Override
     @NotNull
     public String executableScriptFileName() {
@@ -88,6 +88,25 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "Xload-script-configs", description = "Load script configuration files from project directory tree")
     public boolean loadScriptConfigs;
 
+    @Argument(value = "Xintern-types", description = "Share identical class type instances during analysis to reduce memory usage")
+    public boolean internTypes;
+
+    @Argument(value = "Xparallel-parsing", description = "Parse source files on all available processors before analysis")
+    public boolean parallelParsing;
+
+    @Argument(value = "Xstream-output", description = "Keep generated classes on disk instead of in memory until the .jar destination is written")
+    public boolean streamOutput;
+
+    @Argument(value = "Xno-jar-compression", description = "Store entries of the .jar destination without compression")
+    public boolean noJarCompression;
+
+    @Argument(value = "Xparallel-jar-compression", description = "Compress entries of the .jar destination on all available processors (no ZIP64 support)")
+    public boolean parallelJarCompression;
+
+    @Argument(value = "Xanalysis-cache", description = "Skip compilation when sources, classpath and options are unchanged since the last build")
+    @ValueDescription("<path>")
+    public String analysisCacheDirectory;
+
     // Paths to output directories for friend modules.
     public String[] friendPaths;
 
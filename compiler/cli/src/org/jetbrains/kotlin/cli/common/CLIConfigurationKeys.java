@@ -20,6 +20,8 @@ import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
 import org.jetbrains.kotlin.cli.jvm.compiler.CompilerJarLocator;
 import org.jetbrains.kotlin.config.CompilerConfigurationKey;
 
+import java.util.List;
+
 public class CLIConfigurationKeys {
     public static final CompilerConfigurationKey<MessageCollector> MESSAGE_COLLECTOR_KEY =
             CompilerConfigurationKey.create("message collector");
@@ -27,6 +29,10 @@ public class CLIConfigurationKeys {
             CompilerConfigurationKey.create("allow kotlin package");
     public static final CompilerConfigurationKey<Boolean> REPORT_PERF =
             CompilerConfigurationKey.create("report performance information");
+    public static final CompilerConfigurationKey<List<String>> PLUGIN_CLASSPATHS =
+            CompilerConfigurationKey.create("compiler plugin classpaths");
+    public static final CompilerConfigurationKey<List<String>> PLUGIN_OPTIONS =
+            CompilerConfigurationKey.create("compiler plugin options");
 
     // Used in Eclipse plugin (see KotlinCLICompiler)
     public static final CompilerConfigurationKey<CompilerJarLocator> COMPILER_JAR_LOCATOR =
@@ -26,10 +26,10 @@ import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
 import kotlin.Unit;
 import kotlin.jvm.functions.Function1;
+import kotlin.jvm.functions.Function2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.analyzer.AnalysisResult;
-import org.jetbrains.kotlin.backend.common.output.OutputFileCollection;
 import org.jetbrains.kotlin.cli.common.CLICompiler;
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
 import org.jetbrains.kotlin.cli.common.ExitCode;
@@ -39,7 +39,7 @@ import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport;
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation;
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
-import org.jetbrains.kotlin.cli.common.output.outputUtils.OutputUtilsKt;
+import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil;
 import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
 import org.jetbrains.kotlin.config.CommonConfigurationKeys;
@@ -55,12 +55,14 @@ import org.jetbrains.kotlin.js.config.LibrarySourcesConfig;
 import org.jetbrains.kotlin.js.facade.K2JSTranslator;
 import org.jetbrains.kotlin.js.facade.MainCallParameters;
 import org.jetbrains.kotlin.js.facade.TranslationResult;
+import org.jetbrains.kotlin.js.translate.utils.DeadCodeEliminationReport;
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
 import org.jetbrains.kotlin.utils.PathUtil;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.jetbrains.kotlin.cli.common.ExitCode.COMPILATION_ERROR;
@@ -186,7 +188,11 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         if (!(translationResult instanceof TranslationResult.Success)) return ExitCode.COMPILATION_ERROR;
 
         TranslationResult.Success successResult = (TranslationResult.Success) translationResult;
-        OutputFileCollection outputFiles = successResult.getOutputFiles(outputFile, outputPrefixFile, outputPostfixFile);
+
+        DeadCodeEliminationReport deadCodeEliminationReport = successResult.getDeadCodeEliminationReport();
+        if (deadCodeEliminationReport != null) {
+            reportDeadCodeElimination(messageCollector, deadCodeEliminationReport);
+        }
 
         if (outputFile.isDirectory()) {
             messageCollector.report(CompilerMessageSeverity.ERROR,
@@ -202,7 +208,15 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
 
-        OutputUtilsKt.writeAll(outputFiles, outputDir, messageCollector);
+        successResult.writeOutputFiles(
+                outputFile, outputPrefixFile, outputPostfixFile, outputDir, new Function2<List<? extends File>, File, Unit>() {
+                    @Override
+                    public Unit invoke(List<? extends File> sources, File output) {
+                        messageCollector.report(CompilerMessageSeverity.OUTPUT, OutputMessageUtil.formatOutputMessage(sources, output),
+                                                CompilerMessageLocation.NO_LOCATION);
+                        return Unit.INSTANCE;
+                    }
+                });
 
         return OK;
     }
@@ -223,6 +237,19 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
                                 CompilerMessageLocation.NO_LOCATION);
     }
 
+    private static void reportDeadCodeElimination(@NotNull MessageCollector messageCollector, @NotNull DeadCodeEliminationReport report) {
+        List<String> removedDeclarations = report.getRemovedDeclarations();
+        messageCollector.report(CompilerMessageSeverity.INFO,
+                                "Dead code elimination removed " + removedDeclarations.size() + " declarations, " +
+                                "output size " + report.getSizeBefore() + " -> " + report.getSizeAfter() + " bytes",
+                                CompilerMessageLocation.NO_LOCATION);
+        if (!removedDeclarations.isEmpty()) {
+            messageCollector.report(CompilerMessageSeverity.LOGGING,
+                                    "Removed declarations: " + Joiner.on(", ").join(removedDeclarations),
+                                    CompilerMessageLocation.NO_LOCATION);
+        }
+    }
+
     private static AnalyzerWithCompilerReport analyzeAndReportErrors(
             @NotNull MessageCollector messageCollector, @NotNull final List<KtFile> sources, @NotNull final JsConfig config
     ) {
@@ -259,6 +286,15 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         if (arguments.kjsm) {
             configuration.put(JSConfigurationKeys.KJSM, true);
         }
+        if (arguments.deadCodeElimination) {
+            configuration.put(JSConfigurationKeys.DEAD_CODE_ELIMINATION, true);
+            if (arguments.deadCodeEliminationKeep != null) {
+                configuration.put(JSConfigurationKeys.DEAD_CODE_ELIMINATION_KEEP, Arrays.asList(arguments.deadCodeEliminationKeep));
+            }
+        }
+        if (arguments.parallelTranslation) {
+            configuration.put(JSConfigurationKeys.PARALLEL_TRANSLATION, true);
+        }
 
         List<String> libraryFiles = new SmartList<String>();
         if (!arguments.noStdlib) {
@@ -40,6 +40,7 @@ import org.jetbrains.kotlin.load.java.JvmAbi
 import org.jetbrains.kotlin.load.kotlin.JvmMetadataVersion
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.script.StandardScriptDefinition
+import org.jetbrains.kotlin.types.SimpleTypeInterner
 import org.jetbrains.kotlin.util.PerformanceCounter
 import org.jetbrains.kotlin.utils.KotlinPaths
 import org.jetbrains.kotlin.utils.KotlinPathsFromHomeDir
@@ -50,6 +51,19 @@ import java.util.concurrent.TimeUnit
 
 class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
     override fun doExecute(arguments: K2JVMCompilerArguments, configuration: CompilerConfiguration, rootDisposable: Disposable): ExitCode {
+        if (!arguments.internTypes) return executeCompilation(arguments, configuration, rootDisposable)
+
+        // The interner is shared by the compilations running in this process, its table is dropped when the last of them ends
+        SimpleTypeInterner.acquire()
+        try {
+            return executeCompilation(arguments, configuration, rootDisposable)
+        }
+        finally {
+            SimpleTypeInterner.release()
+        }
+    }
+
+    private fun executeCompilation(arguments: K2JVMCompilerArguments, configuration: CompilerConfiguration, rootDisposable: Disposable): ExitCode {
         val messageCollector = configuration.getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)
 
         val paths = if (arguments.kotlinHome != null)
@@ -199,6 +213,7 @@ class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
                 reportGCTime(configuration)
                 reportCompilationTime(configuration)
                 PerformanceCounter.report { s -> reportPerf(configuration, s) }
+                SimpleTypeInterner.report { s -> reportPerf(configuration, s) }
             }
             return OK
         }
@@ -293,8 +308,13 @@ class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
             configuration.put(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE, arguments.allowKotlinPackage)
             configuration.put(CLIConfigurationKeys.REPORT_PERF, arguments.reportPerf)
             configuration.put(JVMConfigurationKeys.LOAD_SCRIPT_CONFIGS, arguments.loadScriptConfigs)
+            configuration.put(JVMConfigurationKeys.STREAM_OUTPUT, arguments.streamOutput)
+            configuration.put(JVMConfigurationKeys.PARALLEL_PARSING, arguments.parallelParsing)
+            configuration.put(JVMConfigurationKeys.NO_JAR_COMPRESSION, arguments.noJarCompression)
+            configuration.put(JVMConfigurationKeys.PARALLEL_JAR_COMPRESSION, arguments.parallelJarCompression)
 
             arguments.declarationsOutputPath?.let { configuration.put(JVMConfigurationKeys.DECLARATIONS_JSON_PATH, it) }
+            arguments.analysisCacheDirectory?.let { configuration.put(JVMConfigurationKeys.ANALYSIS_CACHE_DIRECTORY, File(it)) }
         }
 
         private fun getClasspath(paths: KotlinPaths, arguments: K2JVMCompilerArguments): List<File> {
@@ -323,6 +343,7 @@ class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
                             return COMPILATION_ERROR
                         }
                         configuration.addJvmClasspathRoots(classesRoots)
+                        configuration.put(JVMConfigurationKeys.JDK_HOME, File(arguments.jdkHome))
                     }
                     else {
                         configuration.addJvmClasspathRoots(PathUtil.getJdkClassesRoots())
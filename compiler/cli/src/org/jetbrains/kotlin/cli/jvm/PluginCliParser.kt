@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.cli.jvm
 
 import com.intellij.util.containers.MultiMap
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
 import org.jetbrains.kotlin.compiler.plugin.*
 import org.jetbrains.kotlin.config.CompilerConfiguration
@@ -30,6 +31,9 @@ object PluginCliParser {
 
     @JvmStatic
     fun loadPlugins(arguments: CommonCompilerArguments, configuration: CompilerConfiguration) {
+        arguments.pluginClasspaths?.let { configuration.put(CLIConfigurationKeys.PLUGIN_CLASSPATHS, it.toList()) }
+        arguments.pluginOptions?.let { configuration.put(CLIConfigurationKeys.PLUGIN_OPTIONS, it.toList()) }
+
         val classLoader = PluginURLClassLoader(
                 arguments.pluginClasspaths
                         ?.map { File(it).toURI().toURL() }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.KotlinVersion
+import org.jetbrains.kotlin.cli.jvm.config.jvmClasspathRoots
+import org.jetbrains.kotlin.compiler.plugin.ComponentRegistrar
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.config.LanguageFeature
+import org.jetbrains.kotlin.psi.KtFile
+import java.io.*
+import java.security.MessageDigest
+
+/**
+ * A no-change shortcut for CLI compilation, not a per-file analysis cache.
+ *
+ * Remembers the inputs of the last successful compilation to an output directory:
+ * content hashes of the source files, content hashes of the classpath entries
+ * and a fingerprint of the options affecting the output, including the output location itself.
+ * When nothing has changed and all recorded outputs are still present, analysis and code generation are skipped.
+ *
+ * Descriptors and binding context slices reference PSI and cannot be reloaded for a single file,
+ * so if any input has changed, everything is compiled again. The changed files are only reported,
+ * which is what incremental compilation should be given instead.
+ */
+class AnalysisResultCache(private val cacheDirectory: File) {
+    class Inputs(
+            val sourceHashes: Map<String, String>,
+            val dependencyHashes: Map<String, String>,
+            val optionsHash: String
+    )
+
+    private class Manifest(val inputs: Inputs, val outputs: List<String>)
+
+    private val manifestFile: File
+        get() = File(cacheDirectory, MANIFEST_FILE_NAME)
+
+    fun computeInputs(environment: KotlinCoreEnvironment): Inputs =
+            computeInputs(environment.getSourceFiles(), environment.configuration.jvmClasspathRoots,
+                          optionsFingerprint(environment.configuration))
+
+    fun computeInputs(
+            sourceFiles: Collection<KtFile>,
+            dependencies: Collection<File>,
+            optionsFingerprint: String
+    ): Inputs {
+        val sourceHashes = linkedMapOf<String, String>()
+        for (file in sourceFiles) {
+            sourceHashes[file.pathForCache()] = md5(file.contentBytes())
+        }
+
+        val dependencyHashes = linkedMapOf<String, String>()
+        for (root in dependencies) {
+            dependencyHashes[root.absolutePath] = dependencyFingerprint(root)
+        }
+
+        return Inputs(sourceHashes, dependencyHashes, md5(optionsFingerprint.toByteArray()))
+    }
+
+    fun isUpToDate(inputs: Inputs, outputDirectory: File): Boolean {
+        val manifest = loadManifest() ?: return false
+        val cached = manifest.inputs
+
+        return cached.optionsHash == inputs.optionsHash &&
+               cached.sourceHashes == inputs.sourceHashes &&
+               cached.dependencyHashes == inputs.dependencyHashes &&
+               manifest.outputs.all { File(outputDirectory, it).exists() }
+    }
+
+    fun changedSourceFiles(inputs: Inputs): Collection<String> {
+        val cached = loadManifest()?.inputs ?: return inputs.sourceHashes.keys
+        if (cached.optionsHash != inputs.optionsHash || cached.dependencyHashes != inputs.dependencyHashes) {
+            return inputs.sourceHashes.keys
+        }
+        return inputs.sourceHashes.filter { cached.sourceHashes[it.key] != it.value }.keys
+    }
+
+    fun save(inputs: Inputs, outputs: Collection<String>) {
+        cacheDirectory.mkdirs()
+        val tempFile = File(cacheDirectory, MANIFEST_FILE_NAME + ".tmp")
+        DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+            output.writeInt(FORMAT_VERSION)
+            output.writeUTF(inputs.optionsHash)
+            output.writeStringMap(inputs.sourceHashes)
+            output.writeStringMap(inputs.dependencyHashes)
+            output.writeInt(outputs.size)
+            outputs.forEach { output.writeUTF(it) }
+        }
+        FileUtil.rename(tempFile, manifestFile)
+    }
+
+    fun clean() {
+        manifestFile.delete()
+    }
+
+    private fun loadManifest(): Manifest? {
+        val file = manifestFile
+        if (!file.exists()) return null
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != FORMAT_VERSION) return null
+
+                val optionsHash = input.readUTF()
+                val sourceHashes = input.readStringMap()
+                val dependencyHashes = input.readStringMap()
+                val outputs = (1..input.readInt()).map { input.readUTF() }
+                return Manifest(Inputs(sourceHashes, dependencyHashes, optionsHash), outputs)
+            }
+        }
+        catch (e: IOException) {
+            return null
+        }
+    }
+
+    companion object {
+        private val MANIFEST_FILE_NAME = "analysis-cache.bin"
+        private val FORMAT_VERSION = 3
+
+        private fun KtFile.pathForCache(): String = virtualFile?.path ?: name
+
+        private fun KtFile.contentBytes(): ByteArray = virtualFile?.contentsToByteArray() ?: text.toByteArray()
+
+        // Size and time stamp are not enough: build tools may rewrite a jar within the time stamp resolution
+        // or restore it with the old time stamp, so the contents are hashed.
+        // For directories every file contributes, not only classes: .kotlin_module files and resources affect the output too.
+        private fun dependencyFingerprint(root: File): String {
+            if (!root.exists()) return "<absent>"
+            if (root.isFile) return md5(root)
+
+            val digest = MessageDigest.getInstance("MD5")
+            root.walkTopDown().filter { it.isFile }.sortedBy { it.path }.forEach {
+                digest.update("${it.toRelativeString(root)}:${md5(it)};".toByteArray())
+            }
+            return digest.digest().toHexString()
+        }
+
+        /**
+         * Options which affect the output of any platform: language features, inlining and compiler plugins.
+         * Plugins are identified by their registrars, the contents of their classpath and their options.
+         */
+        @JvmStatic
+        fun commonOptionsFingerprint(configuration: CompilerConfiguration): String {
+            val languageFeatures = configuration.get(CommonConfigurationKeys.LANGUAGE_FEATURE_SETTINGS)?.let { settings ->
+                LanguageFeature.values().filter { settings.supportsFeature(it) }
+            }
+            val pluginClasspaths = configuration.getList(CLIConfigurationKeys.PLUGIN_CLASSPATHS).map { path ->
+                path + ":" + dependencyFingerprint(File(path))
+            }
+
+            return listOf(
+                    KotlinVersion.VERSION,
+                    configuration.get(CommonConfigurationKeys.MODULE_NAME),
+                    languageFeatures,
+                    configuration.get(CommonConfigurationKeys.DISABLE_INLINE),
+                    configuration.get(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE),
+                    configuration.getList(ComponentRegistrar.PLUGIN_COMPONENT_REGISTRARS).map { it.javaClass.name }.sorted(),
+                    pluginClasspaths,
+                    configuration.getList(CLIConfigurationKeys.PLUGIN_OPTIONS)
+            ).joinToString(separator = "|")
+        }
+
+        @JvmStatic
+        fun optionsFingerprint(configuration: CompilerConfiguration): String =
+                listOf(
+                        commonOptionsFingerprint(configuration),
+                        configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY)?.absolutePath,
+                        configuration.get(JVMConfigurationKeys.JVM_TARGET),
+                        configuration.get(JVMConfigurationKeys.JDK_HOME),
+                        configuration.get(JVMConfigurationKeys.DISABLE_CALL_ASSERTIONS),
+                        configuration.get(JVMConfigurationKeys.DISABLE_PARAM_ASSERTIONS),
+                        configuration.get(JVMConfigurationKeys.DISABLE_OPTIMIZATION),
+                        configuration.get(JVMConfigurationKeys.INHERIT_MULTIFILE_PARTS),
+                        configuration.get(JVMConfigurationKeys.USE_TYPE_TABLE),
+                        configuration.get(JVMConfigurationKeys.FRIEND_PATHS)
+                ).joinToString(separator = "|")
+
+        private fun md5(bytes: ByteArray): String = MessageDigest.getInstance("MD5").digest(bytes).toHexString()
+
+        private fun md5(file: File): String {
+            val digest = MessageDigest.getInstance("MD5")
+            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+            FileInputStream(file).use { input ->
+                while (true) {
+                    val read = input.read(buffer)
+                    if (read < 0) break
+                    digest.update(buffer, 0, read)
+                }
+            }
+            return digest.digest().toHexString()
+        }
+
+        private fun ByteArray.toHexString(): String = joinToString(separator = "") { "%02x".format(it) }
+
+        private fun DataOutput.writeStringMap(map: Map<String, String>) {
+            writeInt(map.size)
+            for ((key, value) in map) {
+                writeUTF(key)
+                writeUTF(value)
+            }
+        }
+
+        private fun DataInput.readStringMap(): Map<String, String> {
+            val size = readInt()
+            val result = linkedMapOf<String, String>()
+            repeat(size) {
+                result[readUTF()] = readUTF()
+            }
+            return result
+        }
+    }
+}
@@ -52,6 +52,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation.NO_LOCATION;
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR;
@@ -74,23 +76,33 @@ public class CompileEnvironmentUtil {
         return ModuleScriptData.EMPTY;
     }
 
+    @NotNull
+    private static Manifest createManifest(@Nullable FqName mainClass) {
+        Manifest manifest = new Manifest();
+        Attributes mainAttributes = manifest.getMainAttributes();
+        mainAttributes.putValue("Manifest-Version", "1.0");
+        mainAttributes.putValue("Created-By", "JetBrains Kotlin");
+        if (mainClass != null) {
+            mainAttributes.putValue("Main-Class", mainClass.asString());
+        }
+        return manifest;
+    }
+
     // TODO: includeRuntime should be not a flag but a path to runtime
-    private static void doWriteToJar(OutputFileCollection outputFiles, OutputStream fos, @Nullable FqName mainClass, boolean includeRuntime) {
+    private static void doWriteToJar(
+            OutputFileCollection outputFiles,
+            OutputStream fos,
+            @Nullable FqName mainClass,
+            boolean includeRuntime,
+            boolean storeOnly
+    ) {
         try {
-            Manifest manifest = new Manifest();
-            Attributes mainAttributes = manifest.getMainAttributes();
-            mainAttributes.putValue("Manifest-Version", "1.0");
-            mainAttributes.putValue("Created-By", "JetBrains Kotlin");
-            if (mainClass != null) {
-                mainAttributes.putValue("Main-Class", mainClass.asString());
-            }
-            JarOutputStream stream = new JarOutputStream(fos, manifest);
+            JarOutputStream stream = new JarOutputStream(fos, createManifest(mainClass));
             for (OutputFile outputFile : outputFiles.asList()) {
-                stream.putNextEntry(new JarEntry(outputFile.getRelativePath()));
-                stream.write(outputFile.asByteArray());
+                writeEntry(stream, outputFile.getRelativePath(), outputFile.asByteArray(), storeOnly);
             }
             if (includeRuntime) {
-                writeRuntimeToJar(stream);
+                writeRuntimeToJar(stream, storeOnly);
             }
             stream.finish();
         }
@@ -99,11 +111,74 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    private static void doWriteToJarInParallel(
+            OutputFileCollection outputFiles,
+            OutputStream fos,
+            @Nullable FqName mainClass,
+            boolean includeRuntime,
+            boolean storeOnly
+    ) {
+        ParallelJarWriter writer = new ParallelJarWriter(fos, storeOnly, Runtime.getRuntime().availableProcessors());
+        try {
+            ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+            createManifest(mainClass).write(manifest);
+            writer.addEntry(JarFile.MANIFEST_NAME, manifest.toByteArray());
+
+            for (OutputFile outputFile : outputFiles.asList()) {
+                writer.addEntry(outputFile.getRelativePath(), outputFile.asByteArray());
+            }
+            if (includeRuntime) {
+                writeRuntimeToJar(writer);
+            }
+            writer.finish();
+        }
+        catch (IOException e) {
+            throw new CompileEnvironmentException("Failed to generate jar file", e);
+        }
+        finally {
+            writer.abort();
+        }
+    }
+
+    private static void writeEntry(JarOutputStream stream, String name, byte[] content, boolean storeOnly) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        if (storeOnly) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        stream.putNextEntry(entry);
+        stream.write(content);
+    }
+
     public static void writeToJar(File jarPath, boolean jarRuntime, FqName mainClass, OutputFileCollection outputFiles) {
+        writeToJar(jarPath, jarRuntime, mainClass, outputFiles, false, false);
+    }
+
+    /**
+     * @param parallel compress entries on all available processors, see {@link ParallelJarWriter} (no ZIP64 support)
+     * @param storeOnly do not compress entries at all, e.g. for intermediate jars which are only read by other tools
+     */
+    public static void writeToJar(
+            File jarPath,
+            boolean jarRuntime,
+            FqName mainClass,
+            OutputFileCollection outputFiles,
+            boolean parallel,
+            boolean storeOnly
+    ) {
         FileOutputStream outputStream = null;
         try {
             outputStream = new FileOutputStream(jarPath);
-            doWriteToJar(outputFiles, outputStream, mainClass, jarRuntime);
+            if (parallel) {
+                doWriteToJarInParallel(outputFiles, outputStream, mainClass, jarRuntime, storeOnly);
+            }
+            else {
+                doWriteToJar(outputFiles, outputStream, mainClass, jarRuntime, storeOnly);
+            }
             outputStream.close();
         }
         catch (FileNotFoundException e) {
@@ -117,13 +192,32 @@ public class CompileEnvironmentUtil {
         }
     }
 
-    private static void writeRuntimeToJar(JarOutputStream stream) throws IOException {
-        File runtimePath = PathUtil.getKotlinPathsForCompiler().getRuntimePath();
-        if (!runtimePath.exists()) {
-            throw new CompileEnvironmentException("Couldn't find runtime library");
+    private static void writeRuntimeToJar(JarOutputStream stream, boolean storeOnly) throws IOException {
+        JarInputStream jis = new JarInputStream(new FileInputStream(getRuntimePath()));
+        try {
+            while (true) {
+                JarEntry e = jis.getNextJarEntry();
+                if (e == null) {
+                    break;
+                }
+                if (FileUtilRt.extensionEquals(e.getName(), "class")) {
+                    if (storeOnly) {
+                        writeEntry(stream, e.getName(), FileUtil.loadBytes(jis), true);
+                    }
+                    else {
+                        stream.putNextEntry(e);
+                        FileUtil.copy(jis, stream);
+                    }
+                }
+            }
+        }
+        finally {
+            jis.close();
         }
+    }
 
-        JarInputStream jis = new JarInputStream(new FileInputStream(runtimePath));
+    private static void writeRuntimeToJar(ParallelJarWriter writer) throws IOException {
+        JarInputStream jis = new JarInputStream(new FileInputStream(getRuntimePath()));
         try {
             while (true) {
                 JarEntry e = jis.getNextJarEntry();
@@ -131,8 +225,7 @@ public class CompileEnvironmentUtil {
                     break;
                 }
                 if (FileUtilRt.extensionEquals(e.getName(), "class")) {
-                    stream.putNextEntry(e);
-                    FileUtil.copy(jis, stream);
+                    writer.addEntry(e.getName(), FileUtil.loadBytes(jis));
                 }
             }
         }
@@ -141,6 +234,15 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    @NotNull
+    private static File getRuntimePath() {
+        File runtimePath = PathUtil.getKotlinPathsForCompiler().getRuntimePath();
+        if (!runtimePath.exists()) {
+            throw new CompileEnvironmentException("Couldn't find runtime library");
+        }
+        return runtimePath;
+    }
+
     @NotNull
     public static List<KtFile> getKtFiles(
             @NotNull final Project project,
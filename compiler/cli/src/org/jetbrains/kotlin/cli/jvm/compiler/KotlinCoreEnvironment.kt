@@ -136,6 +136,10 @@ class KotlinCoreEnvironment private constructor(
             }
         })
 
+        if (configuration.getBoolean(JVMConfigurationKeys.PARALLEL_PARSING)) {
+            ParallelSourceParser.parse(sourceFiles, Runtime.getRuntime().availableProcessors())
+        }
+
         KotlinScriptDefinitionProvider.getInstance(project).let { scriptDefinitionProvider ->
             scriptDefinitionProvider.setScriptDefinitions(
                     configuration.getList(JVMConfigurationKeys.SCRIPT_DEFINITIONS)
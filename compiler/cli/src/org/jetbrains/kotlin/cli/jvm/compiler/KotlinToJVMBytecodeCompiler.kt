@@ -85,31 +85,67 @@ object KotlinToJVMBytecodeCompiler {
     private fun writeOutput(
             configuration: CompilerConfiguration,
             outputFiles: OutputFileCollection,
-            mainClass: FqName?
+            mainClass: FqName?,
+            writtenOutputs: MutableCollection<String>? = null
     ) {
         val jarPath = configuration.get(JVMConfigurationKeys.OUTPUT_JAR)
         if (jarPath != null) {
             val includeRuntime = configuration.get(JVMConfigurationKeys.INCLUDE_RUNTIME, false)
-            CompileEnvironmentUtil.writeToJar(jarPath, includeRuntime, mainClass, outputFiles)
+            val storeOnly = configuration.get(JVMConfigurationKeys.NO_JAR_COMPRESSION, false)
+            val parallel = configuration.get(JVMConfigurationKeys.PARALLEL_JAR_COMPRESSION, false)
+            CompileEnvironmentUtil.writeToJar(jarPath, includeRuntime, mainClass, outputFiles, parallel, storeOnly)
             return
         }
 
         val outputDir = configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) ?: File(".")
         val messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
         outputFiles.writeAll(outputDir, messageCollector)
+        if (writtenOutputs != null) {
+            outputFiles.asList().mapTo(writtenOutputs) { it.relativePath }
+        }
     }
 
-    private fun createOutputFilesFlushingCallbackIfPossible(configuration: CompilerConfiguration): GenerationStateEventCallback {
-        if (configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) == null) {
-            return GenerationStateEventCallback.DO_NOTHING
+    private fun createOutputFilesFlushingCallbackIfPossible(
+            configuration: CompilerConfiguration,
+            writtenOutputs: MutableCollection<String>?,
+            stagedJarOutput: StagedJarOutput?
+    ): GenerationStateEventCallback {
+        if (stagedJarOutput != null) {
+            return GenerationStateEventCallback { state ->
+                state.factory.setReleasedOutputLoader { relativePath -> stagedJarOutput.load(relativePath) }
+                stagedJarOutput.stage(SimpleOutputFileCollection(state.factory.currentOutput))
+                state.factory.releaseGeneratedOutput()
+            }
         }
+
+        val outputDirectory = configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) ?: return GenerationStateEventCallback.DO_NOTHING
+        val streamOutput = configuration.getBoolean(JVMConfigurationKeys.STREAM_OUTPUT)
         return GenerationStateEventCallback { state ->
+            if (streamOutput) {
+                state.factory.setReleasedOutputLoader { relativePath -> File(outputDirectory, relativePath).readBytesOrNull() }
+            }
             val currentOutput = SimpleOutputFileCollection(state.factory.currentOutput)
-            writeOutput(configuration, currentOutput, mainClass = null)
+            writeOutput(configuration, currentOutput, mainClass = null, writtenOutputs = writtenOutputs)
             state.factory.releaseGeneratedOutput()
         }
     }
 
+    private fun File.readBytesOrNull(): ByteArray? = if (isFile) readBytes() else null
+
+    private fun createStagedJarOutputIfNeeded(configuration: CompilerConfiguration): StagedJarOutput? {
+        if (!configuration.getBoolean(JVMConfigurationKeys.STREAM_OUTPUT)) return null
+        val jarPath = configuration.get(JVMConfigurationKeys.OUTPUT_JAR) ?: return null
+        return StagedJarOutput(jarPath)
+    }
+
+    private fun createAnalysisCacheIfPossible(configuration: CompilerConfiguration): AnalysisResultCache? {
+        val cacheDirectory = configuration.get(JVMConfigurationKeys.ANALYSIS_CACHE_DIRECTORY) ?: return null
+        if (configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) == null || configuration.get(JVMConfigurationKeys.OUTPUT_JAR) != null) {
+            return null
+        }
+        return AnalysisResultCache(cacheDirectory)
+    }
+
     fun compileModules(environment: KotlinCoreEnvironment, directory: File): Boolean {
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
@@ -204,16 +240,41 @@ object KotlinToJVMBytecodeCompiler {
 
         if (!checkKotlinPackageUsage(environment, environment.getSourceFiles())) return false
 
-        val generationState = analyzeAndGenerate(environment) ?: return false
-
-        val mainClass = findMainClass(generationState, environment.getSourceFiles())
+        val configuration = environment.configuration
+        val analysisCache = createAnalysisCacheIfPossible(configuration)
+        val cacheInputs = analysisCache?.computeInputs(environment)
+        if (analysisCache != null && cacheInputs != null) {
+            val numberOfFiles = cacheInputs.sourceHashes.size
+            if (analysisCache.isUpToDate(cacheInputs, configuration.getNotNull(JVMConfigurationKeys.OUTPUT_DIRECTORY))) {
+                K2JVMCompiler.reportPerf(configuration, "ANALYSIS CACHE: $numberOfFiles files are up to date, compilation skipped")
+                return true
+            }
+            val changedFiles = analysisCache.changedSourceFiles(cacheInputs)
+            K2JVMCompiler.reportPerf(configuration, "ANALYSIS CACHE: ${changedFiles.size} of $numberOfFiles files changed, compiling all files")
+            analysisCache.clean()
+        }
 
+        val writtenOutputs = if (cacheInputs != null) linkedSetOf<String>() else null
+        val stagedJarOutput = createStagedJarOutputIfNeeded(configuration)
         try {
-            writeOutput(environment.configuration, generationState.factory, mainClass)
-            return true
+            val generationState = analyzeAndGenerate(environment, writtenOutputs, stagedJarOutput) ?: return false
+
+            val mainClass = findMainClass(generationState, environment.getSourceFiles())
+
+            try {
+                val outputFiles = stagedJarOutput?.withRemainingOutput(generationState.factory) ?: generationState.factory
+                writeOutput(configuration, outputFiles, mainClass, writtenOutputs)
+                if (analysisCache != null && cacheInputs != null && writtenOutputs != null) {
+                    analysisCache.save(cacheInputs, writtenOutputs)
+                }
+                return true
+            }
+            finally {
+                generationState.destroy()
+            }
         }
         finally {
-            generationState.destroy()
+            stagedJarOutput?.dispose()
         }
     }
 
@@ -358,14 +419,20 @@ object KotlinToJVMBytecodeCompiler {
         }
     }
 
-    fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? {
+    fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? = analyzeAndGenerate(environment, null, null)
+
+    private fun analyzeAndGenerate(
+            environment: KotlinCoreEnvironment,
+            writtenOutputs: MutableCollection<String>?,
+            stagedJarOutput: StagedJarOutput?
+    ): GenerationState? {
         val result = analyze(environment, null) ?: return null
 
         if (!result.shouldGenerateCode) return null
 
         result.throwIfError()
 
-        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null)
+        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null, writtenOutputs, stagedJarOutput)
     }
 
     private fun analyze(environment: KotlinCoreEnvironment, targetDescription: String?): AnalysisResult? {
@@ -414,7 +481,9 @@ object KotlinToJVMBytecodeCompiler {
             configuration: CompilerConfiguration,
             result: AnalysisResult,
             sourceFiles: List<KtFile>,
-            module: Module?
+            module: Module?,
+            writtenOutputs: MutableCollection<String>? = null,
+            stagedJarOutput: StagedJarOutput? = null
     ): GenerationState {
         val generationState = GenerationState(
                 environment.project,
@@ -427,7 +496,7 @@ object KotlinToJVMBytecodeCompiler {
                 module?.let(::TargetId),
                 module?.let { it.getModuleName() },
                 module?.let { File(it.getOutputDirectory()) },
-                createOutputFilesFlushingCallbackIfPossible(configuration)
+                createOutputFilesFlushingCallbackIfPossible(configuration, writtenOutputs, stagedJarOutput)
         )
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
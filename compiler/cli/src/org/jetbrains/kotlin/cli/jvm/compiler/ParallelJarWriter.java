@@ -0,0 +1,296 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a jar (zip) archive, compressing entries on a thread pool.
+ *
+ * Entries are written to the stream in the order they were added, as soon as all preceding entries are compressed,
+ * and the central directory is assembled in {@link #finish()}. The number of entries being compressed at the same time
+ * is bounded, so that uncompressed contents do not pile up in memory.
+ *
+ * ZIP64 is not supported: an {@link IOException} is thrown if the archive would contain 65535 entries or more,
+ * or if it would grow beyond 4 Gb. Like {@link java.util.zip.ZipOutputStream}, duplicate entry names are rejected.
+ */
+public class ParallelJarWriter {
+    public static final int MAX_ENTRIES = 0xFFFF;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION = 20;
+    private static final int FLAG_UTF8_NAMES = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final CountingOutputStream out;
+    private final boolean storeOnly;
+    private final ExecutorService executor;
+    private final int maxEntriesInFlight;
+    private final ArrayDeque<Future<CompressedEntry>> pending = new ArrayDeque<Future<CompressedEntry>>();
+    private final List<CentralDirectoryRecord> centralDirectory = new ArrayList<CentralDirectoryRecord>();
+    private final Set<String> names = new HashSet<String>();
+    private final int dosTime;
+    private final int dosDate;
+
+    public ParallelJarWriter(@NotNull OutputStream out, boolean storeOnly, int threads) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.storeOnly = storeOnly;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.maxEntriesInFlight = threads * 4;
+
+        Calendar calendar = Calendar.getInstance();
+        dosTime = (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+        dosDate = ((calendar.get(Calendar.YEAR) - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5) | calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    public void addEntry(@NotNull final String name, @NotNull final byte[] content) throws IOException {
+        if (centralDirectory.size() + pending.size() >= MAX_ENTRIES) {
+            throw new IOException("Too many entries in a jar file, ZIP64 is not supported: " + name);
+        }
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+
+        pending.addLast(executor.submit(new Callable<CompressedEntry>() {
+            @Override
+            public CompressedEntry call() {
+                return compress(name, content);
+            }
+        }));
+
+        while (!pending.isEmpty() && (pending.size() > maxEntriesInFlight || pending.peekFirst().isDone())) {
+            writeEntry(await(pending.removeFirst()));
+        }
+    }
+
+    public void finish() throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                writeEntry(await(pending.removeFirst()));
+            }
+            writeCentralDirectory();
+            out.flush();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void abort() {
+        executor.shutdownNow();
+    }
+
+    @NotNull
+    private CompressedEntry compress(@NotNull String name, @NotNull byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        if (storeOnly) {
+            return new CompressedEntry(name, METHOD_STORED, crc.getValue(), content.length, content, content.length);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(content.length / 2, 64));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+            byte[] data = compressed.toByteArray();
+            return new CompressedEntry(name, METHOD_DEFLATED, crc.getValue(), content.length, data, data.length);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private void writeEntry(@NotNull CompressedEntry entry) throws IOException {
+        byte[] name = entry.name.getBytes(UTF_8);
+        long offset = out.getCount();
+        checkSize(offset + name.length + entry.compressedSize, entry.name);
+
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(FLAG_UTF8_NAMES);
+        writeShort(entry.method);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt((int) entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        writeShort(name.length);
+        writeShort(0);
+        out.write(name);
+        out.write(entry.data, 0, entry.compressedSize);
+
+        centralDirectory.add(new CentralDirectoryRecord(name, entry.method, entry.crc, entry.compressedSize, entry.size, offset));
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = out.getCount();
+        for (CentralDirectoryRecord record : centralDirectory) {
+            writeInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+            writeShort(VERSION);
+            writeShort(VERSION);
+            writeShort(FLAG_UTF8_NAMES);
+            writeShort(record.method);
+            writeShort(dosTime);
+            writeShort(dosDate);
+            writeInt((int) record.crc);
+            writeInt(record.compressedSize);
+            writeInt(record.size);
+            writeShort(record.name.length);
+            writeShort(0); // extra field length
+            writeShort(0); // comment length
+            writeShort(0); // disk number
+            writeShort(0); // internal attributes
+            writeInt(0);   // external attributes
+            writeInt((int) record.offset);
+            out.write(record.name);
+        }
+        long size = out.getCount() - start;
+        checkSize(out.getCount(), "central directory");
+
+        writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(centralDirectory.size());
+        writeShort(centralDirectory.size());
+        writeInt((int) size);
+        writeInt((int) start);
+        writeShort(0);
+    }
+
+    private static void checkSize(long size, @NotNull String what) throws IOException {
+        if (size > MAX_SIZE) {
+            throw new IOException("Jar file is larger than 4 Gb, ZIP64 is not supported: " + what);
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & 0xFFFF);
+        writeShort((value >>> 16) & 0xFFFF);
+    }
+
+    @NotNull
+    private static CompressedEntry await(@NotNull Future<CompressedEntry> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing a jar file", e);
+        }
+        catch (ExecutionException e) {
+            throw ExceptionUtilsKt.rethrow(e.getCause());
+        }
+    }
+
+    private static class CompressedEntry {
+        final String name;
+        final int method;
+        final long crc;
+        final int size;
+        final byte[] data;
+        final int compressedSize;
+
+        CompressedEntry(String name, int method, long crc, int size, byte[] data, int compressedSize) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    private static class CentralDirectoryRecord {
+        final byte[] name;
+        final int method;
+        final long crc;
+        final int compressedSize;
+        final int size;
+        final long offset;
+
+        CentralDirectoryRecord(byte[] name, int method, long crc, int compressedSize, int size, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private long count = 0;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.Computable
+import org.jetbrains.kotlin.psi.KtFile
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+
+/**
+ * Builds the syntax trees of source files on a thread pool, so that lexing and parsing of a large module
+ * is not done one file at a time during analysis.
+ *
+ * PSI files must be created on the calling thread: virtual file lookup and view provider creation fill caches of the
+ * file manager which are not meant to be updated concurrently. Loading the tree of a file only touches that file,
+ * and the lazy file element is parsed under its own lock, so files can be parsed independently of each other.
+ */
+object ParallelSourceParser {
+    fun parse(files: Collection<KtFile>, threads: Int) {
+        if (files.size < 2 || threads < 2) {
+            files.forEach { parse(it) }
+            return
+        }
+
+        val executor = Executors.newFixedThreadPool(minOf(threads, files.size))
+        try {
+            val futures = files.map { file -> executor.submit(Callable { parse(file) }) }
+            for (future in futures) {
+                try {
+                    future.get()
+                }
+                catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun parse(file: KtFile) {
+        // Loading a tree requires read access like any other PSI access off the creating thread.
+        // Read actions of different threads do not exclude each other, and nothing takes the write lock during compilation,
+        // so the workers never wait for each other here. The file element is created lazily, asking for its children parses the whole file.
+        ApplicationManager.getApplication().runReadAction(Computable {
+            file.node.firstChildNode
+        })
+    }
+}
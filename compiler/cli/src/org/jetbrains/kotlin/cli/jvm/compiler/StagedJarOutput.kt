@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.kotlin.backend.common.output.OutputFile
+import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection
+import java.io.File
+
+/**
+ * Keeps classes generated for a .jar destination on disk instead of in memory:
+ * every independent part is written to a temporary directory as soon as it is generated,
+ * and the jar is assembled from these files (in generation order) when code generation is over.
+ */
+class StagedJarOutput(jarPath: File) {
+    private val stagingDirectory = FileUtil.createTempDirectory(jarPath.absoluteFile.parentFile, jarPath.name, ".classes", true)
+    private val stagedFiles = linkedMapOf<String, StagedOutputFile>()
+
+    fun stage(outputFiles: OutputFileCollection) {
+        for (outputFile in outputFiles.asList()) {
+            val file = File(stagingDirectory, outputFile.relativePath)
+            FileUtil.writeToFile(file, outputFile.asByteArray())
+            stagedFiles[outputFile.relativePath] = StagedOutputFile(outputFile.relativePath, outputFile.sourceFiles, file)
+        }
+    }
+
+    fun load(relativePath: String): ByteArray? = stagedFiles[relativePath]?.asByteArray()
+
+    /**
+     * All staged files followed by the outputs which have not been released yet, such as the module mapping file.
+     */
+    fun withRemainingOutput(remaining: OutputFileCollection): OutputFileCollection =
+            SimpleOutputFileCollection(stagedFiles.values.toList() + remaining.asList())
+
+    fun dispose() {
+        FileUtil.delete(stagingDirectory)
+    }
+
+    private class StagedOutputFile(
+            override val relativePath: String,
+            override val sourceFiles: List<File>,
+            private val file: File
+    ) : OutputFile {
+        override fun asByteArray(): ByteArray = file.readBytes()
+        override fun asText(): String = String(asByteArray())
+        override fun toString() = "$relativePath (compiled from $sourceFiles)"
+    }
+}
@@ -121,18 +121,12 @@ class CliReplAnalyzerEngine(environment: KotlinCoreEnvironment) {
 
     private class ScriptMutableDeclarationProviderFactory : DeclarationProviderFactory {
         private lateinit var delegateFactory: DeclarationProviderFactory
-        private lateinit var rootPackageProvider: AdaptablePackageMemberDeclarationProvider
+        private val rootPackageProvider = ReplPackageMemberDeclarationProvider()
 
         fun setDelegateFactory(delegateFactory: DeclarationProviderFactory) {
             this.delegateFactory = delegateFactory
 
-            val provider = delegateFactory.getPackageMemberDeclarationProvider(FqName.ROOT)!!
-            try {
-                rootPackageProvider.addDelegateProvider(provider)
-            }
-            catch (e: UninitializedPropertyAccessException) {
-                rootPackageProvider = AdaptablePackageMemberDeclarationProvider(provider)
-            }
+            rootPackageProvider.addLineProvider(delegateFactory.getPackageMemberDeclarationProvider(FqName.ROOT)!!)
         }
 
         override fun getClassMemberDeclarationProvider(classLikeInfo: KtClassLikeInfo): ClassMemberDeclarationProvider {
@@ -150,15 +144,5 @@ class CliReplAnalyzerEngine(environment: KotlinCoreEnvironment) {
         override fun diagnoseMissingPackageFragment(file: KtFile) {
             delegateFactory.diagnoseMissingPackageFragment(file)
         }
-
-        class AdaptablePackageMemberDeclarationProvider(
-                private var delegateProvider: PackageMemberDeclarationProvider
-        ) : DelegatePackageMemberDeclarationProvider(delegateProvider) {
-            fun addDelegateProvider(provider: PackageMemberDeclarationProvider) {
-                delegateProvider = CombinedPackageMemberDeclarationProvider(listOf(provider, delegateProvider))
-
-                delegate = delegateProvider
-            }
-        }
     }
 }
@@ -115,7 +115,7 @@ class ReplInterpreter(
                 analyzerEngine.trace.bindingContext, listOf(psiFile), configuration
         )
 
-        compileScript(psiFile.script!!, earlierLines.map(EarlierLine::getScriptDescriptor), state, CompilationErrorHandler.THROW_EXCEPTION)
+        compileScript(psiFile.script!!, state, CompilationErrorHandler.THROW_EXCEPTION)
 
         for (outputFile in state.factory.asList()) {
             if (outputFile.relativePath.endsWith(".class")) {
@@ -127,12 +127,10 @@ class ReplInterpreter(
         try {
             val scriptClass = classLoader.loadClass("Line$lineNumber")
 
-            val constructorParams = earlierLines.map(EarlierLine::getScriptClass).toTypedArray()
-            val constructorArgs = earlierLines.map(EarlierLine::getScriptInstance).toTypedArray()
-
-            val scriptInstanceConstructor = scriptClass.getConstructor(*constructorParams)
+            // Earlier lines are reached through their static instance fields, so the constructor has no parameters
+            val scriptInstanceConstructor = scriptClass.getConstructor()
             val scriptInstance = try {
-                executeUserCode { scriptInstanceConstructor.newInstance(*constructorArgs) }
+                executeUserCode { scriptInstanceConstructor.newInstance() }
             }
             catch (e: Throwable) {
                 // ignore everything in the stack trace until this constructor call
@@ -179,6 +177,7 @@ class ReplInterpreter(
 
     companion object {
         private val SCRIPT_RESULT_FIELD_NAME = "\$\$result"
+        private val SCRIPT_INSTANCE_FIELD_NAME = "\$\$instance"
         private val REPL_LINE_AS_SCRIPT_DEFINITION = object : KotlinScriptDefinition {
             override val name = "Kotlin REPL"
 
@@ -211,12 +210,11 @@ class ReplInterpreter(
 
         fun compileScript(
                 script: KtScript,
-                earlierScripts: List<ScriptDescriptor>,
                 state: GenerationState,
                 errorHandler: CompilationErrorHandler
         ) {
             state.replSpecific.scriptResultFieldName = SCRIPT_RESULT_FIELD_NAME
-            state.replSpecific.earlierScriptsForReplInterpreter = earlierScripts.toList()
+            state.replSpecific.scriptInstanceFieldName = SCRIPT_INSTANCE_FIELD_NAME
 
             state.beforeCompile()
             KotlinCodegenFacade.generatePackage(
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.repl
+
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.*
+import org.jetbrains.kotlin.resolve.lazy.ResolveSessionUtils.safeNameForLazyResolve
+import org.jetbrains.kotlin.resolve.lazy.declarations.PackageMemberDeclarationProvider
+import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
+import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import java.util.*
+
+/**
+ * Root package declarations of all REPL lines submitted so far.
+ *
+ * Every line is indexed by the names it declares when it is added, so a lookup by name only asks the lines which declare
+ * that name, instead of walking a chain of providers with one link per earlier line.
+ * Later lines come first, the same way as they would in a combined provider built line by line.
+ */
+class ReplPackageMemberDeclarationProvider : PackageMemberDeclarationProvider {
+    private val lineProviders = ArrayList<PackageMemberDeclarationProvider>()
+    private val providersByName = HashMap<Name, MutableList<PackageMemberDeclarationProvider>>()
+    private val allDeclarations = ArrayList<KtDeclaration>()
+    private val packageFiles = ArrayList<KtFile>()
+
+    fun addLineProvider(provider: PackageMemberDeclarationProvider) {
+        lineProviders.add(provider)
+
+        val declarations = provider.getDeclarations(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
+        for (declaration in declarations) {
+            val name = declaration.nameForIndex() ?: continue
+            val providers = providersByName.getOrPut(name) { ArrayList(1) }
+            if (providers.lastOrNull() !== provider) {
+                providers.add(provider)
+            }
+        }
+        allDeclarations.addAll(declarations.asReversed())
+        packageFiles.addAll(provider.getPackageFiles())
+    }
+
+    private fun KtDeclaration.nameForIndex(): Name? =
+            when (this) {
+                is KtScript -> nameAsName
+                is KtNamedDeclaration -> safeNameForLazyResolve(nameAsName)
+                else -> null
+            }
+
+    private fun providersFor(name: Name): List<PackageMemberDeclarationProvider> =
+            providersByName[safeNameForLazyResolve(name)]?.asReversed() ?: emptyList()
+
+    override fun getAllDeclaredSubPackages(nameFilter: (Name) -> Boolean): Collection<FqName> =
+            lineProviders.asReversed().flatMap { it.getAllDeclaredSubPackages(nameFilter) }
+
+    // Both return copies: lines may be added while the result is being iterated
+    override fun getPackageFiles(): Collection<KtFile> = packageFiles.asReversed().toList()
+
+    override fun getDeclarations(kindFilter: DescriptorKindFilter, nameFilter: (Name) -> Boolean): List<KtDeclaration> =
+            allDeclarations.asReversed().filter { declaration ->
+                val name = declaration.nameForIndex()
+                kindFilter.acceptsKinds(declaration.kindMask()) && (name == null || nameFilter(name))
+            }
+
+    private fun KtDeclaration.kindMask(): Int =
+            when (this) {
+                is KtNamedFunction -> DescriptorKindFilter.FUNCTIONS_MASK
+                is KtProperty -> DescriptorKindFilter.VARIABLES_MASK
+                is KtObjectDeclaration -> DescriptorKindFilter.SINGLETON_CLASSIFIERS_MASK
+                is KtClassOrObject, is KtTypeAlias, is KtScript -> DescriptorKindFilter.NON_SINGLETON_CLASSIFIERS_MASK
+                else -> DescriptorKindFilter.ALL_KINDS_MASK
+            }
+
+    override fun getFunctionDeclarations(name: Name): Collection<KtNamedFunction> =
+            providersFor(name).flatMap { it.getFunctionDeclarations(name) }
+
+    override fun getPropertyDeclarations(name: Name): Collection<KtProperty> =
+            providersFor(name).flatMap { it.getPropertyDeclarations(name) }
+
+    override fun getClassOrObjectDeclarations(name: Name) =
+            providersFor(name).flatMap { it.getClassOrObjectDeclarations(name) }
+
+    override fun getTypeAliasDeclarations(name: Name): Collection<KtTypeAlias> =
+            providersFor(name).flatMap { it.getTypeAliasDeclarations(name) }
+}
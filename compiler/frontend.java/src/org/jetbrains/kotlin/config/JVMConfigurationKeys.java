@@ -39,6 +39,10 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("output .jar");
     public static final CompilerConfigurationKey<Boolean> INCLUDE_RUNTIME =
             CompilerConfigurationKey.create("include runtime to the resulting .jar");
+    public static final CompilerConfigurationKey<Boolean> NO_JAR_COMPRESSION =
+            CompilerConfigurationKey.create("store entries of the resulting .jar without compression");
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_JAR_COMPRESSION =
+            CompilerConfigurationKey.create("compress entries of the resulting .jar in parallel");
 
     public static final CompilerConfigurationKey<List<KotlinScriptDefinition>> SCRIPT_DEFINITIONS =
             CompilerConfigurationKey.create("script definitions");
@@ -60,6 +64,9 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<JvmTarget> JVM_TARGET =
             CompilerConfigurationKey.create("JVM bytecode target version");
 
+    public static final CompilerConfigurationKey<File> JDK_HOME =
+            CompilerConfigurationKey.create("JDK home directory");
+
     public static final CompilerConfigurationKey<IncrementalCompilationComponents> INCREMENTAL_COMPILATION_COMPONENTS =
             CompilerConfigurationKey.create("incremental cache provider");
 
@@ -77,4 +84,13 @@ public class JVMConfigurationKeys {
 
     public static final CompilerConfigurationKey<List<String>> FRIEND_PATHS =
             CompilerConfigurationKey.create("friend module paths");
+
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_PARSING =
+            CompilerConfigurationKey.create("parse source files on a thread pool before analysis");
+
+    public static final CompilerConfigurationKey<Boolean> STREAM_OUTPUT =
+            CompilerConfigurationKey.create("write generated classes out as soon as each file is generated");
+
+    public static final CompilerConfigurationKey<File> ANALYSIS_CACHE_DIRECTORY =
+            CompilerConfigurationKey.create("directory to store the inputs of the last compilation in");
 }
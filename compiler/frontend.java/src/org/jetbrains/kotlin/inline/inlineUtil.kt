@@ -25,56 +25,67 @@ import org.jetbrains.kotlin.serialization.jvm.BitEncoding
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBuf
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBuf.JvmMethodSignature
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
+import java.util.*
 
-fun inlineFunctionsJvmNames(header: KotlinClassHeader): Set<String> {
-    val annotationData = header.data ?: return emptySet()
-    val strings = header.strings ?: return emptySet()
+fun inlineFunctionsJvmNames(header: KotlinClassHeader): Set<String> = inlineFunctionsKotlinNames(header).keys
+
+/**
+ * Maps JVM signatures (name + descriptor) of inline functions and inline property accessors declared in the class
+ * to the Kotlin names of the declarations, i.e. the function or the property name.
+ */
+fun inlineFunctionsKotlinNames(header: KotlinClassHeader): Map<String, String> {
+    val annotationData = header.data ?: return emptyMap()
+    val strings = header.strings ?: return emptyMap()
 
     return when (header.kind) {
         KotlinClassHeader.Kind.CLASS -> {
             val (nameResolver, classProto) = JvmProtoBufUtil.readClassDataFrom(BitEncoding.decodeBytes(annotationData), strings)
-            inlineFunctionsJvmNames(classProto.functionList, nameResolver, classProto.typeTable) +
-            inlineAccessorsJvmNames(classProto.propertyList, nameResolver)
+            inlineFunctionsKotlinNames(classProto.functionList, nameResolver, classProto.typeTable) +
+            inlineAccessorsKotlinNames(classProto.propertyList, nameResolver)
         }
         KotlinClassHeader.Kind.FILE_FACADE,
         KotlinClassHeader.Kind.MULTIFILE_CLASS_PART -> {
             val (nameResolver, packageProto) = JvmProtoBufUtil.readPackageDataFrom(BitEncoding.decodeBytes(annotationData), strings)
-            inlineFunctionsJvmNames(packageProto.functionList, nameResolver, packageProto.typeTable) +
-            inlineAccessorsJvmNames(packageProto.propertyList, nameResolver)
+            inlineFunctionsKotlinNames(packageProto.functionList, nameResolver, packageProto.typeTable) +
+            inlineAccessorsKotlinNames(packageProto.propertyList, nameResolver)
         }
-        else -> emptySet()
+        else -> emptyMap()
     }
 }
 
-private fun inlineFunctionsJvmNames(functions: List<ProtoBuf.Function>, nameResolver: NameResolver, protoTypeTable: ProtoBuf.TypeTable): Set<String> {
+private fun inlineFunctionsKotlinNames(
+        functions: List<ProtoBuf.Function>,
+        nameResolver: NameResolver,
+        protoTypeTable: ProtoBuf.TypeTable
+): Map<String, String> {
     val typeTable = TypeTable(protoTypeTable)
-    val inlineFunctions = functions.filter { Flags.IS_INLINE.get(it.flags) }
-    val jvmNames = inlineFunctions.mapNotNull {
-        JvmProtoBufUtil.getJvmMethodSignature(it, nameResolver, typeTable)
+    val result = LinkedHashMap<String, String>()
+    for (function in functions) {
+        if (!Flags.IS_INLINE.get(function.flags)) continue
+
+        val jvmName = JvmProtoBufUtil.getJvmMethodSignature(function, nameResolver, typeTable) ?: continue
+        result[jvmName] = nameResolver.getString(function.name)
     }
-    return jvmNames.toSet()
+    return result
 }
 
-private fun inlineAccessorsJvmNames(properties: List<ProtoBuf.Property>, nameResolver: NameResolver): Set<String> {
-    val propertiesWithInlineAccessors = properties.filter { proto ->
-        proto.hasGetterFlags() && Flags.IS_INLINE_ACCESSOR.get(proto.getterFlags) ||
-        proto.hasSetterFlags() && Flags.IS_INLINE_ACCESSOR.get(proto.setterFlags)
-    }
-    val inlineAccessors = arrayListOf<JvmMethodSignature>()
-    propertiesWithInlineAccessors.forEach { proto ->
-        if (proto.hasExtension(JvmProtoBuf.propertySignature)) {
-            val signature = proto.getExtension(JvmProtoBuf.propertySignature)
-            if (proto.hasGetterFlags() && Flags.IS_INLINE_ACCESSOR.get(proto.getterFlags)) {
-                inlineAccessors.add(signature.getter)
-            }
+private fun inlineAccessorsKotlinNames(properties: List<ProtoBuf.Property>, nameResolver: NameResolver): Map<String, String> {
+    val result = LinkedHashMap<String, String>()
+    for (proto in properties) {
+        if (!proto.hasExtension(JvmProtoBuf.propertySignature)) continue
 
-            if (proto.hasSetterFlags() && Flags.IS_INLINE_ACCESSOR.get(proto.setterFlags)) {
-                inlineAccessors.add(signature.setter)
-            }
+        val signature = proto.getExtension(JvmProtoBuf.propertySignature)
+        val inlineAccessors = arrayListOf<JvmMethodSignature>()
+        if (proto.hasGetterFlags() && Flags.IS_INLINE_ACCESSOR.get(proto.getterFlags)) {
+            inlineAccessors.add(signature.getter)
+        }
+        if (proto.hasSetterFlags() && Flags.IS_INLINE_ACCESSOR.get(proto.setterFlags)) {
+            inlineAccessors.add(signature.setter)
         }
-    }
 
-    return inlineAccessors.mapNotNull {
-        nameResolver.getString(it.name) + nameResolver.getString(it.desc)
-    }.toSet()
+        for (accessor in inlineAccessors) {
+            result[nameResolver.getString(accessor.name) + nameResolver.getString(accessor.desc)] = nameResolver.getString(proto.name)
+        }
+    }
+    return result
 }
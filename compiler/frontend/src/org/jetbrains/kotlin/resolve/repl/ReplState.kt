@@ -17,9 +17,11 @@
 package org.jetbrains.kotlin.resolve.repl
 
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtImportDirective
 import org.jetbrains.kotlin.resolve.lazy.FileScopeFactory
 import org.jetbrains.kotlin.resolve.lazy.FileScopes
 import org.jetbrains.kotlin.resolve.lazy.FileScopesCustomizer
+import org.jetbrains.kotlin.resolve.lazy.ImportResolver
 import org.jetbrains.kotlin.resolve.lazy.descriptors.LazyScriptDescriptor
 import org.jetbrains.kotlin.resolve.lazy.fileScopesCustomizer
 import org.jetbrains.kotlin.resolve.scopes.ImportingScope
@@ -70,8 +72,20 @@ class ReplState {
         // create scope that wraps previous line lexical scope and adds imports from this line
         val lexicalScopeAfterLastLine = lineInfo.parentLine?.lineDescriptor?.scopeForInitializerResolution ?: return null
         val lastLineImports = lexicalScopeAfterLastLine.parentsWithSelf.firstIsInstance<ImportingScope>()
+
+        // A line without imports sees exactly what the previous line sees. Reusing its importing scopes keeps the chain
+        // from growing by a full set of default import scopes with every line, which lookups missing in all of them walked
+        if (lineInfo.linePsi.importDirectives.isEmpty()) {
+            return FileScopes(lexicalScopeAfterLastLine, lastLineImports, NoImportsResolver)
+        }
+
         val scopesForThisLine = fileScopeFactory.createScopesForFile(lineInfo.linePsi, lastLineImports)
         val combinedLexicalScopes = lexicalScopeAfterLastLine.replaceImportingScopes(scopesForThisLine.importingScope)
         return FileScopes(combinedLexicalScopes, scopesForThisLine.importingScope, scopesForThisLine.importResolver)
     }
+
+    private object NoImportsResolver : ImportResolver {
+        override fun forceResolveAllImports() {}
+        override fun forceResolveImport(importDirective: KtImportDirective) {}
+    }
 }
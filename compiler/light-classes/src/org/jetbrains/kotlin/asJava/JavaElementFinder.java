@@ -207,6 +207,16 @@ public class JavaElementFinder extends PsiElementFinder implements KotlinFinderM
         return sortByClasspath(answer, scope).toArray(new PsiClass[answer.size()]);
     }
 
+    /**
+     * Same as {@link #getClasses(PsiPackage, GlobalSearchScope)}, but builds the stubs of all classes of the package at once first.
+     * Only for callers which are going to use every class of the package, {@code getClasses} itself stays lazy.
+     */
+    @NotNull
+    public PsiClass[] getClassesWithStubs(@NotNull PsiPackage psiPackage, @NotNull GlobalSearchScope scope) {
+        PackageLightClassStubsKt.buildLightClassStubsForPackage(project, new FqName(psiPackage.getQualifiedName()), scope);
+        return getClasses(psiPackage, scope);
+    }
+
     @Override
     @NotNull
     public PsiFile[] getPackageFiles(@NotNull PsiPackage psiPackage, @NotNull GlobalSearchScope scope) {
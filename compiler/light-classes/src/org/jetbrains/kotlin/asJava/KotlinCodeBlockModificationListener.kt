@@ -27,6 +27,7 @@ import com.intellij.pom.tree.events.TreeChangeEvent
 import com.intellij.psi.PsiElement
 import com.intellij.psi.impl.PsiModificationTrackerImpl
 import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.util.containers.ContainerUtil
 import org.jetbrains.kotlin.psi.*
 import org.jetbrains.kotlin.psi.psiUtil.isAncestor
 import org.jetbrains.kotlin.psi.psiUtil.parents
@@ -39,6 +40,15 @@ class KotlinCodeBlockModificationListener(
         project: Project,
         private val treeAspect: TreeAspect
 ) {
+    private val outOfBlockModificationListeners = ContainerUtil.createLockFreeCopyOnWriteList<(KtFile) -> Unit>()
+
+    /**
+     * [listener] is notified about every out-of-block modification of a physical Kotlin file
+     */
+    fun addOutOfBlockModificationListener(listener: (KtFile) -> Unit) {
+        outOfBlockModificationListeners.add(listener)
+    }
+
     init {
         val model = PomManager.getModel(project)
         @Suppress("NAME_SHADOWING")
@@ -56,12 +66,19 @@ class KotlinCodeBlockModificationListener(
                         modificationTracker.incCounter()
                     }
                     incOutOfBlockModificationCount(file)
+                    if (file.isPhysical) {
+                        outOfBlockModificationListeners.forEach { it(file) }
+                    }
                 }
             }
         })
     }
 
     companion object {
+        @JvmStatic
+        fun getInstance(project: Project): KotlinCodeBlockModificationListener =
+                project.getComponent(KotlinCodeBlockModificationListener::class.java)
+
         private fun incOutOfBlockModificationCount(file: KtFile) {
             val count = file.getUserData(FILE_OUT_OF_BLOCK_MODIFICATION_COUNT) ?: 0
             file.putUserData(FILE_OUT_OF_BLOCK_MODIFICATION_COUNT, count + 1)
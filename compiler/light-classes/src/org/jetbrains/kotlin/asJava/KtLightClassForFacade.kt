@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.asJava
 import com.intellij.openapi.components.ServiceManager
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.Comparing
+import com.intellij.openapi.util.Key
 import com.intellij.psi.*
 import com.intellij.psi.impl.light.LightEmptyImplementsList
 import com.intellij.psi.impl.light.LightModifierList
@@ -27,6 +28,8 @@ import com.intellij.psi.util.CachedValue
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.psi.util.CachedValuesManager
 import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.util.ConcurrencyUtil
+import com.intellij.util.containers.ContainerUtil
 import com.intellij.util.containers.SLRUCache
 import org.jetbrains.annotations.NonNls
 import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
@@ -40,6 +43,7 @@ import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtPsiFactory
 import org.jetbrains.kotlin.psi.KtStringTemplateExpression
 import org.jetbrains.kotlin.psi.psiUtil.siblings
+import java.util.concurrent.ConcurrentMap
 import javax.swing.Icon
 
 class KtLightClassForFacade private constructor(
@@ -51,9 +55,16 @@ class KtLightClassForFacade private constructor(
 
     private data class StubCacheKey(val fqName: FqName, val searchScope: GlobalSearchScope)
 
+    /**
+     * Stubs of facade classes shared by all light classes created for the same facade.
+     *
+     * Facades are looked up by every Java file that refers to them, so the cache is large enough to keep the facades of
+     * a project between out-of-code-block modifications instead of evicting them when many facades are requested in a row.
+     * Stubs of synthetic files are kept on the file and depend on its modification stamp.
+     */
     class FacadeStubCache(private val project: Project) {
         private inner class FacadeCacheData {
-            val cache = object : SLRUCache<StubCacheKey, CachedValue<KotlinFacadeLightClassData>>(20, 30) {
+            val cache = object : SLRUCache<StubCacheKey, CachedValue<KotlinFacadeLightClassData>>(PROTECTED_QUEUE_SIZE, PROBATIONARY_QUEUE_SIZE) {
                 override fun createValue(key: StubCacheKey): CachedValue<KotlinFacadeLightClassData> {
                     val stubProvider = LightClassDataProviderForFileFacade.ByProjectSource(project, key.fqName, key.searchScope)
                     return CachedValuesManager.getManager(project).createCachedValue<KotlinFacadeLightClassData>(stubProvider, /*trackValue = */false)
@@ -71,7 +82,27 @@ class KtLightClassForFacade private constructor(
             }
         }
 
+        fun getForSyntheticFile(facadeFqName: FqName, file: KtFile): CachedValue<KotlinFacadeLightClassData> {
+            val cache = file.getUserData(SYNTHETIC_FILE_FACADE_STUBS)
+                        ?: file.putUserDataIfAbsent(SYNTHETIC_FILE_FACADE_STUBS, ContainerUtil.newConcurrentMap())
+            return cache[facadeFqName] ?: ConcurrencyUtil.cacheOrGet(
+                    cache, facadeFqName,
+                    CachedValuesManager.getManager(project).createCachedValue<KotlinFacadeLightClassData>(
+                            LightClassDataProviderForFileFacade.ByFile(project, facadeFqName, file), /*trackValue = */false
+                    )
+            )
+        }
+
         companion object {
+            private val PROTECTED_QUEUE_SIZE = 200
+            private val PROBATIONARY_QUEUE_SIZE = 300
+
+            // New entries go to the probationary queue, more facades built at once would evict each other
+            val MAX_BATCH_SIZE = PROBATIONARY_QUEUE_SIZE
+
+            private val SYNTHETIC_FILE_FACADE_STUBS =
+                    Key.create<ConcurrentMap<FqName, CachedValue<KotlinFacadeLightClassData>>>("SYNTHETIC_FILE_FACADE_STUBS")
+
             fun getInstance(project: Project): FacadeStubCache {
                 return ServiceManager.getService<FacadeStubCache>(project, FacadeStubCache::class.java)
             }
@@ -250,11 +281,7 @@ class KtLightClassForFacade private constructor(
                 facadeClassFqName: FqName,
                 file: KtFile
         ): KtLightClassForFacade {
-            // TODO: refactor, using cached value doesn't make sense for this case
-            val cachedValue = CachedValuesManager.getManager(manager.project).
-                    createCachedValue<KotlinFacadeLightClassData>(
-                            LightClassDataProviderForFileFacade.ByFile(manager.project, facadeClassFqName, file), /*trackValue = */false
-                    )
+            val cachedValue = FacadeStubCache.getInstance(manager.project).getForSyntheticFile(facadeClassFqName, file)
             return KtLightClassForFacade(manager, facadeClassFqName, cachedValue, listOf(file))
         }
     }
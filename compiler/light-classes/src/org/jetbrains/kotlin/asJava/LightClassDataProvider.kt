@@ -68,11 +68,11 @@ abstract class LightClassDataProvider<T : WithFileStubAndExtraDiagnostics>(
     abstract fun generate(state: GenerationState, files: Collection<KtFile>)
     abstract val isLocal: Boolean
 
+    protected open val dependencies: Array<Any>
+        get() = arrayOf(if (isLocal) PsiModificationTracker.MODIFICATION_COUNT else PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT)
+
     override fun compute(): CachedValueProvider.Result<T>? {
-        return CachedValueProvider.Result.create(
-                computeLightClassData(),
-                if (isLocal) PsiModificationTracker.MODIFICATION_COUNT else PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT
-        )
+        return CachedValueProvider.Result.create(computeLightClassData(), *dependencies)
     }
 
     private fun computeLightClassData(): T {
@@ -355,6 +355,10 @@ sealed class LightClassDataProviderForFileFacade private constructor(
     ) : LightClassDataProviderForFileFacade(project, facadeFqName) {
         override val files: Collection<KtFile>
             get() = listOf(file)
+
+        // Synthetic files are not tracked by the out-of-code-block modification count, their own modification stamp is
+        override val dependencies: Array<Any>
+            get() = arrayOf(file, PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT)
     }
 }
 
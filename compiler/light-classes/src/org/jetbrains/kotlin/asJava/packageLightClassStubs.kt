@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.asJava
+
+import com.intellij.concurrency.JobLauncher
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.Processor
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+
+/**
+ * Builds the stubs of all light classes and file facades of a package at once.
+ *
+ * Java code which refers to many declarations of a package (e.g. through an on-demand import) would otherwise generate
+ * the stubs one by one in the thread doing the resolve. Stubs are built concurrently where the platform allows it
+ * and end up in the same caches which are used for regular light class lookups. Facade stubs are not built in advance
+ * when there are more of them than the facade stub cache can keep.
+ */
+fun buildLightClassStubsForPackage(project: Project, packageFqName: FqName, searchScope: GlobalSearchScope) {
+    val lightClassGenerationSupport = LightClassGenerationSupport.getInstance(project)
+    val facadeStubCache = KtLightClassForFacade.FacadeStubCache.getInstance(project)
+
+    val stubComputations = arrayListOf<() -> Unit>()
+
+    val facadeNames = lightClassGenerationSupport.getFacadeNames(packageFqName, searchScope).toSet()
+    if (facadeNames.size <= KtLightClassForFacade.FacadeStubCache.MAX_BATCH_SIZE) {
+        for (facadeName in facadeNames) {
+            val stub = facadeStubCache[packageFqName.child(Name.identifier(facadeName)), searchScope]
+            stubComputations.add { stub.value }
+        }
+    }
+
+    for (classOrObject in lightClassGenerationSupport.findClassOrObjectDeclarationsInPackage(packageFqName, searchScope)) {
+        stubComputations.add { KtLightClassForExplicitDeclaration.getLightClassData(classOrObject) }
+    }
+
+    if (stubComputations.isEmpty()) return
+
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+            stubComputations,
+            ProgressManager.getInstance().progressIndicator,
+            /* runInReadAction = */ true,
+            /* failFastOnAcquireReadAction = */ false,
+            Processor { computation -> computation(); true }
+    )
+}
@@ -24,6 +24,7 @@ import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 @SuppressWarnings("unchecked")
@@ -46,11 +47,30 @@ public class ClassPreloadingUtils {
             ClassCondition classesToLoadByParent,
             ClassHandler handler
     ) throws IOException {
-        Map<String, Object> entries = loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
+        return preloadClasses(jarFiles, classCountEstimation, parentClassLoader, classesToLoadByParent, handler, false);
+    }
+
+    /**
+     * Same as {@link #preloadClasses(Collection, int, ClassLoader, ClassCondition, ClassHandler)}, but if {@code mapJars} is true,
+     * the jars are memory-mapped, and entries stored in them without compression are not read until they are needed:
+     * classes are defined straight from the mapping. Compressed entries are still inflated into memory in advance.
+     * {@link ClassHandler#instrument(String, byte[])} is called for such classes when they are defined.
+     */
+    public static ClassLoader preloadClasses(
+            Collection<File> jarFiles,
+            int classCountEstimation,
+            ClassLoader parentClassLoader,
+            ClassCondition classesToLoadByParent,
+            ClassHandler handler,
+            boolean mapJars
+    ) throws IOException {
+        Map<String, Object> entries = mapJars
+                                      ? mapAllClassesFromJars(jarFiles, classCountEstimation, handler)
+                                      : loadAllClassesFromJars(jarFiles, classCountEstimation, handler);
 
         Collection<File> classpath = mergeClasspathFromManifests(entries);
         if (!classpath.isEmpty()) {
-            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler);
+            parentClassLoader = preloadClasses(classpath, classCountEstimation, parentClassLoader, null, handler, mapJars);
         }
 
         return new MemoryBasedClassLoader(classesToLoadByParent, parentClassLoader, entries, handler, createFallbackClassLoader(jarFiles));
@@ -89,7 +109,7 @@ public class ClassPreloadingUtils {
     }
 
     private static Collection<File> extractManifestClasspath(ResourceData manifestData) throws IOException {
-        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData.bytes));
+        Manifest manifest = new Manifest(new ByteArrayInputStream(manifestData.getBytes()));
         String classpathSpaceSeparated = (String) manifest.getMainAttributes().get(Attributes.Name.CLASS_PATH);
         if (classpathSpaceSeparated == null) return Collections.emptyList();
 
@@ -124,68 +144,165 @@ public class ClassPreloadingUtils {
                 handler.beforeLoadJar(jarFile);
             }
 
-            FileInputStream fileInputStream = new FileInputStream(jarFile);
+            loadClassesFromJar(jarFile, resources, handler);
+
+            if (handler != null) {
+                handler.afterLoadJar(jarFile);
+            }
+        }
+
+        trimResourceLists(resources);
+
+        return resources;
+    }
+
+    private static void loadClassesFromJar(File jarFile, Map<String, Object> resources, ClassHandler handler) throws IOException {
+        FileInputStream fileInputStream = new FileInputStream(jarFile);
+        try {
+            byte[] buffer = new byte[10 * 1024];
+            ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
+            while (true) {
+                ZipEntry entry = stream.getNextEntry();
+                if (entry == null) break;
+                if (entry.isDirectory()) continue;
+
+                int size = (int) entry.getSize();
+                int effectiveSize = size < 0 ? 32 : size;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
+
+                int count;
+                while ((count = stream.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, count);
+                }
+
+                String name = entry.getName();
+                byte[] data = bytes.toByteArray();
+                if (handler != null) {
+                    data = handler.instrument(name, data);
+                }
+                addResource(resources, new ResourceData(jarFile, name, data));
+            }
+        }
+        finally {
             try {
-                byte[] buffer = new byte[10 * 1024];
-                ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
-                while (true) {
-                    ZipEntry entry = stream.getNextEntry();
-                    if (entry == null) break;
-                    if (entry.isDirectory()) continue;
-
-                    int size = (int) entry.getSize();
-                    int effectiveSize = size < 0 ? 32 : size;
-                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
-
-                    int count;
-                    while ((count = stream.read(buffer)) > 0) {
-                        bytes.write(buffer, 0, count);
-                    }
+                fileInputStream.close();
+            }
+            catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
 
-                    String name = entry.getName();
-                    byte[] data = bytes.toByteArray();
-                    if (handler != null) {
-                        data = handler.instrument(name, data);
-                    }
-                    ResourceData resourceData = new ResourceData(jarFile, name, data);
+    /**
+     * Same as {@link #loadAllClassesFromJars(Collection, int, ClassHandler)}, but stored entries are only indexed, not read.
+     * Jars which cannot be mapped (ZIP64 archives, see {@link MappedArchive#map(File)}) are loaded into memory as usual.
+     */
+    private static Map<String, Object> mapAllClassesFromJars(
+            Collection<File> jarFiles,
+            int classNumberEstimate,
+            final ClassHandler handler
+    ) throws IOException {
+        // 0.75 is HashMap.DEFAULT_LOAD_FACTOR
+        final Map<String, Object> resources = new HashMap<String, Object>((int) (classNumberEstimate / 0.75));
+
+        for (final File jarFile : jarFiles) {
+            if (handler != null) {
+                handler.beforeLoadJar(jarFile);
+            }
+
+            final MappedArchive archive = MappedArchive.map(jarFile);
+            if (archive == null) {
+                loadClassesFromJar(jarFile, resources, handler);
+            }
+            else {
+                mapClassesFromJar(jarFile, archive, resources, handler);
+            }
+
+            if (handler != null) {
+                handler.afterLoadJar(jarFile);
+            }
+        }
+
+        trimResourceLists(resources);
+
+        return resources;
+    }
+
+    private static void mapClassesFromJar(
+            final File jarFile,
+            final MappedArchive archive,
+            final Map<String, Object> resources,
+            final ClassHandler handler
+    ) throws IOException {
+        final ZipFile zipFile = new ZipFile(jarFile);
+        try {
+            archive.visitEntries(new MappedArchive.EntryVisitor() {
+                @Override
+                public void visitStoredEntry(String name, int localHeaderOffset, int size) {
+                    addResource(resources, new ResourceData(jarFile, name, archive.getStoredEntry(localHeaderOffset, size)));
+                }
 
-                    Object previous = resources.get(name);
-                    if (previous == null) {
-                        resources.put(name, resourceData);
+                @Override
+                public void visitCompressedEntry(String name) throws IOException {
+                    InputStream stream = zipFile.getInputStream(zipFile.getEntry(name));
+                    byte[] data;
+                    try {
+                        data = readFully(stream);
                     }
-                    else if (previous instanceof ResourceData) {
-                        List<ResourceData> list = new ArrayList<ResourceData>();
-                        list.add((ResourceData) previous);
-                        list.add(resourceData);
-                        resources.put(name, list);
+                    finally {
+                        stream.close();
                     }
-                    else {
-                        assert previous instanceof ArrayList :
-                                "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
-                        ((ArrayList<ResourceData>) previous).add(resourceData);
+                    if (handler != null) {
+                        data = handler.instrument(name, data);
                     }
+                    addResource(resources, new ResourceData(jarFile, name, data));
                 }
+            });
+        }
+        finally {
+            try {
+                zipFile.close();
             }
-            finally {
-                try {
-                    fileInputStream.close();
-                }
-                catch (IOException e) {
-                    // Ignore
-                }
+            catch (IOException e) {
+                // Ignore
             }
+        }
+    }
 
-            if (handler != null) {
-                handler.afterLoadJar(jarFile);
-            }
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        byte[] buffer = new byte[10 * 1024];
+        int count;
+        while ((count = stream.read(buffer)) > 0) {
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addResource(Map<String, Object> resources, ResourceData resourceData) {
+        String name = resourceData.resourceName;
+        Object previous = resources.get(name);
+        if (previous == null) {
+            resources.put(name, resourceData);
+        }
+        else if (previous instanceof ResourceData) {
+            List<ResourceData> list = new ArrayList<ResourceData>();
+            list.add((ResourceData) previous);
+            list.add(resourceData);
+            resources.put(name, list);
         }
+        else {
+            assert previous instanceof ArrayList :
+                    "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
+            ((ArrayList<ResourceData>) previous).add(resourceData);
+        }
+    }
 
+    private static void trimResourceLists(Map<String, Object> resources) {
         for (Object value : resources.values()) {
             if (value instanceof ArrayList) {
                 ((ArrayList) value).trimToSize();
             }
         }
-
-        return resources;
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A zip archive mapped into memory. Entries which are stored without compression can be read straight from the mapping,
+ * so an archive with uncompressed classes (e.g. a jar built with {@code compress="false"}) needs no inflating at all.
+ *
+ * ZIP64 archives and archives larger than 2 Gb are not supported, see {@link #map(File)}.
+ */
+final class MappedArchive {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int ZIP64_MAGIC_VALUE = 0xFFFFFFFF;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+
+    private static final int METHOD_STORED = 0;
+
+    interface EntryVisitor {
+        void visitStoredEntry(String name, int localHeaderOffset, int size) throws IOException;
+
+        void visitCompressedEntry(String name) throws IOException;
+    }
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int endOfCentralDirectory;
+
+    private MappedArchive(File file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        this.endOfCentralDirectory = findEndOfCentralDirectory();
+    }
+
+    /**
+     * @return the mapped archive, or null if it cannot be read from a mapping: it is larger than 2 Gb or it is a ZIP64 archive
+     */
+    static MappedArchive map(File file) throws IOException {
+        MappedByteBuffer buffer;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        finally {
+            // The mapping stays valid after the channel is closed
+            randomAccessFile.close();
+        }
+
+        MappedArchive archive = new MappedArchive(file, buffer);
+        return archive.isZip64() ? null : archive;
+    }
+
+    boolean isZip64() {
+        int locator = endOfCentralDirectory - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+        return (locator >= 0 && buffer.getInt(locator) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) ||
+               (buffer.getShort(endOfCentralDirectory + 10) & 0xFFFF) == ZIP64_MAGIC_COUNT ||
+               buffer.getInt(endOfCentralDirectory + 12) == ZIP64_MAGIC_VALUE ||
+               buffer.getInt(endOfCentralDirectory + 16) == ZIP64_MAGIC_VALUE;
+    }
+
+    public void visitEntries(EntryVisitor visitor) throws IOException {
+        int entryCount = buffer.getShort(endOfCentralDirectory + 10) & 0xFFFF;
+        int offset = buffer.getInt(endOfCentralDirectory + 16);
+
+        for (int i = 0; i < entryCount; i++) {
+            if (buffer.getInt(offset) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                throw new IOException("Corrupted central directory in " + file);
+            }
+
+            int method = buffer.getShort(offset + 10) & 0xFFFF;
+            int size = buffer.getInt(offset + 24);
+            int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+            int localHeaderOffset = buffer.getInt(offset + 42);
+            String name = readName(offset + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength);
+
+            if (!name.endsWith("/")) {
+                if (size == ZIP64_MAGIC_VALUE || localHeaderOffset == ZIP64_MAGIC_VALUE) {
+                    throw new IOException("ZIP64 entries are not supported: " + name + " in " + file);
+                }
+                if (method == METHOD_STORED) {
+                    visitor.visitStoredEntry(name, localHeaderOffset, size);
+                }
+                else {
+                    visitor.visitCompressedEntry(name);
+                }
+            }
+
+            offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * @return a read-only view of the contents of a stored entry, sharing memory with the mapping
+     */
+    public ByteBuffer getStoredEntry(int localHeaderOffset, int size) {
+        int nameLength = buffer.getShort(localHeaderOffset + 26) & 0xFFFF;
+        int extraLength = buffer.getShort(localHeaderOffset + 28) & 0xFFFF;
+        int start = localHeaderOffset + LOCAL_FILE_HEADER_SIZE + nameLength + extraLength;
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.limit(start + size);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    private String readName(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private int findEndOfCentralDirectory() throws IOException {
+        int limit = Math.max(0, buffer.capacity() - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE);
+        for (int offset = buffer.capacity() - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= limit; offset--) {
+            if (buffer.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return offset;
+            }
+        }
+        throw new IOException("Not a zip archive: " + file);
+    }
+}
@@ -18,6 +18,8 @@ package org.jetbrains.kotlin.preloading;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
 import java.util.*;
 
 @SuppressWarnings("unchecked")
@@ -28,6 +30,9 @@ import java.util.*;
  * This means that once any class is loaded, it _cannot be found_ as a resource anymore.
  * Therefore if you need to be able to find classes via findResource(), you should pass a fallback
  * class loader which is able to do that at any point of time.
+ *
+ * Classes from memory-mapped archives (see {@link ClassPreloadingUtils#preloadClasses(Collection, int, ClassLoader, ClassCondition, ClassHandler, boolean)})
+ * are defined directly from the mapping and instrumented, if needed, only when they are defined.
  */
 public class MemoryBasedClassLoader extends ClassLoader {
     private final ClassCondition classesToLoadByParent;
@@ -35,6 +40,7 @@ public class MemoryBasedClassLoader extends ClassLoader {
     private final Map<String, Object> preloadedResources;
     private final ClassHandler handler;
     private final ClassLoader fallbackResourceLoader;
+    private final boolean instrumentMappedClasses;
 
     public MemoryBasedClassLoader(
             ClassCondition classesToLoadByParent,
@@ -49,6 +55,16 @@ public class MemoryBasedClassLoader extends ClassLoader {
         this.preloadedResources = preloadedResources;
         this.handler = handler;
         this.fallbackResourceLoader = fallbackResourceLoader;
+        this.instrumentMappedClasses = handler != null && overridesInstrument(handler);
+    }
+
+    private static boolean overridesInstrument(ClassHandler handler) {
+        try {
+            return handler.getClass().getMethod("instrument", String.class, byte[].class).getDeclaringClass() != ClassHandler.class;
+        }
+        catch (NoSuchMethodException e) {
+            return true;
+        }
     }
 
     @Override
@@ -95,12 +111,23 @@ public class MemoryBasedClassLoader extends ClassLoader {
                                     ? ((ResourceData) resources)
                                     : ((List<ResourceData>) resources).get(0);
 
-        int sizeInBytes = resourceData.bytes.length;
+        int sizeInBytes = resourceData.getSize();
         if (handler != null) {
             handler.beforeDefineClass(name, sizeInBytes);
         }
 
-        Class<?> definedClass = defineClass(name, resourceData.bytes, 0, sizeInBytes);
+        Class<?> definedClass;
+        ByteBuffer mappedBytes = resourceData.getMappedBytes();
+        if (mappedBytes != null && !instrumentMappedClasses) {
+            definedClass = defineClass(name, mappedBytes, (ProtectionDomain) null);
+        }
+        else {
+            byte[] bytes = resourceData.getBytes();
+            if (mappedBytes != null) {
+                bytes = handler.instrument(internalName, bytes);
+            }
+            definedClass = defineClass(name, bytes, 0, bytes.length);
+        }
 
         if (handler != null) {
             handler.afterDefineClass(name);
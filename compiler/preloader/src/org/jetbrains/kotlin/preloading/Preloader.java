@@ -50,7 +50,7 @@ public class Preloader {
         ClassLoader classLoader = createClassLoader(options);
 
         final Handler handler = getHandler(options, classLoader);
-        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(options.classpath, options.estimate, classLoader, null, handler);
+        ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(options.classpath, options.estimate, classLoader, null, handler, options.map);
 
         Class<?> mainClass = preloaded.loadClass(options.mainClass);
         Method mainMethod = mainClass.getMethod("main", String[].class);
@@ -91,6 +91,7 @@ public class Preloader {
     private static Options parseOptions(String[] args) throws Exception {
         List<File> classpath = Collections.emptyList();
         boolean measure = false;
+        boolean map = false;
         List<File> instrumenters = Collections.emptyList();
         int estimate = DEFAULT_CLASS_NUMBER_ESTIMATE;
         String mainClass = null;
@@ -119,6 +120,9 @@ public class Preloader {
             else if ("-measure".equals(arg)) {
                 measure = true;
             }
+            else if ("-map".equals(arg)) {
+                map = true;
+            }
             else {
                 mainClass = arg;
                 arguments.addAll(Arrays.asList(args).subList(i + 1, args.length));
@@ -128,7 +132,7 @@ public class Preloader {
 
         if (mainClass == null) throw new PreloaderException("no main class name provided");
 
-        return new Options(classpath, measure, instrumenters, estimate, mainClass, arguments);
+        return new Options(classpath, measure, map, instrumenters, estimate, mainClass, arguments);
     }
 
     private static List<File> parseClassPath(String classpath) {
@@ -196,6 +200,7 @@ public class Preloader {
         out.println("where possible options include:");
         out.println("  -classpath (-cp) <paths>    Paths where to find class files");
         out.println("  -measure                    Record and output the total time taken by the program and number of loaded classes");
+        out.println("  -map                        Map jars into memory and load uncompressed classes from them lazily");
         out.println("  -instrument <paths>         Paths where the instrumenter will be looked up by java.util.ServiceLoader");
         out.println("                              (the class must implement " + Instrumenter.class.getCanonicalName() + " interface)");
         out.println("  -estimate <number>          Class number estimate (" + DEFAULT_CLASS_NUMBER_ESTIMATE + " by default)");
@@ -205,6 +210,7 @@ public class Preloader {
     private static class Options {
         public final List<File> classpath;
         public final boolean measure;
+        public final boolean map;
         public final List<File> instrumenters;
         public final int estimate;
         public final String mainClass;
@@ -213,6 +219,7 @@ public class Preloader {
         private Options(
                 List<File> classpath,
                 boolean measure,
+                boolean map,
                 List<File> instrumenters,
                 int estimate,
                 String mainClass,
@@ -220,6 +227,7 @@ public class Preloader {
         ) {
             this.classpath = classpath;
             this.measure = measure;
+            this.map = map;
             this.instrumenters = instrumenters;
             this.estimate = estimate;
             this.mainClass = mainClass;
@@ -24,16 +24,53 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
 
 public final class ResourceData {
     public final File jarFile;
     public final String resourceName;
+    /**
+     * @deprecated use {@link #getBytes()}, this field is null for resources in memory-mapped archives
+     */
+    @Deprecated
     public final byte[] bytes;
+    private final ByteBuffer mappedBytes;
 
     public ResourceData(File jarFile, String resourceName, byte[] bytes) {
         this.jarFile = jarFile;
         this.resourceName = resourceName;
         this.bytes = bytes;
+        this.mappedBytes = null;
+    }
+
+    /**
+     * Creates a resource whose contents are read from a memory-mapped archive only when needed
+     */
+    public ResourceData(File jarFile, String resourceName, ByteBuffer mappedBytes) {
+        this.jarFile = jarFile;
+        this.resourceName = resourceName;
+        this.bytes = null;
+        this.mappedBytes = mappedBytes;
+    }
+
+    public byte[] getBytes() {
+        if (bytes != null) return bytes;
+
+        // Not cached: mapped resources are usually classes, whose contents are needed only once
+        byte[] result = new byte[mappedBytes.remaining()];
+        mappedBytes.duplicate().get(result);
+        return result;
+    }
+
+    /**
+     * @return the contents of the resource in a memory-mapped archive, or null if the resource has been read into memory
+     */
+    public ByteBuffer getMappedBytes() {
+        return mappedBytes == null ? null : mappedBytes.duplicate();
+    }
+
+    public int getSize() {
+        return bytes != null ? bytes.length : mappedBytes.remaining();
     }
 
     public URL getURL() {
@@ -48,7 +85,7 @@ public final class ResourceData {
 
                         @Override
                         public InputStream getInputStream() throws IOException {
-                            return new ByteArrayInputStream(bytes);
+                            return new ByteArrayInputStream(getBytes());
                         }
                     };
                 }
@@ -0,0 +1,15 @@
+package test
+
+fun topLevel() = 1
+
+val topLevelProperty = ""
+
+class First {
+    fun member() = topLevel()
+
+    class Nested
+}
+
+object Second
+
+interface Third
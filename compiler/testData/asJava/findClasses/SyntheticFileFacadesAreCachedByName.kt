@@ -0,0 +1,3 @@
+package test
+
+fun topLevel() = 1
@@ -17,8 +17,12 @@
 package org.jetbrains.kotlin.asJava;
 
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiPackage;
 import com.intellij.psi.search.GlobalSearchScope;
 import junit.framework.TestCase;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.kotlin.psi.KtPsiFactory;
 
 import java.io.File;
 import java.util.Collections;
@@ -52,6 +56,52 @@ public class JavaElementFinderTest extends KotlinAsJavaTestBase {
         assertNoClass("");
     }
 
+    public void testPackageStubs() {
+        GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+        PackageLightClassStubsKt.buildLightClassStubsForPackage(getProject(), new FqName("test"), scope);
+
+        KtLightClassForFacade.FacadeStubCache facadeStubCache = KtLightClassForFacade.FacadeStubCache.getInstance(getProject());
+        TestCase.assertTrue(facadeStubCache.get(new FqName("test.PackageStubsKt"), scope).hasUpToDateValue());
+
+        assertClass("test.PackageStubsKt");
+        assertClass("test.First");
+        assertClass("test.First.Nested");
+        assertClass("test.Second");
+        assertClass("test.Third");
+    }
+
+    public void testGetClassesDoesNotBuildPackageStubs() {
+        GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+        PsiPackage psiPackage = finder.findPackage("test");
+        TestCase.assertNotNull(psiPackage);
+
+        finder.getClasses(psiPackage, scope);
+
+        KtLightClassForFacade.FacadeStubCache facadeStubCache = KtLightClassForFacade.FacadeStubCache.getInstance(getProject());
+        TestCase.assertFalse(facadeStubCache.get(new FqName("test." + getTestName(false) + "Kt"), scope).hasUpToDateValue());
+    }
+
+    public void testGetClassesWithStubsBuildsPackageStubs() {
+        GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+        PsiPackage psiPackage = finder.findPackage("test");
+        TestCase.assertNotNull(psiPackage);
+
+        TestCase.assertEquals(finder.getClasses(psiPackage, scope).length, finder.getClassesWithStubs(psiPackage, scope).length);
+
+        KtLightClassForFacade.FacadeStubCache facadeStubCache = KtLightClassForFacade.FacadeStubCache.getInstance(getProject());
+        TestCase.assertTrue(facadeStubCache.get(new FqName("test." + getTestName(false) + "Kt"), scope).hasUpToDateValue());
+    }
+
+    public void testSyntheticFileFacadesAreCachedByName() {
+        KtFile file = new KtPsiFactory(getProject()).createFile("synthetic.kt", "fun foo() = 1");
+        KtLightClassForFacade.FacadeStubCache facadeStubCache = KtLightClassForFacade.FacadeStubCache.getInstance(getProject());
+
+        FqName first = new FqName("test.FirstKt");
+        FqName second = new FqName("test.SecondKt");
+        TestCase.assertSame(facadeStubCache.getForSyntheticFile(first, file), facadeStubCache.getForSyntheticFile(first, file));
+        TestCase.assertNotSame(facadeStubCache.getForSyntheticFile(first, file), facadeStubCache.getForSyntheticFile(second, file));
+    }
+
     private void assertClass(String qualifiedName) {
         PsiClass psiClass = finder.findClass(qualifiedName, GlobalSearchScope.allScope(getProject()));
         TestCase.assertNotNull(String.format("Class with fqn='%s' wasn't found.", qualifiedName), psiClass);
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.mock.MockProject
+import com.intellij.openapi.util.io.FileUtil
+import junit.framework.TestCase
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.jvm.compiler.AnalysisResultCache
+import org.jetbrains.kotlin.compiler.plugin.ComponentRegistrar
+import org.jetbrains.kotlin.config.*
+import java.io.File
+
+class AnalysisResultCacheTest : TestCase() {
+    private lateinit var workingDir: File
+
+    override fun setUp() {
+        super.setUp()
+        workingDir = FileUtil.createTempDirectory("analysisResultCache", null)
+    }
+
+    override fun tearDown() {
+        FileUtil.delete(workingDir)
+        super.tearDown()
+    }
+
+    private class TestRegistrar : ComponentRegistrar {
+        override fun registerProjectComponents(project: MockProject, configuration: CompilerConfiguration) {}
+    }
+
+    private fun assertInvalidatedBy(
+            description: String,
+            initial: (CompilerConfiguration) -> Unit = {},
+            dependencies: List<File> = emptyList(),
+            change: (CompilerConfiguration) -> Unit
+    ) {
+        val cache = AnalysisResultCache(File(workingDir, "cache"))
+        val outputDirectory = File(workingDir, "out")
+
+        val configuration = CompilerConfiguration()
+        configuration.put(CommonConfigurationKeys.MODULE_NAME, "test")
+        initial(configuration)
+        val inputs = cache.computeInputs(emptyList(), dependencies, AnalysisResultCache.optionsFingerprint(configuration))
+        cache.save(inputs, emptyList())
+        assertTrue("Cache should be reused for the same configuration",
+                   cache.isUpToDate(cache.computeInputs(emptyList(), dependencies, AnalysisResultCache.optionsFingerprint(configuration)),
+                                    outputDirectory))
+
+        change(configuration)
+        val changedInputs = cache.computeInputs(emptyList(), dependencies, AnalysisResultCache.optionsFingerprint(configuration))
+        assertFalse("Cache should be invalidated by $description", cache.isUpToDate(changedInputs, outputDirectory))
+    }
+
+    fun testLanguageVersion() {
+        assertInvalidatedBy("language version") { it.put(CommonConfigurationKeys.LANGUAGE_FEATURE_SETTINGS, LanguageVersion.KOTLIN_1_0) }
+    }
+
+    fun testDisableInline() {
+        assertInvalidatedBy("-Xno-inline") { it.put(CommonConfigurationKeys.DISABLE_INLINE, true) }
+    }
+
+    fun testCodegenFlags() {
+        assertInvalidatedBy("-Xno-call-assertions") { it.put(JVMConfigurationKeys.DISABLE_CALL_ASSERTIONS, true) }
+        assertInvalidatedBy("-Xno-param-assertions") { it.put(JVMConfigurationKeys.DISABLE_PARAM_ASSERTIONS, true) }
+        assertInvalidatedBy("-Xno-optimize") { it.put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, true) }
+        assertInvalidatedBy("-Xmultifile-parts-inherit") { it.put(JVMConfigurationKeys.INHERIT_MULTIFILE_PARTS, true) }
+        assertInvalidatedBy("-jvm-target") { it.put(JVMConfigurationKeys.JVM_TARGET, JvmTarget.JVM_1_8) }
+    }
+
+    fun testJdkHome() {
+        assertInvalidatedBy("-jdk-home") { it.put(JVMConfigurationKeys.JDK_HOME, File(workingDir, "jdk")) }
+    }
+
+    fun testPluginClasspath() {
+        val pluginJar = File(workingDir, "plugin.jar")
+        pluginJar.writeText("first version")
+        assertInvalidatedBy("a plugin on the classpath") { it.put(CLIConfigurationKeys.PLUGIN_CLASSPATHS, listOf(pluginJar.path)) }
+
+        assertInvalidatedBy("a changed plugin jar", initial = { it.put(CLIConfigurationKeys.PLUGIN_CLASSPATHS, listOf(pluginJar.path)) }) {
+            pluginJar.writeText("second, longer version")
+        }
+    }
+
+    fun testOutputDirectory() {
+        assertInvalidatedBy("another output directory", initial = { it.put(JVMConfigurationKeys.OUTPUT_DIRECTORY, File(workingDir, "out")) }) {
+            it.put(JVMConfigurationKeys.OUTPUT_DIRECTORY, File(workingDir, "out2"))
+        }
+    }
+
+    fun testJarRewrittenWithSameSizeAndTimeStamp() {
+        val jar = File(workingDir, "library.jar")
+        jar.writeText("first")
+        val timeStamp = jar.lastModified()
+        assertInvalidatedBy("a rewritten jar", dependencies = listOf(jar)) {
+            jar.writeText("other")
+            jar.setLastModified(timeStamp)
+        }
+    }
+
+    fun testKotlinModuleInClassDirectory() {
+        val classes = File(workingDir, "classes")
+        File(classes, "test").mkdirs()
+        File(classes, "test/A.class").writeText("class")
+        assertInvalidatedBy("a changed .kotlin_module file", dependencies = listOf(classes)) {
+            File(classes, "META-INF").mkdirs()
+            File(classes, "META-INF/test.kotlin_module").writeText("module")
+        }
+    }
+
+    fun testPluginOptions() {
+        assertInvalidatedBy("a plugin option") { it.put(CLIConfigurationKeys.PLUGIN_OPTIONS, listOf("plugin:org.example:option=value")) }
+    }
+
+    fun testPluginRegistrar() {
+        assertInvalidatedBy("a plugin registrar") { it.add(ComponentRegistrar.PLUGIN_COMPONENT_REGISTRARS, TestRegistrar()) }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.cli.jvm.compiler.ParallelJarWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.util.jar.JarFile
+import java.util.zip.ZipEntry
+import java.util.zip.ZipException
+
+class ParallelJarWriterTest : TestCase() {
+    private lateinit var jar: File
+
+    override fun setUp() {
+        super.setUp()
+        jar = File.createTempFile("parallelJarWriter", ".jar")
+    }
+
+    override fun tearDown() {
+        jar.delete()
+        super.tearDown()
+    }
+
+    private fun entries() = (1..500).map { i -> "foo/Class$i.class" to "content of class $i ".repeat(i).toByteArray() }
+
+    private fun write(storeOnly: Boolean) {
+        FileOutputStream(jar).use { output ->
+            val writer = ParallelJarWriter(output, storeOnly, 4)
+            for ((name, content) in entries()) {
+                writer.addEntry(name, content)
+            }
+            writer.finish()
+        }
+    }
+
+    private fun checkContents(expectedMethod: Int) {
+        JarFile(jar).use { jarFile ->
+            val names = jarFile.entries().toList().map { it.name }
+            assertEquals(entries().map { it.first }, names)
+
+            for ((name, content) in entries()) {
+                val entry = jarFile.getEntry(name)
+                assertEquals(expectedMethod, entry.method)
+                assertEquals(String(content), jarFile.getInputStream(entry).readBytes().toString(Charsets.UTF_8))
+            }
+        }
+    }
+
+    fun testDeflated() {
+        write(storeOnly = false)
+        checkContents(ZipEntry.DEFLATED)
+    }
+
+    fun testStoreOnly() {
+        write(storeOnly = true)
+        checkContents(ZipEntry.STORED)
+    }
+
+    fun testDuplicateEntryIsRejected() {
+        FileOutputStream(jar).use { output ->
+            val writer = ParallelJarWriter(output, false, 4)
+            try {
+                writer.addEntry("foo/A.class", byteArrayOf(1))
+                writer.addEntry("foo/A.class", byteArrayOf(2))
+                fail("Duplicate entry should be rejected")
+            }
+            catch (e: ZipException) {
+                assertTrue(e.message!!.contains("foo/A.class"))
+            }
+            finally {
+                writer.abort()
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.psi.impl.DebugUtil
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.ParallelSourceParser
+import org.jetbrains.kotlin.config.addKotlinSourceRoot
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+import java.io.File
+
+// Parses test data serially and in parallel, checks that the trees are the same and reports the throughput of both
+class ParallelSourceParserTest : KtUsefulTestCase() {
+    private val CORPUS = File("compiler/testData/psi")
+    private val BENCHMARK_CORPUS = File("compiler/testData/codegen/box")
+
+    private fun createSourceFiles(corpus: File = CORPUS): List<KtFile> {
+        val configuration = KotlinTestUtils.newConfiguration()
+        configuration.addKotlinSourceRoot(corpus.path)
+        return KotlinCoreEnvironment.createForTests(testRootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES).getSourceFiles()
+    }
+
+    private fun parse(files: List<KtFile>, threads: Int): Long {
+        val start = System.nanoTime()
+        ParallelSourceParser.parse(files, threads)
+        return System.nanoTime() - start
+    }
+
+    fun testParallelParsing() {
+        val serialFiles = createSourceFiles()
+        val parallelFiles = createSourceFiles()
+        assertEquals(serialFiles.map { it.virtualFile.path }, parallelFiles.map { it.virtualFile.path })
+
+        val threads = Math.max(2, Runtime.getRuntime().availableProcessors())
+        ParallelSourceParser.parse(serialFiles, 1)
+        ParallelSourceParser.parse(parallelFiles, threads)
+
+        for ((serial, parallel) in serialFiles.zip(parallelFiles)) {
+            assertEquals(serial.virtualFile.path, DebugUtil.psiToString(serial, false), DebugUtil.psiToString(parallel, false))
+        }
+    }
+
+    fun testParseThroughput() {
+        // Warm up the lexer and parser classes, so that the first measured run does not pay for their loading and JIT
+        ParallelSourceParser.parse(createSourceFiles(), 1)
+
+        val serialFiles = createSourceFiles(BENCHMARK_CORPUS)
+        val parallelFiles = createSourceFiles(BENCHMARK_CORPUS)
+
+        val threads = Math.max(2, Runtime.getRuntime().availableProcessors())
+        val serialNanos = parse(serialFiles, 1)
+        val parallelNanos = parse(parallelFiles, threads)
+
+        val kilobytes = serialFiles.sumBy { it.textLength } / 1024
+        fun throughput(nanos: Long) = "%.1f Kb/s".format(kilobytes * 1e9 / nanos)
+        println("Parsed ${serialFiles.size} files ($kilobytes Kb): " +
+                "serially ${throughput(serialNanos)}, on $threads threads ${throughput(parallelNanos)}")
+    }
+}
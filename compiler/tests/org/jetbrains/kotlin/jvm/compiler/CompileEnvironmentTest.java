@@ -25,8 +25,15 @@ import org.jetbrains.kotlin.test.KotlinTestUtils;
 import org.junit.Assert;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 public class CompileEnvironmentTest extends TestCase {
 
@@ -53,4 +60,116 @@ public class CompileEnvironmentTest extends TestCase {
             FileUtil.delete(tempDir);
         }
     }
+
+    public void testStreamOutputWithModule() throws IOException {
+        File tempDir = FileUtil.createTempDirectory("compilerTest", "compilerTest");
+        try {
+            File out = new File(tempDir, "out");
+            File inlineSource = new File(tempDir, "a.kt");
+            FileUtil.writeToFile(inlineSource,
+                                 "inline fun foo(crossinline f: () -> Unit): Runnable = object : Runnable { override fun run() = f() }\n");
+            File callSite = new File(tempDir, "b.kt");
+            FileUtil.writeToFile(callSite, "fun bar() = foo { println() }\n");
+            File moduleFile = new File(tempDir, "module.xml");
+            FileUtil.writeToFile(moduleFile,
+                                 "<modules>\n" +
+                                 "    <module name=\"test\" outputDir=\"" + out.getAbsolutePath() + "\" type=\"java-production\">\n" +
+                                 "        <sources path=\"" + inlineSource.getAbsolutePath() + "\"/>\n" +
+                                 "        <sources path=\"" + callSite.getAbsolutePath() + "\"/>\n" +
+                                 "    </module>\n" +
+                                 "</modules>\n");
+            File stdlib = ForTestCompileRuntime.runtimeJarForTests();
+            ExitCode exitCode = new K2JVMCompiler().exec(
+                    System.out,
+                    "-module", moduleFile.getAbsolutePath(),
+                    "-Xstream-output",
+                    "-no-stdlib",
+                    "-classpath", stdlib.getAbsolutePath()
+            );
+            Assert.assertEquals(ExitCode.OK, exitCode);
+            assertTrue(new File(out, "AKt.class").isFile());
+            assertTrue(new File(out, "BKt.class").isFile());
+            // the anonymous object from a.kt is regenerated at the call site from the already written class file
+            String[] regenerated = out.list(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.startsWith("BKt$") && name.contains("$$inlined$foo");
+                }
+            });
+            assertEquals(1, regenerated.length);
+        }
+        finally {
+            FileUtil.delete(tempDir);
+        }
+    }
+
+    public void testStreamOutputToJar() throws IOException {
+        File tempDir = FileUtil.createTempDirectory("compilerTest", "compilerTest");
+        try {
+            File inlineSource = new File(tempDir, "a.kt");
+            FileUtil.writeToFile(inlineSource,
+                                 "inline fun foo(crossinline f: () -> Unit): Runnable = object : Runnable { override fun run() = f() }\n");
+            File mainSource = new File(tempDir, "b.kt");
+            FileUtil.writeToFile(mainSource, "fun main(args: Array<String>) = foo { println() }.run()\n");
+
+            File streamedJar = new File(tempDir, "streamed.jar");
+            File inMemoryJar = new File(tempDir, "inMemory.jar");
+            File stdlib = ForTestCompileRuntime.runtimeJarForTests();
+            Assert.assertEquals(ExitCode.OK, new K2JVMCompiler().exec(
+                    System.out,
+                    inlineSource.getAbsolutePath(), mainSource.getAbsolutePath(),
+                    "-d", streamedJar.getAbsolutePath(),
+                    "-Xstream-output",
+                    "-no-stdlib",
+                    "-classpath", stdlib.getAbsolutePath()
+            ));
+            Assert.assertEquals(ExitCode.OK, new K2JVMCompiler().exec(
+                    System.out,
+                    inlineSource.getAbsolutePath(), mainSource.getAbsolutePath(),
+                    "-d", inMemoryJar.getAbsolutePath(),
+                    "-no-stdlib",
+                    "-classpath", stdlib.getAbsolutePath()
+            ));
+
+            Map<String, byte[]> streamedEntries = readJarEntries(streamedJar);
+            Map<String, byte[]> inMemoryEntries = readJarEntries(inMemoryJar);
+
+            assertTrue(streamedEntries.keySet().toString(), streamedEntries.keySet().containsAll(Arrays.asList(
+                    JarFile.MANIFEST_NAME, "META-INF/main.kotlin_module", "AKt.class", "BKt.class"
+            )));
+            // staged classes are written to the jar as they were generated, the regenerated anonymous object included
+            assertEquals(inMemoryEntries.keySet(), streamedEntries.keySet());
+            for (Map.Entry<String, byte[]> entry : inMemoryEntries.entrySet()) {
+                assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), streamedEntries.get(entry.getKey())));
+            }
+
+            JarFile jarFile = new JarFile(streamedJar);
+            try {
+                Attributes attributes = jarFile.getManifest().getMainAttributes();
+                assertEquals("1.0", attributes.getValue(Attributes.Name.MANIFEST_VERSION));
+                assertEquals("BKt", attributes.getValue(Attributes.Name.MAIN_CLASS));
+            }
+            finally {
+                jarFile.close();
+            }
+        }
+        finally {
+            FileUtil.delete(tempDir);
+        }
+    }
+
+    private static Map<String, byte[]> readJarEntries(File jar) throws IOException {
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        JarFile jarFile = new JarFile(jar);
+        try {
+            for (JarEntry entry : Collections.list(jarFile.entries())) {
+                assertFalse("Duplicate entry " + entry.getName(), result.containsKey(entry.getName()));
+                result.put(entry.getName(), FileUtil.loadBytes(jarFile.getInputStream(entry)));
+            }
+        }
+        finally {
+            jarFile.close();
+        }
+        return result;
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.preloading;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class MappedArchiveTest extends TestCase {
+    private File jar;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        jar = FileUtil.createTempFile("mappedArchive", ".jar");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.delete(jar);
+        super.tearDown();
+    }
+
+    public void testVisitEntries() throws IOException {
+        ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            stream.putNextEntry(new ZipEntry("dir/"));
+            putStoredEntry(stream, "dir/Stored.txt", "stored contents".getBytes("UTF-8"));
+            stream.putNextEntry(new ZipEntry("dir/Compressed.txt"));
+            stream.write("compressed contents".getBytes("UTF-8"));
+        }
+        finally {
+            stream.close();
+        }
+
+        final MappedArchive archive = MappedArchive.map(jar);
+        assertNotNull(archive);
+
+        final Map<String, String> stored = new LinkedHashMap<String, String>();
+        final List<String> compressed = new ArrayList<String>();
+        archive.visitEntries(new MappedArchive.EntryVisitor() {
+            @Override
+            public void visitStoredEntry(String name, int localHeaderOffset, int size) throws IOException {
+                ByteBuffer contents = archive.getStoredEntry(localHeaderOffset, size);
+                byte[] bytes = new byte[contents.remaining()];
+                contents.get(bytes);
+                stored.put(name, new String(bytes, "UTF-8"));
+            }
+
+            @Override
+            public void visitCompressedEntry(String name) {
+                compressed.add(name);
+            }
+        });
+
+        assertEquals(Collections.singletonMap("dir/Stored.txt", "stored contents"), stored);
+        assertEquals(Collections.singletonList("dir/Compressed.txt"), compressed);
+    }
+
+    public void testZip64ArchiveIsNotMapped() throws IOException {
+        ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            // ZipOutputStream switches to ZIP64 when there are 0xFFFF entries or more
+            for (int i = 0; i <= 0xFFFF; i++) {
+                putStoredEntry(stream, "entry" + i, new byte[0]);
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        assertNull(MappedArchive.map(jar));
+    }
+
+    public void testClassesAreDefinedFromMapping() throws Exception {
+        String entryName = Sample.class.getName().replace('.', '/') + ".class";
+        ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            InputStream classFile = Sample.class.getClassLoader().getResourceAsStream(entryName);
+            try {
+                putStoredEntry(stream, entryName, FileUtil.loadBytes(classFile));
+            }
+            finally {
+                classFile.close();
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        ClassLoader classLoader = ClassPreloadingUtils.preloadClasses(
+                Collections.singletonList(jar), 1, ClassLoader.getSystemClassLoader(), null, null, true
+        );
+        Class<?> sampleClass = classLoader.loadClass(Sample.class.getName());
+        assertSame(classLoader, sampleClass.getClassLoader());
+        assertEquals("sample", sampleClass.newInstance().toString());
+    }
+
+    private static void putStoredEntry(ZipOutputStream stream, String name, byte[] contents) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(contents.length);
+        entry.setCompressedSize(contents.length);
+        entry.setCrc(crc.getValue());
+        stream.putNextEntry(entry);
+        stream.write(contents);
+    }
+
+    public static class Sample {
+        @Override
+        public String toString() {
+            return "sample";
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.repl
+
+import org.jetbrains.kotlin.cli.jvm.repl.ConsoleReplConfiguration
+import org.jetbrains.kotlin.cli.jvm.repl.LineResult
+import org.jetbrains.kotlin.cli.jvm.repl.ReplInterpreter
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TestJdkKind
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+
+// Replays a long session where every line refers to the previous one, and checks that earlier lines stay reachable
+class ReplLongSessionTest : KtUsefulTestCase() {
+    private val LINES = 1000
+    private val BENCHMARK_LINES = 5000
+    private val BENCHMARK_WINDOW = 500
+
+    private fun createRepl(): ReplInterpreter {
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK)
+        return ReplInterpreter(testRootDisposable, configuration, ConsoleReplConfiguration())
+    }
+
+    private fun assertValue(expected: String, result: LineResult) {
+        assertTrue(result.toString(), result is LineResult.ValueResult)
+        assertEquals(expected, (result as LineResult.ValueResult).valueAsString)
+    }
+
+    fun testLongSession() {
+        val repl = createRepl()
+
+        assertEquals(LineResult.UnitResult, repl.eval("val x0 = 0"))
+        for (i in 1..LINES) {
+            assertEquals("Line $i", LineResult.UnitResult, repl.eval("val x$i = x${i - 1} + 1"))
+        }
+
+        assertValue((LINES + 1).toString(), repl.eval("x$LINES + x1"))
+        assertValue("0", repl.eval("x0"))
+    }
+
+    fun testImportsStayVisibleInLinesWithoutImports() {
+        val repl = createRepl()
+
+        assertEquals(LineResult.UnitResult, repl.eval("import java.util.ArrayList"))
+        for (i in 1..10) {
+            assertEquals(LineResult.UnitResult, repl.eval("val list$i = ArrayList<Int>()"))
+        }
+        assertEquals(LineResult.UnitResult, repl.eval("import java.util.LinkedList"))
+        assertValue("0", repl.eval("ArrayList<Int>().size + LinkedList<Int>().size"))
+    }
+
+    // Reports the time per line at the start and at the end of a long session, the two should stay close
+    fun testLineCostBenchmark() {
+        val repl = createRepl()
+
+        assertEquals(LineResult.UnitResult, repl.eval("val x0 = 0"))
+        var windowStart = System.nanoTime()
+        for (i in 1..BENCHMARK_LINES) {
+            assertEquals("Line $i", LineResult.UnitResult, repl.eval("val x$i = x${i - 1} + 1"))
+
+            if (i % BENCHMARK_WINDOW == 0) {
+                val now = System.nanoTime()
+                println("Lines ${i - BENCHMARK_WINDOW + 1}..$i: ${(now - windowStart) / BENCHMARK_WINDOW / 1000} us per line")
+                windowStart = now
+            }
+        }
+    }
+
+    fun testLaterLinesShadowEarlierOnes() {
+        val repl = createRepl()
+
+        assertEquals(LineResult.UnitResult, repl.eval("fun f() = 1"))
+        assertEquals(LineResult.UnitResult, repl.eval("val g = f()"))
+        assertEquals(LineResult.UnitResult, repl.eval("fun f() = 2"))
+
+        assertValue("2", repl.eval("f()"))
+        assertValue("1", repl.eval("g"))
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.repl
+
+import org.jetbrains.kotlin.cli.jvm.repl.ReplPackageMemberDeclarationProvider
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.KtNamedDeclaration
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.resolve.lazy.declarations.FileBasedDeclarationProviderFactory
+import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
+import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+
+class ReplPackageMemberDeclarationProviderTest : KotlinTestWithEnvironment() {
+    override fun createEnvironment() = createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY)
+
+    private var lineNumber = 0
+
+    private fun ReplPackageMemberDeclarationProvider.addLine(text: String) {
+        val file = KtPsiFactory(project).createFile("line${++lineNumber}.kt", text)
+        val factory = FileBasedDeclarationProviderFactory(LockBasedStorageManager.NO_LOCKS, listOf(file))
+        addLineProvider(factory.getPackageMemberDeclarationProvider(FqName.ROOT)!!)
+    }
+
+    private fun ReplPackageMemberDeclarationProvider.names(
+            kindFilter: DescriptorKindFilter,
+            nameFilter: (Name) -> Boolean = MemberScope.ALL_NAME_FILTER
+    ): List<String> = getDeclarations(kindFilter, nameFilter).map { (it as KtNamedDeclaration).name!! }
+
+    fun testDeclarationsAreFiltered() {
+        val provider = ReplPackageMemberDeclarationProvider()
+        provider.addLine("fun foo() = 1\nval bar = 2\nclass Baz\nobject Qux")
+
+        assertEquals(listOf("foo"), provider.names(DescriptorKindFilter.FUNCTIONS))
+        assertEquals(listOf("bar"), provider.names(DescriptorKindFilter.VARIABLES))
+        assertEquals(listOf("Baz", "Qux"), provider.names(DescriptorKindFilter.CLASSIFIERS))
+        assertEquals(listOf("Qux"), provider.names(DescriptorKindFilter.SINGLETON_CLASSIFIERS))
+        assertEquals(listOf("bar"), provider.names(DescriptorKindFilter.ALL) { it.asString() == "bar" })
+    }
+
+    fun testLaterLinesComeFirst() {
+        val provider = ReplPackageMemberDeclarationProvider()
+        provider.addLine("fun foo() = 1")
+        provider.addLine("fun foo() = 2\nval bar = 3")
+
+        assertEquals(listOf("foo", "bar", "foo"), provider.names(DescriptorKindFilter.ALL))
+        assertEquals(listOf("fun foo() = 2", "fun foo() = 1"), provider.getFunctionDeclarations(Name.identifier("foo")).map { it.text })
+    }
+
+    fun testDeclarationsAreSnapshot() {
+        val provider = ReplPackageMemberDeclarationProvider()
+        provider.addLine("fun foo() = 1")
+
+        val declarations = provider.getDeclarations(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
+        provider.addLine("fun bar() = 2")
+
+        assertEquals(1, declarations.size)
+        assertEquals(2, provider.getDeclarations(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER).size)
+    }
+
+    fun testPackageFilesAreSnapshot() {
+        val provider = ReplPackageMemberDeclarationProvider()
+        provider.addLine("fun foo() = 1")
+
+        val files = provider.getPackageFiles()
+        provider.addLine("fun bar() = 2")
+
+        assertEquals(listOf("line1.kt"), files.map { it.name })
+        assertEquals(listOf("line2.kt", "line1.kt"), provider.getPackageFiles().map { it.name })
+    }
+}
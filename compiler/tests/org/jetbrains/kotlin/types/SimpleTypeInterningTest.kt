@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.types
+
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns
+import org.jetbrains.kotlin.descriptors.annotations.Annotations
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironmentManagement
+
+class SimpleTypeInterningTest : KotlinTestWithEnvironmentManagement() {
+    private val builtIns = DefaultBuiltIns.Instance
+
+    override fun setUp() {
+        super.setUp()
+        SimpleTypeInterner.acquire()
+    }
+
+    override fun tearDown() {
+        SimpleTypeInterner.release()
+        super.tearDown()
+    }
+
+    private fun listType(argument: KotlinType, nullable: Boolean = false) =
+            KotlinTypeFactory.simpleType(Annotations.EMPTY, builtIns.list.typeConstructor, listOf(TypeProjectionImpl(argument)), nullable)
+
+    fun testSameComponentsGiveSameInstance() {
+        val string = builtIns.stringType
+        assertSame(listType(string), listType(string))
+        assertSame(listType(listType(string)), listType(listType(string)))
+    }
+
+    fun testNullabilityIsPartOfKey() {
+        val string = builtIns.stringType
+        assertNotSame(listType(string), listType(string, nullable = true))
+        assertEquals(listType(string).makeNullableAsSpecified(true), listType(string, nullable = true))
+    }
+
+    fun testNullabilityChangeIsInterned() {
+        val string = builtIns.stringType
+        assertSame(listType(string, nullable = true), listType(string).makeNullableAsSpecified(true))
+        assertSame(listType(string), listType(string, nullable = true).makeNullableAsSpecified(false))
+    }
+
+    fun testSubstitutionResultIsInterned() {
+        val string = builtIns.stringType
+        val typeParameter = builtIns.list.declaredTypeParameters.single()
+        val substitutor = TypeSubstitutor.create(mapOf(typeParameter.typeConstructor to TypeProjectionImpl(string)))
+
+        assertSame(listType(string), substitutor.substitute(builtIns.list.defaultType, Variance.INVARIANT))
+        assertSame(listType(string, nullable = true),
+                   substitutor.substitute(builtIns.list.defaultType.makeNullableAsSpecified(true), Variance.INVARIANT))
+    }
+
+    fun testTableIsKeptWhileAnotherCompilationRuns() {
+        val string = builtIns.stringType
+        val first = listType(string)
+
+        SimpleTypeInterner.acquire()
+        SimpleTypeInterner.release()
+        assertTrue(SimpleTypeInterner.isEnabled)
+        assertSame(first, listType(string))
+    }
+
+    fun testLastReleaseDropsInternedTypes() {
+        val string = builtIns.stringType
+        val first = listType(string)
+
+        SimpleTypeInterner.release()
+        SimpleTypeInterner.acquire()
+        assertNotSame(first, listType(string))
+    }
+
+    fun testExplicitScopeIsNotInterned() {
+        val any = builtIns.anyType
+        val first = KotlinTypeFactory.simpleType(Annotations.EMPTY, any.constructor, emptyList(), false, any.memberScope)
+        val second = KotlinTypeFactory.simpleType(Annotations.EMPTY, any.constructor, emptyList(), false, any.memberScope)
+        assertNotSame(first, second)
+    }
+
+    fun testDisabled() {
+        SimpleTypeInterner.release()
+        try {
+            val string = builtIns.stringType
+            assertNotSame(listType(string), listType(string))
+        }
+        finally {
+            SimpleTypeInterner.acquire()
+        }
+    }
+}
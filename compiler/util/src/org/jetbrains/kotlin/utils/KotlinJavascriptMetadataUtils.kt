@@ -31,7 +31,7 @@ class JsBinaryVersion(vararg numbers: Int) : BinaryVersion(*numbers) {
 
     companion object {
         @JvmField
-        val INSTANCE = JsBinaryVersion(0, 3, 0)
+        val INSTANCE = JsBinaryVersion(0, 4, 0)
 
         @JvmField
         val INVALID_VERSION = JsBinaryVersion()
@@ -33,13 +33,32 @@ object KotlinTypeFactory {
         }
     }
 
+    @JvmStatic
+    fun simpleType(
+            annotations: Annotations,
+            constructor: TypeConstructor,
+            arguments: List<TypeProjection>,
+            nullable: Boolean
+    ): SimpleType {
+        if (SimpleTypeInterner.isEnabled && SimpleTypeInterner.canIntern(annotations, constructor, arguments)) {
+            return SimpleTypeInterner.intern(constructor, arguments, nullable) {
+                SimpleTypeImpl(annotations, constructor, arguments, nullable, computeMemberScope(constructor, arguments), isInterned = true)
+            }
+        }
+        return SimpleTypeImpl(annotations, constructor, arguments, nullable, computeMemberScope(constructor, arguments))
+    }
+
+    /**
+     * Types created with an explicit [memberScope] are never interned, because the scope may differ from the one
+     * computed for [constructor] and [arguments].
+     */
     @JvmStatic
     fun simpleType(
             annotations: Annotations,
             constructor: TypeConstructor,
             arguments: List<TypeProjection>,
             nullable: Boolean,
-            memberScope: MemberScope = computeMemberScope(constructor, arguments)
+            memberScope: MemberScope
     ): SimpleType = SimpleTypeImpl(annotations, constructor, arguments, nullable, memberScope)
 
     @JvmStatic
@@ -47,7 +66,15 @@ object KotlinTypeFactory {
             annotations: Annotations,
             descriptor: ClassDescriptor,
             arguments: List<TypeProjection>
-    ): SimpleType = SimpleTypeImpl(annotations, descriptor.typeConstructor, arguments, false, descriptor.getMemberScope(arguments))
+    ): SimpleType {
+        val constructor = descriptor.typeConstructor
+        if (SimpleTypeInterner.isEnabled && SimpleTypeInterner.canIntern(annotations, constructor, arguments)) {
+            return SimpleTypeInterner.intern(constructor, arguments, false) {
+                SimpleTypeImpl(annotations, constructor, arguments, false, descriptor.getMemberScope(arguments), isInterned = true)
+            }
+        }
+        return SimpleTypeImpl(annotations, constructor, arguments, false, descriptor.getMemberScope(arguments))
+    }
 
     @JvmStatic
     fun simpleType(
@@ -71,10 +98,20 @@ private class SimpleTypeImpl(
         override val constructor: TypeConstructor,
         override val arguments: List<TypeProjection>,
         override val isMarkedNullable: Boolean,
-        override val memberScope: MemberScope
+        override val memberScope: MemberScope,
+        private val isInterned: Boolean = false
 ) : SimpleType() {
     override fun replaceAnnotations(newAnnotations: Annotations) = SimpleTypeImpl(newAnnotations, constructor, arguments, isMarkedNullable, memberScope)
-    override fun makeNullableAsSpecified(newNullability: Boolean) = SimpleTypeImpl(annotations, constructor, arguments, newNullability, memberScope)
+
+    override fun makeNullableAsSpecified(newNullability: Boolean): SimpleType {
+        // Substitution changes nullability of interned types, the result has the same member scope and can be interned too
+        if (isInterned && SimpleTypeInterner.isEnabled) {
+            return SimpleTypeInterner.intern(constructor, arguments, newNullability) {
+                SimpleTypeImpl(annotations, constructor, arguments, newNullability, memberScope, isInterned = true)
+            }
+        }
+        return SimpleTypeImpl(annotations, constructor, arguments, newNullability, memberScope)
+    }
 
     override val isError: Boolean
         get() = false
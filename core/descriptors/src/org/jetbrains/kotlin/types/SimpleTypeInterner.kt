@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.types
+
+import org.jetbrains.kotlin.descriptors.ClassDescriptor
+import org.jetbrains.kotlin.descriptors.annotations.Annotations
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Hash-consing table for class types without annotations, whose arguments are already built (no star projections, no lazy types).
+ *
+ * Keys are compared by identity of the type constructor and of the argument types, so two types are shared
+ * only if they are built from the very same components. Since argument types are interned themselves,
+ * identity comparison is enough to share nested types such as `Map<String, List<Int>>`.
+ *
+ * Values are held weakly: the table never prolongs the lifetime of a type.
+ *
+ * Interning is off by default. A compilation which wants it calls [acquire] before it starts and [release] when it ends,
+ * so that concurrent compilations in one process (e.g. the daemon) share the table, and it is dropped only when
+ * the last of them ends. Sharing is safe because keys are compared by identity: types of different compilations,
+ * built from different descriptors, never match.
+ */
+object SimpleTypeInterner {
+    private val isEnabledByProperty = System.getProperty("kotlin.types.intern") == "true"
+
+    // The number of compilations which have enabled interning and have not ended yet
+    @Volatile
+    private var users = 0
+
+    @JvmStatic
+    val isEnabled: Boolean
+        get() = isEnabledByProperty || users > 0
+
+    private val table = ConcurrentHashMap<Key, ValueReference>()
+    private val queue = ReferenceQueue<SimpleType>()
+
+    private val requests = AtomicLong()
+    private val hits = AtomicLong()
+
+    @JvmStatic
+    fun canIntern(annotations: Annotations, constructor: TypeConstructor, arguments: List<TypeProjection>): Boolean {
+        if (!annotations.isEmpty()) return false
+        if (constructor.declarationDescriptor !is ClassDescriptor) return false
+
+        for (argument in arguments) {
+            if (argument.isStarProjection) return false
+            val type = argument.type
+            if (type !is UnwrappedType || type.isError) return false
+        }
+        return true
+    }
+
+    @JvmStatic
+    fun intern(constructor: TypeConstructor, arguments: List<TypeProjection>, nullable: Boolean, create: () -> SimpleType): SimpleType {
+        requests.incrementAndGet()
+
+        val key = Key(constructor, arguments, nullable)
+        val interned = table[key]?.get()
+        if (interned != null) {
+            hits.incrementAndGet()
+            return interned
+        }
+
+        expungeStaleEntries()
+
+        val type = create()
+        val reference = ValueReference(key, type, queue)
+        while (true) {
+            val existing = table.putIfAbsent(key, reference) ?: return type
+
+            // Another thread could have interned the same type in between
+            val existingType = existing.get()
+            if (existingType != null) {
+                hits.incrementAndGet()
+                return existingType
+            }
+            if (table.replace(key, existing, reference)) return type
+        }
+    }
+
+    @Synchronized
+    fun acquire() {
+        users++
+    }
+
+    @Synchronized
+    fun release() {
+        if (users == 0) throw IllegalStateException("Type interner released more times than acquired")
+
+        // The types of ended compilations must not stay reachable from the table in a long-living process
+        if (--users == 0) {
+            table.clear()
+            requests.set(0)
+            hits.set(0)
+        }
+    }
+
+    fun report(consumer: (String) -> Unit) {
+        expungeStaleEntries()
+
+        val requests = requests.get()
+        val hits = hits.get()
+        if (requests == 0L) return
+
+        consumer("Type interning: $requests internable types requested, $hits reused instead of allocated " +
+                 "(${hits * 100 / requests}%), ${table.size} types alive in table")
+    }
+
+    private fun expungeStaleEntries() {
+        while (true) {
+            val reference = queue.poll() as ValueReference? ?: break
+            table.remove(reference.key, reference)
+        }
+    }
+
+    private class ValueReference(val key: Key, type: SimpleType, queue: ReferenceQueue<SimpleType>) : WeakReference<SimpleType>(type, queue)
+
+    private class Key(val constructor: TypeConstructor, val arguments: List<TypeProjection>, val nullable: Boolean) {
+        private val hashCode: Int = computeHashCode()
+
+        private fun computeHashCode(): Int {
+            var result = System.identityHashCode(constructor)
+            for (argument in arguments) {
+                result = 31 * result + argument.projectionKind.hashCode()
+                result = 31 * result + System.identityHashCode(argument.type)
+            }
+            return 31 * result + if (nullable) 1 else 0
+        }
+
+        override fun hashCode() = hashCode
+
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is Key) return false
+            if (hashCode != other.hashCode || nullable != other.nullable) return false
+            if (constructor !== other.constructor || arguments.size != other.arguments.size) return false
+
+            for (i in arguments.indices) {
+                val argument = arguments[i]
+                val otherArgument = other.arguments[i]
+                if (argument.projectionKind != otherArgument.projectionKind || argument.type !== otherArgument.type) return false
+            }
+            return true
+        }
+    }
+}
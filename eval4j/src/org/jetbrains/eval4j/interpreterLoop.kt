@@ -77,30 +77,35 @@ fun interpreterLoop(
         eval: Eval,
         handler: InterpretationEventHandler = InterpretationEventHandler.NONE
 ): InterpreterResult {
-    val firstInsn = m.instructions.first
-    if (firstInsn == null) throw IllegalArgumentException("Empty method")
+    val insns = m.instructions.toArray()
+    if (insns.isEmpty()) throw IllegalArgumentException("Empty method")
 
-    var currentInsn = firstInsn
+    var currentIndex = 0
+    var currentInsn = insns[0]
 
-    fun goto(nextInsn: AbstractInsnNode?) {
-        if (nextInsn == null) throw IllegalArgumentException("Instruction flow ended with no RETURN")
-        currentInsn = nextInsn
+    fun gotoIndex(nextIndex: Int) {
+        if (nextIndex >= insns.size) throw IllegalArgumentException("Instruction flow ended with no RETURN")
+        currentIndex = nextIndex
+        currentInsn = insns[nextIndex]
     }
 
+    fun goto(label: LabelNode) = gotoIndex(m.instructions.indexOf(label))
+
     val interpreter = SingleInstructionInterpreter(eval)
-    val frame = Frame(initialState)
+    // Primitive values are kept unboxed, the state is converted to a Frame only for instructions which need Eval
+    val frame = PrimitiveFrame(initialState)
     val handlers = computeHandlers(m)
 
     class ResultException(val result: InterpreterResult): RuntimeException()
 
     fun exceptionCaught(exceptionValue: Value, instanceOf: (Type) -> Boolean): Boolean {
-        val catchBlocks = handlers[m.instructions.indexOf(currentInsn)] ?: listOf()
+        val catchBlocks = handlers[currentIndex] ?: listOf()
         for (catch in catchBlocks) {
             val exceptionTypeInternalName = catch.type
             if (exceptionTypeInternalName != null) {
                 val exceptionType = Type.getObjectType(exceptionTypeInternalName)
                 if (instanceOf(exceptionType)) {
-                    val handled = handler.exceptionCaught(frame, currentInsn, exceptionValue)
+                    val handled = handler.exceptionCaught(frame.toFrame(), currentInsn, exceptionValue)
                     if (handled != null) throw ResultException(handled)
                     frame.clearStack()
                     frame.push(exceptionValue)
@@ -161,10 +166,6 @@ fun interpreterLoop(
                             continue@loop
                         }
 
-                        // TODO: switch
-                        LOOKUPSWITCH -> UnsupportedByteCodeException("LOOKUPSWITCH is not supported yet")
-                        TABLESWITCH -> UnsupportedByteCodeException("TABLESWITCH is not supported yet")
-
                         IRETURN, LRETURN, FRETURN, DRETURN, ARETURN -> {
                             val value = frame.getStackTop()
                             val expectedType = Type.getReturnType(m.desc)
@@ -190,16 +191,9 @@ fun interpreterLoop(
                             return ValueReturned(value)
                         }
                         RETURN -> return ValueReturned(VOID_VALUE)
-                        IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, IFNULL, IFNONNULL -> {
-                            if (interpreter.checkUnaryCondition(frame.getStackTop(), insnOpcode)) {
-                                frame.execute(currentInsn, interpreter)
-                                goto((currentInsn as JumpInsnNode).label)
-                                continue@loop
-                            }
-                        }
+                        IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, IFNULL, IFNONNULL,
                         IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE, IF_ACMPEQ, IF_ACMPNE -> {
-                            if (interpreter.checkBinaryCondition(frame.getStackTop(1), frame.getStackTop(0), insnOpcode)) {
-                                frame.execute(currentInsn, interpreter)
+                            if (frame.checkCondition(insnOpcode)) {
                                 goto((currentInsn as JumpInsnNode).label)
                                 continue@loop
                             }
@@ -207,35 +201,38 @@ fun interpreterLoop(
 
                         ATHROW -> {
                             val exceptionValue = frame.getStackTop() as ObjectValue
-                            val handled = handler.exceptionThrown(frame, currentInsn, exceptionValue)
+                            val handled = handler.exceptionThrown(frame.toFrame(), currentInsn, exceptionValue)
                             if (handled != null) return handled
                             if (exceptionCaught(exceptionValue)) continue@loop
                             return ExceptionThrown(exceptionValue, ExceptionKind.FROM_EVALUATED_CODE)
                         }
 
-                        // Workaround for a bug in Kotlin: NoPatterMatched exception is thrown otherwise!
-                        else -> {}
-                    }
-
-                    try {
-                        frame.execute(currentInsn, interpreter)
-                    }
-                    catch (e: ThrownFromEvalExceptionBase) {
-                        val exception = e.cause!!
-                        val exceptionValue = ObjectValue(exception, Type.getType(exception.javaClass))
-                        val handled = handler.exceptionThrown(frame, currentInsn,
-                                exceptionValue)
-                        if (handled != null) return handled
-                        if (exceptionFromEvalCaught(exception, exceptionValue)) continue@loop
-
-                        val exceptionType = if (e is BrokenCode) ExceptionKind.BROKEN_CODE else ExceptionKind.FROM_EVALUATOR
-                        return ExceptionThrown(exceptionValue, exceptionType)
-                    }
-                    catch (e: ThrownFromEvaluatedCodeException) {
-                        val handled = handler.exceptionThrown(frame, currentInsn, e.exception)
-                        if (handled != null) return handled
-                        if (exceptionCaught(e.exception)) continue@loop
-                        return ExceptionThrown(e.exception, ExceptionKind.FROM_EVALUATED_CODE)
+                        else -> {
+                            if (!frame.executeLocally(currentInsn)) {
+                                val evalFrame = frame.toFrame()
+                                try {
+                                    evalFrame.execute(currentInsn, interpreter)
+                                }
+                                catch (e: ThrownFromEvalExceptionBase) {
+                                    val exception = e.cause!!
+                                    val exceptionValue = ObjectValue(exception, Type.getType(exception.javaClass))
+                                    val handled = handler.exceptionThrown(evalFrame, currentInsn,
+                                            exceptionValue)
+                                    if (handled != null) return handled
+                                    if (exceptionFromEvalCaught(exception, exceptionValue)) continue@loop
+
+                                    val exceptionType = if (e is BrokenCode) ExceptionKind.BROKEN_CODE else ExceptionKind.FROM_EVALUATOR
+                                    return ExceptionThrown(exceptionValue, exceptionType)
+                                }
+                                catch (e: ThrownFromEvaluatedCodeException) {
+                                    val handled = handler.exceptionThrown(evalFrame, currentInsn, e.exception)
+                                    if (handled != null) return handled
+                                    if (exceptionCaught(e.exception)) continue@loop
+                                    return ExceptionThrown(e.exception, ExceptionKind.FROM_EVALUATED_CODE)
+                                }
+                                frame.load(evalFrame)
+                            }
+                        }
                     }
                 }
             }
@@ -243,7 +240,7 @@ fun interpreterLoop(
             val handled = handler.instructionProcessed(currentInsn)
             if (handled != null) return handled
 
-            goto(currentInsn.next)
+            gotoIndex(currentIndex + 1)
         }
     }
     catch(e: ResultException) {
@@ -251,8 +248,6 @@ fun interpreterLoop(
     }
 }
 
-private fun <T: Value> Frame<T>.getStackTop(i: Int = 0) = this.getStack(this.stackSize - 1 - i) ?: throwBrokenCodeException(IllegalArgumentException("Couldn't get value with index = $i from top of stack"))
-
 // Copied from org.jetbrains.org.objectweb.asm.tree.analysis.Analyzer.analyze()
 fun computeHandlers(m: MethodNode): Array<out List<TryCatchBlockNode>?> {
     val insns = m.instructions
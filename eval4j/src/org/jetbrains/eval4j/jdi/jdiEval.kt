@@ -32,7 +32,8 @@ class JDIEval(
         private val vm: VirtualMachine,
         private val defaultClassLoader: ClassLoaderReference?,
         private val thread: ThreadReference,
-        private val invokePolicy: Int
+        private val invokePolicy: Int,
+        val mirrorCache: JdiMirrorCache = JdiMirrorCache()
 ) : Eval {
 
     private val primitiveTypes = mapOf(
@@ -51,38 +52,46 @@ class JDIEval(
     }
 
     fun loadClass(classType: Type, classLoader: ClassLoaderReference?): Value {
-        val loadedClasses = vm.classesByName(classType.internalName)
-        if (!loadedClasses.isEmpty()) {
-            val loadedClass = loadedClasses[0]
-            if (classType.descriptor in BOOTSTRAP_CLASS_DESCRIPTORS || loadedClass.classLoader() == classLoader) {
-                return loadedClass.classObject().asValue()
+        return loadReferenceType(classType, classLoader).classObject().asValue()
+    }
+
+    private fun loadReferenceType(classType: Type, classLoader: ClassLoaderReference?): ReferenceType {
+        return mirrorCache.getReferenceType(classType.internalName, classLoader) {
+            val loadedClasses = vm.classesByName(classType.internalName)
+            if (!loadedClasses.isEmpty()) {
+                val loadedClass = loadedClasses[0]
+                if (classType.descriptor in BOOTSTRAP_CLASS_DESCRIPTORS || loadedClass.classLoader() == classLoader) {
+                    return@getReferenceType loadedClass
+                }
             }
-        }
-        if (classLoader == null) {
-            return invokeStaticMethod(
-                    MethodDescription(
-                            CLASS.internalName,
-                            "forName",
-                            "(Ljava/lang/String;)Ljava/lang/Class;",
-                            true
-                    ),
-                    listOf(vm.mirrorOf(classType.internalName.replace('/', '.')).asValue())
-            )
-        }
-        else {
-            return invokeStaticMethod(
-                    MethodDescription(
-                            CLASS.internalName,
-                            "forName",
-                            "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;",
-                            true
-                    ),
-                    listOf(
-                            vm.mirrorOf(classType.internalName.replace('/', '.')).asValue(),
-                            boolean(true),
-                            classLoader.asValue()
-                    )
-            )
+
+            val classObject = if (classLoader == null) {
+                invokeStaticMethod(
+                        MethodDescription(
+                                CLASS.internalName,
+                                "forName",
+                                "(Ljava/lang/String;)Ljava/lang/Class;",
+                                true
+                        ),
+                        listOf(vm.mirrorOf(classType.internalName.replace('/', '.')).asValue())
+                )
+            }
+            else {
+                invokeStaticMethod(
+                        MethodDescription(
+                                CLASS.internalName,
+                                "forName",
+                                "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;",
+                                true
+                        ),
+                        listOf(
+                                vm.mirrorOf(classType.internalName.replace('/', '.')).asValue(),
+                                boolean(true),
+                                classLoader.asValue()
+                        )
+                )
+            }
+            classObject.jdiClass!!.reflectedType()
         }
     }
 
@@ -109,7 +118,7 @@ class JDIEval(
                 listOf(value)).boolean
     }
 
-    fun Type.asReferenceType(classLoader: ClassLoaderReference? = this@JDIEval.defaultClassLoader): ReferenceType = loadClass(this, classLoader).jdiClass!!.reflectedType()
+    fun Type.asReferenceType(classLoader: ClassLoaderReference? = this@JDIEval.defaultClassLoader): ReferenceType = loadReferenceType(this, classLoader)
     fun Type.asArrayType(classLoader: ClassLoaderReference? = this@JDIEval.defaultClassLoader): ArrayType = asReferenceType(classLoader) as ArrayType
 
     override fun newArray(arrayType: Type, size: Int): Value {
@@ -166,7 +175,7 @@ class JDIEval(
 
     private fun findField(fieldDesc: FieldDescription): Field {
         val _class = fieldDesc.ownerType.asReferenceType()
-        val field = _class.fieldByName(fieldDesc.name)
+        val field = mirrorCache.getField(_class, fieldDesc.name) { _class.fieldByName(fieldDesc.name) }
         if (field == null) {
             throwBrokenCodeException(NoSuchFieldError("Field not found: $fieldDesc"))
         }
@@ -203,17 +212,16 @@ class JDIEval(
     }
 
     private fun findMethod(methodDesc: MethodDescription, _class: ReferenceType = methodDesc.ownerType.asReferenceType()): Method {
-        val method = when (_class) {
-            is ClassType -> {
-                val m = _class.concreteMethodByName(methodDesc.name, methodDesc.desc)
-                if (m == null) listOf() else listOf(m)
+        val method = mirrorCache.getMethod(_class, methodDesc.name, methodDesc.desc) {
+            when (_class) {
+                is ClassType -> _class.concreteMethodByName(methodDesc.name, methodDesc.desc)
+                else -> _class.methodsByName(methodDesc.name, methodDesc.desc).firstOrNull()
             }
-            else -> _class.methodsByName(methodDesc.name, methodDesc.desc)
         }
-        if (method.isEmpty()) {
+        if (method == null) {
             throwBrokenCodeException(NoSuchMethodError("Method not found: $methodDesc"))
         }
-        return method[0]
+        return method
     }
 
     override fun invokeStaticMethod(methodDesc: MethodDescription, arguments: List<Value>): Value {
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.eval4j.jdi
+
+import com.sun.jdi.ClassLoaderReference
+import com.sun.jdi.Field
+import com.sun.jdi.Method
+import com.sun.jdi.ReferenceType
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Remembers the mirrors found by [JDIEval], so that every class, method and field is looked up in the debuggee only once
+ * per evaluation session instead of once per executed instruction.
+ *
+ * Only successful lookups are cached: a class which is not loaded yet may get prepared while the evaluated code runs.
+ * A prepared class may replace a class with the same name known under the same class loader
+ * (e.g. after it has been unloaded), so [classPrepared] should be called for class prepare events received during the session.
+ * Those events are delivered on the debugger event thread, hence the concurrent maps.
+ */
+class JdiMirrorCache {
+    class Statistics {
+        var classLookups: Int = 0
+            internal set
+        var classRoundTrips: Int = 0
+            internal set
+        var methodLookups: Int = 0
+            internal set
+        var methodRoundTrips: Int = 0
+            internal set
+        var fieldLookups: Int = 0
+            internal set
+        var fieldRoundTrips: Int = 0
+            internal set
+
+        val roundTrips: Int
+            get() = classRoundTrips + methodRoundTrips + fieldRoundTrips
+
+        override fun toString() =
+                "classes: $classRoundTrips/$classLookups, methods: $methodRoundTrips/$methodLookups, fields: $fieldRoundTrips/$fieldLookups"
+    }
+
+    private data class ClassKey(val internalName: String, val classLoader: ClassLoaderReference?)
+    private data class MethodKey(val type: ReferenceType, val name: String, val desc: String)
+    private data class FieldKey(val type: ReferenceType, val name: String)
+
+    private val classes = ConcurrentHashMap<ClassKey, ReferenceType>()
+    private val methods = ConcurrentHashMap<MethodKey, Method>()
+    private val fields = ConcurrentHashMap<FieldKey, Field>()
+
+    val statistics = Statistics()
+
+    fun getReferenceType(internalName: String, classLoader: ClassLoaderReference?, lookup: () -> ReferenceType): ReferenceType {
+        statistics.classLookups++
+        val key = ClassKey(internalName, classLoader)
+        classes[key]?.let { return it }
+
+        statistics.classRoundTrips++
+        return lookup().apply { classes[key] = this }
+    }
+
+    fun getMethod(type: ReferenceType, name: String, desc: String, lookup: () -> Method?): Method? {
+        statistics.methodLookups++
+        val key = MethodKey(type, name, desc)
+        methods[key]?.let { return it }
+
+        statistics.methodRoundTrips++
+        return lookup()?.apply { methods[key] = this }
+    }
+
+    fun getField(type: ReferenceType, name: String, lookup: () -> Field?): Field? {
+        statistics.fieldLookups++
+        val key = FieldKey(type, name)
+        fields[key]?.let { return it }
+
+        statistics.fieldRoundTrips++
+        return lookup()?.apply { fields[key] = this }
+    }
+
+    fun classPrepared(type: ReferenceType) {
+        val internalName = type.name().replace('.', '/')
+        classes.keys.removeAll { it.internalName == internalName }
+        methods.keys.removeAll { it.type.name() == type.name() }
+        fields.keys.removeAll { it.type.name() == type.name() }
+    }
+
+    fun clear() {
+        classes.clear()
+        methods.clear()
+        fields.clear()
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.eval4j
+
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+
+/**
+ * Interpreter state keeping primitive values unboxed.
+ *
+ * Locals and operand stack share the slot arrays (locals first). A slot holds either a primitive value,
+ * stored in [bits] and typed by [types], or any other [Value] stored in [values].
+ * For primitive slots [values] caches the boxed value, so that it is allocated at most once per written value,
+ * and only when the state is converted to a [Frame] for an instruction which is not executed locally.
+ *
+ * Like [Frame], the operand stack has one entry per value, while long and double locals take two slots.
+ */
+internal class PrimitiveFrame(initialState: Frame<Value>) {
+    private val localCount = initialState.locals
+    private val maxStackSize = initialState.maxStackSize
+
+    // One more slot is reserved as a scratch space for stack manipulations
+    private val bits = LongArray(localCount + maxStackSize + 1)
+    private val types = arrayOfNulls<Type>(localCount + maxStackSize + 1)
+    private val values = arrayOfNulls<Value>(localCount + maxStackSize + 1)
+
+    private var top = localCount
+
+    init {
+        load(initialState)
+    }
+
+    val stackSize: Int
+        get() = top - localCount
+
+    fun getLocal(index: Int): Value = get(index)
+
+    fun getStackTop(i: Int = 0): Value {
+        if (i >= stackSize) throwBrokenCodeException(IllegalArgumentException("Couldn't get value with index = $i from top of stack"))
+        return get(top - 1 - i)
+    }
+
+    fun push(value: Value) {
+        set(top++, value)
+    }
+
+    fun clearStack() {
+        while (top > localCount) {
+            values[--top] = null
+        }
+    }
+
+    fun toFrame(): Frame<Value> {
+        val frame = Frame<Value>(localCount, maxStackSize)
+        for (i in 0..localCount - 1) {
+            frame.setLocal(i, get(i))
+        }
+        for (i in localCount..top - 1) {
+            frame.push(get(i))
+        }
+        return frame
+    }
+
+    fun load(frame: Frame<Value>) {
+        for (i in 0..localCount - 1) {
+            set(i, frame.getLocal(i))
+        }
+        clearStack()
+        for (i in 0..frame.stackSize - 1) {
+            push(frame.getStack(i))
+        }
+    }
+
+    /**
+     * Executes an instruction which only operates on locals, constants and primitive values.
+     *
+     * @return false if the instruction has not been executed, because it needs [Eval] or is a control flow instruction
+     */
+    fun executeLocally(insn: AbstractInsnNode): Boolean {
+        when (insn.opcode) {
+            NOP -> {}
+
+            ACONST_NULL -> push(NULL_VALUE)
+            ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5 -> pushInt(insn.opcode - ICONST_0)
+            LCONST_0, LCONST_1 -> pushLong((insn.opcode - LCONST_0).toLong())
+            FCONST_0, FCONST_1, FCONST_2 -> pushFloat((insn.opcode - FCONST_0).toFloat())
+            DCONST_0, DCONST_1 -> pushDouble((insn.opcode - DCONST_0).toDouble())
+            BIPUSH, SIPUSH -> pushInt((insn as IntInsnNode).operand)
+            LDC -> {
+                val cst = (insn as LdcInsnNode).cst
+                when (cst) {
+                    is Int -> pushInt(cst)
+                    is Long -> pushLong(cst)
+                    is Float -> pushFloat(cst)
+                    is Double -> pushDouble(cst)
+                    else -> return false
+                }
+            }
+
+            ILOAD, LLOAD, FLOAD, DLOAD, ALOAD -> copy((insn as VarInsnNode).`var`, top++)
+            ISTORE, LSTORE, FSTORE, DSTORE, ASTORE -> {
+                val index = (insn as VarInsnNode).`var`
+                copy(--top, index)
+                values[top] = null
+                if (sizeOf(index) == 2) {
+                    set(index + 1, NOT_A_VALUE)
+                }
+                if (index > 0 && sizeOf(index - 1) == 2) {
+                    set(index - 1, NOT_A_VALUE)
+                }
+            }
+            IINC -> {
+                val index = (insn as IincInsnNode).`var`
+                setInt(index, bits[index].toInt() + insn.incr)
+            }
+
+            POP -> drop()
+            POP2 -> {
+                if (sizeOf(top - 1) == 1) drop()
+                drop()
+            }
+            DUP -> copy(top - 1, top++)
+            DUP_X1 -> {
+                copy(top - 1, top)
+                copy(top - 2, top - 1)
+                copy(top, top - 2)
+                top++
+            }
+            DUP2 -> {
+                if (sizeOf(top - 1) == 1) {
+                    copy(top - 2, top)
+                    copy(top - 1, top + 1)
+                    top += 2
+                }
+                else {
+                    copy(top - 1, top++)
+                }
+            }
+            SWAP -> {
+                copy(top - 1, top)
+                copy(top - 2, top - 1)
+                copy(top, top - 2)
+                values[top] = null
+            }
+
+            IADD -> { val v2 = popInt(); pushInt(popInt() + v2) }
+            ISUB -> { val v2 = popInt(); pushInt(popInt() - v2) }
+            IMUL -> { val v2 = popInt(); pushInt(popInt() * v2) }
+            IDIV -> { val v2 = popInt(); pushInt(popInt() / v2) }
+            IREM -> { val v2 = popInt(); pushInt(popInt() % v2) }
+            ISHL -> { val v2 = popInt(); pushInt(popInt() shl v2) }
+            ISHR -> { val v2 = popInt(); pushInt(popInt() shr v2) }
+            IUSHR -> { val v2 = popInt(); pushInt(popInt() ushr v2) }
+            IAND -> { val v2 = popInt(); pushInt(popInt() and v2) }
+            IOR -> { val v2 = popInt(); pushInt(popInt() or v2) }
+            IXOR -> { val v2 = popInt(); pushInt(popInt() xor v2) }
+
+            LADD -> { val v2 = popLong(); pushLong(popLong() + v2) }
+            LSUB -> { val v2 = popLong(); pushLong(popLong() - v2) }
+            LMUL -> { val v2 = popLong(); pushLong(popLong() * v2) }
+            LDIV -> { val v2 = popLong(); pushLong(popLong() / v2) }
+            LREM -> { val v2 = popLong(); pushLong(popLong() % v2) }
+            LSHL -> { val v2 = popInt(); pushLong(popLong() shl v2) }
+            LSHR -> { val v2 = popInt(); pushLong(popLong() shr v2) }
+            LUSHR -> { val v2 = popInt(); pushLong(popLong() ushr v2) }
+            LAND -> { val v2 = popLong(); pushLong(popLong() and v2) }
+            LOR -> { val v2 = popLong(); pushLong(popLong() or v2) }
+            LXOR -> { val v2 = popLong(); pushLong(popLong() xor v2) }
+
+            FADD -> { val v2 = popFloat(); pushFloat(popFloat() + v2) }
+            FSUB -> { val v2 = popFloat(); pushFloat(popFloat() - v2) }
+            FMUL -> { val v2 = popFloat(); pushFloat(popFloat() * v2) }
+            FDIV -> { val v2 = popFloat(); pushFloat(popFloat() / v2) }
+            FREM -> { val v2 = popFloat(); pushFloat(popFloat() % v2) }
+
+            DADD -> { val v2 = popDouble(); pushDouble(popDouble() + v2) }
+            DSUB -> { val v2 = popDouble(); pushDouble(popDouble() - v2) }
+            DMUL -> { val v2 = popDouble(); pushDouble(popDouble() * v2) }
+            DDIV -> { val v2 = popDouble(); pushDouble(popDouble() / v2) }
+            DREM -> { val v2 = popDouble(); pushDouble(popDouble() % v2) }
+
+            INEG -> pushInt(-popInt())
+            LNEG -> pushLong(-popLong())
+            FNEG -> pushFloat(-popFloat())
+            DNEG -> pushDouble(-popDouble())
+
+            L2I -> pushInt(popLong().toInt())
+            F2I -> pushInt(popFloat().toInt())
+            D2I -> pushInt(popDouble().toInt())
+            I2B -> pushInt(popInt().toByte().toInt(), Type.BYTE_TYPE)
+            I2C -> pushInt(popInt().toChar().toInt(), Type.CHAR_TYPE)
+            I2S -> pushInt(popInt().toShort().toInt(), Type.SHORT_TYPE)
+            I2F -> pushFloat(popInt().toFloat())
+            L2F -> pushFloat(popLong().toFloat())
+            D2F -> pushFloat(popDouble().toFloat())
+            I2L -> pushLong(popInt().toLong())
+            F2L -> pushLong(popFloat().toLong())
+            D2L -> pushLong(popDouble().toLong())
+            I2D -> pushDouble(popInt().toDouble())
+            L2D -> pushDouble(popLong().toDouble())
+            F2D -> pushDouble(popFloat().toDouble())
+
+            LCMP -> {
+                val v2 = popLong()
+                val v1 = popLong()
+                pushInt(when {
+                    v1 > v2 -> 1
+                    v1 == v2 -> 0
+                    else -> -1
+                })
+            }
+            FCMPL, FCMPG -> {
+                val v2 = popFloat()
+                val v1 = popFloat()
+                pushInt(when {
+                    v1 > v2 -> 1
+                    v1 == v2 -> 0
+                    v1 < v2 -> -1
+                    // one of them is NaN
+                    else -> if (insn.opcode == FCMPG) 1 else -1
+                })
+            }
+            DCMPL, DCMPG -> {
+                val v2 = popDouble()
+                val v1 = popDouble()
+                pushInt(when {
+                    v1 > v2 -> 1
+                    v1 == v2 -> 0
+                    v1 < v2 -> -1
+                    // one of them is NaN
+                    else -> if (insn.opcode == DCMPG) 1 else -1
+                })
+            }
+
+            else -> return false
+        }
+        return true
+    }
+
+    /**
+     * Pops the operands of a conditional jump and checks its condition.
+     */
+    fun checkCondition(opcode: Int): Boolean {
+        return when (opcode) {
+            IFEQ -> popInt() == 0
+            IFNE -> popInt() != 0
+            IFLT -> popInt() < 0
+            IFGT -> popInt() > 0
+            IFLE -> popInt() <= 0
+            IFGE -> popInt() >= 0
+            IFNULL -> popValue().obj() == null
+            IFNONNULL -> popValue().obj() != null
+
+            IF_ICMPEQ -> { val v2 = popInt(); popInt() == v2 }
+            IF_ICMPNE -> { val v2 = popInt(); popInt() != v2 }
+            IF_ICMPLT -> { val v2 = popInt(); popInt() < v2 }
+            IF_ICMPGT -> { val v2 = popInt(); popInt() > v2 }
+            IF_ICMPLE -> { val v2 = popInt(); popInt() <= v2 }
+            IF_ICMPGE -> { val v2 = popInt(); popInt() >= v2 }
+
+            IF_ACMPEQ -> { val v2 = popValue().obj(); popValue().obj() == v2 }
+            IF_ACMPNE -> { val v2 = popValue().obj(); popValue().obj() != v2 }
+            else -> throw UnsupportedByteCodeException("Unknown opcode: $opcode")
+        }
+    }
+
+    private fun get(index: Int): Value {
+        val type = types[index] ?: return values[index]!!
+        return values[index] ?: box(bits[index], type).apply { values[index] = this }
+    }
+
+    private fun set(index: Int, value: Value) {
+        when (value) {
+            is IntValue -> bits[index] = value.value.toLong()
+            is LongValue -> bits[index] = value.value
+            is FloatValue -> bits[index] = java.lang.Float.floatToRawIntBits(value.value).toLong()
+            is DoubleValue -> bits[index] = java.lang.Double.doubleToRawLongBits(value.value)
+            else -> {
+                types[index] = null
+                values[index] = value
+                return
+            }
+        }
+        types[index] = value.asmType
+        values[index] = value
+    }
+
+    private fun copy(from: Int, to: Int) {
+        bits[to] = bits[from]
+        types[to] = types[from]
+        values[to] = values[from]
+    }
+
+    private fun sizeOf(index: Int): Int {
+        val type = types[index] ?: return values[index]?.size ?: 1
+        return type.size
+    }
+
+    private fun drop() {
+        values[--top] = null
+    }
+
+    private fun setInt(index: Int, value: Int, type: Type = Type.INT_TYPE) {
+        bits[index] = value.toLong()
+        types[index] = type
+        values[index] = null
+    }
+
+    private fun pushInt(value: Int, type: Type = Type.INT_TYPE) = setInt(top++, value, type)
+
+    private fun pushLong(value: Long) {
+        bits[top] = value
+        types[top] = Type.LONG_TYPE
+        values[top++] = null
+    }
+
+    private fun pushFloat(value: Float) = setInt(top++, java.lang.Float.floatToRawIntBits(value), Type.FLOAT_TYPE)
+
+    private fun pushDouble(value: Double) {
+        bits[top] = java.lang.Double.doubleToRawLongBits(value)
+        types[top] = Type.DOUBLE_TYPE
+        values[top++] = null
+    }
+
+    private fun popInt(): Int {
+        values[--top] = null
+        return bits[top].toInt()
+    }
+
+    private fun popLong(): Long {
+        values[--top] = null
+        return bits[top]
+    }
+
+    private fun popFloat(): Float = java.lang.Float.intBitsToFloat(popInt())
+
+    private fun popDouble(): Double = java.lang.Double.longBitsToDouble(popLong())
+
+    private fun popValue(): Value {
+        val value = get(--top)
+        values[top] = null
+        return value
+    }
+
+    private fun box(bits: Long, type: Type): Value {
+        return when (type.sort) {
+            Type.LONG -> LongValue(bits)
+            Type.FLOAT -> FloatValue(java.lang.Float.intBitsToFloat(bits.toInt()))
+            Type.DOUBLE -> DoubleValue(java.lang.Double.longBitsToDouble(bits))
+            else -> IntValue(bits.toInt(), type)
+        }
+    }
+}
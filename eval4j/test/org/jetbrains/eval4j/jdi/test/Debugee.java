@@ -16,10 +16,24 @@
 
 package org.jetbrains.eval4j.jdi.test;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+
 public class Debugee {
     public static void main(String[] args) {
         // BREAKPOINT
         Runtime.getRuntime();
         System.out.println("hi");
     }
+
+    // Not used by main, so it is prepared only when an evaluation loads it
+    public static class PreparedDuringEvaluation {
+    }
+
+    // Prepares a copy of PreparedDuringEvaluation in a new class loader, which sends one more class prepare event for its name
+    public static Class<?> prepareAnotherCopy() throws Exception {
+        URL location = Debugee.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[] {location}, null);
+        return Class.forName("org.jetbrains.eval4j.jdi.test.Debugee$PreparedDuringEvaluation", true, classLoader);
+    }
 }
@@ -19,6 +19,7 @@ package org.jetbrains.eval4j.jdi.test
 import com.sun.jdi.*
 import com.sun.jdi.event.BreakpointEvent
 import com.sun.jdi.event.ClassPrepareEvent
+import com.sun.jdi.request.EventRequest
 import junit.framework.TestCase
 import junit.framework.TestSuite
 import org.jetbrains.eval4j.*
@@ -32,6 +33,8 @@ import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.Type
 import java.io.File
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
 val DEBUGEE_CLASS = Debugee::class.java
@@ -160,5 +163,104 @@ fun suite(): TestSuite {
         }
     }
 
+    remainingTests.incrementAndGet()
+    suite.addTest(object : TestCase("mirrorCache") {
+        override fun runTest() {
+            try {
+                val eval = JDIEval(vm, classLoader!!, thread!!, 0)
+                val statistics = eval.mirrorCache.statistics
+
+                fun evaluate(): Value {
+                    val stringClass = eval.loadClass(Type.getType(String::class.java))
+                    val boxed = eval.invokeStaticMethod(
+                            MethodDescription("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", true),
+                            listOf(int(42))
+                    )
+                    eval.getStaticField(FieldDescription("java/lang/Integer", "MAX_VALUE", "I", true))
+                    return eval.invokeMethod(stringClass, MethodDescription("java/lang/Object", "equals", "(Ljava/lang/Object;)Z", false), listOf(boxed))
+                }
+
+                assertEquals(boolean(false), evaluate())
+                val roundTrips = statistics.roundTrips
+                assertTrue("Mirrors should be looked up in the debuggee: $statistics", roundTrips > 0)
+
+                assertEquals(boolean(false), evaluate())
+                assertEquals("Mirrors should be reused: $statistics", roundTrips, statistics.roundTrips)
+
+                eval.mirrorCache.classPrepared(vm.classesByName("java.lang.Integer").first())
+                assertEquals(boolean(false), evaluate())
+                assertTrue("Mirrors of a prepared class should be looked up again: $statistics", statistics.roundTrips > roundTrips)
+            }
+            finally {
+                if (remainingTests.decrementAndGet() == 0) vm.resume()
+            }
+        }
+    })
+
+    remainingTests.incrementAndGet()
+    suite.addTest(object : TestCase("mirrorCacheClassPrepareEvent") {
+        override fun runTest() {
+            try {
+                val eval = JDIEval(vm, classLoader!!, thread!!, 0)
+                val statistics = eval.mirrorCache.statistics
+                val preparedType = Type.getType(Debugee.PreparedDuringEvaluation::class.java)
+
+                // Forward class prepare events to the cache like the debugger does, here without suspending the debuggee
+                val request = vm.eventRequestManager().createClassPrepareRequest()
+                request.addClassFilter(preparedType.className)
+                request.setSuspendPolicy(EventRequest.SUSPEND_NONE)
+                request.enable()
+
+                val preparedEvents = Semaphore(0)
+                val eventThread = Thread {
+                    try {
+                        while (true) {
+                            val eventSet = vm.eventQueue().remove()
+                            for (event in eventSet.eventIterator()) {
+                                if (event is ClassPrepareEvent && event.request() == request) {
+                                    eval.mirrorCache.classPrepared(event.referenceType())
+                                    preparedEvents.release()
+                                }
+                            }
+                        }
+                    }
+                    catch (e: InterruptedException) {
+                    }
+                }
+                eventThread.isDaemon = true
+                eventThread.start()
+
+                try {
+                    // The first lookup loads the class in the debuggee
+                    eval.loadClass(preparedType)
+                    assertTrue("The class should be prepared", preparedEvents.tryAcquire(10, TimeUnit.SECONDS))
+
+                    eval.loadClass(preparedType)
+                    val roundTrips = statistics.roundTrips
+                    eval.loadClass(preparedType)
+                    assertEquals("The mirror should be reused: $statistics", roundTrips, statistics.roundTrips)
+
+                    eval.invokeStaticMethod(
+                            MethodDescription(Type.getInternalName(DEBUGEE_CLASS), "prepareAnotherCopy", "()Ljava/lang/Class;", true),
+                            listOf()
+                    )
+                    assertTrue("Another copy should be prepared", preparedEvents.tryAcquire(10, TimeUnit.SECONDS))
+                    val roundTripsAfterEvent = statistics.roundTrips
+
+                    eval.loadClass(preparedType)
+                    assertTrue("The mirror should be looked up again after the class prepare event: $statistics",
+                               statistics.roundTrips > roundTripsAfterEvent)
+                }
+                finally {
+                    vm.eventRequestManager().deleteEventRequest(request)
+                    eventThread.interrupt()
+                }
+            }
+            finally {
+                if (remainingTests.decrementAndGet() == 0) vm.resume()
+            }
+        }
+    })
+
     return suite
 }
\ No newline at end of file
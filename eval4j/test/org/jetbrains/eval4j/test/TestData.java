@@ -219,6 +219,27 @@ class TestData extends BaseTestData {
         }
     }
 
+    static long loopWithWideLocals() {
+        long sum = 0;
+        double d = 0.5;
+        for (int i = 0; i < 1000; i++) {
+            sum += i * 3L;
+            d = d * 1.5 - i;
+            if (d < 0) d = -d;
+            sum ^= (long) d;
+        }
+        return sum;
+    }
+
+    static String loopWithCalls() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            char c = (char) ('a' + i % 26);
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
     static int simpleFinally() {
         int i = 5;
         try {
@@ -83,16 +83,36 @@ class KotlinCacheServiceImpl(val project: Project) : KotlinCacheService {
             )
         }
 
+        private val moduleResolverProviderLayers = ModuleResolverProviderLayers(
+                project,
+                createForAllModules = {
+                    globalResolveSessionProvider(
+                            "project source roots and libraries for platform $platform",
+                            project,
+                            platform,
+                            sdk,
+                            commonGlobalContext = globalContext,
+                            reuseDataFrom = facadeForLibraries.moduleResolverProvider,
+                            moduleFilter = { !it.isLibraryClasses() },
+                            dependencies = emptyList()
+                    ).value
+                },
+                createForModules = { delegate, modules ->
+                    globalResolveSessionProvider(
+                            "project source roots invalidated by out-of-block modification for platform $platform",
+                            project,
+                            platform,
+                            sdk,
+                            commonGlobalContext = globalContext,
+                            reuseDataFrom = delegate,
+                            moduleFilter = { it in modules },
+                            dependencies = emptyList()
+                    ).value
+                }
+        )
+
         val facadeForModules = ProjectResolutionFacade(project, globalContext.storageManager) {
-            globalResolveSessionProvider(
-                    "project source roots and libraries for platform $platform",
-                    project,
-                    platform,
-                    sdk,
-                    commonGlobalContext = globalContext,
-                    reuseDataFrom = facadeForLibraries,
-                    moduleFilter = { !it.isLibraryClasses() },
-                    dependencies = listOf(PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT))
+            moduleResolverProviderLayers.compute()
         }
     }
 
@@ -122,7 +142,7 @@ class KotlinCacheServiceImpl(val project: Project) : KotlinCacheService {
         val dependenciesForSyntheticFileCache = listOf(PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT, filesModificationTracker)
         val debugName = "completion/highlighting in $syntheticFileModule for files ${files.joinToString { it.name }} for platform $targetPlatform"
 
-        fun makeGlobalResolveSessionProvider(reuseDataFrom: ProjectResolutionFacade? = null,
+        fun makeGlobalResolveSessionProvider(reuseDataFrom: ModuleResolverProvider? = null,
                                              moduleFilter: (IdeaModuleInfo) -> Boolean = { true }
         ): CachedValueProvider.Result<ModuleResolverProvider> {
             return globalResolveSessionProvider(
@@ -143,7 +163,7 @@ class KotlinCacheServiceImpl(val project: Project) : KotlinCacheService {
                 val dependentModules = syntheticFileModule.getDependentModules()
                 ProjectResolutionFacade(project, globalContext.storageManager) {
                     makeGlobalResolveSessionProvider(
-                            reuseDataFrom = globalFacade(targetPlatform, sdk),
+                            reuseDataFrom = globalFacade(targetPlatform, sdk).moduleResolverProvider,
                             moduleFilter = { it in dependentModules })
                 }
             }
@@ -151,7 +171,7 @@ class KotlinCacheServiceImpl(val project: Project) : KotlinCacheService {
             syntheticFileModule is ScriptModuleInfo -> {
                 ProjectResolutionFacade(project, globalContext.storageManager) {
                     makeGlobalResolveSessionProvider(
-                            reuseDataFrom = librariesFacade(targetPlatform, sdk)
+                            reuseDataFrom = librariesFacade(targetPlatform, sdk).moduleResolverProvider
                     )
                 }
             }
@@ -159,7 +179,7 @@ class KotlinCacheServiceImpl(val project: Project) : KotlinCacheService {
             syntheticFileModule is LibrarySourceInfo || syntheticFileModule is NotUnderContentRootModuleInfo -> {
                 ProjectResolutionFacade(project, globalContext.storageManager) {
                     makeGlobalResolveSessionProvider(
-                            reuseDataFrom = librariesFacade(targetPlatform, sdk),
+                            reuseDataFrom = librariesFacade(targetPlatform, sdk).moduleResolverProvider,
                             moduleFilter = { it == syntheticFileModule }
                     )
                 }
@@ -259,11 +279,10 @@ private fun globalResolveSessionProvider(
         dependencies: Collection<Any>,
         moduleFilter: (IdeaModuleInfo) -> Boolean,
         commonGlobalContext: GlobalContextImpl,
-        reuseDataFrom: ProjectResolutionFacade? = null,
+        reuseDataFrom: ModuleResolverProvider? = null,
         syntheticFiles: Collection<KtFile> = listOf()
 ): CachedValueProvider.Result<ModuleResolverProvider> {
-    val delegateResolverProvider = reuseDataFrom?.moduleResolverProvider
-    val delegateResolverForProject = delegateResolverProvider?.resolverForProject ?: EmptyResolverForProject()
+    val delegateResolverForProject = reuseDataFrom?.resolverForProject ?: EmptyResolverForProject()
     val globalContext = commonGlobalContext.withCompositeExceptionTrackerUnderSameLock()
 
     val builtIns: KotlinBuiltIns = when (platform) {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.idea.caches.resolve
+
+import com.intellij.openapi.components.ServiceManager
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.SimpleModificationTracker
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiTreeChangeAdapter
+import com.intellij.psi.PsiTreeChangeEvent
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.util.ConcurrencyUtil
+import com.intellij.util.containers.ContainerUtil
+import org.jetbrains.kotlin.asJava.KotlinCodeBlockModificationListener
+import org.jetbrains.kotlin.psi.KtFile
+
+/**
+ * Splits out-of-block modifications by the module they happen in.
+ *
+ * Out-of-block modifications of Kotlin files in module sources are counted per module.
+ * All other out-of-block modifications (Java files, Kotlin files outside of module sources, files and directories being
+ * added, removed or moved) are counted by [outOfBlockModificationOutsideModules], since they can't be attributed to a single module.
+ */
+class KotlinModuleModificationTracker(project: Project) {
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project) = ServiceManager.getService(project, KotlinModuleModificationTracker::class.java)!!
+    }
+
+    private val psiModificationTracker = PsiModificationTracker.SERVICE.getInstance(project)
+
+    private val moduleTrackers = ContainerUtil.createConcurrentWeakMap<Module, SimpleModificationTracker>()
+
+    /**
+     * Incremented on out-of-block modification in any module
+     */
+    val anyModuleModificationTracker = SimpleModificationTracker()
+
+    val outOfBlockModificationOutsideModules = SimpleModificationTracker()
+
+    // The out-of-block modification count at the time of the last PSI event, to find out whether a non-Kotlin change was out-of-block
+    private var lastOutOfBlockModificationCount = psiModificationTracker.outOfCodeBlockModificationCount
+
+    init {
+        KotlinCodeBlockModificationListener.getInstance(project).addOutOfBlockModificationListener { file -> onKotlinOutOfBlockModification(file) }
+        PsiManager.getInstance(project).addPsiTreeChangeListener(object : PsiTreeChangeAdapter() {
+            override fun childAdded(event: PsiTreeChangeEvent) = onPsiChange(event)
+            override fun childRemoved(event: PsiTreeChangeEvent) = onPsiChange(event)
+            override fun childReplaced(event: PsiTreeChangeEvent) = onPsiChange(event)
+            override fun childMoved(event: PsiTreeChangeEvent) = onPsiChange(event)
+            override fun childrenChanged(event: PsiTreeChangeEvent) = onPsiChange(event)
+            override fun propertyChanged(event: PsiTreeChangeEvent) = onPsiChange(event)
+        }, project)
+    }
+
+    fun getModificationCount(module: Module): Long = moduleTrackers[module]?.modificationCount ?: 0
+
+    private fun onKotlinOutOfBlockModification(file: KtFile) {
+        val module = (file.getModuleInfo() as? ModuleSourceInfo)?.module
+        if (module == null) {
+            outOfBlockModificationOutsideModules.incModificationCount()
+            return
+        }
+
+        ConcurrencyUtil.cacheOrGet(moduleTrackers, module, SimpleModificationTracker()).incModificationCount()
+        anyModuleModificationTracker.incModificationCount()
+    }
+
+    // Tree change listeners are notified after the out-of-block modification count is updated for the change
+    private fun onPsiChange(event: PsiTreeChangeEvent) {
+        val outOfBlockModificationCount = psiModificationTracker.outOfCodeBlockModificationCount
+        val isOutOfBlock = outOfBlockModificationCount != lastOutOfBlockModificationCount
+        lastOutOfBlockModificationCount = outOfBlockModificationCount
+
+        val file = event.file
+        when {
+            // Changes inside Kotlin files are reported by KotlinCodeBlockModificationListener
+            file is KtFile -> return
+            // A file or a directory is added, removed, moved or renamed
+            file == null -> outOfBlockModificationOutsideModules.incModificationCount()
+            isOutOfBlock -> outOfBlockModificationOutsideModules.incModificationCount()
+        }
+    }
+}
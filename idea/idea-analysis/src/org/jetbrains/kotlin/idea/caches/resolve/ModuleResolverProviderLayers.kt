@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.idea.caches.resolve
+
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.module.ModuleManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.psi.util.CachedValueProvider
+import org.jetbrains.kotlin.storage.ExceptionTracker
+import org.jetbrains.kotlin.utils.addToStdlib.sumByLong
+
+/**
+ * Computes resolvers for project modules so that an out-of-block modification only invalidates
+ * the modified modules and the modules depending on them.
+ *
+ * Resolvers for these modules are created in a new layer, which delegates to the previous provider for all other modules.
+ * All resolvers are recreated if the project structure or libraries change, if there was an out-of-block modification
+ * which can't be attributed to a module, if an exception happened during resolve,
+ * or if layers are stacked too deep or cover most of the project anyway.
+ */
+internal class ModuleResolverProviderLayers(
+        private val project: Project,
+        private val createForAllModules: () -> ModuleResolverProvider,
+        private val createForModules: (delegate: ModuleResolverProvider, modules: Set<IdeaModuleInfo>) -> ModuleResolverProvider
+) {
+    private class State(
+            val provider: ModuleResolverProvider,
+            val structureStamp: List<Long>,
+            // Exception trackers of all layers, since an exception in a lower layer isn't reported to the trackers above it
+            val exceptionTrackers: List<ExceptionTracker>,
+            val exceptionStamp: Long,
+            val moduleStamps: Map<Module, Long>
+    ) {
+        val layers: Int get() = exceptionTrackers.size - 1
+    }
+
+    private var state: State? = null
+
+    private val modificationTracker = KotlinModuleModificationTracker.getInstance(project)
+
+    @Synchronized
+    fun compute(): CachedValueProvider.Result<ModuleResolverProvider> {
+        val structureStamp = listOf(
+                ProjectRootModificationTracker.getInstance(project).modificationCount,
+                LibraryModificationTracker.getInstance(project).modificationCount,
+                modificationTracker.outOfBlockModificationOutsideModules.modificationCount
+        )
+        val moduleStamps = ModuleManager.getInstance(project).modules.associate { it to modificationTracker.getModificationCount(it) }
+
+        val newState = computeState(state, structureStamp, moduleStamps)
+        state = newState
+
+        val dependencies = listOf(
+                ProjectRootModificationTracker.getInstance(project),
+                LibraryModificationTracker.getInstance(project),
+                modificationTracker.outOfBlockModificationOutsideModules,
+                modificationTracker.anyModuleModificationTracker
+        ) + newState.exceptionTrackers
+        return CachedValueProvider.Result.create(newState.provider, dependencies)
+    }
+
+    private fun computeState(previous: State?, structureStamp: List<Long>, moduleStamps: Map<Module, Long>): State {
+        fun rebuildAll(): State {
+            val provider = createForAllModules()
+            val exceptionTrackers = listOf(provider.exceptionTracker)
+            return State(provider, structureStamp, exceptionTrackers, exceptionTrackers.modificationCount(), moduleStamps)
+        }
+
+        if (previous == null ||
+            previous.structureStamp != structureStamp ||
+            previous.exceptionStamp != previous.exceptionTrackers.modificationCount() ||
+            previous.moduleStamps.keys != moduleStamps.keys) {
+            return rebuildAll()
+        }
+
+        val modifiedModules = moduleStamps.filter { previous.moduleStamps[it.key] != it.value }.keys
+        if (modifiedModules.isEmpty()) {
+            return previous
+        }
+
+        // A dependent resolver reuses descriptors of its dependencies, so it has to be recreated along with them
+        val invalidated: Set<IdeaModuleInfo> = getTransitiveDependentModules(modifiedModules)
+        // Every module has production and test source infos
+        if (previous.layers >= MAX_LAYERS || invalidated.size > moduleStamps.size * 2 * MAX_INVALIDATED_PART) {
+            return rebuildAll()
+        }
+
+        val provider = createForModules(previous.provider, invalidated)
+        val exceptionTrackers = previous.exceptionTrackers + provider.exceptionTracker
+        return State(provider, structureStamp, exceptionTrackers, exceptionTrackers.modificationCount(), moduleStamps)
+    }
+
+    private fun List<ExceptionTracker>.modificationCount() = sumByLong { it.modificationCount }
+
+    companion object {
+        // Every layer keeps the resolvers it has replaced reachable, so the number of layers is limited
+        private val MAX_LAYERS = 10
+
+        private val MAX_INVALIDATED_PART = 0.5
+    }
+}
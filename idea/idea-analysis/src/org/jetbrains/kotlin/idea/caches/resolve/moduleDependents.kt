@@ -40,6 +40,25 @@ fun ModuleSourceInfo.getDependentModules(): Set<ModuleSourceInfo> {
     }
 }
 
+/**
+ * Source infos of [modules] and of all modules which depend on them, directly or transitively
+ */
+fun getTransitiveDependentModules(modules: Collection<Module>): Set<ModuleSourceInfo> {
+    val result = HashSet<ModuleSourceInfo>()
+    val queue = Queue<ModuleSourceInfo>(modules.size * 2)
+    for (module in modules) {
+        queue.addLast(module.productionSourceInfo())
+        queue.addLast(module.testSourceInfo())
+    }
+    while (!queue.isEmpty) {
+        val info = queue.pullFirst()!!
+        if (result.add(info)) {
+            info.getDependentModules().forEach { queue.addLast(it) }
+        }
+    }
+    return result
+}
+
 //NOTE: getDependents adapted from com.intellij.openapi.module.impl.scopes.ModuleWithDependentsScope#buildDependents()
 private fun getDependents(module: Module): Set<Module> {
     val result = THashSet<Module>()
@@ -22,6 +22,7 @@ import com.intellij.debugger.engine.evaluation.EvaluateException
 import com.intellij.debugger.engine.evaluation.EvaluateExceptionUtil
 import com.intellij.debugger.engine.evaluation.EvaluationContextImpl
 import com.intellij.debugger.engine.evaluation.expression.*
+import com.intellij.debugger.requests.ClassPrepareRequestor
 import com.intellij.diagnostic.LogMessageEx
 import com.intellij.openapi.diagnostic.Attachment
 import com.intellij.openapi.diagnostic.Logger
@@ -253,11 +254,32 @@ class KotlinEvaluator(val codeFragment: KtCodeFragment, val sourcePosition: Sour
                                                    context.suspendContext.thread?.threadReference!!,
                                                    context.suspendContext.getInvokePolicy())
 
-                                resultValue = interpreterLoop(
-                                        this,
-                                        makeInitialFrame(this, args.zip(argumentTypes).map { boxOrUnboxArgumentIfNeeded(eval, it.first, it.second) }),
-                                        eval
-                                )
+                                // Classes prepared while the evaluated code runs may replace mirrors remembered by the evaluator.
+                                // The request is not registered in the requests manager, which only dispatches its events to the requestor,
+                                // so it is deleted from the virtual machine directly once the evaluation ends.
+                                val classPrepareRequestor = ClassPrepareRequestor { debugProcess, referenceType ->
+                                    eval.mirrorCache.classPrepared(referenceType)
+                                }
+                                val classPrepareRequest = context.debugProcess.requestsManager.createClassPrepareRequest(classPrepareRequestor, "*")
+                                classPrepareRequest?.setSuspendPolicy(EventRequest.SUSPEND_NONE)
+                                classPrepareRequest?.enable()
+
+                                try {
+                                    resultValue = interpreterLoop(
+                                            this,
+                                            makeInitialFrame(this, args.zip(argumentTypes).map { boxOrUnboxArgumentIfNeeded(eval, it.first, it.second) }),
+                                            eval
+                                    )
+                                }
+                                finally {
+                                    if (classPrepareRequest != null) {
+                                        virtualMachine.eventRequestManager().deleteEventRequest(classPrepareRequest)
+                                    }
+                                }
+
+                                if (LOG.isDebugEnabled) {
+                                    LOG.debug("JDI mirror lookups (round trips/total): ${eval.mirrorCache.statistics}")
+                                }
 
                                 allRequests.forEach { it.enable() }
                             }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.idea.caches.resolve
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.module.StdModuleTypes
+import com.intellij.openapi.roots.DependencyScope
+import com.intellij.openapi.roots.ModuleRootModificationUtil
+import com.intellij.openapi.vfs.VfsUtil
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiManager
+import com.intellij.testFramework.ModuleTestCase
+import com.intellij.testFramework.PsiTestUtil
+import org.jetbrains.kotlin.idea.util.application.runWriteAction
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.lazy.ResolveSession
+
+class ModuleOutOfBlockModificationTest : ModuleTestCase() {
+    fun testModuleEdit() {
+        val a = module("a")
+        val b = module("b")
+        val c = module("c")
+        val d = module("d")
+        b.addDependency(a)
+        c.addDependency(b)
+        d.addDependency(a)
+
+        val file = kotlinFile(b, "b.kt", "fun b() = 1\n")
+        val tracker = KotlinModuleModificationTracker.getInstance(project)
+        val modules = listOf(a, b, c, d)
+        val countsBefore = modules.map { tracker.getModificationCount(it) }
+        val outsideCountBefore = tracker.outOfBlockModificationOutsideModules.modificationCount
+
+        appendText(file, "fun b2() = 2\n")
+
+        assertEquals(listOf(countsBefore[0], countsBefore[1] + 1, countsBefore[2], countsBefore[3]),
+                     modules.map { tracker.getModificationCount(it) })
+        assertEquals(outsideCountBefore, tracker.outOfBlockModificationOutsideModules.modificationCount)
+
+        // c depends on the edited module and gets a new resolver, d only depends on a and keeps its resolver
+        assertEquals(setOf(b, c), getTransitiveDependentModules(listOf(b)).map { it.module }.toSet())
+    }
+
+    fun testUnaffectedResolversAreKept() {
+        val a = module("a")
+        val b = module("b")
+        val c = module("c")
+        val d = module("d")
+        b.addDependency(a)
+        c.addDependency(b)
+        d.addDependency(a)
+
+        val files = listOf(a, b, c, d).map { kotlinFile(it, "${it.name}.kt", "fun ${it.name}() = 1\n") }
+        fun resolveSessions() = files.map { it.getResolutionFacade().getFrontendService(ResolveSession::class.java) }
+        fun moduleDescriptors() = files.map { it.getResolutionFacade().moduleDescriptor }
+
+        val sessionsBefore = resolveSessions()
+        val descriptorsBefore = moduleDescriptors()
+
+        appendText(files[1], "fun b2() = 2\n")
+
+        val sessionsAfter = resolveSessions()
+        val descriptorsAfter = moduleDescriptors()
+
+        // a is a dependency of the edited module and d is unrelated to it, their resolvers are kept
+        assertSame(sessionsBefore[0], sessionsAfter[0])
+        assertSame(descriptorsBefore[0], descriptorsAfter[0])
+        assertSame(sessionsBefore[3], sessionsAfter[3])
+        assertSame(descriptorsBefore[3], descriptorsAfter[3])
+
+        // b is edited and c depends on it
+        assertNotSame(sessionsBefore[1], sessionsAfter[1])
+        assertNotSame(descriptorsBefore[1], descriptorsAfter[1])
+        assertNotSame(sessionsBefore[2], sessionsAfter[2])
+        assertNotSame(descriptorsBefore[2], descriptorsAfter[2])
+    }
+
+    fun testTransitiveDependents() {
+        val a = module("a")
+        val b = module("b")
+        val c = module("c")
+        val d = module("d")
+        b.addDependency(a)
+        c.addDependency(b)
+
+        val invalidated = getTransitiveDependentModules(listOf(a))
+        assertEquals(setOf(a, b, c), invalidated.map { it.module }.toSet())
+        assertTrue(c.productionSourceInfo() in invalidated)
+        assertTrue(c.testSourceInfo() in invalidated)
+        assertFalse(d.productionSourceInfo() in invalidated)
+    }
+
+    fun testInBlockEditIsNotCounted() {
+        val a = module("a")
+        val file = kotlinFile(a, "a.kt", "fun a() {\n}\n")
+        val tracker = KotlinModuleModificationTracker.getInstance(project)
+        val countBefore = tracker.getModificationCount(a)
+        val outsideCountBefore = tracker.outOfBlockModificationOutsideModules.modificationCount
+
+        val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+        WriteCommandAction.runWriteCommandAction(project) {
+            document.insertString(document.text.indexOf('}'), "println()\n")
+        }
+        PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+        assertEquals(countBefore, tracker.getModificationCount(a))
+        assertEquals(outsideCountBefore, tracker.outOfBlockModificationOutsideModules.modificationCount)
+    }
+
+    private fun module(name: String): Module {
+        return createModuleFromTestData(createTempDirectory()!!.absolutePath, name, StdModuleTypes.JAVA, false)!!
+    }
+
+    private fun Module.addDependency(other: Module) =
+            ModuleRootModificationUtil.addDependency(this, other, DependencyScope.COMPILE, false)
+
+    private fun kotlinFile(module: Module, name: String, text: String): KtFile {
+        val root = VfsUtil.findFileByIoFile(createTempDirectory()!!, true)!!
+        PsiTestUtil.addSourceRoot(module, root)
+        val file = runWriteAction {
+            val file = root.createChildData(this, name)
+            VfsUtil.saveText(file, text)
+            file
+        }
+        return PsiManager.getInstance(project).findFile(file) as KtFile
+    }
+
+    private fun appendText(file: KtFile, text: String) {
+        val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+        WriteCommandAction.runWriteCommandAction(project) {
+            document.insertString(document.textLength, text)
+        }
+        PsiDocumentManager.getInstance(project).commitAllDocuments()
+    }
+}
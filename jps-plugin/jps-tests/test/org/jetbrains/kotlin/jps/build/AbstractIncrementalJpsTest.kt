@@ -84,6 +84,7 @@ abstract class AbstractIncrementalJpsTest(
     protected lateinit var workDir: File
     protected lateinit var projectDescriptor: ProjectDescriptor
     protected lateinit var lookupsDuringTest: MutableSet<LookupSymbol>
+    protected lateinit var inlineCallSitesDuringTest: MutableList<String>
 
     protected var mapWorkingToOriginalFile: MutableMap<File, File> = hashMapOf()
 
@@ -120,6 +121,7 @@ abstract class AbstractIncrementalJpsTest(
         super.setUp()
         System.setProperty("kotlin.jps.tests", "true")
         lookupsDuringTest = hashSetOf()
+        inlineCallSitesDuringTest = arrayListOf()
         IncrementalCompilation.setIsExperimental(enableExperimentalIncrementalCompilation)
 
         if (DEBUG_LOGGING_ENABLED) {
@@ -133,6 +135,7 @@ abstract class AbstractIncrementalJpsTest(
         (AbstractIncrementalJpsTest::projectDescriptor).javaField!![this] = null
         (AbstractIncrementalJpsTest::systemPropertiesBackup).javaField!![this] = null
         lookupsDuringTest.clear()
+        inlineCallSitesDuringTest.clear()
         super.tearDown()
     }
 
@@ -164,6 +167,7 @@ abstract class AbstractIncrementalJpsTest(
 
             val lookups = lookupTracker.lookups.map { LookupSymbol(it.name, it.scopeFqName) }
             lookupsDuringTest.addAll(lookups)
+            inlineCallSitesDuringTest.addAll(logger.inlineCallSites)
 
             if (!buildResult.isSuccessful) {
                 val errorMessages =
@@ -286,6 +290,11 @@ abstract class AbstractIncrementalJpsTest(
             throw IllegalStateException("No build log file in $testDataDir")
         }
 
+        val inlineCallSitesFile = File(testDataDir, "experimental-inline-call-sites.txt")
+        if (enableExperimentalIncrementalCompilation && inlineCallSitesFile.exists()) {
+            KotlinTestUtils.assertEqualsToFile(inlineCallSitesFile, inlineCallSitesDuringTest.joinToString("\n"))
+        }
+
         if (!enableExperimentalIncrementalCompilation && File(testDataDir, "dont-check-caches-in-non-experimental-ic.txt").exists()) return
 
         val lastMakeResult = otherMakeResults.last()
@@ -451,6 +460,12 @@ abstract class AbstractIncrementalJpsTest(
             dirtyFiles.addAll(files)
         }
 
+        val inlineCallSites = arrayListOf<String>()
+
+        override fun inlineCallSitesMarked(callSiteFiles: Int, avoidedFiles: Int) {
+            inlineCallSites.add("call site files: $callSiteFiles, avoided files: $avoidedFiles")
+        }
+
         override fun buildStarted(context: CompileContext, chunk: ModuleChunk) {
             if (context.projectDescriptor.project.modules.size > 1) {
                 logLine("Building ${chunk.modules.sortedBy { it.name }.joinToString { it.name }}")
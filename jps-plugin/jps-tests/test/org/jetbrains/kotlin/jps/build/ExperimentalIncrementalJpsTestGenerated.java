@@ -1208,6 +1208,12 @@ public class ExperimentalIncrementalJpsTestGenerated extends AbstractExperimenta
             doTest(fileName);
         }
 
+        @TestMetadata("notInlinedOverload")
+        public void testNotInlinedOverload() throws Exception {
+            String fileName = KotlinTestUtils.navigationMetadata("jps-plugin/testData/incremental/inlineFunCallSite/notInlinedOverload/");
+            doTest(fileName);
+        }
+
         @TestMetadata("parameterDefaultValue")
         public void testParameterDefaultValue() throws Exception {
             String fileName = KotlinTestUtils.navigationMetadata("jps-plugin/testData/incremental/inlineFunCallSite/parameterDefaultValue/");
@@ -22,6 +22,7 @@ import com.intellij.util.SmartList
 import org.jetbrains.kotlin.incremental.LocalFileKotlinClass
 import org.jetbrains.kotlin.incremental.difference
 import org.jetbrains.kotlin.incremental.storage.ProtoMapValue
+import org.jetbrains.kotlin.incremental.withAbiHashes
 import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
 import org.jetbrains.kotlin.serialization.jvm.BitEncoding
@@ -99,10 +100,12 @@ abstract class AbstractProtoComparisonTest : UsefulTestCase() {
         val oldClass = LocalFileKotlinClass.create(oldClassFile)!!
         val newClass = LocalFileKotlinClass.create(newClassFile)!!
 
-        val diff = difference(
-                oldClass.readProto() ?: return,
-                newClass.readProto() ?: return
-        )
+        val oldProto = oldClass.readProto() ?: return
+        val newProto = newClass.readProto() ?: return
+        val diff = difference(oldProto, newProto)
+
+        assertEquals("Difference computed with ABI hashes is different for ${oldClass.classId}",
+                     diff, difference(oldProto.withAbiHashes(), newProto.withAbiHashes()))
 
         val changes = SmartList<String>()
 
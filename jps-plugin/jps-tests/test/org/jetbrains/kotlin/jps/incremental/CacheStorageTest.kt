@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.incremental
+
+import com.intellij.testFramework.UsefulTestCase
+import com.intellij.util.io.EnumeratorStringDescriptor
+import org.jetbrains.kotlin.incremental.storage.CacheStorage
+import org.jetbrains.kotlin.incremental.storage.CacheStorageKind
+import org.jetbrains.kotlin.incremental.storage.StringCollectionExternalizer
+import org.jetbrains.kotlin.incremental.storage.createCacheStorage
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import java.io.File
+import java.io.IOException
+import java.util.*
+
+// Checks that the memory-mapped storage behaves like the one based on PersistentHashMap and reports the latencies of both
+class CacheStorageTest : UsefulTestCase() {
+    private lateinit var workingDir: File
+
+    override fun setUp() {
+        super.setUp()
+        workingDir = KotlinTestUtils.tmpDir("cacheStorage")
+    }
+
+    private fun createStorage(kind: CacheStorageKind): CacheStorage<String, Collection<String>> =
+            createCacheStorage(kind, File(workingDir, "$kind.tab"), EnumeratorStringDescriptor.INSTANCE, StringCollectionExternalizer)
+
+    private fun CacheStorage<String, Collection<String>>.dump(): Map<String, Set<String>> =
+            keys.sorted().associate { Pair(it, get(it)!!.toSet()) }
+
+    fun testSameContentsAsPersistentHashMap() {
+        var expected = createStorage(CacheStorageKind.PERSISTENT_HASH_MAP)
+        var actual = createStorage(CacheStorageKind.MAPPED_SEGMENTS)
+        val random = Random(42)
+
+        for (round in 1..5) {
+            for (i in 1..20000) {
+                val key = "key" + random.nextInt(500)
+                val value = "value" + random.nextInt(100)
+                for (storage in listOf(expected, actual)) {
+                    when (random.nextInt(10)) {
+                        0 -> storage.remove(key)
+                        1, 2, 3 -> storage[key] = listOf(value)
+                        else -> storage.append(key, value)
+                    }
+                }
+            }
+
+            assertEquals(expected.dump(), actual.dump())
+
+            // flushing makes the mapped storage compact its segments, most of the records are outdated by now
+            for (storage in listOf(expected, actual)) {
+                storage.flush(memoryCachesOnly = false)
+                storage.close()
+            }
+            expected = createStorage(CacheStorageKind.PERSISTENT_HASH_MAP)
+            actual = createStorage(CacheStorageKind.MAPPED_SEGMENTS)
+
+            assertEquals(expected.dump(), actual.dump())
+        }
+
+        actual.clean()
+        assertEquals(emptyMap<String, Set<String>>(), createStorage(CacheStorageKind.MAPPED_SEGMENTS).dump())
+    }
+
+    fun testLatency() {
+        val keys = (1..20000).map { "org/jetbrains/kotlin/Class$it" }
+
+        for (kind in CacheStorageKind.values()) {
+            val writing = createStorage(kind)
+            for (key in keys) {
+                writing[key] = listOf("$key.kt")
+            }
+            writing.close()
+
+            val openStart = System.nanoTime()
+            val storage = createStorage(kind)
+            storage.contains(keys.first())
+            val openNanos = System.nanoTime() - openStart
+
+            val lookupStart = System.nanoTime()
+            for (key in keys) {
+                assertEquals(listOf("$key.kt"), storage[key]!!.toList())
+            }
+            val lookupNanos = System.nanoTime() - lookupStart
+
+            for (key in keys.subList(0, 1000)) {
+                storage.append(key, "$key.java")
+            }
+            val flushStart = System.nanoTime()
+            storage.flush(memoryCachesOnly = false)
+            val flushNanos = System.nanoTime() - flushStart
+            storage.close()
+
+            println("$kind: open ${openNanos / 1000} us, lookup ${lookupNanos / keys.size} ns per key, flush ${flushNanos / 1000} us")
+        }
+    }
+
+    fun testUnreadableGenerationIsDropped() {
+        val storage = createStorage(CacheStorageKind.MAPPED_SEGMENTS)
+        storage["key"] = listOf("value")
+        storage.close()
+
+        File(workingDir, "${CacheStorageKind.MAPPED_SEGMENTS}.tab.generation").writeText("garbage")
+        try {
+            createStorage(CacheStorageKind.MAPPED_SEGMENTS).contains("key")
+            fail("Unreadable generation should be reported")
+        }
+        catch (e: IOException) {
+            // expected, the build is redone from scratch
+        }
+
+        assertEquals(emptyMap<String, Set<String>>(), createStorage(CacheStorageKind.MAPPED_SEGMENTS).dump())
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.incremental
+
+import com.intellij.testFramework.UsefulTestCase
+import org.jetbrains.kotlin.incremental.ChangeInfo
+import org.jetbrains.kotlin.incremental.ClasspathEntrySnapshot
+import org.jetbrains.kotlin.incremental.ClasspathSnapshotStorage
+import org.jetbrains.kotlin.incremental.computeClasspathEntryChanges
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.Opcodes
+import java.io.File
+
+class ClasspathEntrySnapshotTest : UsefulTestCase() {
+    private lateinit var workingDir: File
+
+    override fun setUp() {
+        super.setUp()
+        workingDir = KotlinTestUtils.tmpDir("classpathEntrySnapshot")
+    }
+
+    // Writes a Java class test/A with the method foo(String), annotating its parameter if parameterAnnotation is given
+    private fun createClassDirectory(name: String, parameterAnnotation: String? = null): File {
+        val writer = ClassWriter(0)
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "test/A", null, "java/lang/Object", null)
+        val method = writer.visitMethod(Opcodes.ACC_PUBLIC, "foo", "(Ljava/lang/String;)V", null, null)
+        if (parameterAnnotation != null) {
+            method.visitParameterAnnotation(0, parameterAnnotation, false).visitEnd()
+        }
+        method.visitEnd()
+        writer.visitEnd()
+
+        val directory = File(workingDir, name)
+        File(directory, "test").mkdirs()
+        File(directory, "test/A.class").writeBytes(writer.toByteArray())
+        return directory
+    }
+
+    private fun changedMembers(old: File, new: File): List<String> =
+            computeClasspathEntryChanges(ClasspathEntrySnapshot.create(old), ClasspathEntrySnapshot.create(new)).changes
+                    .filterIsInstance<ChangeInfo.MembersChanged>().flatMap { it.names }.toList()
+
+    fun testSameClassHasNoChanges() {
+        assertEmpty(changedMembers(createClassDirectory("old"), createClassDirectory("new")))
+    }
+
+    fun testParameterAnnotationChangesMember() {
+        val old = createClassDirectory("old")
+        val new = createClassDirectory("new", parameterAnnotation = "Lorg/jetbrains/annotations/NotNull;")
+        assertEquals(listOf("foo"), changedMembers(old, new))
+    }
+
+    fun testRemovedEntriesAreFound() {
+        val kept = createClassDirectory("kept")
+        val removed = createClassDirectory("removed")
+
+        val storage = ClasspathSnapshotStorage(File(workingDir, "snapshots"))
+        storage.save(ClasspathEntrySnapshot.create(kept))
+        storage.save(ClasspathEntrySnapshot.create(removed))
+
+        val removedSnapshots = storage.snapshotsOfRemovedEntries(listOf(kept))!!
+        assertEquals(listOf(removed.canonicalFile), removedSnapshots.map { it.entry })
+    }
+}
@@ -27,4 +27,6 @@ interface BuildLogger {
     fun buildStarted(context: CompileContext, chunk: ModuleChunk)
     fun buildFinished(exitCode: ModuleLevelBuilder.ExitCode)
     fun markedAsDirty(files: Iterable<File>)
+    fun dirtyFilesComputed(caches: Int, lookupSymbols: Int, dirtyFiles: Int, timeMillis: Long) {}
+    fun inlineCallSitesMarked(callSiteFiles: Int, avoidedFiles: Int) {}
 }
@@ -31,7 +31,7 @@ class FSOperationsHelper(
     internal var hasMarkedDirty = false
         private set
 
-    private val buildLogger = compileContext.testingContext?.buildLogger
+    internal val buildLogger = compileContext.testingContext?.buildLogger
 
     fun markChunk(recursively: Boolean, kotlinOnly: Boolean, excludeFiles: Set<File> = setOf()) {
         fun shouldMark(file: File): Boolean {
@@ -780,19 +780,42 @@ private fun CompilationResult.doProcessChangesUsingLookups(
         compiledFiles: Set<File>,
         dataManager: BuildDataManager,
         fsOperations: FSOperationsHelper,
-        caches: Iterable<IncrementalCacheImpl<ModuleBuildTarget>>
+        caches: Collection<JpsIncrementalCacheImpl>
 ) {
     val lookupStorage = dataManager.getStorage(KotlinDataContainerTarget, JpsLookupStorageProvider)
-    val allCaches = caches.flatMap { it.thisWithDependentCaches }
+    val allCaches = caches.flatMap { it.thisWithDependentCaches }.distinct()
     val logAction = { logStr: String -> KotlinBuilder.LOG.debug(logStr) }
+    // dependent caches are separate storages, so they can be queried at the same time
+    val threads = Runtime.getRuntime().availableProcessors()
 
     logAction("Start processing changes")
+    val start = System.currentTimeMillis()
 
-    val (dirtyLookupSymbols, dirtyClassFqNames) = getDirtyData(allCaches, logAction)
+    val (dirtyLookupSymbols, dirtyClassFqNames) = getDirtyData(allCaches, logAction, threads)
     val dirtyFiles = mapLookupSymbolsToFiles(lookupStorage, dirtyLookupSymbols, logAction) +
-                     mapClassesFqNamesToFiles(allCaches, dirtyClassFqNames, logAction)
+                     mapClassesFqNamesToFiles(allCaches, dirtyClassFqNames, logAction, threads = threads)
+
+    val timeMillis = System.currentTimeMillis() - start
+    val lookupSymbolsCount = dirtyLookupSymbols.count()
+    logAction("Processed changes in ${allCaches.size} caches: $lookupSymbolsCount dirty lookup symbols, ${dirtyFiles.size} dirty files, $timeMillis ms")
+    fsOperations.buildLogger?.dirtyFilesComputed(allCaches.size, lookupSymbolsCount, dirtyFiles.size, timeMillis)
+
     fsOperations.markFiles(dirtyFiles.asIterable(), excludeFiles = compiledFiles)
 
+    if (inlineChanged) {
+        val callSiteFiles = caches.flatMap { it.getFilesToReinline() }.filterTo(HashSet<File>()) { it !in compiledFiles }
+        fsOperations.markFiles(callSiteFiles, excludeFiles = compiledFiles)
+
+        // without recorded call sites, all files looking up the names of changed inline functions would be dirty
+        val bodiesChangedSymbols = changes.filterIsInstance<ChangeInfo.InlineBodiesChanged>().toList()
+                .flatMap { change -> change.names.map { LookupSymbol(it, change.fqName.asString()) } }
+        val avoidedFiles = lookupStorage.getAll(bodiesChangedSymbols).values.flatten().map(::File).toSet()
+                .count { it !in callSiteFiles && it !in dirtyFiles && it !in compiledFiles }
+
+        logAction("Inline function bodies changed: ${callSiteFiles.size} call site files marked as dirty, recompilation of $avoidedFiles files avoided")
+        fsOperations.buildLogger?.inlineCallSitesMarked(callSiteFiles.size, avoidedFiles)
+    }
+
     logAction("End of processing changes")
 }
 
@@ -23,7 +23,6 @@ import org.jetbrains.jps.builders.storage.StorageProvider
 import org.jetbrains.jps.incremental.ModuleBuildTarget
 import org.jetbrains.jps.incremental.storage.BuildDataManager
 import org.jetbrains.jps.incremental.storage.StorageOwner
-import org.jetbrains.kotlin.config.IncrementalCompilation
 import org.jetbrains.kotlin.incremental.IncrementalCacheImpl
 import org.jetbrains.kotlin.incremental.dumpCollection
 import org.jetbrains.kotlin.incremental.storage.BasicMap
@@ -45,11 +44,12 @@ class JpsIncrementalCacheImpl(
     private val inlinedTo = registerMap(InlineFunctionsFilesMap(INLINED_TO.storageFile))
 
     override fun registerInline(fromPath: String, jvmSignature: String, toPath: String) {
-        if (!IncrementalCompilation.isExperimental()) {
-            inlinedTo.add(fromPath, jvmSignature, toPath)
-        }
+        inlinedTo.add(fromPath, jvmSignature, toPath)
     }
 
+    override val tracksInlineCallSites: Boolean
+        get() = true
+
     override fun debugLog(message: String) {
         KotlinBuilder.LOG.debug(message)
     }
@@ -0,0 +1,9 @@
+package inline
+
+inline fun f(): Int {
+    return 0
+}
+
+fun f(x: Int): Int {
+    return x
+}
\ No newline at end of file
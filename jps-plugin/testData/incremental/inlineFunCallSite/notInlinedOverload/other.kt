@@ -0,0 +1,5 @@
+package other
+
+fun other() {
+    val x = inline.f(1)
+}
\ No newline at end of file
@@ -0,0 +1,5 @@
+package usage
+
+fun usage() {
+    val x = inline.f()
+}
\ No newline at end of file
@@ -79,7 +79,7 @@ public abstract class JsScope {
      * @param identifier An identifier that is unique within this scope.
      */
     @NotNull
-    public JsName declareName(@NotNull String identifier) {
+    public synchronized JsName declareName(@NotNull String identifier) {
         JsName name = findOwnName(identifier);
         return name != null ? name : doCreateName(identifier);
     }
@@ -91,7 +91,7 @@ public abstract class JsScope {
      * (unless they use this function).
      */
     @NotNull
-    public JsName declareFreshName(@NotNull String suggestedName) {
+    public synchronized JsName declareFreshName(@NotNull String suggestedName) {
         assert !suggestedName.isEmpty();
         String ident = getFreshIdent(suggestedName);
         assert !hasOwnName(ident);
@@ -110,7 +110,7 @@ public abstract class JsScope {
      * Future declarations of variables might however clash with the temporary.
      */
     @NotNull
-    public JsName declareTemporary() {
+    public synchronized JsName declareTemporary() {
         return declareFreshName(getNextTempName());
     }
 
@@ -129,7 +129,7 @@ public abstract class JsScope {
         return name;
     }
 
-    public boolean hasOwnName(@NotNull String name) {
+    public synchronized boolean hasOwnName(@NotNull String name) {
         return names.containsKey(name);
     }
 
@@ -156,7 +156,7 @@ public abstract class JsScope {
         }
     }
 
-    public void copyOwnNames(JsScope other) {
+    public synchronized void copyOwnNames(JsScope other) {
         names = new HashMap<String, JsName>(names);
         names.putAll(other.names);
     }
@@ -167,7 +167,7 @@ public abstract class JsScope {
     }
 
     @NotNull
-    protected JsName doCreateName(@NotNull String ident) {
+    protected synchronized JsName doCreateName(@NotNull String ident) {
         JsName name = new JsName(this, ident);
         names = Maps.put(names, ident, name);
         return name;
@@ -179,7 +179,7 @@ public abstract class JsScope {
      *
      * @return <code>null</code> if the identifier has no associated name
      */
-    protected JsName findOwnName(@NotNull String ident) {
+    protected synchronized JsName findOwnName(@NotNull String ident) {
         return names.get(ident);
     }
 
@@ -4,6 +4,12 @@
 
 package com.google.dart.compiler.util;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
+
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
 
 public class TextOutputImpl implements TextOutput {
@@ -13,6 +19,10 @@ public class TextOutputImpl implements TextOutput {
     private char[][] indents = new char[][] {new char[0]};
     private boolean justNewlined;
     private final StringBuilder out;
+    // when set, the printed text is passed on to the writer at line ends instead of being accumulated
+    @Nullable
+    private final Writer writer;
+    private static final int FLUSH_THRESHOLD = 1 << 16;
     private int position = 0;
     private int line = 0;
     private int column = 0;
@@ -30,10 +40,33 @@ public class TextOutputImpl implements TextOutput {
     public TextOutputImpl(boolean compact) {
         this.compact = compact;
         out = new StringBuilder();
+        writer = null;
+    }
+
+    public TextOutputImpl(@NotNull Writer writer) {
+        compact = false;
+        out = new StringBuilder(FLUSH_THRESHOLD + 1024);
+        this.writer = writer;
+    }
+
+    /**
+     * Passes the buffered text on to the writer, if there is one.
+     */
+    public void flush() {
+        if (writer == null) return;
+
+        try {
+            writer.append(out);
+            out.setLength(0);
+        }
+        catch (IOException e) {
+            throw ExceptionUtilsKt.rethrow(e);
+        }
     }
 
     @Override
     public String toString() {
+        assert writer == null : "Text is passed on to the writer and is not accumulated";
         return out.toString();
     }
 
@@ -81,6 +114,9 @@ public class TextOutputImpl implements TextOutput {
         if (outListener != null) {
             outListener.newLined();
         }
+        if (writer != null && out.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
     }
 
     @Override
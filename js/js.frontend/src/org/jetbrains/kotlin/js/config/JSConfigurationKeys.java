@@ -36,4 +36,12 @@ public class JSConfigurationKeys {
 
     public static final CompilerConfigurationKey<Boolean> UNIT_TEST_CONFIG =
             CompilerConfigurationKey.create("unit test config");
+
+    public static final CompilerConfigurationKey<Boolean> DEAD_CODE_ELIMINATION =
+            CompilerConfigurationKey.create("remove unreachable declarations");
+    public static final CompilerConfigurationKey<List<String>> DEAD_CODE_ELIMINATION_KEEP =
+            CompilerConfigurationKey.create("declarations kept by dead code elimination");
+
+    public static final CompilerConfigurationKey<Boolean> PARALLEL_TRANSLATION =
+            CompilerConfigurationKey.create("translate packages in parallel");
 }
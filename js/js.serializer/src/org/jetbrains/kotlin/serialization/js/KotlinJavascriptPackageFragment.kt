@@ -24,6 +24,7 @@ import org.jetbrains.kotlin.serialization.deserialization.DeserializedPackageFra
 import org.jetbrains.kotlin.serialization.deserialization.NameResolverImpl
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedPackageMemberScope
 import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.storage.getValue
 import java.io.InputStream
 
 class KotlinJavascriptPackageFragment(
@@ -32,12 +33,13 @@ class KotlinJavascriptPackageFragment(
         module: ModuleDescriptor,
         loadResource: (path: String) -> InputStream?
 ) : DeserializedPackageFragment(fqName, storageManager, module, loadResource) {
-    private val nameResolver =
-            loadResourceSure(KotlinJavascriptSerializedResourcePaths.getStringTableFilePath(fqName)).use { stream ->
-                NameResolverImpl.read(stream)
-            }
+    private val nameResolver by storageManager.createLazyValue {
+        loadResourceSure(KotlinJavascriptSerializedResourcePaths.getStringTableFilePath(fqName)).use { stream ->
+            NameResolverImpl.read(stream)
+        }
+    }
 
-    override val classDataFinder = KotlinJavascriptClassDataFinder(nameResolver, loadResource)
+    override val classDataFinder by storageManager.createLazyValue { KotlinJavascriptClassDataFinder(nameResolver, loadResource) }
 
     override fun computeMemberScope(): DeserializedPackageMemberScope =
             loadResourceSure(KotlinJavascriptSerializedResourcePaths.getPackageFilePath(fqName)).use { packageStream ->
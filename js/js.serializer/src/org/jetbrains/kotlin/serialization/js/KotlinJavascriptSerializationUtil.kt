@@ -31,6 +31,8 @@ import org.jetbrains.kotlin.utils.KotlinJavascriptMetadata
 import org.jetbrains.kotlin.utils.KotlinJavascriptMetadataUtils
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
 import java.util.*
 import java.util.zip.GZIPInputStream
 import java.util.zip.GZIPOutputStream
@@ -58,13 +60,17 @@ object KotlinJavascriptSerializationUtil {
     }
 
     @JvmStatic fun createPackageFragmentProvider(moduleDescriptor: ModuleDescriptor, metadata: ByteArray, storageManager: StorageManager): PackageFragmentProvider? {
-        val contentMap = metadata.toContentMap()
+        val library = LibraryMetadata(metadata)
 
-        val packageFqNames = getPackages(contentMap).map { FqName(it) }.toSet()
+        val packageFqNames = withParentPackages(library.packageNames)
         if (packageFqNames.isEmpty()) return null
 
+        // Packages are decoded on first access to any of their files
+        val packageContent = storageManager.createMemoizedFunction { packageName: String -> library.readPackage(packageName) }
+
         return createKotlinJavascriptPackageFragmentProvider(storageManager, moduleDescriptor, packageFqNames) {
             path ->
+            val contentMap = packageContent(getPackageName(path))
             if (!contentMap.containsKey(path)) {
                 when {
                     isPackageMetadataFile(path) ->
@@ -81,19 +87,39 @@ object KotlinJavascriptSerializationUtil {
         }
     }
 
+    /**
+     * Metadata starts with an index of packages: the number of packages followed by the name, offset and size of each package.
+     * Offsets are relative to the end of the index. Files of each package are stored as a separately gzipped [JsProtoBuf.Library],
+     * so that a package can be decoded without reading the rest of the library.
+     */
     fun contentMapToByteArray(contentMap: Map<String, ByteArray>): ByteArray {
-        val contentBuilder = JsProtoBuf.Library.newBuilder()
-        contentMap.forEach {
-            val entry = JsProtoBuf.Library.FileEntry.newBuilder().setPath(it.key).setContent(ByteString.copyFrom(it.value)).build()
-            contentBuilder.addEntry(entry)
-        }
+        val packages = contentMap.entries.groupBy { getPackageName(it.key) }.toSortedMap()
+
+        val chunks = ByteArrayOutputStream()
+        val index = ByteArrayOutputStream()
+        val indexStream = DataOutputStream(index)
+        indexStream.writeInt(packages.size)
+
+        for ((packageName, files) in packages) {
+            val contentBuilder = JsProtoBuf.Library.newBuilder()
+            files.forEach {
+                val entry = JsProtoBuf.Library.FileEntry.newBuilder().setPath(it.key).setContent(ByteString.copyFrom(it.value)).build()
+                contentBuilder.addEntry(entry)
+            }
 
-        val byteStream = ByteArrayOutputStream()
-        val gzipOutputStream = GZIPOutputStream(byteStream)
-        contentBuilder.build().writeTo(gzipOutputStream)
-        gzipOutputStream.close()
+            val offset = chunks.size()
+            val gzipOutputStream = GZIPOutputStream(chunks)
+            contentBuilder.build().writeTo(gzipOutputStream)
+            gzipOutputStream.close()
+
+            indexStream.writeUTF(packageName)
+            indexStream.writeInt(offset)
+            indexStream.writeInt(chunks.size() - offset)
+        }
 
-        return byteStream.toByteArray()
+        indexStream.close()
+        chunks.writeTo(index)
+        return index.toByteArray()
     }
 
     fun metadataAsString(moduleName: String, moduleDescriptor: ModuleDescriptor): String =
@@ -199,37 +225,63 @@ object KotlinJavascriptSerializationUtil {
         }
     }
 
-    private fun getPackages(contentMap: Map<String, ByteArray>): Set<String> {
-        val keys = contentMap.keys.map { (if (it.startsWith('/')) it else "/" + it).substringBeforeLast('/') }.toSet()
+    private fun withParentPackages(packageNames: Collection<String>): Set<FqName> {
+        val result = hashSetOf<FqName>()
 
-        val result = hashSetOf<String>()
-
-        fun addNames(name: String) {
-            result.add(name)
-            if (name != "") {
-                addNames(name.substringBeforeLast('/'))
+        for (packageName in packageNames) {
+            var fqName = FqName(packageName)
+            while (result.add(fqName) && !fqName.isRoot) {
+                fqName = fqName.parent()
             }
         }
 
-        keys.forEach { addNames(it) }
-
-        return result.map { it.substringAfter('/').replace('/', '.') }.toSet()
+        return result
     }
 
     private fun ModuleDescriptor.toBinaryMetadata(): ByteArray =
             KotlinJavascriptSerializationUtil.contentMapToByteArray(toContentMap(this))
 }
 
-fun KotlinJavascriptMetadata.forEachFile(operation: (filePath: String, fileContent: ByteArray) -> Unit): Unit =
-        this.body.toContentMap().forEach { operation(it.key, it.value) }
+fun KotlinJavascriptMetadata.forEachFile(operation: (filePath: String, fileContent: ByteArray) -> Unit) {
+    val library = LibraryMetadata(this.body)
+    for (packageName in library.packageNames) {
+        library.readPackage(packageName).forEach { operation(it.key, it.value) }
+    }
+}
 
-private fun ByteArray.toContentMap(): Map<String, ByteArray> {
-    val gzipInputStream = GZIPInputStream(ByteArrayInputStream(this))
-    val content = JsProtoBuf.Library.parseFrom(gzipInputStream)
-    gzipInputStream.close()
+/**
+ * Reads the package index of the metadata written by [KotlinJavascriptSerializationUtil.contentMapToByteArray].
+ */
+private class LibraryMetadata(private val metadata: ByteArray) {
+    private class PackageEntry(val offset: Int, val size: Int)
+
+    private val packages = hashMapOf<String, PackageEntry>()
+    private val contentStart: Int
+
+    init {
+        val byteStream = ByteArrayInputStream(metadata)
+        val stream = DataInputStream(byteStream)
+        val packageCount = stream.readInt()
+        for (i in 0..packageCount - 1) {
+            val packageName = stream.readUTF()
+            packages[packageName] = PackageEntry(stream.readInt(), stream.readInt())
+        }
+        contentStart = metadata.size - byteStream.available()
+    }
+
+    val packageNames: Set<String>
+        get() = packages.keys
 
-    val contentMap: MutableMap<String, ByteArray> = hashMapOf()
-    content.entryList.forEach { entry -> contentMap[entry.path] = entry.content.toByteArray() }
+    fun readPackage(packageName: String): Map<String, ByteArray> {
+        val packageEntry = packages[packageName] ?: return emptyMap()
 
-    return contentMap
+        val gzipInputStream = GZIPInputStream(ByteArrayInputStream(metadata, contentStart + packageEntry.offset, packageEntry.size))
+        val content = JsProtoBuf.Library.parseFrom(gzipInputStream)
+        gzipInputStream.close()
+
+        val contentMap: MutableMap<String, ByteArray> = hashMapOf()
+        content.entryList.forEach { entry -> contentMap[entry.path] = entry.content.toByteArray() }
+
+        return contentMap
+    }
 }
\ No newline at end of file
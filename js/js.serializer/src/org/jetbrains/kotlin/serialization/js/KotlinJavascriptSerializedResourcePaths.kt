@@ -67,7 +67,7 @@ fun isClassesInPackageFile(fileName: String): Boolean =
 
 private fun getPackageFqName(fileName: String): FqName = FqName(getPackageName(fileName))
 
-private fun getPackageName(filePath: String): String =
+internal fun getPackageName(filePath: String): String =
         if (filePath.indexOf('/') >= 0) filePath.substringBeforeLast('/').replace('/', '.') else ""
 
 private fun getPackageClassFqName(packageFQN: FqName): FqName {
@@ -28,6 +28,9 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import kotlin.Unit;
+import kotlin.jvm.functions.Function2;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection;
 import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport;
 import org.jetbrains.kotlin.cli.common.messages.MessageRenderer;
@@ -220,9 +223,43 @@ public abstract class BasicTest extends KotlinTestWithEnvironment {
         assert outputDir != null : "Parent file for output file should not be null, outputFilePath: " + outputFile.getPath();
         OutputUtilsKt.writeAllTo(outputFiles, outputDir);
 
+        checkStreamedOutputFiles(successResult, outputFile, outputFiles);
+
         processJsProgram(successResult.getProgram(), jetFiles);
     }
 
+    // The compiler streams the code and the source map to the files, check that it produces the same files as getOutputFiles
+    private void checkStreamedOutputFiles(
+            @NotNull TranslationResult.Success successResult,
+            @NotNull File outputFile,
+            @NotNull OutputFileCollection expectedFiles
+    ) throws IOException {
+        File streamedOutputDir = FileUtil.createTempDirectory("streamedOutput", null);
+        try {
+            List<String> writtenFiles = successResult.writeOutputFiles(
+                    outputFile, getOutputPrefixFile(), getOutputPostfixFile(), streamedOutputDir,
+                    new Function2<List<? extends File>, File, Unit>() {
+                        @Override
+                        public Unit invoke(List<? extends File> sources, File output) {
+                            return Unit.INSTANCE;
+                        }
+                    });
+
+            List<String> expectedPaths = new ArrayList<String>();
+            for (OutputFile expectedFile : expectedFiles.asList()) {
+                expectedPaths.add(expectedFile.getRelativePath());
+
+                File streamedFile = new File(streamedOutputDir, expectedFile.getRelativePath());
+                assertTrue("Streamed output file is missing: " + expectedFile.getRelativePath(), streamedFile.isFile());
+                assertEquals(expectedFile.getRelativePath(), expectedFile.asText(), FileUtil.loadFile(streamedFile, "UTF-8"));
+            }
+            assertSameElements(writtenFiles, expectedPaths);
+        }
+        finally {
+            FileUtil.delete(streamedOutputDir);
+        }
+    }
+
     protected File getOutputPostfixFile() {
         return null;
     }
@@ -243,6 +280,14 @@ public abstract class BasicTest extends KotlinTestWithEnvironment {
         return false;
     }
 
+    protected boolean shouldEliminateDeadCode() {
+        return false;
+    }
+
+    protected boolean shouldTranslateInParallel() {
+        return false;
+    }
+
     protected void processJsProgram(@NotNull JsProgram program, @NotNull List<KtFile> jetFiles) throws Exception {
         for (KtFile file : jetFiles) {
             String text = file.getText();
@@ -346,6 +391,13 @@ public abstract class BasicTest extends KotlinTestWithEnvironment {
 
         configuration.put(JSConfigurationKeys.UNIT_TEST_CONFIG, shouldBeTranslateAsUnitTestClass());
 
+        if (shouldEliminateDeadCode()) {
+            configuration.put(JSConfigurationKeys.DEAD_CODE_ELIMINATION, true);
+            configuration.put(JSConfigurationKeys.DEAD_CODE_ELIMINATION_KEEP, Collections.singletonList(TEST_PACKAGE + "." + TEST_FUNCTION));
+        }
+
+        configuration.put(JSConfigurationKeys.PARALLEL_TRANSLATION, shouldTranslateInParallel());
+
         return new LibrarySourcesConfig(project, configuration);
     }
 
@@ -55,6 +55,12 @@ public final class OutputPrefixPostfixTest extends SingleFileTranslationTest {
         return outputPrefixFile;
     }
 
+    // source map lines are shifted by the prefix, both when the map is built in memory and when it is streamed
+    @Override
+    protected boolean shouldGenerateSourceMap() {
+        return true;
+    }
+
     @Override
     public void runTest() throws Exception {
         checkFooBoxIsOk(filename);
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.js.test.semantics;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys;
+import org.jetbrains.kotlin.js.config.JsConfig;
+import org.jetbrains.kotlin.js.config.LibrarySourcesConfig;
+import org.jetbrains.kotlin.js.facade.K2JSTranslator;
+import org.jetbrains.kotlin.js.facade.MainCallParameters;
+import org.jetbrains.kotlin.js.facade.TranslationResult;
+import org.jetbrains.kotlin.psi.KtFile;
+
+import java.io.File;
+import java.util.List;
+
+public final class ParallelTranslationTest extends MultiPackageTest {
+    @Override
+    protected boolean shouldTranslateInParallel() {
+        return true;
+    }
+
+    @Override
+    protected void translateFiles(
+            @NotNull List<KtFile> jetFiles,
+            @NotNull File outputFile,
+            @NotNull MainCallParameters mainCallParameters,
+            @NotNull JsConfig config
+    ) throws Exception {
+        super.translateFiles(jetFiles, outputFile, mainCallParameters, config);
+
+        CompilerConfiguration sequentialConfiguration = config.getConfiguration().copy();
+        sequentialConfiguration.put(JSConfigurationKeys.PARALLEL_TRANSLATION, false);
+        JsConfig sequentialConfig = new LibrarySourcesConfig(config.getProject(), sequentialConfiguration);
+
+        TranslationResult result = new K2JSTranslator(sequentialConfig).translate(jetFiles, mainCallParameters);
+        assertTrue("Sequential translation failed", result instanceof TranslationResult.Success);
+        String sequentialCode = ((TranslationResult.Success) result)
+                .getOutputFiles(outputFile, getOutputPrefixFile(), getOutputPostfixFile()).asList().get(0).asText();
+
+        assertEquals("Parallel translation should produce the same code as the sequential one",
+                     sequentialCode, FileUtil.loadFile(outputFile, "UTF-8"));
+    }
+}
@@ -24,6 +24,7 @@ import org.jetbrains.kotlin.js.translate.expression.InlineMetadata;
 import java.util.*;
 
 import static org.jetbrains.kotlin.js.inline.util.CollectUtilsKt.collectInstances;
+import static org.jetbrains.kotlin.js.inline.util.CollectUtilsKt.collectJsProperties;
 import static org.jetbrains.kotlin.test.InTextDirectivesUtils.findLinesWithPrefixesRemoved;
 import static org.junit.Assert.*;
 
@@ -193,6 +194,16 @@ public class DirectiveTestUtils {
         }
     };
 
+    private static final DirectiveHandler HAS_NO_PROPERTY = new DirectiveHandler("CHECK_HAS_NO_PROPERTY") {
+        @Override
+        void processEntry(@NotNull JsNode ast, @NotNull ArgumentsHelper arguments) throws Exception {
+            String propertyName = arguments.getPositionalArgument(0);
+            for (JsName name : collectJsProperties(ast).keySet()) {
+                assertNotEquals("Property " + propertyName + " has not been removed", propertyName, name.getIdent());
+            }
+        }
+    };
+
     private static final List<DirectiveHandler> DIRECTIVE_HANDLERS = Arrays.asList(
             FUNCTION_CONTAINS_NO_CALLS,
             FUNCTION_NOT_CALLED,
@@ -205,7 +216,8 @@ public class DirectiveTestUtils {
             COUNT_NULLS,
             NOT_REFERENCED,
             HAS_INLINE_METADATA,
-            HAS_NO_INLINE_METADATA
+            HAS_NO_INLINE_METADATA,
+            HAS_NO_PROPERTY
     );
 
     public static void processDirectives(@NotNull JsNode ast, @NotNull String sourceCode) throws Exception {
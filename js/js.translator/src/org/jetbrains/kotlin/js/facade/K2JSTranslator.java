@@ -19,14 +19,17 @@ package org.jetbrains.kotlin.js.facade;
 import com.google.dart.compiler.backend.js.ast.JsProgram;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
 import org.jetbrains.kotlin.js.analyze.TopDownAnalyzerFacadeForJS;
 import org.jetbrains.kotlin.js.analyzer.JsAnalysisResult;
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys;
 import org.jetbrains.kotlin.js.config.JsConfig;
 import org.jetbrains.kotlin.js.facade.exceptions.TranslationException;
 import org.jetbrains.kotlin.js.inline.JsInliner;
 import org.jetbrains.kotlin.js.translate.context.TranslationContext;
 import org.jetbrains.kotlin.js.translate.general.Translation;
+import org.jetbrains.kotlin.js.translate.utils.DeadCodeEliminationReport;
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.resolve.BindingTrace;
@@ -35,6 +38,7 @@ import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics;
 import java.util.List;
 
 import static org.jetbrains.kotlin.diagnostics.DiagnosticUtils.hasError;
+import static org.jetbrains.kotlin.js.translate.utils.EliminateDeadDeclarationsKt.eliminateDeadDeclarations;
 import static org.jetbrains.kotlin.js.translate.utils.ExpandIsCallsKt.expandIsCalls;
 
 /**
@@ -86,6 +90,15 @@ public final class K2JSTranslator {
 
         expandIsCalls(program, context);
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
-        return new TranslationResult.Success(config, files, program, diagnostics, moduleDescriptor);
+
+        DeadCodeEliminationReport deadCodeEliminationReport = null;
+        CompilerConfiguration configuration = config.getConfiguration();
+        if (configuration.getBoolean(JSConfigurationKeys.DEAD_CODE_ELIMINATION)) {
+            deadCodeEliminationReport = eliminateDeadDeclarations(
+                    context, configuration.getList(JSConfigurationKeys.DEAD_CODE_ELIMINATION_KEEP));
+            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
+        }
+
+        return new TranslationResult.Success(config, files, program, diagnostics, moduleDescriptor, deadCodeEliminationReport);
     }
 }
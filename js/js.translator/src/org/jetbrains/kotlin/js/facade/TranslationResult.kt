@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.js.facade
 import com.google.dart.compiler.backend.js.ast.JsProgram
 import com.google.dart.compiler.util.TextOutput
 import com.google.dart.compiler.util.TextOutputImpl
+import com.intellij.openapi.util.io.FileUtil
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.openapi.vfs.VfsUtilCore
 import org.jetbrains.kotlin.backend.common.output.*
@@ -28,6 +29,7 @@ import org.jetbrains.kotlin.js.config.JsConfig
 import org.jetbrains.kotlin.js.sourceMap.JsSourceGenerationVisitor
 import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
 import org.jetbrains.kotlin.js.sourceMap.SourceMapBuilder
+import org.jetbrains.kotlin.js.translate.utils.DeadCodeEliminationReport
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics
 import org.jetbrains.kotlin.serialization.js.KotlinJavascriptSerializationUtil
@@ -44,7 +46,8 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
             private val files: List<KtFile>,
             val program: JsProgram,
             diagnostics: Diagnostics,
-            private val moduleDescriptor: ModuleDescriptor
+            private val moduleDescriptor: ModuleDescriptor,
+            val deadCodeEliminationReport: DeadCodeEliminationReport? = null
     ) : TranslationResult(diagnostics) {
         @Suppress("unused") // Used in kotlin-web-demo in WebDemoTranslatorFacade
         fun getCode(): String = getCode(TextOutputImpl(), sourceMapBuilder = null)
@@ -59,17 +62,105 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
             val code = getCode(output, sourceMapBuilder)
             val prefix = outputPrefixFile?.readText() ?: ""
             val postfix = outputPostfixFile?.readText() ?: ""
-            val sourceFiles = files.map {
-                val virtualFile = it.originalFile.virtualFile
+            val sourceFiles = getSourceFiles()
 
-                when {
-                    virtualFile == null -> File(it.name)
-                    else -> VfsUtilCore.virtualToIoFile(virtualFile)
+            val jsFile = SimpleOutputFile(sourceFiles, outputFile.name, prefix + code + postfix)
+            val outputFiles = arrayListOf<OutputFile>(jsFile)
+            outputFiles.addAll(getMetadataOutputFiles(outputFile, sourceFiles))
+
+            if (sourceMapBuilder != null) {
+                sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
+                val sourceMapFile = SimpleOutputFile(sourceFiles, sourceMapBuilder.outFile.name, sourceMapBuilder.build())
+                outputFiles.add(sourceMapFile)
+            }
+
+            return SimpleOutputFileCollection(outputFiles)
+        }
+
+        /**
+         * Writes the same files as [getOutputFiles] to [outputDir].
+         * The code and the source map are passed on to the files while the program is printed instead of being built in memory.
+         * Returns paths of the written files relative to [outputDir].
+         */
+        fun writeOutputFiles(
+                outputFile: File,
+                outputPrefixFile: File?,
+                outputPostfixFile: File?,
+                outputDir: File,
+                report: (sources: List<File>, output: File) -> Unit
+        ): List<String> {
+            val prefix = outputPrefixFile?.readText() ?: ""
+            val postfix = outputPostfixFile?.readText() ?: ""
+            val sourceFiles = getSourceFiles()
+            val writtenFiles = arrayListOf<String>()
+
+            val mappingsFile =
+                    if (config.configuration.getBoolean(JSConfigurationKeys.SOURCE_MAP))
+                        FileUtil.createTempFile("kotlin-js", ".mappings", true)
+                    else null
+
+            try {
+                val jsFile = File(outputDir, outputFile.name)
+                report(sourceFiles, jsFile)
+                FileUtil.createParentDirs(jsFile)
+
+                var sourceMapBuilder: SourceMap3Builder? = null
+                jsFile.bufferedWriter().use { writer ->
+                    writer.write(prefix)
+
+                    val output = TextOutputImpl(writer)
+                    val mappingsWriter = mappingsFile?.bufferedWriter()
+                    try {
+                        sourceMapBuilder = mappingsWriter?.let { SourceMap3Builder(outputFile, output, SourceMapBuilderConsumer(), it) }
+                        program.accept(JsSourceGenerationVisitor(output, sourceMapBuilder))
+                        output.flush()
+                        sourceMapBuilder?.flush()
+                    }
+                    finally {
+                        mappingsWriter?.close()
+                    }
+
+                    writer.write(postfix)
+                }
+                writtenFiles.add(outputFile.name)
+
+                for (metadataFile in getMetadataOutputFiles(outputFile, sourceFiles)) {
+                    val file = File(outputDir, metadataFile.relativePath)
+                    report(metadataFile.sourceFiles, file)
+                    FileUtil.writeToFile(file, metadataFile.asByteArray())
+                    writtenFiles.add(metadataFile.relativePath)
+                }
+
+                val builder = sourceMapBuilder
+                if (builder != null && mappingsFile != null) {
+                    builder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
+                    val sourceMapFile = File(outputDir, builder.outFile.name)
+                    report(sourceFiles, sourceMapFile)
+                    sourceMapFile.bufferedWriter().use { writer ->
+                        mappingsFile.bufferedReader().use { builder.writeTo(writer, it) }
+                    }
+                    writtenFiles.add(builder.outFile.name)
                 }
             }
+            finally {
+                mappingsFile?.delete()
+            }
 
-            val jsFile = SimpleOutputFile(sourceFiles, outputFile.name, prefix + code + postfix)
-            val outputFiles = arrayListOf<OutputFile>(jsFile)
+            return writtenFiles
+        }
+
+        private fun getSourceFiles(): List<File> =
+                files.map {
+                    val virtualFile = it.originalFile.virtualFile
+
+                    when {
+                        virtualFile == null -> File(it.name)
+                        else -> VfsUtilCore.virtualToIoFile(virtualFile)
+                    }
+                }
+
+        private fun getMetadataOutputFiles(outputFile: File, sourceFiles: List<File>): List<OutputFile> {
+            val outputFiles = arrayListOf<OutputFile>()
 
             if (config.configuration.getBoolean(JSConfigurationKeys.META_INFO)) {
                 val metaFileName = KotlinJavascriptMetadataUtils.replaceSuffix(outputFile.name)
@@ -86,13 +177,7 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
                 }
             }
 
-            if (sourceMapBuilder != null) {
-                sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
-                val sourceMapFile = SimpleOutputFile(sourceFiles, sourceMapBuilder.outFile.name, sourceMapBuilder.build())
-                outputFiles.add(sourceMapFile)
-            }
-
-            return SimpleOutputFileCollection(outputFiles)
+            return outputFiles
         }
 
         private fun getCode(output: TextOutput, sourceMapBuilder: SourceMapBuilder?): String {
@@ -21,13 +21,25 @@ import com.google.dart.compiler.util.TextOutput;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.PairConsumer;
 import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class SourceMap3Builder implements SourceMapBuilder {
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+
     private final StringBuilder out = new StringBuilder(8192);
+    // when set, mappings are passed on to the writer at line ends instead of being accumulated
+    @Nullable
+    private final Writer mappingsWriter;
+    private int skippedLines;
     private final File generatedFile;
     private final TextOutput textOutput;
     private final PairConsumer<SourceMapBuilder, Object> sourceInfoConsumer;
@@ -51,9 +63,19 @@ public class SourceMap3Builder implements SourceMapBuilder {
     private int previousSourceColumn;
 
     public SourceMap3Builder(File generatedFile, TextOutput textOutput, PairConsumer<SourceMapBuilder, Object> sourceInfoConsumer) {
+        this(generatedFile, textOutput, sourceInfoConsumer, null);
+    }
+
+    public SourceMap3Builder(
+            File generatedFile,
+            TextOutput textOutput,
+            PairConsumer<SourceMapBuilder, Object> sourceInfoConsumer,
+            @Nullable Writer mappingsWriter
+    ) {
         this.generatedFile = generatedFile;
         this.textOutput = textOutput;
         this.sourceInfoConsumer = sourceInfoConsumer;
+        this.mappingsWriter = mappingsWriter;
     }
 
     @Override
@@ -63,14 +85,51 @@ public class SourceMap3Builder implements SourceMapBuilder {
 
     @Override
     public String build() {
+        assert mappingsWriter == null : "Mappings are passed on to the writer, use writeTo instead";
+
         StringBuilder sb = new StringBuilder(out.length() + (128 * orderedSources.size()));
+        appendHeader(sb);
+        sb.append(out);
+        sb.append("\"}");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the same text as {@link #build()} when mappings were passed on to the writer given to the constructor.
+     * {@code mappings} should read everything that was written to that writer.
+     */
+    public void writeTo(@NotNull Writer writer, @NotNull Reader mappings) throws IOException {
+        StringBuilder sb = new StringBuilder(128 * orderedSources.size());
+        appendHeader(sb);
+        sb.append(StringUtil.repeatSymbol(';', skippedLines));
+        writer.append(sb);
+
+        char[] buffer = new char[8192];
+        int count;
+        while ((count = mappings.read(buffer)) != -1) {
+            writer.write(buffer, 0, count);
+        }
+        writer.append(out);
+        writer.append("\"}");
+    }
+
+    public void flush() {
+        if (mappingsWriter == null) return;
+
+        try {
+            mappingsWriter.append(out);
+            out.setLength(0);
+        }
+        catch (IOException e) {
+            throw ExceptionUtilsKt.rethrow(e);
+        }
+    }
+
+    private void appendHeader(StringBuilder sb) {
         sb.append("{\"version\":3,\"file\":\"").append(generatedFile.getName()).append('"').append(',');
         appendSources(sb);
         sb.append(",\"names\":[");
         sb.append("],\"mappings\":\"");
-        sb.append(out);
-        sb.append("\"}");
-        return sb.toString();
     }
 
     private void appendSources(StringBuilder sb) {
@@ -92,11 +151,19 @@ public class SourceMap3Builder implements SourceMapBuilder {
     public void newLine() {
         out.append(';');
         previousGeneratedColumn = -1;
+        if (mappingsWriter != null && out.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
     }
 
     @Override
     public void skipLinesAtBeginning(int count) {
-        out.insert(0, StringUtil.repeatSymbol(';', count));
+        if (mappingsWriter != null) {
+            skippedLines += count;
+        }
+        else {
+            out.insert(0, StringUtil.repeatSymbol(';', count));
+        }
     }
 
     @Override
@@ -29,6 +29,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.builtins.ReflectionTypes;
 import org.jetbrains.kotlin.descriptors.*;
+import org.jetbrains.kotlin.diagnostics.Diagnostic;
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys;
 import org.jetbrains.kotlin.js.config.JsConfig;
 import org.jetbrains.kotlin.js.config.LibrarySourcesConfig;
 import org.jetbrains.kotlin.js.translate.context.generator.Generator;
@@ -41,6 +43,7 @@ import org.jetbrains.kotlin.resolve.BindingTrace;
 import org.jetbrains.kotlin.resolve.DescriptorUtils;
 import org.jetbrains.kotlin.resolve.calls.util.FakeCallableDescriptorForObject;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +58,9 @@ import static org.jetbrains.kotlin.resolve.calls.tasks.DynamicCallsKt.isDynamic;
 
 /**
  * Aggregates all the static parts of the context.
+ *
+ * Files of different packages may be translated concurrently (see {@link JSConfigurationKeys#PARALLEL_TRANSLATION}),
+ * so the generators, which call each other recursively, are only used under the lock of the context.
  */
 public final class StaticContext {
 
@@ -104,7 +110,8 @@ public final class StaticContext {
     private final Map<MemberDescriptor, List<DeclarationDescriptor>> classOrConstructorClosure = Maps.newHashMap();
 
     @NotNull
-    private final Map<ClassDescriptor, List<DeferredCallSite>> deferredCallSites = new HashMap<ClassDescriptor, List<DeferredCallSite>>();
+    private final Map<ClassDescriptor, List<DeferredCallSite>> deferredCallSites =
+            Collections.synchronizedMap(new HashMap<ClassDescriptor, List<DeferredCallSite>>());
 
     @NotNull
     private final JsConfig config;
@@ -140,6 +147,10 @@ public final class StaticContext {
         return bindingTrace;
     }
 
+    public synchronized void report(@NotNull Diagnostic diagnostic) {
+        bindingTrace.report(diagnostic);
+    }
+
     @NotNull
     public BindingContext getBindingContext() {
         return bindingTrace.getBindingContext();
@@ -166,14 +177,14 @@ public final class StaticContext {
     }
 
     @NotNull
-    public JsScope getScopeForDescriptor(@NotNull DeclarationDescriptor descriptor) {
+    public synchronized JsScope getScopeForDescriptor(@NotNull DeclarationDescriptor descriptor) {
         JsScope scope = scopes.get(descriptor.getOriginal());
         assert scope != null : "Must have a scope for descriptor";
         return scope;
     }
 
     @NotNull
-    public JsFunction getFunctionWithScope(@NotNull CallableDescriptor descriptor) {
+    public synchronized JsFunction getFunctionWithScope(@NotNull CallableDescriptor descriptor) {
         JsScope scope = getScopeForDescriptor(descriptor);
         JsFunction function = scopeToFunction.get(scope);
         assert scope.equals(function.getScope()) : "Inconsistency.";
@@ -201,14 +212,14 @@ public final class StaticContext {
     }
 
     @NotNull
-    public JsName getNameForDescriptor(@NotNull DeclarationDescriptor descriptor) {
+    public synchronized JsName getNameForDescriptor(@NotNull DeclarationDescriptor descriptor) {
         JsName name = names.get(descriptor.getOriginal());
         assert name != null : "Must have name for descriptor";
         return name;
     }
 
     @NotNull
-    public JsName getNameForPackage(@NotNull final FqName packageFqName) {
+    public synchronized JsName getNameForPackage(@NotNull final FqName packageFqName) {
         return ContainerUtil.getOrCreate(packageNames, packageFqName, new Factory<JsName>() {
             @Override
             public JsName create() {
@@ -421,7 +432,7 @@ public final class StaticContext {
     }
 
     @NotNull
-    public JsName declarePropertyOrPropertyAccessorName(@NotNull DeclarationDescriptor descriptor, @NotNull String name, boolean fresh) {
+    public synchronized JsName declarePropertyOrPropertyAccessorName(@NotNull DeclarationDescriptor descriptor, @NotNull String name, boolean fresh) {
         JsScope scope = getEnclosingScope(descriptor);
         return fresh ? scope.declareFreshName(name) : scope.declareName(name);
     }
@@ -500,7 +511,7 @@ public final class StaticContext {
     }
 
     @Nullable
-    public JsExpression getQualifierForDescriptor(@NotNull DeclarationDescriptor descriptor) {
+    public synchronized JsExpression getQualifierForDescriptor(@NotNull DeclarationDescriptor descriptor) {
         if (qualifierIsNull.get(descriptor.getOriginal()) != null) {
             return null;
         }
@@ -663,12 +674,12 @@ public final class StaticContext {
         }
     }
 
-    public void putClassOrConstructorClosure(@NotNull MemberDescriptor localClass, @NotNull List<DeclarationDescriptor> closure) {
+    public synchronized void putClassOrConstructorClosure(@NotNull MemberDescriptor localClass, @NotNull List<DeclarationDescriptor> closure) {
         classOrConstructorClosure.put(localClass, Lists.newArrayList(closure));
     }
 
     @Nullable
-    public List<DeclarationDescriptor> getClassOrConstructorClosure(@NotNull MemberDescriptor descriptor) {
+    public synchronized List<DeclarationDescriptor> getClassOrConstructorClosure(@NotNull MemberDescriptor descriptor) {
         List<DeclarationDescriptor> result = classOrConstructorClosure.get(descriptor);
         return result != null ? Lists.newArrayList(result) : null;
     }
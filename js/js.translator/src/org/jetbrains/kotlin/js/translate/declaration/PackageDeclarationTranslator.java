@@ -19,19 +19,32 @@ package org.jetbrains.kotlin.js.translate.declaration;
 import com.google.dart.compiler.backend.js.ast.*;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.kotlin.descriptors.PackageFragmentDescriptor;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.descriptors.*;
+import org.jetbrains.kotlin.js.config.JSConfigurationKeys;
 import org.jetbrains.kotlin.js.facade.exceptions.TranslationRuntimeException;
 import org.jetbrains.kotlin.js.translate.context.Namer;
 import org.jetbrains.kotlin.js.translate.context.TranslationContext;
 import org.jetbrains.kotlin.js.translate.general.AbstractTranslator;
+import org.jetbrains.kotlin.js.translate.utils.AnnotationsUtils;
+import org.jetbrains.kotlin.js.translate.utils.BindingUtils;
 import org.jetbrains.kotlin.name.FqName;
-import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.kotlin.psi.*;
 import org.jetbrains.kotlin.resolve.BindingContext;
 import org.jetbrains.kotlin.resolve.BindingContextUtils;
+import org.jetbrains.kotlin.resolve.DescriptorUtils;
+import org.jetbrains.kotlin.resolve.calls.callUtil.CallUtilKt;
+import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall;
+import org.jetbrains.kotlin.utils.ExceptionUtilsKt;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.dart.compiler.backend.js.ast.JsVars.JsVar;
+import static org.jetbrains.kotlin.resolve.calls.tasks.DynamicCallsKt.isDynamic;
 
 public final class PackageDeclarationTranslator extends AbstractTranslator {
     private final Iterable<KtFile> files;
@@ -53,39 +66,207 @@ public final class PackageDeclarationTranslator extends AbstractTranslator {
         // predictable order
         Map<FqName, DefineInvocation> packageFqNameToDefineInvocation = new THashMap<FqName, DefineInvocation>();
 
+        if (context().getConfig().getConfiguration().getBoolean(JSConfigurationKeys.PARALLEL_TRANSLATION)) {
+            translateInParallel(packageFqNameToDefineInvocation);
+        }
+        else {
+            for (KtFile file : files) {
+                translateFile(getTranslator(file, packageFqNameToDefineInvocation), file);
+            }
+        }
+
+        for (PackageTranslator translator : packageFragmentToTranslator.values()) {
+            translator.add(packageFqNameToDefineInvocation);
+        }
+
+        JsVars vars = new JsVars(true);
+        vars.addIfHasInitializer(getRootPackageDeclaration(packageFqNameToDefineInvocation.get(FqName.ROOT)));
+
+        return Collections.<JsStatement>singletonList(vars);
+    }
+
+    /**
+     * Translates the files of each package on a thread pool, files of the same package are translated by one task in their order.
+     *
+     * Names of declarations are allocated in the scope of their container with a fresh suffix when the name is taken,
+     * so they depend on the order in which they are requested. To keep the output deterministic, names of all declarations
+     * which can be referenced from other packages and of all library declarations referenced by the files are allocated
+     * before the translation, in the order of files. The rest of names are allocated in scopes of a package,
+     * its classes and functions, which are used by one task only.
+     */
+    private void translateInParallel(@NotNull Map<FqName, DefineInvocation> packageFqNameToDefineInvocation) {
+        final Map<PackageTranslator, List<KtFile>> translatorToFiles = new LinkedHashMap<PackageTranslator, List<KtFile>>();
+        for (KtFile file : files) {
+            PackageTranslator translator = getTranslator(file, packageFqNameToDefineInvocation);
+            List<KtFile> packageFiles = translatorToFiles.get(translator);
+            if (packageFiles == null) {
+                packageFiles = new ArrayList<KtFile>();
+                translatorToFiles.put(translator, packageFiles);
+            }
+            packageFiles.add(file);
+        }
+
+        for (KtFile file : files) {
+            for (KtDeclaration declaration : file.getDeclarations()) {
+                DeclarationDescriptor descriptor = BindingUtils.getDescriptorForElement(bindingContext(), declaration);
+                if (!AnnotationsUtils.isPredefinedObject(descriptor)) {
+                    declareNames(descriptor);
+                }
+            }
+        }
+
         for (KtFile file : files) {
             PackageFragmentDescriptor packageFragment =
-                    BindingContextUtils.getNotNull(context().bindingContext(), BindingContext.FILE_TO_PACKAGE_FRAGMENT, file);
+                    BindingContextUtils.getNotNull(bindingContext(), BindingContext.FILE_TO_PACKAGE_FRAGMENT, file);
+            declareReferencedLibraryNames(file, DescriptorUtils.getContainingModule(packageFragment));
+        }
 
-            PackageTranslator translator = packageFragmentToTranslator.get(packageFragment);
-            if (translator == null) {
-                createRootPackageDefineInvocationIfNeeded(packageFqNameToDefineInvocation);
-                translator = PackageTranslator.create(packageFragment, context());
-                packageFragmentToTranslator.put(packageFragment, translator);
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), translatorToFiles.size());
+        if (threads < 2) {
+            for (Map.Entry<PackageTranslator, List<KtFile>> entry : translatorToFiles.entrySet()) {
+                translateFiles(entry.getKey(), entry.getValue());
             }
+            return;
+        }
 
-            try {
-                translator.translate(file);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final Map.Entry<PackageTranslator, List<KtFile>> entry : translatorToFiles.entrySet()) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        translateFiles(entry.getKey(), entry.getValue());
+                    }
+                }));
             }
-            catch (TranslationRuntimeException e) {
-                throw e;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException e) {
+                    throw ExceptionUtilsKt.rethrow(e.getCause());
+                }
+                catch (InterruptedException e) {
+                    throw ExceptionUtilsKt.rethrow(e);
+                }
             }
-            catch (RuntimeException e) {
-                throw new TranslationRuntimeException(file, e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void declareNames(@NotNull DeclarationDescriptor descriptor) {
+        context().getNameForDescriptor(descriptor);
+
+        if (descriptor instanceof PropertyDescriptor) {
+            for (PropertyAccessorDescriptor accessor : ((PropertyDescriptor) descriptor).getAccessors()) {
+                context().getNameForDescriptor(accessor);
             }
-            catch (AssertionError e) {
-                throw new TranslationRuntimeException(file, e);
+        }
+        else if (descriptor instanceof ClassDescriptor) {
+            ClassDescriptor classDescriptor = (ClassDescriptor) descriptor;
+            for (ConstructorDescriptor constructor : classDescriptor.getConstructors()) {
+                context().getNameForDescriptor(constructor);
+            }
+            // fake overrides too, their names are declared in the scope of the class
+            for (DeclarationDescriptor member : DescriptorUtils.getAllDescriptors(classDescriptor.getUnsubstitutedMemberScope())) {
+                if (member instanceof CallableMemberDescriptor || member instanceof ClassDescriptor) {
+                    declareNames(member);
+                }
             }
         }
+    }
 
-        for (PackageTranslator translator : packageFragmentToTranslator.values()) {
-            translator.add(packageFqNameToDefineInvocation);
+    // Library declarations are named lazily in their container's scope, which is shared by all packages referring to them
+    private void declareReferencedLibraryNames(@NotNull KtFile file, @NotNull final ModuleDescriptor module) {
+        final BindingContext bindingContext = bindingContext();
+        file.accept(new KtTreeVisitorVoid() {
+            @Override
+            public void visitKtElement(@NotNull KtElement element) {
+                if (element instanceof KtReferenceExpression) {
+                    declareLibraryName(bindingContext.get(BindingContext.REFERENCE_TARGET, (KtReferenceExpression) element), module);
+                }
+                declareLibraryName(CallUtilKt.getResolvedCall(element, bindingContext), module);
+
+                if (element instanceof KtForExpression) {
+                    KtExpression loopRange = ((KtForExpression) element).getLoopRange();
+                    if (loopRange != null) {
+                        declareLibraryName(bindingContext.get(BindingContext.LOOP_RANGE_ITERATOR_RESOLVED_CALL, loopRange), module);
+                        declareLibraryName(bindingContext.get(BindingContext.LOOP_RANGE_HAS_NEXT_RESOLVED_CALL, loopRange), module);
+                        declareLibraryName(bindingContext.get(BindingContext.LOOP_RANGE_NEXT_RESOLVED_CALL, loopRange), module);
+                    }
+                }
+                else if (element instanceof KtDestructuringDeclarationEntry) {
+                    declareLibraryName(bindingContext.get(BindingContext.COMPONENT_RESOLVED_CALL, (KtDestructuringDeclarationEntry) element), module);
+                }
+                else if (element instanceof KtProperty && ((KtProperty) element).hasDelegate()) {
+                    DeclarationDescriptor descriptor = bindingContext.get(BindingContext.DECLARATION_TO_DESCRIPTOR, element);
+                    if (descriptor instanceof PropertyDescriptor) {
+                        for (PropertyAccessorDescriptor accessor : ((PropertyDescriptor) descriptor).getAccessors()) {
+                            declareLibraryName(bindingContext.get(BindingContext.DELEGATED_PROPERTY_RESOLVED_CALL, accessor), module);
+                        }
+                    }
+                }
+
+                super.visitKtElement(element);
+            }
+        });
+    }
+
+    private void declareLibraryName(@Nullable ResolvedCall<?> resolvedCall, @NotNull ModuleDescriptor module) {
+        if (resolvedCall != null) {
+            declareLibraryName(resolvedCall.getResultingDescriptor(), module);
         }
+    }
 
-        JsVars vars = new JsVars(true);
-        vars.addIfHasInitializer(getRootPackageDeclaration(packageFqNameToDefineInvocation.get(FqName.ROOT)));
+    private void declareLibraryName(@Nullable DeclarationDescriptor descriptor, @NotNull ModuleDescriptor module) {
+        if (!(descriptor instanceof CallableMemberDescriptor) && !(descriptor instanceof ClassDescriptor)) return;
+        if (isDynamic(descriptor)) return;
 
-        return Collections.<JsStatement>singletonList(vars);
+        ModuleDescriptor descriptorModule = DescriptorUtils.getContainingModuleOrNull(descriptor);
+        if (descriptorModule == null || descriptorModule.equals(module)) return;
+
+        context().getNameForDescriptor(descriptor);
+    }
+
+    @NotNull
+    private PackageTranslator getTranslator(
+            @NotNull KtFile file,
+            @NotNull Map<FqName, DefineInvocation> packageFqNameToDefineInvocation
+    ) {
+        PackageFragmentDescriptor packageFragment =
+                BindingContextUtils.getNotNull(context().bindingContext(), BindingContext.FILE_TO_PACKAGE_FRAGMENT, file);
+
+        PackageTranslator translator = packageFragmentToTranslator.get(packageFragment);
+        if (translator == null) {
+            createRootPackageDefineInvocationIfNeeded(packageFqNameToDefineInvocation);
+            translator = PackageTranslator.create(packageFragment, context());
+            packageFragmentToTranslator.put(packageFragment, translator);
+        }
+        return translator;
+    }
+
+    private static void translateFiles(@NotNull PackageTranslator translator, @NotNull List<KtFile> files) {
+        for (KtFile file : files) {
+            translateFile(translator, file);
+        }
+    }
+
+    private static void translateFile(@NotNull PackageTranslator translator, @NotNull KtFile file) {
+        try {
+            translator.translate(file);
+        }
+        catch (TranslationRuntimeException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            throw new TranslationRuntimeException(file, e);
+        }
+        catch (AssertionError e) {
+            throw new TranslationRuntimeException(file, e);
+        }
     }
 
     private void createRootPackageDefineInvocationIfNeeded(@NotNull Map<FqName, DefineInvocation> packageFqNameToDefineInvocation) {
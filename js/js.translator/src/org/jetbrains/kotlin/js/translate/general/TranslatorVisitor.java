@@ -33,7 +33,7 @@ public abstract class TranslatorVisitor<T> extends KtVisitor<T, TranslationConte
 
     @Override
     public T visitKtElement(@NotNull KtElement expression, TranslationContext context) {
-        context.bindingTrace().report(ErrorsJs.NOT_SUPPORTED.on(expression, expression));
+        context.report(ErrorsJs.NOT_SUPPORTED.on(expression, expression));
         return emptyResult(context);
     }
 
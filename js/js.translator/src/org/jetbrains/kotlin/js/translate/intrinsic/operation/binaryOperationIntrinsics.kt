@@ -46,7 +46,9 @@ class BinaryOperationIntrinsics {
             return NO_INTRINSIC
         }
 
-        return lookUpCache(token, descriptor) ?: computeAndCacheIntrinsic(token, descriptor)
+        return synchronized(intrinsicCache) {
+            lookUpCache(token, descriptor) ?: computeAndCacheIntrinsic(token, descriptor)
+        }
     }
 
     private fun lookUpCache(token: KtToken, descriptor: FunctionDescriptor): BinaryOperationIntrinsic? =
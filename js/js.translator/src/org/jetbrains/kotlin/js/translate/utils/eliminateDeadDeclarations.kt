@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.js.translate.utils
+
+import com.google.dart.compiler.backend.js.JsToStringGenerationVisitor
+import com.google.dart.compiler.backend.js.ast.*
+import com.google.dart.compiler.util.TextOutputImpl
+import org.jetbrains.kotlin.js.inline.util.IdentitySet
+import org.jetbrains.kotlin.js.translate.context.Namer
+import org.jetbrains.kotlin.js.translate.context.TranslationContext
+import java.util.*
+
+class DeadCodeEliminationReport(val removedDeclarations: List<String>, val sizeBefore: Int, val sizeAfter: Int)
+
+/**
+ * Removes top-level declarations of the module which are not reachable from the statements of the module function
+ * (the call to main and tests), package initializers and the declarations or packages listed in [keep].
+ *
+ * Reachability is computed from qualified references like `_.foo.bar`. When a package object is used in any other way,
+ * all its declarations are kept. The object passed to `Kotlin.defineModule` is not considered a use.
+ */
+fun eliminateDeadDeclarations(context: TranslationContext, keep: Collection<String>): DeadCodeEliminationReport {
+    val program = context.program()
+    val sizeBefore = program.printedSize()
+
+    val removed = DeadDeclarationEliminator(context.currentBlock, context.namer()).apply(keep)
+
+    return DeadCodeEliminationReport(removed, sizeBefore, program.printedSize())
+}
+
+private fun JsNode.printedSize(): Int {
+    val output = TextOutputImpl()
+    accept(JsToStringGenerationVisitor(output))
+    return output.toString().toByteArray(Charsets.UTF_8).size
+}
+
+private class PackageNode(val fqName: String, val members: MutableList<JsPropertyInitializer>) {
+    val subpackages = hashMapOf<String, PackageNode>()
+    val declarations = hashMapOf<String, JsPropertyInitializer>()
+    var isEscaped = false
+}
+
+private class DeadDeclarationEliminator(private val rootBlock: JsBlock, private val namer: Namer) {
+    private val reachable = IdentitySet<JsPropertyInitializer>()
+    private val queue = ArrayDeque<Pair<JsNode, PackageNode?>>()
+
+    fun apply(keep: Collection<String>): List<String> {
+        var root: PackageNode? = null
+
+        for (statement in rootBlock.statements) {
+            if (statement is JsVars) {
+                for (jsVar in statement.vars) {
+                    val definition = jsVar.initExpression
+                    if (jsVar.name.ident == Namer.getRootPackageName() && definition is JsInvocation &&
+                        definition.qualifier == namer.rootPackageDefinitionMethodReference()) {
+                        root = createPackageNode("", definition)
+                    }
+                    else if (definition != null) {
+                        queue.add(Pair(definition, null))
+                    }
+                }
+            }
+            else if (!isDefineModule(statement)) {
+                queue.add(Pair(statement, null))
+            }
+        }
+
+        if (root == null) return emptyList()
+
+        for (fqName in keep) {
+            markPath(root, fqName.split('.').filter { it.isNotEmpty() })
+        }
+
+        while (queue.isNotEmpty()) {
+            val (node, thisPackage) = queue.poll()
+            ReferenceCollector(root, thisPackage).accept(node)
+        }
+
+        val removed = arrayListOf<String>()
+        removeUnreachable(root, removed)
+        return removed
+    }
+
+    private fun createPackageNode(fqName: String, definition: JsInvocation): PackageNode? {
+        val arguments = definition.arguments
+        val members = (arguments.lastOrNull() as? JsObjectLiteral)?.propertyInitializers ?: return null
+        val node = PackageNode(fqName, members)
+
+        val initializer = arguments.firstOrNull()
+        if (initializer is JsFunction) {
+            queue.add(Pair(initializer, node))
+        }
+
+        for (member in members) {
+            val ident = member.labelIdent() ?: continue
+            val value = member.valueExpr
+            val subpackage =
+                    if (value is JsInvocation && value.qualifier == namer.packageDefinitionMethodReference())
+                        createPackageNode(if (fqName.isEmpty()) ident else "$fqName.$ident", value)
+                    else null
+
+            if (subpackage != null) {
+                node.subpackages[ident] = subpackage
+            }
+            else {
+                node.declarations[ident] = member
+            }
+        }
+
+        return node
+    }
+
+    private fun isDefineModule(statement: JsStatement): Boolean {
+        val invocation = (statement as? JsExpressionStatement)?.expression as? JsInvocation ?: return false
+        val qualifier = invocation.qualifier as? JsNameRef ?: return false
+        val kotlin = qualifier.qualifier as? JsNameRef ?: return false
+        return qualifier.ident == "defineModule" && kotlin.ident == Namer.KOTLIN_NAME && kotlin.qualifier == null
+    }
+
+    private fun markPath(root: PackageNode, path: List<String>) {
+        var node = root
+        for (ident in path) {
+            val subpackage = node.subpackages[ident]
+            if (subpackage != null) {
+                node = subpackage
+                continue
+            }
+
+            val declaration = node.declarations[ident]
+            if (declaration != null) {
+                markDeclaration(declaration, node)
+            }
+            return
+        }
+
+        markPackage(node)
+    }
+
+    private fun markPackage(node: PackageNode) {
+        if (node.isEscaped) return
+        node.isEscaped = true
+
+        for (declaration in node.declarations.values) {
+            markDeclaration(declaration, node)
+        }
+        for (subpackage in node.subpackages.values) {
+            markPackage(subpackage)
+        }
+    }
+
+    private fun markDeclaration(declaration: JsPropertyInitializer, container: PackageNode) {
+        if (reachable.add(declaration)) {
+            val value = declaration.valueExpr
+            // `this` is the package object only in top-level functions
+            queue.add(Pair(value, if (value is JsFunction) container else null))
+        }
+    }
+
+    private fun removeUnreachable(node: PackageNode, removed: MutableList<String>) {
+        val iterator = node.members.iterator()
+        while (iterator.hasNext()) {
+            val member = iterator.next()
+            val ident = member.labelIdent() ?: continue
+            if (node.declarations[ident] === member && member !in reachable) {
+                iterator.remove()
+                removed.add(if (node.fqName.isEmpty()) ident else "${node.fqName}.$ident")
+            }
+        }
+
+        for (subpackage in node.subpackages.values) {
+            removeUnreachable(subpackage, removed)
+        }
+    }
+
+    private fun JsPropertyInitializer.labelIdent(): String? {
+        val label = labelExpr
+        return when (label) {
+            is JsNameRef -> label.ident
+            is JsStringLiteral -> label.value
+            else -> null
+        }
+    }
+
+    private inner class ReferenceCollector(private val root: PackageNode, private val thisPackage: PackageNode?) : RecursiveJsVisitor() {
+        override fun visitNameRef(nameRef: JsNameRef) {
+            val path = getPathFromRoot(nameRef)
+            if (path != null) {
+                markPath(root, path)
+                return
+            }
+
+            if (thisPackage != null && nameRef.qualifier is JsLiteral.JsThisRef) {
+                thisPackage.declarations[nameRef.ident]?.let { markDeclaration(it, thisPackage) }
+            }
+
+            super.visitNameRef(nameRef)
+        }
+
+        private fun getPathFromRoot(nameRef: JsNameRef): List<String>? {
+            val path = arrayListOf<String>()
+            var current = nameRef
+            while (true) {
+                val qualifier = current.qualifier ?: break
+                if (qualifier !is JsNameRef) return null
+                path.add(current.ident)
+                current = qualifier
+            }
+
+            if (current.ident != Namer.getRootPackageName()) return null
+            return path.reversed()
+        }
+    }
+}
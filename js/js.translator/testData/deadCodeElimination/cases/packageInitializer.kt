@@ -0,0 +1,19 @@
+package foo
+
+// CHECK_HAS_NO_PROPERTY: unused
+
+var log = ""
+
+val initialized = record("init")
+
+fun record(s: String): String {
+    log += s
+    return s
+}
+
+fun unused() = record("fail")
+
+fun box(): String {
+    if (log != "init") return "fail: $log"
+    return "OK"
+}
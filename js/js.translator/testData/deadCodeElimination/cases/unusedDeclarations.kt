@@ -0,0 +1,26 @@
+package foo
+
+// CHECK_HAS_NO_PROPERTY: unusedFunction
+// CHECK_HAS_NO_PROPERTY: UnusedClass
+// CHECK_HAS_NO_PROPERTY: unusedProperty
+
+fun unusedFunction() = "fail"
+
+class UnusedClass {
+    fun f() = unusedFunction()
+}
+
+val unusedProperty: String
+    get() = "fail"
+
+open class Base {
+    open fun result() = "O"
+}
+
+class Derived : Base() {
+    override fun result() = super.result() + usedFunction()
+}
+
+fun usedFunction() = "K"
+
+fun box(): String = Derived().result()
@@ -9,6 +9,7 @@ abstract class AnnotationWriter(private val writer: Writer) {
     }
 
     abstract fun writeClassDeclaration(classFqName: String)
+    abstract fun writeClassSourceFile(classFqName: String, sourceFilePath: String)
     abstract fun writeAnnotatedClass(annotationName: String, classFqName: String)
     abstract fun writeAnnotatedMethod(annotationName: String, classFqName: String, methodName: String)
     abstract fun writeAnnotatedField(annotationName: String, classFqName: String, fieldName: String)
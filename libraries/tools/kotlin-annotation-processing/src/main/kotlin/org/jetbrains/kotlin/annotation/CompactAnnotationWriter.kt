@@ -11,6 +11,10 @@ class CompactAnnotationWriter(writer: Writer) : AnnotationWriter(writer) {
         writeLine(Notation.CLASS_DECLARATION, getShortenedClassName(classFqName))
     }
 
+    override fun writeClassSourceFile(classFqName: String, sourceFilePath: String) {
+        writeLine(Notation.CLASS_SOURCE_FILE, getShortenedClassName(classFqName), sourceFilePath)
+    }
+
     override fun writeAnnotatedClass(annotationName: String, classFqName: String) {
         writeAnnotated(Notation.ANNOTATED_CLASS, annotationName, classFqName)
     }
@@ -9,4 +9,5 @@ object CompactNotationType {
     const val SHORTENED_PACKAGE_NAME = "p"
 
     const val CLASS_DECLARATION = "d"
+    const val CLASS_SOURCE_FILE = "s"
 }
\ No newline at end of file
@@ -28,6 +28,11 @@ open class KotlinAnnotationProvider(annotationsReader: Reader) {
     protected val kotlinClassesInternal = linkedSetOf<String>()
     protected val annotatedKotlinElementsInternal = linkedMapOf<String, MutableSet<AnnotatedElement>>()
 
+    // Indices used to remove all entries of a class or a source file without scanning the whole set of annotations
+    protected val annotationsByClassInternal = hashMapOf<String, MutableList<Pair<String, AnnotatedElement>>>()
+    protected val sourceFilesInternal = linkedMapOf<String, String>()
+    protected val classesBySourceFileInternal = hashMapOf<String, MutableSet<String>>()
+
     init {
         readAnnotations(annotationsReader)
     }
@@ -38,6 +43,12 @@ open class KotlinAnnotationProvider(annotationsReader: Reader) {
     val kotlinClasses: Set<String>
         get() = kotlinClassesInternal
 
+    /**
+     * Paths of the source files declaring the annotated classes, for annotations files written with the source file records.
+     */
+    val classSourceFiles: Map<String, String>
+        get() = sourceFilesInternal
+
     val supportInheritedAnnotations: Boolean
         get() = kotlinClassesInternal.isNotEmpty()
 
@@ -76,13 +87,25 @@ open class KotlinAnnotationProvider(annotationsReader: Reader) {
                         kotlinClassesInternal.add(classFqName)
                     }
 
+                    Notation.CLASS_SOURCE_FILE -> {
+                        val classFqName = expandClassName(lineParts[1]).replace('$', '.')
+                        // The path may contain spaces
+                        val sourceFilePath = line.substring(type.length + lineParts[1].length + 2)
+
+                        val oldSourceFilePath = sourceFilesInternal.put(classFqName, sourceFilePath)
+                        if (oldSourceFilePath != null && oldSourceFilePath != sourceFilePath) {
+                            classesBySourceFileInternal[oldSourceFilePath]?.remove(classFqName)
+                        }
+                        classesBySourceFileInternal.getOrPut(sourceFilePath) { linkedSetOf() }.add(classFqName)
+                    }
+
                     Notation.ANNOTATED_CLASS, Notation.ANNOTATED_FIELD, Notation.ANNOTATED_METHOD -> {
                         val annotationName = expandAnnotation(lineParts[1])
                         val classFqName = expandClassName(lineParts[2]).replace('$', '.')
                         val elementName = if (lineParts.size == 4) lineParts[3] else null
 
                         val set = annotatedKotlinElementsInternal.getOrPut(annotationName) { linkedSetOf() }
-                        set.add(when (type) {
+                        val element = when (type) {
                             Notation.ANNOTATED_CLASS -> AnnotatedElement.Class(classFqName)
                             Notation.ANNOTATED_FIELD -> {
                                 val name = elementName ?: throw AssertionError("Name for field must be provided")
@@ -97,8 +120,11 @@ open class KotlinAnnotationProvider(annotationsReader: Reader) {
                                     AnnotatedElement.Method(classFqName, name)
                             }
                             else -> throw AssertionError("Unknown type: $type")
-                        })
+                        }
 
+                        if (set.add(element)) {
+                            annotationsByClassInternal.getOrPut(classFqName) { arrayListOf() }.add(annotationName to element)
+                        }
                     }
                     else -> throw AssertionError("Unknown type: $type")
                 }
@@ -116,5 +142,9 @@ open class KotlinAnnotationProvider(annotationsReader: Reader) {
         for (className in kotlinClasses) {
             writer.writeClassDeclaration(className)
         }
+
+        for ((className, sourceFilePath) in classSourceFiles) {
+            writer.writeClassSourceFile(className, sourceFilePath)
+        }
     }
 }
\ No newline at end of file
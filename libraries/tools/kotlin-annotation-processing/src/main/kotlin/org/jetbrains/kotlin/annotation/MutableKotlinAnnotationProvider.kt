@@ -28,8 +28,28 @@ class MutableKotlinAnnotationProvider : KotlinAnnotationProvider(StringReader(""
     fun removeClasses(classesFqNames: Set<String>) {
         kotlinClassesInternal.removeAll(classesFqNames)
 
-        for ((annotation, elements) in annotatedKotlinElementsInternal) {
-            elements.removeAll { it.classFqName in classesFqNames }
+        for (classFqName in classesFqNames) {
+            val sourceFilePath = sourceFilesInternal.remove(classFqName)
+            if (sourceFilePath != null) {
+                classesBySourceFileInternal[sourceFilePath]?.remove(classFqName)
+            }
+
+            val annotations = annotationsByClassInternal.remove(classFqName) ?: continue
+            for ((annotation, element) in annotations) {
+                annotatedKotlinElementsInternal[annotation]?.remove(element)
+            }
+        }
+    }
+
+    /**
+     * Removes all entries of the classes declared in the given source files
+     * (only known for annotations files which have been written with source file records).
+     */
+    fun removeSourceFiles(sourceFilePaths: Iterable<String>) {
+        val classesFqNames = hashSetOf<String>()
+        for (sourceFilePath in sourceFilePaths) {
+            classesBySourceFileInternal.remove(sourceFilePath)?.let { classesFqNames.addAll(it) }
         }
+        removeClasses(classesFqNames)
     }
 }
\ No newline at end of file
@@ -37,6 +37,20 @@ class MutableAnnotationProviderTest {
         assertEqualsToFile(annotationsFileUpdated, content)
     }
 
+    @Test
+    fun testRemoveSourceFile() {
+        val testDir = File(resourcesRootFile, "removeSourceFile")
+        val annotationsFile = File(testDir, "annotations.txt")
+        val annotationsFileUpdated = File(testDir, "annotations-updated.txt")
+
+        val content = mutateAnnotationsFiles {
+            addAnnotationsFrom(annotationsFile)
+            removeSourceFiles(setOf("/src/dir with spaces/B.kt"))
+        }
+
+        assertEqualsToFile(annotationsFileUpdated, content)
+    }
+
     @Test
     fun testMergeFiles() {
         val testDir = File(resourcesRootFile, "mergeFiles")
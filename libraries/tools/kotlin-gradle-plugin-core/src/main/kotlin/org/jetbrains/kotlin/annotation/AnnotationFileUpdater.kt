@@ -13,14 +13,18 @@ import java.util.*
  * which breaks the build.
  *
  * The workaround is to:
- * 1. backup old file before incremental compilation;
+ * 1. load old file before incremental compilation;
  * 2. after each iteration of IC:
  *  2.1 remove classes corresponding to dirty source files
+ *    (by the source file records of the annotations file, or by the classes known to the incremental caches)
  *  2.2 add annotations from newly generated annotations file
+ *
+ * The merged annotations are kept in memory between the iterations, the previous file is only re-read on revert.
  */
 class AnnotationFileUpdater(private val generatedAnnotationFile: File) {
     private val logger = Logging.getLogger(this.javaClass)
     private val lastSuccessfullyUpdatedFile = File.createTempFile("kapt-annotations-copy", "tmp")
+    private var annotationsProvider: MutableKotlinAnnotationProvider? = null
 
     init {
         if (generatedAnnotationFile.exists()) {
@@ -31,14 +35,20 @@ class AnnotationFileUpdater(private val generatedAnnotationFile: File) {
         }
     }
 
-    fun updateAnnotations(outdatedClasses: Iterable<JvmClassName>) {
+    fun updateAnnotations(outdatedClasses: Iterable<JvmClassName>, outdatedSources: Iterable<File> = emptyList()) {
         val outdatedClassesFqNames = outdatedClasses.mapTo(HashSet<String>()) { it.fqNameForClassNameWithoutDollars.asString() }
 
-        val annotationsProvider = MutableKotlinAnnotationProvider().apply {
+        val annotationsProvider = annotationsProvider ?: MutableKotlinAnnotationProvider().apply {
             addAnnotationsFrom(lastSuccessfullyUpdatedFile)
+        }
+        this.annotationsProvider = annotationsProvider
+
+        with (annotationsProvider) {
             removeClasses(outdatedClassesFqNames)
             logger.kotlinDebug { "Removed annotation entries for fq-names [${outdatedClassesFqNames.joinToString()}]" }
 
+            removeSourceFiles(outdatedSources.map { it.canonicalPath })
+
             if (generatedAnnotationFile.exists()) {
                 addAnnotationsFrom(generatedAnnotationFile)
                 logger.kotlinDebug { "Added annotation entries from $generatedAnnotationFile" }
@@ -54,10 +64,11 @@ class AnnotationFileUpdater(private val generatedAnnotationFile: File) {
     }
 
     fun revert() {
+        annotationsProvider = null
         lastSuccessfullyUpdatedFile.copyTo(generatedAnnotationFile, overwrite = true)
     }
 
     fun dispose() {
         lastSuccessfullyUpdatedFile.delete()
     }
-}
\ No newline at end of file
+}
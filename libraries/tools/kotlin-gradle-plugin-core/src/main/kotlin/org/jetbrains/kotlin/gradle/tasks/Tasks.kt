@@ -54,6 +54,7 @@ const val ANNOTATIONS_PLUGIN_NAME = "org.jetbrains.kotlin.kapt"
 const val KOTLIN_BUILD_DIR_NAME = "kotlin"
 const val CACHES_DIR_NAME = "caches"
 const val DIRTY_SOURCES_FILE_NAME = "dirty-sources.txt"
+const val CLASSPATH_SNAPSHOTS_DIR_NAME = "classpath-snapshots"
 const val USING_EXPERIMENTAL_INCREMENTAL_MESSAGE = "Using experimental kotlin incremental compilation"
 
 abstract class AbstractKotlinCompile<T : CommonCompilerArguments>() : AbstractCompile() {
@@ -241,6 +242,12 @@ open class KotlinCompile() : AbstractKotlinCompile<K2JVMCompilerArguments>() {
         val caches = hashMapOf<TargetId, GradleIncrementalCacheImpl>()
         val lookupStorage = LookupStorage(File(cacheDirectory, "lookups"))
         val lookupTracker = LookupTrackerImpl(LookupTracker.DO_NOTHING)
+        val classpathSnapshots = ClasspathSnapshotStorage(File(cacheDirectory, CLASSPATH_SNAPSHOTS_DIR_NAME))
+        // TODO: that doesn't look to wise - join it first and then split here, consider storing it somewhere in between
+        val classpathEntries = args.classpath.split(File.pathSeparator).filter { it.isNotEmpty() }.map { File(it) }
+        // null means that the snapshots of the whole classpath should be taken after the compilation
+        var updatedClasspathSnapshots: MutableList<ClasspathEntrySnapshot>? = arrayListOf()
+        val removedClasspathEntries = arrayListOf<File>()
         var currentRemoved = removed.filter { it.isKotlinFile() }
         val allGeneratedFiles = hashSetOf<GeneratedFile<TargetId>>()
         val logAction = { logStr: String -> logger.kotlinInfo(logStr) }
@@ -278,8 +285,58 @@ open class KotlinCompile() : AbstractKotlinCompile<K2JVMCompilerArguments>() {
             } else listOf())
         }
 
+        fun dirtyKotlinSourcesFromClasspath(): Set<File>? {
+            val classpathEntriesSet = classpathEntries.toHashSet()
+            val changedEntries = linkedSetOf<File>()
+
+            for (file in modified + removed) {
+                if (file !in classpathEntriesSet && !file.hasClassFileExtension()) continue
+
+                val entry = if (file in classpathEntriesSet) file else classpathEntries.firstOrNull { FileUtil.isAncestor(it, file, false) }
+                if (entry == null) {
+                    logger.kotlinDebug { "Could not find classpath entry of changed class file $file" }
+                    return null
+                }
+                changedEntries.add(entry)
+            }
+
+            val dirtyFiles = hashSetOf<File>()
+
+            fun addDirtyFiles(oldSnapshot: ClasspathEntrySnapshot, newSnapshot: ClasspathEntrySnapshot) {
+                val changes = computeClasspathEntryChanges(oldSnapshot, newSnapshot)
+                val (dirtyLookupSymbols, dirtyClassFqNames) = changes.getDirtyData(targets.map(::getIncrementalCache), logAction)
+                dirtyFiles.addAll(mapLookupSymbolsToFiles(lookupStorage, dirtyLookupSymbols, logAction, ::projectRelativePath))
+                dirtyFiles.addAll(mapClassesFqNamesToFiles(caches.values, dirtyClassFqNames, logAction, ::projectRelativePath))
+            }
+
+            for (entry in changedEntries) {
+                val oldSnapshot = classpathSnapshots[entry]
+                if (oldSnapshot == null) {
+                    logger.kotlinDebug { "No ABI snapshot of classpath entry $entry" }
+                    return null
+                }
+
+                val newSnapshot = ClasspathEntrySnapshot.create(entry)
+                updatedClasspathSnapshots!!.add(newSnapshot)
+                addDirtyFiles(oldSnapshot, newSnapshot)
+            }
+
+            // an entry removed from the classpath may still exist on disk, so Gradle doesn't report it as a removed file
+            val removedSnapshots = classpathSnapshots.snapshotsOfRemovedEntries(classpathEntries)
+            if (removedSnapshots == null) {
+                logger.kotlinDebug { "Could not read ABI snapshots of removed classpath entries" }
+                return null
+            }
+            for (oldSnapshot in removedSnapshots) {
+                logger.kotlinDebug { "Classpath entry ${oldSnapshot.entry} was removed" }
+                removedClasspathEntries.add(oldSnapshot.entry)
+                addDirtyFiles(oldSnapshot, ClasspathEntrySnapshot(oldSnapshot.entry, emptyMap()))
+            }
+
+            return dirtyFiles
+        }
+
         fun dirtyKotlinSourcesFromGradle(): MutableSet<File> {
-            // TODO: handle classpath changes similarly - compare with cashed version (likely a big change, may be costly, some heuristics could be considered)
             val modifiedKotlinFiles = modified.filter { it.isKotlinFile() }.toMutableSet()
             val lookupSymbols = dirtyLookupSymbolsFromModifiedJavaFiles()
                     // TODO: add dirty lookups from modified kotlin files to reduce number of steps needed
@@ -293,31 +350,31 @@ open class KotlinCompile() : AbstractKotlinCompile<K2JVMCompilerArguments>() {
             return modifiedKotlinFiles
         }
 
-        fun isClassPathChanged(): Boolean {
-            // TODO: that doesn't look to wise - join it first and then split here, consider storing it somewhere in between
-            val classpath = args.classpath.split(File.pathSeparator).map { File(it) }.toHashSet()
-            val changedClasspath = modified.filter { classpath.contains(it) }
-            return changedClasspath.any()
+        fun rebuild(reason: String): Pair<Set<File>, Boolean> {
+            logger.kotlinInfo(reason)
+            targets.forEach { getIncrementalCache(it).clean() }
+            lookupStorage.clean()
+            classpathSnapshots.clean()
+            updatedClasspathSnapshots = null
+            dirtySourcesSinceLastTimeFile.delete()
+            return Pair(sources.toSet(), false)
         }
 
         fun calculateSourcesToCompile(): Pair<Set<File>, Boolean> {
             if (!incremental
                 || !isIncrementalRequested
-                // TODO: more precise will be not to rebuild unconditionally on classpath changes, but retrieve lookup info and try to find out which sources are affected by cp changes
-                || isClassPathChanged()
                 // so far considering it not incremental TODO: store java files in the cache and extract removed symbols from it here
-                || removed.any { it.isJavaFile() || it.hasClassFileExtension() }
-                || modified.any { it.hasClassFileExtension() }
+                || removed.any { it.isJavaFile() }
                 || cacheVersions.any { it.checkVersion() != CacheVersion.Action.DO_NOTHING }
             ) {
-                logger.kotlinInfo(if (!isIncrementalRequested) "clean caches on rebuild" else "classpath changed, rebuilding all kotlin files")
-                targets.forEach { getIncrementalCache(it).clean() }
-                lookupStorage.clean()
-                dirtySourcesSinceLastTimeFile.delete()
-                return Pair(sources.toSet(), false)
+                return rebuild(if (!isIncrementalRequested) "clean caches on rebuild" else "caches are outdated, rebuilding all kotlin files")
             }
 
+            val dirtyFilesFromClasspath = dirtyKotlinSourcesFromClasspath()
+                    ?: return rebuild("classpath changed, rebuilding all kotlin files")
+
             val dirtyFiles = dirtyKotlinSourcesFromGradle()
+            dirtyFiles.addAll(dirtyFilesFromClasspath)
             if (dirtySourcesSinceLastTimeFile.exists()) {
                 val files = dirtySourcesSinceLastTimeFile.readLines().map(::File).filter { it.exists() }
                 if (files.isNotEmpty()) {
@@ -341,10 +398,27 @@ open class KotlinCompile() : AbstractKotlinCompile<K2JVMCompilerArguments>() {
             generatedRelPaths.forEach { File(destinationDir, it).delete() }
         }
 
+        fun saveClasspathSnapshots() {
+            val snapshots = updatedClasspathSnapshots ?: classpathEntries.map { ClasspathEntrySnapshot.create(it) }
+            removedClasspathEntries.forEach { classpathSnapshots.remove(it) }
+
+            for (snapshot in snapshots) {
+                if (snapshot.entry.exists()) {
+                    classpathSnapshots.save(snapshot)
+                }
+                else {
+                    classpathSnapshots.remove(snapshot.entry)
+                }
+            }
+        }
+
         fun processCompilerExitCode(exitCode: ExitCode) {
             if (exitCode != ExitCode.OK) {
                 cleanupOnError()
             }
+            else if (incremental) {
+                saveClasspathSnapshots()
+            }
 
             lookupStorage.flush(false)
             lookupStorage.close()
@@ -405,7 +479,7 @@ open class KotlinCompile() : AbstractKotlinCompile<K2JVMCompilerArguments>() {
 
             if (exitCode == ExitCode.OK) {
                 dirtySourcesSinceLastTimeFile.delete()
-                kaptAnnotationsFileUpdater?.updateAnnotations(outdatedClasses)
+                kaptAnnotationsFileUpdater?.updateAnnotations(outdatedClasses, removedAndModified)
             }
             else {
                 kaptAnnotationsFileUpdater?.revert()
@@ -500,6 +574,7 @@ open class KotlinCompile() : AbstractKotlinCompile<K2JVMCompilerArguments>() {
         if (kaptAnnotationsFile != null) {
             if (incremental) {
                 kaptAnnotationsFileUpdater = AnnotationFileUpdater(kaptAnnotationsFile)
+                pluginOptions.add("plugin:$ANNOTATIONS_PLUGIN_NAME:sourceFiles=true")
             }
 
             if (kaptAnnotationsFile.exists()) kaptAnnotationsFile.delete()
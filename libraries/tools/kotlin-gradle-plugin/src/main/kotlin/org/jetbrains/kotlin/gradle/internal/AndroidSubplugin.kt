@@ -30,9 +30,16 @@ import java.io.File
 import javax.xml.parsers.DocumentBuilderFactory
 
 // Use apply plugin: 'kotlin-android-extensions' to enable Android Extensions in an Android project.
-// Just a marker plugin.
+// Just a marker plugin, which also registers the androidExtensions { } block.
 public class AndroidExtensionsSubpluginIndicator : Plugin<Project> {
-    override fun apply(target: Project?) {}
+    override fun apply(target: Project) {
+        target.extensions.create("androidExtensions", AndroidExtensionsExtension::class.java)
+    }
+}
+
+open class AndroidExtensionsExtension {
+    // View cache implementation: "hashMap" (default) or "sparseArray"
+    open var cache: String? = null
 }
 
 public class AndroidSubplugin : KotlinGradleSubplugin {
@@ -80,6 +87,9 @@ public class AndroidSubplugin : KotlinGradleSubplugin {
 
         addVariant(mainSourceSet)
 
+        val androidExtensionsExtension = project.extensions.findByType(AndroidExtensionsExtension::class.java)
+        androidExtensionsExtension?.cache?.let { pluginOptions += SubpluginOption("cache", it) }
+
         val flavorSourceSets = AndroidGradleWrapper.getProductFlavorsSourceSets(androidExtension).filterNotNull()
         for (sourceSet in flavorSourceSets) {
             addVariant(sourceSet)
@@ -161,4 +161,17 @@ fun getSomething() = 10
             assertSuccessful()
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testAndroidExtensionsSparseArrayCache() {
+        val project = Project("AndroidExtensionsProject", gradleVersion)
+        val options = defaultBuildOptions().copy(incremental = false)
+
+        project.setupWorkingDir()
+        File(project.projectDir, "app/build.gradle").appendText("\nandroidExtensions {\n    cache = 'sparseArray'\n}\n")
+
+        project.build("assembleDebug", options = options) {
+            assertSuccessful()
+        }
+    }
+}
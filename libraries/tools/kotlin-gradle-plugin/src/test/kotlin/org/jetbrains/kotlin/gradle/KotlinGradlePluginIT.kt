@@ -175,6 +175,28 @@ class KotlinGradleIT: BaseGradleIT() {
             assertReportExists("projB")
             assertContains(":projB:compileKotlin")
             assertNotContains("projB:compileKotlin UP-TO-DATE")
+            // ABI of projA is not changed, so nothing should be recompiled in projB
+            assertCompiledKotlinSources(listOf("src/main/kotlin/a.kt"))
+        }
+    }
+
+    @Test
+    fun testMultiprojectIncrementalAbiChange() {
+        val incremental = defaultBuildOptions().copy(incremental = true)
+        val project = Project("multiprojectWithDependency", GRADLE_VERSION)
+
+        project.build("assemble", options = incremental) {
+            assertSuccessful()
+        }
+
+        val oldSrc = File(project.projectDir, "projA/src/main/kotlin/a.kt")
+        val newSrc = File(project.projectDir, "projA/src/main/kotlin/a.kt.abi")
+        newSrc.copyTo(oldSrc, overwrite = true)
+
+        project.build("assemble", options = incremental) {
+            assertSuccessful()
+            assertContains("[KOTLIN] is incremental == true")
+            assertCompiledKotlinSources(listOf("src/main/kotlin/a.kt", "src/main/kotlin/helloWorld.kt"))
         }
     }
 
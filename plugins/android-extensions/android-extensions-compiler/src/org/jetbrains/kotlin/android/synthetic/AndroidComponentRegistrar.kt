@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.android.synthetic
 import com.intellij.mock.MockProject
 import com.intellij.openapi.extensions.Extensions
 import org.jetbrains.kotlin.android.synthetic.codegen.AndroidExpressionCodegenExtension
+import org.jetbrains.kotlin.android.synthetic.codegen.CacheImplementation
 import org.jetbrains.kotlin.android.synthetic.codegen.AndroidOnDestroyClassBuilderInterceptorExtension
 import org.jetbrains.kotlin.android.synthetic.diagnostic.AndroidExtensionPropertiesCallChecker
 import org.jetbrains.kotlin.android.synthetic.diagnostic.DefaultErrorMessagesAndroid
@@ -45,6 +46,8 @@ import org.jetbrains.kotlin.resolve.jvm.platform.JvmPlatform
 object AndroidConfigurationKeys {
     val VARIANT: CompilerConfigurationKey<List<String>> = CompilerConfigurationKey.create<List<String>>("Android build variant")
     val PACKAGE: CompilerConfigurationKey<String> = CompilerConfigurationKey.create<String>("application package fq name")
+    val CACHE_IMPLEMENTATION: CompilerConfigurationKey<CacheImplementation> =
+            CompilerConfigurationKey.create<CacheImplementation>("view cache implementation")
 }
 
 class AndroidCommandLineProcessor : CommandLineProcessor {
@@ -53,11 +56,14 @@ class AndroidCommandLineProcessor : CommandLineProcessor {
 
         val VARIANT_OPTION: CliOption = CliOption("variant", "<name;path>", "Android build variant", allowMultipleOccurrences = true)
         val PACKAGE_OPTION: CliOption = CliOption("package", "<fq name>", "Application package")
+        val CACHE_OPTION: CliOption = CliOption(
+                "cache", "<${CacheImplementation.values().joinToString("|") { it.optionName }}>",
+                "View cache implementation (default: ${CacheImplementation.DEFAULT.optionName})", required = false)
     }
 
     override val pluginId: String = ANDROID_COMPILER_PLUGIN_ID
 
-    override val pluginOptions: Collection<CliOption> = listOf(VARIANT_OPTION, PACKAGE_OPTION)
+    override val pluginOptions: Collection<CliOption> = listOf(VARIANT_OPTION, PACKAGE_OPTION, CACHE_OPTION)
 
     override fun processOption(option: CliOption, value: String, configuration: CompilerConfiguration) {
         when (option) {
@@ -67,6 +73,11 @@ class AndroidCommandLineProcessor : CommandLineProcessor {
                 configuration.put(AndroidConfigurationKeys.VARIANT, paths)
             }
             PACKAGE_OPTION -> configuration.put(AndroidConfigurationKeys.PACKAGE, value)
+            CACHE_OPTION -> {
+                val cacheImplementation = CacheImplementation.parse(value)
+                                          ?: throw CliOptionProcessingException("Unknown view cache implementation: $value")
+                configuration.put(AndroidConfigurationKeys.CACHE_IMPLEMENTATION, cacheImplementation)
+            }
             else -> throw CliOptionProcessingException("Unknown option: ${option.name}")
         }
     }
@@ -77,12 +88,13 @@ class AndroidComponentRegistrar : ComponentRegistrar {
     override fun registerProjectComponents(project: MockProject, configuration: CompilerConfiguration) {
         val applicationPackage = configuration.get(AndroidConfigurationKeys.PACKAGE)
         val variants = configuration.get(AndroidConfigurationKeys.VARIANT)?.mapNotNull { parseVariant(it) } ?: emptyList()
+        val cacheImplementation = configuration.get(AndroidConfigurationKeys.CACHE_IMPLEMENTATION, CacheImplementation.DEFAULT)
 
         if (variants.isNotEmpty() && !applicationPackage.isNullOrBlank()) {
             val layoutXmlFileManager = CliAndroidLayoutXmlFileManager(project, applicationPackage!!, variants)
             project.registerService(AndroidLayoutXmlFileManager::class.java, layoutXmlFileManager)
 
-            ExpressionCodegenExtension.registerExtension(project, AndroidExpressionCodegenExtension())
+            ExpressionCodegenExtension.registerExtension(project, AndroidExpressionCodegenExtension(cacheImplementation))
             StorageComponentContainerContributor.registerExtension(project, AndroidExtensionPropertiesComponentContainerContributor())
             Extensions.getRootArea().getExtensionPoint(DefaultErrorMessages.Extension.EP_NAME).registerExtension(DefaultErrorMessagesAndroid())
             ClassBuilderInterceptorExtension.registerExtension(project, AndroidOnDestroyClassBuilderInterceptorExtension())
@@ -86,7 +86,25 @@ enum class AndroidClassType(className: String, val supportsCache: Boolean = fals
     }
 }
 
-class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
+/**
+ * Storage used for the view cache of the generated `_$_findCachedViewById`.
+ */
+enum class CacheImplementation(val optionName: String) {
+    /** `java.util.HashMap<Integer, View>`: boxes the view id on every lookup. */
+    HASH_MAP("hashMap"),
+    /** `android.util.SparseArray<View>`: keyed by the primitive view id, no boxing or hashing. */
+    SPARSE_ARRAY("sparseArray");
+
+    companion object {
+        val DEFAULT = HASH_MAP
+
+        fun parse(optionName: String): CacheImplementation? = values().firstOrNull { it.optionName == optionName }
+    }
+}
+
+class AndroidExpressionCodegenExtension(
+        private val cacheImplementation: CacheImplementation = CacheImplementation.DEFAULT
+) : ExpressionCodegenExtension {
     companion object {
         private val PROPERTY_NAME = "_\$_findViewCache"
         private val CACHED_FIND_VIEW_BY_ID_METHOD_NAME = "_\$_findCachedViewById"
@@ -102,6 +120,11 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
         }
     }
 
+    private val cacheType: Type = when (cacheImplementation) {
+        CacheImplementation.HASH_MAP -> Type.getObjectType("java/util/HashMap")
+        CacheImplementation.SPARSE_ARRAY -> Type.getObjectType("android/util/SparseArray")
+    }
+
     private class SyntheticPartsGenerateContext(
             val classBuilder: ClassBuilder,
             val state: GenerationState,
@@ -268,7 +291,7 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
             }
         }
 
-        classBuilder.newField(JvmDeclarationOrigin.NO_ORIGIN, ACC_PRIVATE, PROPERTY_NAME, "Ljava/util/HashMap;", null, null)
+        classBuilder.newField(JvmDeclarationOrigin.NO_ORIGIN, ACC_PRIVATE, PROPERTY_NAME, cacheType.descriptor, null, null)
     }
 
     private fun FunctionDescriptor.isOnDestroyFunction(): Boolean {
@@ -305,7 +328,7 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
 
         fun loadCache() {
             iv.load(0, classType)
-            iv.getfield(className, PROPERTY_NAME, "Ljava/util/HashMap;")
+            iv.getfield(className, PROPERTY_NAME, cacheType.descriptor)
         }
 
         loadCache()
@@ -313,7 +336,7 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
         iv.ifnull(lCacheIsNull)
 
         loadCache()
-        iv.invokevirtual("java/util/HashMap", "clear", "()V", false)
+        iv.invokevirtual(cacheType.internalName, "clear", "()V", false)
 
         iv.visitLabel(lCacheIsNull)
         iv.areturn(Type.VOID_TYPE)
@@ -333,7 +356,7 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
 
         fun loadCache() {
             iv.load(0, classType)
-            iv.getfield(className, PROPERTY_NAME, "Ljava/util/HashMap;")
+            iv.getfield(className, PROPERTY_NAME, cacheType.descriptor)
         }
 
         fun loadId() = iv.load(1, Type.INT_TYPE)
@@ -346,17 +369,24 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
 
         // Init cache if null
         iv.load(0, classType)
-        iv.anew(Type.getType("Ljava/util/HashMap;"))
+        iv.anew(cacheType)
         iv.dup()
-        iv.invokespecial("java/util/HashMap", "<init>", "()V", false)
-        iv.putfield(className, PROPERTY_NAME, "Ljava/util/HashMap;")
+        iv.invokespecial(cacheType.internalName, "<init>", "()V", false)
+        iv.putfield(className, PROPERTY_NAME, cacheType.descriptor)
 
         // Get View from cache
         iv.visitLabel(lCacheNonNull)
         loadCache()
         loadId()
-        iv.invokestatic("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
-        iv.invokevirtual("java/util/HashMap", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", false)
+        when (cacheImplementation) {
+            CacheImplementation.HASH_MAP -> {
+                iv.invokestatic("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
+                iv.invokevirtual(cacheType.internalName, "get", "(Ljava/lang/Object;)Ljava/lang/Object;", false)
+            }
+            CacheImplementation.SPARSE_ARRAY -> {
+                iv.invokevirtual(cacheType.internalName, "get", "(I)Ljava/lang/Object;", false)
+            }
+        }
         iv.checkcast(viewType)
         iv.store(2, viewType)
 
@@ -394,10 +424,18 @@ class AndroidExpressionCodegenExtension : ExpressionCodegenExtension {
         // Store resolved View in cache
         loadCache()
         loadId()
-        iv.invokestatic("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
-        iv.load(2, viewType)
-        iv.invokevirtual("java/util/HashMap", "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", false)
-        iv.pop()
+        when (cacheImplementation) {
+            CacheImplementation.HASH_MAP -> {
+                iv.invokestatic("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
+                iv.load(2, viewType)
+                iv.invokevirtual(cacheType.internalName, "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", false)
+                iv.pop()
+            }
+            CacheImplementation.SPARSE_ARRAY -> {
+                iv.load(2, viewType)
+                iv.invokevirtual(cacheType.internalName, "put", "(ILjava/lang/Object;)V", false)
+            }
+        }
 
         iv.visitLabel(lViewNonNull)
         iv.load(2, viewType)
@@ -0,0 +1,21 @@
+// CACHE_IMPLEMENTATION: sparseArray
+package test
+
+import android.app.Activity
+import kotlinx.android.synthetic.main.layout.*
+
+public class MyActivity : Activity() {
+    init {login}
+}
+
+// 1 public _\$_findCachedViewById
+// 1 public _\$_clearFindViewByIdCache
+// 1 private Landroid/util/SparseArray; _\$_findViewCache
+// 1 NEW android/util/SparseArray
+// 1 INVOKEVIRTUAL android/util/SparseArray\.get \(I\)Ljava/lang/Object;
+// 1 INVOKEVIRTUAL android/util/SparseArray\.put \(ILjava/lang/Object;\)V
+// 1 INVOKEVIRTUAL android/util/SparseArray\.clear
+// 0 java/lang/Integer\.valueOf
+// 0 java/util/HashMap
+// 1 INVOKEVIRTUAL test/MyActivity\._\$_findCachedViewById
+// 1 CHECKCAST android/widget/Button
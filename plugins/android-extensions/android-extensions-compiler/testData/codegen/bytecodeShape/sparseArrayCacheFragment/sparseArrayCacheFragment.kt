@@ -0,0 +1,20 @@
+// CACHE_IMPLEMENTATION: sparseArray
+package test
+
+import android.app.Fragment
+import kotlinx.android.synthetic.main.layout.*
+
+public class MyFragment : Fragment() {
+    init {login}
+}
+
+// 1 public _\$_findCachedViewById
+// 1 public _\$_clearFindViewByIdCache
+// 1 INVOKEVIRTUAL test/MyFragment\.getView
+// 1 INVOKEVIRTUAL android/util/SparseArray\.get \(I\)Ljava/lang/Object;
+// 1 INVOKEVIRTUAL android/util/SparseArray\.put \(ILjava/lang/Object;\)V
+// 1 INVOKEVIRTUAL android/util/SparseArray\.clear
+// 0 java/lang/Integer\.valueOf
+// 0 java/util/HashMap
+// 1 INVOKEVIRTUAL test/MyFragment\._\$_findCachedViewById
+// 1 CHECKCAST android/widget/Button
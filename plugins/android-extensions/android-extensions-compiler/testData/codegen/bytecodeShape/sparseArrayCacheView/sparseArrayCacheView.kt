@@ -0,0 +1,19 @@
+// CACHE_IMPLEMENTATION: sparseArray
+package test
+
+import android.content.Context
+import android.view.View
+import kotlinx.android.synthetic.main.layout.view.*
+
+public class MyView(context: Context) : View(context) {
+    init {login}
+}
+
+// 1 public _\$_findCachedViewById
+// 1 public _\$_clearFindViewByIdCache
+// 1 INVOKEVIRTUAL android/util/SparseArray\.get \(I\)Ljava/lang/Object;
+// 1 INVOKEVIRTUAL android/util/SparseArray\.put \(ILjava/lang/Object;\)V
+// 0 java/lang/Integer\.valueOf
+// 0 java/util/HashMap
+// 0 INVOKEVIRTUAL test/MyView\._\$_findCachedViewById
+// 1 CHECKCAST android/widget/Button
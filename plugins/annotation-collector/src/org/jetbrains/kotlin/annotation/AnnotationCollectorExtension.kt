@@ -33,7 +33,10 @@ import java.io.Writer
 import java.util.regex.Pattern
 import java.util.regex.PatternSyntaxException
 
-abstract class AnnotationCollectorExtensionBase(val supportInheritedAnnotations: Boolean) : ClassBuilderInterceptorExtension {
+abstract class AnnotationCollectorExtensionBase(
+        val supportInheritedAnnotations: Boolean,
+        val recordSourceFiles: Boolean = false
+) : ClassBuilderInterceptorExtension {
 
     private object RecordTypes {
         val ANNOTATED_CLASS = "c"
@@ -44,12 +47,14 @@ abstract class AnnotationCollectorExtensionBase(val supportInheritedAnnotations:
         val SHORTENED_PACKAGE_NAME = "p"
 
         val CLASS_DECLARATION = "d"
+        val CLASS_SOURCE_FILE = "s"
     }
 
     protected abstract val annotationFilterList: List<String>?
 
     private val shortenedAnnotationCache = ShortenedNameCache(RecordTypes.SHORTENED_ANNOTATION)
     private val shortenedPackageNameCache = ShortenedNameCache(RecordTypes.SHORTENED_PACKAGE_NAME)
+    private val canonicalSourceFilePaths = hashMapOf<String, String>()
 
     override fun interceptClassBuilderFactory(
             interceptedFactory: ClassBuilderFactory,
@@ -128,6 +133,13 @@ abstract class AnnotationCollectorExtensionBase(val supportInheritedAnnotations:
                 recordClass(currentPackageName, currentClassSimpleName)
             }
 
+            if (recordSourceFiles) {
+                val sourceFilePath = origin?.containingFile?.virtualFile?.path
+                if (sourceFilePath != null) {
+                    recordSourceFile(currentPackageName, currentClassSimpleName, sourceFilePath)
+                }
+            }
+
             super.defineClass(origin, version, access, name, signature, superName, interfaces)
         }
 
@@ -178,6 +190,17 @@ abstract class AnnotationCollectorExtensionBase(val supportInheritedAnnotations:
             writer.write("${RecordTypes.CLASS_DECLARATION} $outputClassName\n")
         }
 
+        // Source files are recorded so that the entries of changed and removed files can be replaced incrementally
+        private fun recordSourceFile(packageName: String, className: String, sourceFilePath: String) {
+            val packageNameId = if (!packageName.isEmpty())
+                shortenedPackageNameCache.save(packageName, writer)
+            else null
+
+            val canonicalPath = canonicalSourceFilePaths.getOrPut(sourceFilePath) { File(sourceFilePath).canonicalPath }
+            val outputClassName = getOutputClassName(packageNameId, className)
+            writer.write("${RecordTypes.CLASS_SOURCE_FILE} $outputClassName $canonicalPath\n")
+        }
+
         private fun recordAnnotation(name: String?, type: String, annotationDesc: String) {
             val annotationFqName = Type.getType(annotationDesc).className
             if (!isAnnotationHandled(annotationFqName)) return
@@ -233,8 +256,9 @@ abstract class AnnotationCollectorExtensionBase(val supportInheritedAnnotations:
 class AnnotationCollectorExtension(
         override val annotationFilterList: List<String>? = null,
         val outputFilename: String? = null,
-        supportInheritedAnnotations: Boolean
-) : AnnotationCollectorExtensionBase(supportInheritedAnnotations) {
+        supportInheritedAnnotations: Boolean,
+        recordSourceFiles: Boolean = false
+) : AnnotationCollectorExtensionBase(supportInheritedAnnotations, recordSourceFiles) {
 
     private var writerInternal: Writer? = null
 
@@ -38,6 +38,8 @@ object AnnotationCollectorConfigurationKeys {
             CompilerConfigurationKey.create<String>("stubs output directory")
     val INHERITED: CompilerConfigurationKey<String> =
             CompilerConfigurationKey.create<String>("support inherited annotations")
+    val SOURCE_FILES: CompilerConfigurationKey<String> =
+            CompilerConfigurationKey.create<String>("record source files of annotated classes")
 }
 
 class AnnotationCollectorCommandLineProcessor : CommandLineProcessor {
@@ -56,12 +58,17 @@ class AnnotationCollectorCommandLineProcessor : CommandLineProcessor {
         val INHERITED_ANNOTATIONS_OPTION: CliOption =
                 CliOption("inherited", "<true/false>",
                           "True if collecting Kotlin class names for inherited annotations is needed", required = false)
+
+        val SOURCE_FILES_OPTION: CliOption =
+                CliOption("sourceFiles", "<true/false>",
+                          "True if source files of Kotlin classes should be recorded to update the annotations file incrementally",
+                          required = false)
     }
 
     override val pluginId: String = ANNOTATION_COLLECTOR_COMPILER_PLUGIN_ID
 
     override val pluginOptions: Collection<CliOption> =
-            listOf(ANNOTATION_FILTER_LIST_OPTION, OUTPUT_FILENAME_OPTION, STUBS_PATH_OPTION, INHERITED_ANNOTATIONS_OPTION)
+            listOf(ANNOTATION_FILTER_LIST_OPTION, OUTPUT_FILENAME_OPTION, STUBS_PATH_OPTION, INHERITED_ANNOTATIONS_OPTION, SOURCE_FILES_OPTION)
 
     override fun processOption(option: CliOption, value: String, configuration: CompilerConfiguration) {
         when (option) {
@@ -72,6 +79,7 @@ class AnnotationCollectorCommandLineProcessor : CommandLineProcessor {
             OUTPUT_FILENAME_OPTION -> configuration.put(AnnotationCollectorConfigurationKeys.OUTPUT_FILENAME, value)
             STUBS_PATH_OPTION -> configuration.put(AnnotationCollectorConfigurationKeys.STUBS_PATH, value)
             INHERITED_ANNOTATIONS_OPTION -> configuration.put(AnnotationCollectorConfigurationKeys.INHERITED, value)
+            SOURCE_FILES_OPTION -> configuration.put(AnnotationCollectorConfigurationKeys.SOURCE_FILES, value)
             else -> throw CliOptionProcessingException("Unknown option: ${option.name}")
         }
     }
@@ -80,11 +88,12 @@ class AnnotationCollectorCommandLineProcessor : CommandLineProcessor {
 class AnnotationCollectorComponentRegistrar : ComponentRegistrar {
     override fun registerProjectComponents(project: MockProject, configuration: CompilerConfiguration) {
         val supportInheritedAnnotations = "true" == (configuration.get(AnnotationCollectorConfigurationKeys.INHERITED) ?: "true")
+        val recordSourceFiles = "true" == configuration.get(AnnotationCollectorConfigurationKeys.SOURCE_FILES)
 
         val annotationFilterList = configuration.get(AnnotationCollectorConfigurationKeys.ANNOTATION_FILTER_LIST)
         val outputFilename = configuration.get(AnnotationCollectorConfigurationKeys.OUTPUT_FILENAME)
         if (outputFilename != null) {
-            val collectorExtension = AnnotationCollectorExtension(annotationFilterList, outputFilename, supportInheritedAnnotations)
+            val collectorExtension = AnnotationCollectorExtension(annotationFilterList, outputFilename, supportInheritedAnnotations, recordSourceFiles)
             ClassBuilderInterceptorExtension.registerExtension(project, collectorExtension)
         }
 
@@ -43,7 +43,6 @@ import com.sun.istack.internal.NotNull;
 import org.jetbrains.uast.*;
 import org.jetbrains.uast.check.UastChecker;
 import org.jetbrains.uast.check.UastScanner;
-import org.jetbrains.uast.visitor.UastVisitor;
 import org.jetbrains.org.objectweb.asm.ClassReader;
 import org.jetbrains.org.objectweb.asm.Opcodes;
 import org.jetbrains.org.objectweb.asm.tree.*;
@@ -1443,27 +1442,14 @@ public class LintDriver {
                 return;
             }
 
-            for (JavaContext context : contexts) {
-                fireEvent(LintListener.EventType.SCANNING_FILE, context);
-
-                for (Detector check : checks) {
-                    if (check instanceof UastScanner) {
-                        UastScanner scanner = (UastScanner) check;
-                        UastVisitor customVisitor = scanner.createUastVisitor(context);
-                        if (customVisitor != null) {
-                            UastChecker.INSTANCE.check(
-                                    ideaProject, context.file, context, customVisitor);
-                        } else {
-                            UastChecker.INSTANCE.check(
-                                    ideaProject, context.file, (UastScanner)check, context);
-                        }
-                    }
-                }
-
-                if (mCanceled) {
-                    return;
+            List<UastScanner> uastScanners = new ArrayList<UastScanner>(checks.size());
+            for (Detector check : checks) {
+                if (check instanceof UastScanner) {
+                    uastScanners.add((UastScanner) check);
                 }
             }
+
+            checkWithUastDetectors(ideaProject, uastScanners, contexts, true);
         }
     }
 
@@ -1493,9 +1479,9 @@ public class LintDriver {
             return;
         }
 
-        UastChecker checker = UastChecker.INSTANCE;
         List<UastLanguagePlugin> plugins = project.getClient().getLanguagePlugins();
 
+        List<JavaContext> contexts = new ArrayList<JavaContext>(files.size());
         for (File file : files) {
             if (!file.isFile()) {
                 continue;
@@ -1507,16 +1493,29 @@ public class LintDriver {
                 continue;
             }
 
-            JavaContext
-                    context = new JavaContext(this, project, main, file);
+            contexts.add(new JavaContext(this, project, main, file));
+        }
 
-            for (UastScanner detector : detectors) {
-                UastVisitor customHandler = detector.createUastVisitor(context);
-                if (customHandler != null) {
-                    checker.check(intellijProject, file, context, customHandler);
-                } else {
-                    checker.check(intellijProject, file, detector, context);
-                }
+        checkWithUastDetectors(intellijProject, detectors, contexts, false);
+    }
+
+    /**
+     * Checks each file with all UAST detectors in a single traversal of its UAST tree
+     */
+    private void checkWithUastDetectors(
+            @NonNull com.intellij.openapi.project.Project intellijProject,
+            @NonNull List<UastScanner> detectors,
+            @NonNull List<JavaContext> contexts,
+            boolean fireScanningEvents) {
+        for (JavaContext context : contexts) {
+            if (fireScanningEvents) {
+                fireEvent(LintListener.EventType.SCANNING_FILE, context);
+            }
+
+            UastChecker.INSTANCE.check(intellijProject, context.file, detectors, context);
+
+            if (mCanceled) {
+                return;
             }
         }
     }
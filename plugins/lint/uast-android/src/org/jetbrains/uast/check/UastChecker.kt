@@ -30,6 +30,7 @@ import org.jetbrains.uast.UastCallKind.Companion.CONSTRUCTOR_CALL
 import org.jetbrains.uast.UastCallKind.Companion.FUNCTION_CALL
 import org.jetbrains.uast.java.JavaUastLanguagePlugin
 import org.jetbrains.uast.visitor.AbstractUastVisitor
+import org.jetbrains.uast.visitor.DelegatingUastVisitor
 import org.jetbrains.uast.visitor.UastExtendableVisitor
 import org.jetbrains.uast.visitor.UastVisitor
 import java.io.File
@@ -76,13 +77,30 @@ object UastChecker {
     }
 
     fun check(project: Project, file: File, scanner: UastScanner, context: UastAndroidContext) {
+        check(project, file, context, createVisitor(scanner, context))
+    }
+
+    /**
+     * Checks the file with all [scanners] at once: the file is converted to UAST and traversed a single time,
+     * and every node is passed to the visitors of all scanners.
+     */
+    fun check(project: Project, file: File, scanners: List<UastScanner>, context: UastAndroidContext) {
+        val visitors = scanners.map { it.createUastVisitor(context) ?: createVisitor(it, context) }
+        when (visitors.size) {
+            0 -> return
+            1 -> check(project, file, context, visitors.single())
+            else -> check(project, file, context, DelegatingUastVisitor(visitors))
+        }
+    }
+
+    private fun createVisitor(scanner: UastScanner, context: UastAndroidContext): UastVisitor {
         val applicableFunctionNames = scanner.applicableFunctionNames ?: emptyList()
         val applicableSuperClasses = scanner.applicableSuperClasses ?: emptyList()
         val applicableConstructorTypes = scanner.applicableConstructorTypes ?: emptyList()
 
         val appliesToResourcesRefs = scanner.appliesToResourceRefs()
 
-        val visitor = object : AbstractUastVisitor() {
+        return object : AbstractUastVisitor() {
             override fun visitCallExpression(node: UCallExpression): Boolean {
                 if (applicableFunctionNames.isNotEmpty()) {
                     if (node.kind == FUNCTION_CALL && node.functionName in applicableFunctionNames) {
@@ -143,8 +161,6 @@ object UastChecker {
                 return false
             }
         }
-
-        check(project, file, context, visitor)
     }
 
 }
\ No newline at end of file
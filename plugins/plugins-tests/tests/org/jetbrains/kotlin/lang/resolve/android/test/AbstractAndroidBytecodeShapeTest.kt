@@ -16,16 +16,26 @@
 
 package org.jetbrains.kotlin.lang.resolve.android.test
 
+import org.jetbrains.kotlin.android.synthetic.AndroidConfigurationKeys
+import org.jetbrains.kotlin.android.synthetic.codegen.CacheImplementation
 import org.jetbrains.kotlin.codegen.AbstractBytecodeTextTest
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.InTextDirectivesUtils
 import org.jetbrains.kotlin.test.KotlinTestUtils
 import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
 
 abstract class AbstractAndroidBytecodeShapeTest : AbstractBytecodeTextTest() {
 
-    private fun createAndroidAPIEnvironment(path: String) {
-        return createEnvironmentForConfiguration(KotlinTestUtils.newConfiguration(ConfigurationKind.ALL, TestJdkKind.ANDROID_API), path)
+    private fun createAndroidAPIEnvironment(path: String, fileName: String) {
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.ALL, TestJdkKind.ANDROID_API)
+        val cacheOption = InTextDirectivesUtils.findStringWithPrefixes(File(fileName).readText(), "// CACHE_IMPLEMENTATION: ")
+        if (cacheOption != null) {
+            configuration.put(AndroidConfigurationKeys.CACHE_IMPLEMENTATION, CacheImplementation.parse(cacheOption)
+                                                                             ?: error("Unknown cache implementation: $cacheOption"))
+        }
+        return createEnvironmentForConfiguration(configuration, path)
     }
 
     private fun createEnvironmentForConfiguration(configuration: CompilerConfiguration, path: String) {
@@ -35,7 +45,7 @@ abstract class AbstractAndroidBytecodeShapeTest : AbstractBytecodeTextTest() {
 
     override fun doTest(path: String) {
         val fileName = path + getTestName(true) + ".kt"
-        createAndroidAPIEnvironment(path)
+        createAndroidAPIEnvironment(path, fileName)
         loadFileByFullPath(fileName)
         val expected = readExpectedOccurrences(fileName)
         val actual = generateToText()
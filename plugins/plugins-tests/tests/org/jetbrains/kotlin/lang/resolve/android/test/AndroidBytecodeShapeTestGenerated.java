@@ -143,6 +143,24 @@ public class AndroidBytecodeShapeTestGenerated extends AbstractAndroidBytecodeSh
         doTest(fileName);
     }
 
+    @TestMetadata("sparseArrayCache")
+    public void testSparseArrayCache() throws Exception {
+        String fileName = KotlinTestUtils.navigationMetadata("plugins/android-extensions/android-extensions-compiler/testData/codegen/bytecodeShape/sparseArrayCache/");
+        doTest(fileName);
+    }
+
+    @TestMetadata("sparseArrayCacheFragment")
+    public void testSparseArrayCacheFragment() throws Exception {
+        String fileName = KotlinTestUtils.navigationMetadata("plugins/android-extensions/android-extensions-compiler/testData/codegen/bytecodeShape/sparseArrayCacheFragment/");
+        doTest(fileName);
+    }
+
+    @TestMetadata("sparseArrayCacheView")
+    public void testSparseArrayCacheView() throws Exception {
+        String fileName = KotlinTestUtils.navigationMetadata("plugins/android-extensions/android-extensions-compiler/testData/codegen/bytecodeShape/sparseArrayCacheView/");
+        doTest(fileName);
+    }
+
     @TestMetadata("supportExtensionFunctionsFragment")
     public void testSupportExtensionFunctionsFragment() throws Exception {
         String fileName = KotlinTestUtils.navigationMetadata("plugins/android-extensions/android-extensions-compiler/testData/codegen/bytecodeShape/supportExtensionFunctionsFragment/");
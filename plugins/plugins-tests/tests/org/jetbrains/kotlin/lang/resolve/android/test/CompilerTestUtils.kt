@@ -21,6 +21,7 @@ import org.jetbrains.kotlin.android.synthetic.AndroidConfigurationKeys
 import org.jetbrains.kotlin.android.synthetic.AndroidExtensionPropertiesComponentContainerContributor
 import org.jetbrains.kotlin.android.synthetic.codegen.AndroidExpressionCodegenExtension
 import org.jetbrains.kotlin.android.synthetic.codegen.AndroidOnDestroyClassBuilderInterceptorExtension
+import org.jetbrains.kotlin.android.synthetic.codegen.CacheImplementation
 import org.jetbrains.kotlin.android.synthetic.res.AndroidLayoutXmlFileManager
 import org.jetbrains.kotlin.android.synthetic.res.AndroidVariant
 import org.jetbrains.kotlin.android.synthetic.res.CliAndroidLayoutXmlFileManager
@@ -45,7 +46,8 @@ fun KtUsefulTestCase.createAndroidTestEnvironment(configuration: CompilerConfigu
     val variants = listOf(AndroidVariant.createMainVariant(resDirectories))
     project.registerServiceInstance(AndroidLayoutXmlFileManager::class.java, CliAndroidLayoutXmlFileManager(project, "test", variants))
 
-    ExpressionCodegenExtension.registerExtension(project, AndroidExpressionCodegenExtension())
+    ExpressionCodegenExtension.registerExtension(project, AndroidExpressionCodegenExtension(
+            configuration.get(AndroidConfigurationKeys.CACHE_IMPLEMENTATION, CacheImplementation.DEFAULT)))
     StorageComponentContainerContributor.registerExtension(project, AndroidExtensionPropertiesComponentContainerContributor())
     ClassBuilderInterceptorExtension.registerExtension(project, AndroidOnDestroyClassBuilderInterceptorExtension())
     PackageFragmentProviderExtension.registerExtension(project, CliAndroidPackageFragmentProviderExtension())
@@ -17,173 +17,449 @@
 package org.jetbrains.uast.visitor
 
 import org.jetbrains.uast.*
+import java.util.*
 
+/**
+ * Passes every node of a single traversal to several visitors.
+ *
+ * Each visitor keeps the usual semantics: when it returns true from a visit method, it is not given the children
+ * of that node, nor the corresponding after-visit call. The children are only skipped altogether
+ * when all visitors have asked for it.
+ *
+ * Not every element calls an after-visit method: the default [UElement.accept] never does, and the default
+ * [UExpression.accept] calls [afterVisitElement] even when the visit method returned true. So the skip state is kept
+ * by the depth of the node in the stack of open nodes, and a node is left either on its after-visit call or when
+ * a node outside of it is visited. A visitor which skipped a node without visited children still gets
+ * its [afterVisitElement] call, as it would alone.
+ */
 class DelegatingUastVisitor(private val visitors: List<UastVisitor>): UastVisitor {
+    private val NOT_SKIPPED = -1
+
+    // The nodes which have been visited and not left yet, outermost first
+    private val openNodes = arrayListOf<UElement>()
+
+    // The number of visited nodes, and for every open node the number of nodes visited before it
+    private var visitCount = 0
+    private val openNodeVisitCounts = arrayListOf<Int>()
+
+    // For every visitor, the index in openNodes of the node whose children it has asked to skip, or NOT_SKIPPED
+    private val skippedDepths = IntArray(visitors.size).apply { Arrays.fill(this, NOT_SKIPPED) }
+
+    private fun indexOfOpenNode(node: UElement): Int {
+        for (i in openNodes.indices.reversed()) {
+            if (openNodes[i] === node) return i
+        }
+        return -1
+    }
+
+    // Leaves all open nodes deeper than depth, together with the skip state bound to them
+    private fun leaveNodesDeeperThan(depth: Int) {
+        while (openNodes.size > depth) {
+            openNodes.removeAt(openNodes.size - 1)
+            openNodeVisitCounts.removeAt(openNodeVisitCounts.size - 1)
+        }
+        for (i in visitors.indices) {
+            if (skippedDepths[i] >= depth) skippedDepths[i] = NOT_SKIPPED
+        }
+    }
+
+    // Open nodes below the closest open ancestor of the node were left without an after-visit call
+    private fun leaveNodesOutside(node: UElement) {
+        var ancestor = node.parent
+        while (ancestor != null) {
+            val index = indexOfOpenNode(ancestor)
+            if (index >= 0) {
+                leaveNodesDeeperThan(index + 1)
+                return
+            }
+            ancestor = ancestor.parent
+        }
+    }
+
+    private inline fun visit(node: UElement, visit: UastVisitor.() -> Boolean): Boolean {
+        leaveNodesOutside(node)
+
+        val depth = openNodes.size
+        openNodes.add(node)
+        openNodeVisitCounts.add(visitCount++)
+
+        var allSkip = true
+        for (i in visitors.indices) {
+            if (skippedDepths[i] != NOT_SKIPPED) continue
+
+            if (visitors[i].visit()) {
+                skippedDepths[i] = depth
+            }
+            else {
+                allSkip = false
+            }
+        }
+        return allSkip
+    }
+
+    private inline fun afterVisit(node: UElement, afterVisit: UastVisitor.() -> Unit) {
+        afterVisit(node, afterLeafVisit = false, afterVisit = afterVisit)
+    }
+
+    private inline fun afterVisit(node: UElement, afterLeafVisit: Boolean, afterVisit: UastVisitor.() -> Unit) {
+        val depth = indexOfOpenNode(node)
+        if (depth < 0) {
+            for (i in visitors.indices) {
+                if (skippedDepths[i] == NOT_SKIPPED) visitors[i].afterVisit()
+            }
+            return
+        }
+
+        // Nothing was visited inside the node, so the after-visit call does not depend on the result of the visit
+        val isLeaf = afterLeafVisit && openNodeVisitCounts[depth] == visitCount - 1
+        leaveNodesDeeperThan(depth + 1)
+
+        for (i in visitors.indices) {
+            val skippedDepth = skippedDepths[i]
+            if (skippedDepth == NOT_SKIPPED) {
+                visitors[i].afterVisit()
+            }
+            else if (skippedDepth == depth) {
+                skippedDepths[i] = NOT_SKIPPED
+                if (isLeaf) visitors[i].afterVisit()
+            }
+        }
+        leaveNodesDeeperThan(depth)
+    }
+
     override fun visitElement(node: UElement): Boolean {
-        return visitors.all { it.visitElement(node) }
+        return visit(node) { visitElement(node) }
     }
 
     override fun visitFile(node: UFile): Boolean {
-        return visitors.all { it.visitFile(node) }
+        return visit(node) { visitFile(node) }
     }
 
     override fun visitImportStatement(node: UImportStatement): Boolean {
-        return visitors.all { it.visitImportStatement(node) }
+        return visit(node) { visitImportStatement(node) }
     }
 
     override fun visitAnnotation(node: UAnnotation): Boolean {
-        return visitors.all { it.visitAnnotation(node) }
+        return visit(node) { visitAnnotation(node) }
     }
 
     override fun visitCatchClause(node: UCatchClause): Boolean {
-        return visitors.all { it.visitCatchClause(node) }
+        return visit(node) { visitCatchClause(node) }
     }
 
     override fun visitType(node: UType): Boolean {
-        return visitors.all { it.visitType(node) }
+        return visit(node) { visitType(node) }
     }
 
     override fun visitClass(node: UClass): Boolean {
-        return visitors.all { it.visitClass(node) }
+        return visit(node) { visitClass(node) }
     }
 
     override fun visitFunction(node: UFunction): Boolean {
-        return visitors.all { it.visitFunction(node) }
+        return visit(node) { visitFunction(node) }
     }
 
     override fun visitVariable(node: UVariable): Boolean {
-        return visitors.all { it.visitVariable(node) }
+        return visit(node) { visitVariable(node) }
     }
 
     override fun visitLabeledExpression(node: ULabeledExpression): Boolean {
-        return visitors.all { it.visitLabeledExpression(node) }
+        return visit(node) { visitLabeledExpression(node) }
     }
 
     override fun visitDeclarationsExpression(node: UDeclarationsExpression): Boolean {
-        return visitors.all { it.visitDeclarationsExpression(node) }
+        return visit(node) { visitDeclarationsExpression(node) }
     }
 
     override fun visitBlockExpression(node: UBlockExpression): Boolean {
-        return visitors.all { it.visitBlockExpression(node) }
+        return visit(node) { visitBlockExpression(node) }
     }
 
     override fun visitQualifiedExpression(node: UQualifiedExpression): Boolean {
-        return visitors.all { it.visitQualifiedExpression(node) }
+        return visit(node) { visitQualifiedExpression(node) }
     }
 
     override fun visitSimpleReferenceExpression(node: USimpleReferenceExpression): Boolean {
-        return visitors.all { it.visitSimpleReferenceExpression(node) }
+        return visit(node) { visitSimpleReferenceExpression(node) }
     }
 
     override fun visitCallExpression(node: UCallExpression): Boolean {
-        return visitors.all { it.visitCallExpression(node) }
+        return visit(node) { visitCallExpression(node) }
     }
 
     override fun visitBinaryExpression(node: UBinaryExpression): Boolean {
-        return visitors.all { it.visitBinaryExpression(node) }
+        return visit(node) { visitBinaryExpression(node) }
     }
 
     override fun visitBinaryExpressionWithType(node: UBinaryExpressionWithType): Boolean {
-        return visitors.all { it.visitBinaryExpressionWithType(node) }
+        return visit(node) { visitBinaryExpressionWithType(node) }
     }
 
     override fun visitParenthesizedExpression(node: UParenthesizedExpression): Boolean {
-        return visitors.all { it.visitParenthesizedExpression(node) }
+        return visit(node) { visitParenthesizedExpression(node) }
     }
 
     override fun visitUnaryExpression(node: UUnaryExpression): Boolean {
-        return visitors.all { it.visitUnaryExpression(node) }
+        return visit(node) { visitUnaryExpression(node) }
     }
 
     override fun visitPrefixExpression(node: UPrefixExpression): Boolean {
-        return visitors.all { it.visitPrefixExpression(node) }
+        return visit(node) { visitPrefixExpression(node) }
     }
 
     override fun visitPostfixExpression(node: UPostfixExpression): Boolean {
-        return visitors.all { it.visitPostfixExpression(node) }
+        return visit(node) { visitPostfixExpression(node) }
     }
 
     override fun visitSpecialExpressionList(node: USpecialExpressionList): Boolean {
-        return visitors.all { it.visitSpecialExpressionList(node) }
+        return visit(node) { visitSpecialExpressionList(node) }
     }
 
     override fun visitIfExpression(node: UIfExpression): Boolean {
-        return visitors.all { it.visitIfExpression(node) }
+        return visit(node) { visitIfExpression(node) }
     }
 
     override fun visitSwitchExpression(node: USwitchExpression): Boolean {
-        return visitors.all { it.visitSwitchExpression(node) }
+        return visit(node) { visitSwitchExpression(node) }
     }
 
     override fun visitSwitchClauseExpression(node: USwitchClauseExpression): Boolean {
-        return visitors.all { it.visitSwitchClauseExpression(node) }
+        return visit(node) { visitSwitchClauseExpression(node) }
     }
 
     override fun visitWhileExpression(node: UWhileExpression): Boolean {
-        return visitors.all { it.visitWhileExpression(node) }
+        return visit(node) { visitWhileExpression(node) }
     }
 
     override fun visitDoWhileExpression(node: UDoWhileExpression): Boolean {
-        return visitors.all { it.visitDoWhileExpression(node) }
+        return visit(node) { visitDoWhileExpression(node) }
     }
 
     override fun visitForExpression(node: UForExpression): Boolean {
-        return visitors.all { it.visitForExpression(node) }
+        return visit(node) { visitForExpression(node) }
     }
 
     override fun visitForEachExpression(node: UForEachExpression): Boolean {
-        return visitors.all { it.visitForEachExpression(node) }
+        return visit(node) { visitForEachExpression(node) }
     }
 
     override fun visitTryExpression(node: UTryExpression): Boolean {
-        return visitors.all { it.visitTryExpression(node) }
+        return visit(node) { visitTryExpression(node) }
     }
 
     override fun visitLiteralExpression(node: ULiteralExpression): Boolean {
-        return visitors.all { it.visitLiteralExpression(node) }
+        return visit(node) { visitLiteralExpression(node) }
     }
 
     override fun visitThisExpression(node: UThisExpression): Boolean {
-        return visitors.all { it.visitThisExpression(node) }
+        return visit(node) { visitThisExpression(node) }
     }
 
     override fun visitSuperExpression(node: USuperExpression): Boolean {
-        return visitors.all { it.visitSuperExpression(node) }
+        return visit(node) { visitSuperExpression(node) }
     }
 
     override fun visitReturnExpression(node: UReturnExpression): Boolean {
-        return visitors.all { it.visitReturnExpression(node) }
+        return visit(node) { visitReturnExpression(node) }
     }
 
     override fun visitBreakExpression(node: UBreakExpression): Boolean {
-        return visitors.all { it.visitBreakExpression(node) }
+        return visit(node) { visitBreakExpression(node) }
     }
 
     override fun visitContinueExpression(node: UContinueExpression): Boolean {
-        return visitors.all { it.visitContinueExpression(node) }
+        return visit(node) { visitContinueExpression(node) }
     }
 
     override fun visitThrowExpression(node: UThrowExpression): Boolean {
-        return visitors.all { it.visitThrowExpression(node) }
+        return visit(node) { visitThrowExpression(node) }
     }
 
     override fun visitArrayAccessExpression(node: UArrayAccessExpression): Boolean {
-        return visitors.all { it.visitArrayAccessExpression(node) }
+        return visit(node) { visitArrayAccessExpression(node) }
     }
 
     override fun visitCallableReferenceExpression(node: UCallableReferenceExpression): Boolean {
-        return visitors.all { it.visitCallableReferenceExpression(node) }
+        return visit(node) { visitCallableReferenceExpression(node) }
     }
 
     override fun visitClassLiteralExpression(node: UClassLiteralExpression): Boolean {
-        return visitors.all { it.visitClassLiteralExpression(node) }
+        return visit(node) { visitClassLiteralExpression(node) }
     }
 
     override fun visitLambdaExpression(node: ULambdaExpression): Boolean {
-        return visitors.all { it.visitLambdaExpression(node) }
+        return visit(node) { visitLambdaExpression(node) }
     }
 
     override fun visitObjectLiteralExpression(node: UObjectLiteralExpression): Boolean {
-        return visitors.all { it.visitObjectLiteralExpression(node) }
+        return visit(node) { visitObjectLiteralExpression(node) }
+    }
+
+    override fun afterVisitElement(node: UElement) {
+        afterVisit(node, afterLeafVisit = true) { afterVisitElement(node) }
+    }
+
+    override fun afterVisitFile(node: UFile) {
+        afterVisit(node) { afterVisitFile(node) }
+    }
+
+    override fun afterVisitImportStatement(node: UImportStatement) {
+        afterVisit(node) { afterVisitImportStatement(node) }
+    }
+
+    override fun afterVisitAnnotation(node: UAnnotation) {
+        afterVisit(node) { afterVisitAnnotation(node) }
+    }
+
+    override fun afterVisitCatchClause(node: UCatchClause) {
+        afterVisit(node) { afterVisitCatchClause(node) }
+    }
+
+    override fun afterVisitType(node: UType) {
+        afterVisit(node) { afterVisitType(node) }
+    }
+
+    override fun afterVisitClass(node: UClass) {
+        afterVisit(node) { afterVisitClass(node) }
+    }
+
+    override fun afterVisitFunction(node: UFunction) {
+        afterVisit(node) { afterVisitFunction(node) }
+    }
+
+    override fun afterVisitVariable(node: UVariable) {
+        afterVisit(node) { afterVisitVariable(node) }
+    }
+
+    override fun afterVisitLabeledExpression(node: ULabeledExpression) {
+        afterVisit(node) { afterVisitLabeledExpression(node) }
+    }
+
+    override fun afterVisitDeclarationsExpression(node: UDeclarationsExpression) {
+        afterVisit(node) { afterVisitDeclarationsExpression(node) }
+    }
+
+    override fun afterVisitBlockExpression(node: UBlockExpression) {
+        afterVisit(node) { afterVisitBlockExpression(node) }
+    }
+
+    override fun afterVisitQualifiedExpression(node: UQualifiedExpression) {
+        afterVisit(node) { afterVisitQualifiedExpression(node) }
+    }
+
+    override fun afterVisitSimpleReferenceExpression(node: USimpleReferenceExpression) {
+        afterVisit(node) { afterVisitSimpleReferenceExpression(node) }
+    }
+
+    override fun afterVisitCallExpression(node: UCallExpression) {
+        afterVisit(node) { afterVisitCallExpression(node) }
+    }
+
+    override fun afterVisitBinaryExpression(node: UBinaryExpression) {
+        afterVisit(node) { afterVisitBinaryExpression(node) }
+    }
+
+    override fun afterVisitBinaryExpressionWithType(node: UBinaryExpressionWithType) {
+        afterVisit(node) { afterVisitBinaryExpressionWithType(node) }
+    }
+
+    override fun afterVisitParenthesizedExpression(node: UParenthesizedExpression) {
+        afterVisit(node) { afterVisitParenthesizedExpression(node) }
+    }
+
+    override fun afterVisitUnaryExpression(node: UUnaryExpression) {
+        afterVisit(node) { afterVisitUnaryExpression(node) }
+    }
+
+    override fun afterVisitPrefixExpression(node: UPrefixExpression) {
+        afterVisit(node) { afterVisitPrefixExpression(node) }
+    }
+
+    override fun afterVisitPostfixExpression(node: UPostfixExpression) {
+        afterVisit(node) { afterVisitPostfixExpression(node) }
+    }
+
+    override fun afterVisitSpecialExpressionList(node: USpecialExpressionList) {
+        afterVisit(node) { afterVisitSpecialExpressionList(node) }
+    }
+
+    override fun afterVisitIfExpression(node: UIfExpression) {
+        afterVisit(node) { afterVisitIfExpression(node) }
+    }
+
+    override fun afterVisitSwitchExpression(node: USwitchExpression) {
+        afterVisit(node) { afterVisitSwitchExpression(node) }
+    }
+
+    override fun afterVisitSwitchClauseExpression(node: USwitchClauseExpression) {
+        afterVisit(node) { afterVisitSwitchClauseExpression(node) }
+    }
+
+    override fun afterVisitWhileExpression(node: UWhileExpression) {
+        afterVisit(node) { afterVisitWhileExpression(node) }
+    }
+
+    override fun afterVisitDoWhileExpression(node: UDoWhileExpression) {
+        afterVisit(node) { afterVisitDoWhileExpression(node) }
+    }
+
+    override fun afterVisitForExpression(node: UForExpression) {
+        afterVisit(node) { afterVisitForExpression(node) }
+    }
+
+    override fun afterVisitForEachExpression(node: UForEachExpression) {
+        afterVisit(node) { afterVisitForEachExpression(node) }
+    }
+
+    override fun afterVisitTryExpression(node: UTryExpression) {
+        afterVisit(node) { afterVisitTryExpression(node) }
+    }
+
+    override fun afterVisitLiteralExpression(node: ULiteralExpression) {
+        afterVisit(node) { afterVisitLiteralExpression(node) }
+    }
+
+    override fun afterVisitThisExpression(node: UThisExpression) {
+        afterVisit(node) { afterVisitThisExpression(node) }
+    }
+
+    override fun afterVisitSuperExpression(node: USuperExpression) {
+        afterVisit(node) { afterVisitSuperExpression(node) }
+    }
+
+    override fun afterVisitReturnExpression(node: UReturnExpression) {
+        afterVisit(node) { afterVisitReturnExpression(node) }
+    }
+
+    override fun afterVisitBreakExpression(node: UBreakExpression) {
+        afterVisit(node) { afterVisitBreakExpression(node) }
+    }
+
+    override fun afterVisitContinueExpression(node: UContinueExpression) {
+        afterVisit(node) { afterVisitContinueExpression(node) }
+    }
+
+    override fun afterVisitThrowExpression(node: UThrowExpression) {
+        afterVisit(node) { afterVisitThrowExpression(node) }
+    }
+
+    override fun afterVisitArrayAccessExpression(node: UArrayAccessExpression) {
+        afterVisit(node) { afterVisitArrayAccessExpression(node) }
+    }
+
+    override fun afterVisitCallableReferenceExpression(node: UCallableReferenceExpression) {
+        afterVisit(node) { afterVisitCallableReferenceExpression(node) }
+    }
+
+    override fun afterVisitClassLiteralExpression(node: UClassLiteralExpression) {
+        afterVisit(node) { afterVisitClassLiteralExpression(node) }
+    }
+
+    override fun afterVisitLambdaExpression(node: ULambdaExpression) {
+        afterVisit(node) { afterVisitLambdaExpression(node) }
+    }
+
+    override fun afterVisitObjectLiteralExpression(node: UObjectLiteralExpression) {
+        afterVisit(node) { afterVisitObjectLiteralExpression(node) }
     }
-}
\ No newline at end of file
+}
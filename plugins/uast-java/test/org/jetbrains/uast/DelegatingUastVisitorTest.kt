@@ -0,0 +1,202 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.uast
+
+import com.intellij.psi.JavaPsiFacade
+import com.intellij.testFramework.LightCodeInsightTestCase
+import com.intellij.testFramework.LightPlatformTestCase
+import org.jetbrains.uast.java.JavaConverter
+import org.jetbrains.uast.visitor.AbstractUastVisitor
+import org.jetbrains.uast.visitor.DelegatingUastVisitor
+import org.jetbrains.uast.visitor.UastVisitor
+
+class DelegatingUastVisitorTest : LightCodeInsightTestCase() {
+    private val TEXT = """
+        class A {
+            void foo() { bar(); baz(); }
+            void bar() { }
+            void baz() { if (true) { foo(); } }
+        }
+    """
+
+    private val LEAVES_TEXT = """
+        class B {
+            int x = 1;
+            void foo(String s) { int y = x + 2; bar("a"); }
+            void bar(String t) { }
+        }
+    """
+
+    // Logs functions and calls; asks to skip the children of the functions listed in skippedFunctions
+    private class RecordingVisitor(private val skippedFunctions: Set<String> = emptySet()) : AbstractUastVisitor() {
+        val log = arrayListOf<String>()
+
+        override fun visitFunction(node: UFunction): Boolean {
+            log.add("fun ${node.name}")
+            return node.name in skippedFunctions
+        }
+
+        override fun afterVisitFunction(node: UFunction) {
+            log.add("end ${node.name}")
+        }
+
+        override fun visitCallExpression(node: UCallExpression): Boolean {
+            log.add("call ${node.functionName}")
+            return false
+        }
+    }
+
+    // Logs all elements and types; returns true from visitElement and visitType for the elements accepted by skip
+    private class ElementRecordingVisitor(private val skip: (UElement) -> Boolean) : AbstractUastVisitor() {
+        val log = arrayListOf<String>()
+
+        private val UElement.label: String
+            get() = logString().lines().first().trim()
+
+        override fun visitElement(node: UElement): Boolean {
+            log.add("visit ${node.label}")
+            return skip(node)
+        }
+
+        override fun afterVisitElement(node: UElement) {
+            log.add("end ${node.label}")
+        }
+
+        override fun visitType(node: UType): Boolean {
+            log.add("type ${node.label}")
+            return skip(node)
+        }
+
+        override fun afterVisitType(node: UType) {
+            log.add("end type ${node.label}")
+        }
+    }
+
+    // Elements of a hand-made tree, with the different ways of calling after-visit methods found in UAST
+    private abstract class TestElement(override val parent: UElement?, val name: String) : UElement {
+        override fun logString() = name
+    }
+
+    // Calls no after-visit method, like the default UElement.accept
+    private class LeafWithoutAfterVisit(parent: UElement?, name: String) : TestElement(parent, name)
+
+    // Calls afterVisitElement whatever visitElement returned, like the default UExpression.accept
+    private class LeafWithAfterVisit(parent: UElement?, name: String) : TestElement(parent, name) {
+        override fun accept(visitor: UastVisitor) {
+            visitor.visitElement(this)
+            visitor.afterVisitElement(this)
+        }
+    }
+
+    private class Container(parent: UElement?, name: String) : TestElement(parent, name) {
+        val children = arrayListOf<UElement>()
+
+        override fun accept(visitor: UastVisitor) {
+            if (visitor.visitElement(this)) return
+            children.forEach { it.accept(visitor) }
+            visitor.afterVisitElement(this)
+        }
+    }
+
+    private fun createTree(): UElement {
+        val root = Container(null, "root")
+        val a = Container(root, "a")
+        a.children.add(LeafWithoutAfterVisit(a, "a1"))
+        a.children.add(LeafWithAfterVisit(a, "a2"))
+        a.children.add(LeafWithoutAfterVisit(a, "a3"))
+        val c = Container(root, "c")
+        c.children.add(LeafWithAfterVisit(c, "c1"))
+        root.children.add(a)
+        root.children.add(LeafWithoutAfterVisit(root, "b"))
+        root.children.add(c)
+        return root
+    }
+
+    private fun createFile(text: String = TEXT): UFile {
+        val factory = JavaPsiFacade.getInstance(LightPlatformTestCase.ourProject).elementFactory
+        val psiClass = factory.createClassFromText(text.trimIndent(), null).innerClasses[0]
+        val uClass = JavaConverter.convertWithParent(psiClass) ?: error("UClass was not created")
+        return uClass.getContainingFile() ?: error("No containing file")
+    }
+
+    // Every visitor should see exactly what it sees when it traverses the file alone
+    private fun doTest(vararg skippedFunctions: Set<String>) {
+        val file = createFile()
+
+        val expectedLogs = skippedFunctions.map { skipped -> RecordingVisitor(skipped).apply { file.accept(this) }.log }
+
+        val visitors = skippedFunctions.map { RecordingVisitor(it) }
+        file.accept(DelegatingUastVisitor(visitors))
+
+        assertEquals(expectedLogs, visitors.map { it.log })
+    }
+
+    fun testAllVisitorsSeeAllNodes() {
+        doTest(emptySet(), emptySet())
+
+        val visitor = RecordingVisitor()
+        createFile().accept(DelegatingUastVisitor(listOf(visitor, RecordingVisitor())))
+        assertTrue(visitor.log.toString(), visitor.log.containsAll(listOf("fun foo", "call bar", "end foo", "call foo")))
+    }
+
+    fun testSkippingVisitorDoesNotStopOthers() {
+        doTest(setOf("foo", "baz"), emptySet())
+    }
+
+    fun testDifferentSkippedNodes() {
+        doTest(setOf("foo"), setOf("baz"), setOf("bar"))
+    }
+
+    fun testAllVisitorsSkip() {
+        doTest(setOf("foo", "bar", "baz"), setOf("foo", "bar", "baz"))
+    }
+
+    private fun doElementsTest(root: UElement, vararg skips: (UElement) -> Boolean) {
+        val expectedLogs = skips.map { skip -> ElementRecordingVisitor(skip).apply { root.accept(this) }.log }
+
+        val visitors = skips.map { ElementRecordingVisitor(it) }
+        root.accept(DelegatingUastVisitor(visitors))
+
+        assertEquals(expectedLogs, visitors.map { it.log })
+    }
+
+    private fun named(vararg names: String): (UElement) -> Boolean = { (it as TestElement).name in names }
+
+    fun testSkippedLeavesDoNotAffectSiblings() {
+        val tree = createTree()
+        doElementsTest(tree, named("a1"), named())
+        doElementsTest(tree, named("a2"), named())
+        doElementsTest(tree, named("a1", "b"), named("a3"), named())
+        doElementsTest(tree, named("a"), named("a2", "c1"), named("b"))
+    }
+
+    fun testAllVisitorsSkipLeaves() {
+        doElementsTest(createTree(), named("a1", "a2", "b"), named("a1", "a2", "b"))
+    }
+
+    fun testSkippedTypesAndLiterals() {
+        val file = createFile(LEAVES_TEXT)
+        doElementsTest(file, { it is UType }, { false })
+        doElementsTest(file, { it is ULiteralExpression }, { it is UType }, { false })
+        doElementsTest(file, { it is UFunction }, { it is UVariable }, { it is ULiteralExpression || it is UType })
+    }
+
+    fun testVisitorSkippingEverything() {
+        val file = createFile(LEAVES_TEXT)
+        doElementsTest(file, { it !is UFile }, { false })
+        doElementsTest(file, { true }, { it is UType })
+    }
+}